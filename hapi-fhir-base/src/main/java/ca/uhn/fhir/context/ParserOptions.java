@@ -42,6 +42,8 @@ public class ParserOptions {
 	private Set<String> myDontStripVersionsFromReferencesAtPaths = Collections.emptySet();
 	private boolean myOverrideResourceIdWithBundleEntryFullUrl = true;
 	private boolean myAutoContainReferenceTargetsWithNoId = true;
+	private boolean myStreamingJsonParsing = false;
+	private boolean myLazyBundleEntryParsing = false;
 
 	/**
 	 * If set to {@literal true} (which is the default), contained resources may be specified by
@@ -205,4 +207,114 @@ public class ParserOptions {
 		myOverrideResourceIdWithBundleEntryFullUrl = theOverrideResourceIdWithBundleEntryFullUrl;
 		return this;
 	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser reads resources directly
+	 * from the stream of JSON tokens instead of first reading the whole document into a tree of JSON nodes.
+	 * This avoids holding a second copy of large documents (e.g. big Bundles) in memory while they
+	 * are being parsed. Primitive values are held until the end of the JSON object they appear in so that
+	 * they can be paired with their <code>_element</code> extensions.
+	 * <p>
+	 * An <code>_element</code> property which appears <b>after</b> a complex (non-primitive) element with the
+	 * same name can not be applied to that element, and is reported to the parser error handler
+	 * as an unknown element. This form is not valid FHIR JSON.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isStreamingJsonParsing() {
+		return myStreamingJsonParsing;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser reads resources directly
+	 * from the stream of JSON tokens instead of first reading the whole document into a tree of JSON nodes.
+	 * This avoids holding a second copy of large documents (e.g. big Bundles) in memory while they
+	 * are being parsed. Primitive values are held until the end of the JSON object they appear in so that
+	 * they can be paired with their <code>_element</code> extensions.
+	 * <p>
+	 * An <code>_element</code> property which appears <b>after</b> a complex (non-primitive) element with the
+	 * same name can not be applied to that element, and is reported to the parser error handler
+	 * as an unknown element. This form is not valid FHIR JSON.
+	 * </p>
+	 *
+	 * @return Returns a reference to <code>this</code> so that method calls can be chained together
+	 * @since 7.2.0
+	 */
+	public ParserOptions setStreamingJsonParsing(boolean theStreamingJsonParsing) {
+		myStreamingJsonParsing = theStreamingJsonParsing;
+		return this;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser does not build the
+	 * entries of a Bundle while parsing it. Instead, the text of each entry (including its resource) is
+	 * kept and only parsed into model objects the first time it is accessed through
+	 * <code>Bundle.getEntry()</code>, the {@link BaseRuntimeChildDefinition.IAccessor child accessors}
+	 * or the {@link ca.uhn.fhir.util.FhirTerser terser}. This makes it much cheaper to parse a large
+	 * Bundle when only a few of its elements (e.g. <code>Bundle.type</code>) or entries are used.
+	 * <p>
+	 * Note the following differences when this is enabled:
+	 * </p>
+	 * <ul>
+	 * <li>Errors in an entry are reported to the parser error handler (or thrown) when the entry is first
+	 * accessed, not when the Bundle is parsed.</li>
+	 * <li>References between entries are not resolved into
+	 * {@link org.hl7.fhir.instance.model.api.IBaseReference#getResource()}. References within an entry
+	 * still are.</li>
+	 * <li>The entries are parsed with the parser settings and options which were in effect when the Bundle
+	 * was parsed, even if they have been changed since.</li>
+	 * <li>The whole document is read into memory as text, and then read with the
+	 * {@link #setStreamingJsonParsing(boolean) streaming parser} whether or not that is enabled. The text
+	 * is kept until every entry has been accessed.</li>
+	 * <li>Bundles parsed from an already parsed JSON structure (i.e.
+	 * {@link ca.uhn.fhir.parser.IJsonLikeParser#parseResource(Class, ca.uhn.fhir.parser.json.JsonLikeStructure)})
+	 * are parsed completely.</li>
+	 * </ul>
+	 * <p>
+	 * This setting has no effect on the XML and RDF parsers.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isLazyBundleEntryParsing() {
+		return myLazyBundleEntryParsing;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser does not build the
+	 * entries of a Bundle while parsing it. Instead, the text of each entry (including its resource) is
+	 * kept and only parsed into model objects the first time it is accessed through
+	 * <code>Bundle.getEntry()</code>, the {@link BaseRuntimeChildDefinition.IAccessor child accessors}
+	 * or the {@link ca.uhn.fhir.util.FhirTerser terser}. This makes it much cheaper to parse a large
+	 * Bundle when only a few of its elements (e.g. <code>Bundle.type</code>) or entries are used.
+	 * <p>
+	 * Note the following differences when this is enabled:
+	 * </p>
+	 * <ul>
+	 * <li>Errors in an entry are reported to the parser error handler (or thrown) when the entry is first
+	 * accessed, not when the Bundle is parsed.</li>
+	 * <li>References between entries are not resolved into
+	 * {@link org.hl7.fhir.instance.model.api.IBaseReference#getResource()}. References within an entry
+	 * still are.</li>
+	 * <li>The entries are parsed with the parser settings and options which were in effect when the Bundle
+	 * was parsed, even if they have been changed since.</li>
+	 * <li>The whole document is read into memory as text, and then read with the
+	 * {@link #setStreamingJsonParsing(boolean) streaming parser} whether or not that is enabled. The text
+	 * is kept until every entry has been accessed.</li>
+	 * <li>Bundles parsed from an already parsed JSON structure (i.e.
+	 * {@link ca.uhn.fhir.parser.IJsonLikeParser#parseResource(Class, ca.uhn.fhir.parser.json.JsonLikeStructure)})
+	 * are parsed completely.</li>
+	 * </ul>
+	 * <p>
+	 * This setting has no effect on the XML and RDF parsers.
+	 * </p>
+	 *
+	 * @return Returns a reference to <code>this</code> so that method calls can be chained together
+	 * @since 7.2.0
+	 */
+	public ParserOptions setLazyBundleEntryParsing(boolean theLazyBundleEntryParsing) {
+		myLazyBundleEntryParsing = theLazyBundleEntryParsing;
+		return this;
+	}
 }
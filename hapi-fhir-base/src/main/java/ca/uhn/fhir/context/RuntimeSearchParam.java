@@ -90,7 +90,8 @@ public class RuntimeSearchParam {
 	}
 
 	/**
-	 * Copy constructor
+	 * Copy constructor. Extensions, uplift refchains and the phonetic encoder are copied
+	 * along with the definition.
 	 */
 	public RuntimeSearchParam(RuntimeSearchParam theSp) {
 		this(
@@ -106,6 +107,9 @@ public class RuntimeSearchParam {
 				theSp.getComboSearchParamType(),
 				theSp.getComponents(),
 				theSp.getBase());
+		theSp.myExtensions.forEach((k, v) -> myExtensions.put(k, new ArrayList<>(v)));
+		myUpliftRefchains.putAll(theSp.myUpliftRefchains);
+		myPhoneticEncoder = theSp.myPhoneticEncoder;
 	}
 
 	/**
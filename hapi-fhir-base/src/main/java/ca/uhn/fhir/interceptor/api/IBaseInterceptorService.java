@@ -66,4 +66,20 @@ public interface IBaseInterceptorService<POINTCUT extends IPointcut> extends IBa
 	 * Unregisters all anonymous interceptors (i.e. all interceptors registered with <code>registerAnonymousInterceptor</code>)
 	 */
 	void unregisterAllAnonymousInterceptors();
+
+	/**
+	 * Sets a sink which will receive the timing of every hook invocation, or <code>null</code>
+	 * (which is the default) to stop recording. Hooks are not timed at all when no sink is set.
+	 *
+	 * @since 7.2.0
+	 */
+	void setMetricsSink(@Nullable IInterceptorMetricsSink theMetricsSink);
+
+	/**
+	 * Returns the sink which receives the timing of every hook invocation, or <code>null</code> if none is set
+	 *
+	 * @since 7.2.0
+	 */
+	@Nullable
+	IInterceptorMetricsSink getMetricsSink();
 }
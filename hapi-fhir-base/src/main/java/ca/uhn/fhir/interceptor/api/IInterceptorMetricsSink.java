@@ -0,0 +1,44 @@
+/*-
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.interceptor.api;
+
+/**
+ * Receives the timing of each hook method invocation made by an interceptor service. A sink
+ * can be set on an interceptor service using
+ * {@link IBaseInterceptorService#setMetricsSink(IInterceptorMetricsSink)}, and is then
+ * called on the invoking thread after every hook invocation, so implementations must be
+ * thread safe and should do as little work as possible.
+ *
+ * @see ca.uhn.fhir.interceptor.executor.InterceptorMetricsCollector
+ * @since 7.2.0
+ */
+@FunctionalInterface
+public interface IInterceptorMetricsSink {
+
+	/**
+	 * Records a single hook invocation
+	 *
+	 * @param thePointcut     The pointcut that was invoked
+	 * @param theInterceptor  The interceptor that the hook method belongs to
+	 * @param theElapsedNanos The time spent in the hook method, in nanoseconds
+	 * @param theSuccessful   <code>false</code> if the hook method threw an exception
+	 */
+	void hookInvoked(IPointcut thePointcut, Object theInterceptor, long theElapsedNanos, boolean theSuccessful);
+}
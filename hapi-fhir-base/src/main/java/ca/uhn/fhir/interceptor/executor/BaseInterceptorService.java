@@ -23,6 +23,7 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IBaseInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.IBaseInterceptorService;
+import ca.uhn.fhir.interceptor.api.IInterceptorMetricsSink;
 import ca.uhn.fhir.interceptor.api.IPointcut;
 import ca.uhn.fhir.interceptor.api.Interceptor;
 import ca.uhn.fhir.interceptor.api.Pointcut;
@@ -49,12 +50,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
@@ -68,7 +67,12 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 	private final ListMultimap<POINTCUT, BaseInvoker> myAnonymousInvokers = ArrayListMultimap.create();
 	private final Object myRegistryMutex = new Object();
 	private final Class<POINTCUT> myPointcutType;
-	private volatile EnumSet<POINTCUT> myRegisteredPointcuts;
+	/**
+	 * The invokers for each pointcut (indexed by pointcut ordinal), sorted and ready to call. These
+	 * are rebuilt whenever the registrations change, so that calling hooks needs no locking or copying.
+	 */
+	private volatile BaseInvoker[][] myInvokersByPointcut;
+	private volatile IInterceptorMetricsSink myMetricsSink;
 	private String myName;
 	private boolean myWarnOnInterceptorWithNoHooks = true;
 
@@ -88,7 +92,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		super();
 		myName = theName;
 		myPointcutType = thePointcutType;
-		rebuildRegisteredPointcutSet();
+		rebuildInvokersByPointcut();
 	}
 
 	/**
@@ -107,6 +111,17 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		myName = theName;
 	}
 
+	@Override
+	public void setMetricsSink(@Nullable IInterceptorMetricsSink theMetricsSink) {
+		myMetricsSink = theMetricsSink;
+	}
+
+	@Nullable
+	@Override
+	public IInterceptorMetricsSink getMetricsSink() {
+		return myMetricsSink;
+	}
+
 	protected void registerAnonymousInterceptor(POINTCUT thePointcut, Object theInterceptor, BaseInvoker theInvoker) {
 		Validate.notNull(thePointcut);
 		Validate.notNull(theInterceptor);
@@ -116,7 +131,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 				myInterceptors.add(theInterceptor);
 			}
 
-			rebuildRegisteredPointcutSet();
+			rebuildInvokersByPointcut();
 		}
 	}
 
@@ -177,7 +192,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 				}
 			}
 
-			rebuildRegisteredPointcutSet();
+			rebuildInvokersByPointcut();
 		}
 	}
 
@@ -202,17 +217,26 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 			myInterceptors.add(theInterceptor);
 			sortByOrderAnnotation(myInterceptors);
 
-			rebuildRegisteredPointcutSet();
+			rebuildInvokersByPointcut();
 
 			return true;
 		}
 	}
 
-	private void rebuildRegisteredPointcutSet() {
-		EnumSet<POINTCUT> registeredPointcuts = EnumSet.noneOf(myPointcutType);
-		registeredPointcuts.addAll(myAnonymousInvokers.keySet());
-		registeredPointcuts.addAll(myGlobalInvokers.keySet());
-		myRegisteredPointcuts = registeredPointcuts;
+	/**
+	 * Must be called while holding {@link #myRegistryMutex} (or from the constructor)
+	 */
+	private void rebuildInvokersByPointcut() {
+		POINTCUT[] pointcuts = myPointcutType.getEnumConstants();
+		BaseInvoker[][] invokersByPointcut = new BaseInvoker[pointcuts.length][];
+		for (POINTCUT next : pointcuts) {
+			List<BaseInvoker> invokers = new ArrayList<>(myGlobalInvokers.get(next));
+			invokers.addAll(myAnonymousInvokers.get(next));
+			// The sort is stable, so global invokers come before anonymous ones with the same order
+			invokers.sort(Comparator.naturalOrder());
+			invokersByPointcut[next.ordinal()] = invokers.toArray(new BaseInvoker[0]);
+		}
+		myInvokersByPointcut = invokersByPointcut;
 	}
 
 	private boolean isInterceptorAlreadyRegistered(Object theInterceptor) {
@@ -230,7 +254,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 			boolean removed = myInterceptors.removeIf(t -> t == theInterceptor);
 			removed |= myGlobalInvokers.entries().removeIf(t -> t.getValue().getInterceptor() == theInterceptor);
 			removed |= myAnonymousInvokers.entries().removeIf(t -> t.getValue().getInterceptor() == theInterceptor);
-			rebuildRegisteredPointcutSet();
+			rebuildInvokersByPointcut();
 			return removed;
 		}
 	}
@@ -255,12 +279,21 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		assert haveAppropriateParams(thePointcut, theParams);
 		assert thePointcut.getReturnType() != void.class;
 
-		return doCallHooks(thePointcut, theParams, null);
+		BaseInvoker[] invokers = getInvokersForPointcut(thePointcut);
+		if (invokers.length == 0) {
+			return null;
+		}
+
+		return doCallHooks(thePointcut, invokers, theParams, null);
 	}
 
+	/**
+	 * This is a single array lookup, so callers should use it (or {@link #ifHasCallHooks})
+	 * to skip building the {@link HookParams} when nothing is registered for the pointcut.
+	 */
 	@Override
 	public boolean hasHooks(POINTCUT thePointcut) {
-		return myRegisteredPointcuts.contains(thePointcut);
+		return getInvokersForPointcut(thePointcut).length > 0;
 	}
 
 	protected Class<?> getBooleanReturnType() {
@@ -272,21 +305,33 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		assert haveAppropriateParams(thePointcut, theParams);
 		assert thePointcut.getReturnType() == void.class || thePointcut.getReturnType() == getBooleanReturnType();
 
-		Object retValObj = doCallHooks(thePointcut, theParams, true);
+		BaseInvoker[] invokers = getInvokersForPointcut(thePointcut);
+		if (invokers.length == 0) {
+			return true;
+		}
+
+		Object retValObj = doCallHooks(thePointcut, invokers, theParams, true);
 		return (Boolean) retValObj;
 	}
 
-	private Object doCallHooks(POINTCUT thePointcut, HookParams theParams, Object theRetVal) {
-		// use new list for loop to avoid ConcurrentModificationException in case invoker gets added while looping
-		List<BaseInvoker> invokers = new ArrayList<>(getInvokersForPointcut(thePointcut));
+	private Object doCallHooks(
+			POINTCUT thePointcut, BaseInvoker[] theInvokers, HookParams theParams, Object theRetVal) {
+		Class<?> pointcutReturnType = thePointcut.getReturnType();
+		boolean booleanReturnType = pointcutReturnType.equals(getBooleanReturnType());
+		IInterceptorMetricsSink metricsSink = myMetricsSink;
 
 		/*
-		 * Call each hook in order
+		 * Call each hook in order. The array is never modified, so hooks which register or
+		 * unregister interceptors don't affect this loop.
 		 */
-		for (BaseInvoker nextInvoker : invokers) {
-			Object nextOutcome = nextInvoker.invoke(theParams);
-			Class<?> pointcutReturnType = thePointcut.getReturnType();
-			if (pointcutReturnType.equals(getBooleanReturnType())) {
+		for (BaseInvoker nextInvoker : theInvokers) {
+			Object nextOutcome;
+			if (metricsSink == null) {
+				nextOutcome = nextInvoker.invoke(theParams);
+			} else {
+				nextOutcome = invokeAndRecordMetrics(thePointcut, nextInvoker, theParams, metricsSink);
+			}
+			if (booleanReturnType) {
 				Boolean nextOutcomeAsBoolean = (Boolean) nextOutcome;
 				if (Boolean.FALSE.equals(nextOutcomeAsBoolean)) {
 					ourLog.trace("callHooks({}) for invoker({}) returned false", thePointcut, nextInvoker);
@@ -306,76 +351,35 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		return theRetVal;
 	}
 
+	private Object invokeAndRecordMetrics(
+			POINTCUT thePointcut,
+			BaseInvoker theInvoker,
+			HookParams theParams,
+			IInterceptorMetricsSink theMetricsSink) {
+		boolean successful = false;
+		long start = System.nanoTime();
+		try {
+			Object retVal = theInvoker.invoke(theParams);
+			successful = true;
+			return retVal;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			theMetricsSink.hookInvoked(thePointcut, theInvoker.getInterceptor(), elapsed, successful);
+		}
+	}
+
 	@VisibleForTesting
 	List<Object> getInterceptorsWithInvokersForPointcut(POINTCUT thePointcut) {
-		return getInvokersForPointcut(thePointcut).stream()
+		return Arrays.stream(getInvokersForPointcut(thePointcut))
 				.map(BaseInvoker::getInterceptor)
 				.collect(Collectors.toList());
 	}
 
 	/**
-	 * Returns an ordered list of invokers for the given pointcut. Note that
-	 * a new and stable list is returned to.. do whatever you want with it.
-	 */
-	private List<BaseInvoker> getInvokersForPointcut(POINTCUT thePointcut) {
-		List<BaseInvoker> invokers;
-
-		synchronized (myRegistryMutex) {
-			List<BaseInvoker> globalInvokers = myGlobalInvokers.get(thePointcut);
-			List<BaseInvoker> anonymousInvokers = myAnonymousInvokers.get(thePointcut);
-			List<BaseInvoker> threadLocalInvokers = null;
-			invokers = union(globalInvokers, anonymousInvokers, threadLocalInvokers);
-		}
-
-		return invokers;
-	}
-
-	/**
-	 * First argument must be the global invoker list!!
+	 * Returns the ordered invokers for the given pointcut. The returned array must not be modified.
 	 */
-	@SafeVarargs
-	private List<BaseInvoker> union(List<BaseInvoker>... theInvokersLists) {
-		List<BaseInvoker> haveOne = null;
-		boolean haveMultiple = false;
-		for (List<BaseInvoker> nextInvokerList : theInvokersLists) {
-			if (nextInvokerList == null || nextInvokerList.isEmpty()) {
-				continue;
-			}
-
-			if (haveOne == null) {
-				haveOne = nextInvokerList;
-			} else {
-				haveMultiple = true;
-			}
-		}
-
-		if (haveOne == null) {
-			return Collections.emptyList();
-		}
-
-		List<BaseInvoker> retVal;
-
-		if (!haveMultiple) {
-
-			// The global list doesn't need to be sorted every time since it's sorted on
-			// insertion each time. Doing so is a waste of cycles..
-			if (haveOne == theInvokersLists[0]) {
-				retVal = haveOne;
-			} else {
-				retVal = new ArrayList<>(haveOne);
-				retVal.sort(Comparator.naturalOrder());
-			}
-
-		} else {
-
-			retVal = Arrays.stream(theInvokersLists)
-					.filter(Objects::nonNull)
-					.flatMap(Collection::stream)
-					.sorted()
-					.collect(Collectors.toList());
-		}
-
-		return retVal;
+	private BaseInvoker[] getInvokersForPointcut(POINTCUT thePointcut) {
+		return myInvokersByPointcut[thePointcut.ordinal()];
 	}
 
 	/**
@@ -477,6 +481,7 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 
 		private final Method myMethod;
 		private final Class<?>[] myParameterTypes;
+		private final boolean[] myParameterIsPointcut;
 		private final int[] myParameterIndexes;
 		private final POINTCUT myPointcut;
 
@@ -507,10 +512,12 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 			}
 
 			myParameterIndexes = new int[myParameterTypes.length];
+			myParameterIsPointcut = new boolean[myParameterTypes.length];
 			Map<Class<?>, AtomicInteger> typeToCount = new HashMap<>();
 			for (int i = 0; i < myParameterTypes.length; i++) {
 				AtomicInteger counter = typeToCount.computeIfAbsent(myParameterTypes[i], t -> new AtomicInteger(0));
 				myParameterIndexes[i] = counter.getAndIncrement();
+				myParameterIsPointcut[i] = myParameterTypes[i].equals(Pointcut.class);
 			}
 
 			myMethod.setAccessible(true);
@@ -535,13 +542,10 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 
 			Object[] args = new Object[myParameterTypes.length];
 			for (int i = 0; i < myParameterTypes.length; i++) {
-				Class<?> nextParamType = myParameterTypes[i];
-				if (nextParamType.equals(Pointcut.class)) {
+				if (myParameterIsPointcut[i]) {
 					args[i] = myPointcut;
 				} else {
-					int nextParamIndex = myParameterIndexes[i];
-					Object nextParamValue = theParams.get(nextParamType, nextParamIndex);
-					args[i] = nextParamValue;
+					args[i] = theParams.get(myParameterTypes[i], myParameterIndexes[i]);
 				}
 			}
 
@@ -0,0 +1,242 @@
+/*-
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.interceptor.executor;
+
+import ca.uhn.fhir.interceptor.api.IInterceptorMetricsSink;
+import ca.uhn.fhir.interceptor.api.IPointcut;
+import ca.uhn.fhir.model.api.IModelJson;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory {@link IInterceptorMetricsSink} which keeps an invocation count and a latency
+ * histogram for each combination of pointcut and interceptor type. Recording an invocation
+ * only updates striped counters, so this is cheap enough to leave enabled in production.
+ * <p>
+ * Latencies are counted in power-of-two buckets, so the reported percentiles are the upper
+ * bound of the bucket they fall into, and may be up to twice the actual value.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class InterceptorMetricsCollector implements IInterceptorMetricsSink {
+
+	private static final int BUCKET_COUNT = Long.SIZE + 1;
+
+	private final Map<IPointcut, Map<Class<?>, HookStatistics>> myStatistics = new ConcurrentHashMap<>();
+
+	@Override
+	public void hookInvoked(IPointcut thePointcut, Object theInterceptor, long theElapsedNanos, boolean theSuccessful) {
+		Map<Class<?>, HookStatistics> pointcutStatistics = myStatistics.get(thePointcut);
+		if (pointcutStatistics == null) {
+			pointcutStatistics = myStatistics.computeIfAbsent(thePointcut, t -> new ConcurrentHashMap<>());
+		}
+
+		Class<?> interceptorType = theInterceptor.getClass();
+		HookStatistics statistics = pointcutStatistics.get(interceptorType);
+		if (statistics == null) {
+			statistics = pointcutStatistics.computeIfAbsent(interceptorType, t -> new HookStatistics());
+		}
+
+		statistics.record(theElapsedNanos, theSuccessful);
+	}
+
+	/**
+	 * Returns a snapshot of the metrics collected so far, with the hooks which have taken the
+	 * most time in total first
+	 */
+	@Nonnull
+	public List<HookMetrics> getMetrics() {
+		List<HookMetrics> retVal = new ArrayList<>();
+		for (Map.Entry<IPointcut, Map<Class<?>, HookStatistics>> nextPointcut : myStatistics.entrySet()) {
+			for (Map.Entry<Class<?>, HookStatistics> nextInterceptor : nextPointcut.getValue().entrySet()) {
+				HookStatistics statistics = nextInterceptor.getValue();
+				retVal.add(statistics.toMetrics(nextPointcut.getKey().name(), nextInterceptor.getKey().getName()));
+			}
+		}
+		retVal.sort(Comparator.comparing(HookMetrics::getTotalMicros).reversed());
+		return retVal;
+	}
+
+	/**
+	 * Discards all metrics collected so far
+	 */
+	public void clear() {
+		myStatistics.clear();
+	}
+
+	private static class HookStatistics {
+
+		private final LongAdder myFailureCount = new LongAdder();
+		private final LongAdder myTotalNanos = new LongAdder();
+		private final LongAccumulator myMaxNanos = new LongAccumulator(Math::max, 0);
+
+		/**
+		 * Bucket <code>n</code> counts the invocations which took less than
+		 * <code>2<sup>n</sup></code> nanos (and at least <code>2<sup>n-1</sup></code>)
+		 */
+		private final LongAdder[] myBuckets = new LongAdder[BUCKET_COUNT];
+
+		HookStatistics() {
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				myBuckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long theElapsedNanos, boolean theSuccessful) {
+			long elapsedNanos = Math.max(theElapsedNanos, 0);
+			if (!theSuccessful) {
+				myFailureCount.increment();
+			}
+			myTotalNanos.add(elapsedNanos);
+			myMaxNanos.accumulate(elapsedNanos);
+			myBuckets[Long.SIZE - Long.numberOfLeadingZeros(elapsedNanos)].increment();
+		}
+
+		HookMetrics toMetrics(String thePointcutName, String theInterceptorType) {
+			long[] buckets = new long[BUCKET_COUNT];
+			long count = 0;
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				buckets[i] = myBuckets[i].sum();
+				count += buckets[i];
+			}
+			long totalNanos = myTotalNanos.sum();
+			long maxNanos = myMaxNanos.get();
+
+			HookMetrics retVal = new HookMetrics();
+			retVal.myPointcut = thePointcutName;
+			retVal.myInterceptorType = theInterceptorType;
+			retVal.myCount = count;
+			retVal.myFailureCount = myFailureCount.sum();
+			retVal.myTotalMicros = toMicros(totalNanos);
+			retVal.myMeanMicros = count > 0 ? toMicros(totalNanos / count) : 0;
+			retVal.myP50Micros = toMicros(percentileNanos(buckets, count, maxNanos, 0.50));
+			retVal.myP95Micros = toMicros(percentileNanos(buckets, count, maxNanos, 0.95));
+			retVal.myP99Micros = toMicros(percentileNanos(buckets, count, maxNanos, 0.99));
+			retVal.myMaxMicros = toMicros(maxNanos);
+			return retVal;
+		}
+
+		private static long percentileNanos(long[] theBuckets, long theCount, long theMaxNanos, double thePercentile) {
+			long rank = (long) Math.ceil(theCount * thePercentile);
+			long seen = 0;
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				seen += theBuckets[i];
+				if (seen >= rank && seen > 0) {
+					long bucketUpperBound = i < Long.SIZE ? (1L << i) - 1 : Long.MAX_VALUE;
+					return Math.min(bucketUpperBound, theMaxNanos);
+				}
+			}
+			return 0;
+		}
+
+		private static long toMicros(long theNanos) {
+			return TimeUnit.NANOSECONDS.toMicros(theNanos);
+		}
+	}
+
+	/**
+	 * The metrics for a single pointcut and interceptor type
+	 */
+	public static class HookMetrics implements IModelJson {
+
+		@JsonProperty("pointcut")
+		private String myPointcut;
+
+		@JsonProperty("interceptorType")
+		private String myInterceptorType;
+
+		@JsonProperty("count")
+		private long myCount;
+
+		@JsonProperty("failureCount")
+		private long myFailureCount;
+
+		@JsonProperty("totalMicros")
+		private long myTotalMicros;
+
+		@JsonProperty("meanMicros")
+		private long myMeanMicros;
+
+		@JsonProperty("p50Micros")
+		private long myP50Micros;
+
+		@JsonProperty("p95Micros")
+		private long myP95Micros;
+
+		@JsonProperty("p99Micros")
+		private long myP99Micros;
+
+		@JsonProperty("maxMicros")
+		private long myMaxMicros;
+
+		public String getPointcut() {
+			return myPointcut;
+		}
+
+		public String getInterceptorType() {
+			return myInterceptorType;
+		}
+
+		public long getCount() {
+			return myCount;
+		}
+
+		/**
+		 * The number of invocations where the hook method threw an exception
+		 */
+		public long getFailureCount() {
+			return myFailureCount;
+		}
+
+		public long getTotalMicros() {
+			return myTotalMicros;
+		}
+
+		public long getMeanMicros() {
+			return myMeanMicros;
+		}
+
+		public long getP50Micros() {
+			return myP50Micros;
+		}
+
+		public long getP95Micros() {
+			return myP95Micros;
+		}
+
+		public long getP99Micros() {
+			return myP99Micros;
+		}
+
+		public long getMaxMicros() {
+			return myMaxMicros;
+		}
+	}
+}
@@ -597,7 +597,7 @@ public abstract class BaseParser implements IParser {
 		return myOmitResourceId;
 	}
 
-	private boolean isOverrideResourceIdWithBundleEntryFullUrl() {
+	boolean isOverrideResourceIdWithBundleEntryFullUrl() {
 		Boolean overrideResourceIdWithBundleEntryFullUrl = myOverrideResourceIdWithBundleEntryFullUrl;
 		if (overrideResourceIdWithBundleEntryFullUrl != null) {
 			return overrideResourceIdWithBundleEntryFullUrl;
@@ -683,51 +683,59 @@ public abstract class BaseParser implements IParser {
 
 		RuntimeResourceDefinition def = myContext.getResourceDefinition(retVal);
 		if ("Bundle".equals(def.getName())) {
+			// With lazy parsing, this is done for each entry when it is parsed
+			if (!(def.getChildByName("entry").getAccessor().getValues(retVal) instanceof DeferredElementList)) {
+				overrideResourceIdsWithBundleEntryFullUrls((IBaseBundle) retVal);
+			}
+		}
+
+		return retVal;
+	}
 
-			if (isOverrideResourceIdWithBundleEntryFullUrl()) {
-				BundleUtil.processEntries(myContext, (IBaseBundle) retVal, t -> {
-					String fullUrl = t.getFullUrl();
-					if (fullUrl != null) {
-						IBaseResource resource = t.getResource();
-						if (resource != null) {
-							IIdType resourceId = resource.getIdElement();
-							if (isBlank(resourceId.getValue())) {
+	/**
+	 * Sets the ID of each resource in the given Bundle from its <code>Bundle.entry.fullUrl</code>, if
+	 * this is enabled
+	 *
+	 * @see #setOverrideResourceIdWithBundleEntryFullUrl(Boolean)
+	 */
+	void overrideResourceIdsWithBundleEntryFullUrls(IBaseBundle theBundle) {
+		if (isOverrideResourceIdWithBundleEntryFullUrl()) {
+			BundleUtil.processEntries(myContext, theBundle, t -> {
+				String fullUrl = t.getFullUrl();
+				if (fullUrl != null) {
+					IBaseResource resource = t.getResource();
+					if (resource != null) {
+						IIdType resourceId = resource.getIdElement();
+						if (isBlank(resourceId.getValue())) {
+							resourceId.setValue(fullUrl);
+						} else {
+							if (fullUrl.startsWith("urn:")
+									&& fullUrl.length() > resourceId.getIdPart().length()
+									&& fullUrl.charAt(fullUrl.length() - resourceId.getIdPart().length() - 1) == ':'
+									&& fullUrl.endsWith(resourceId.getIdPart())) {
 								resourceId.setValue(fullUrl);
 							} else {
-								if (fullUrl.startsWith("urn:")
-										&& fullUrl.length()
-												> resourceId.getIdPart().length()
-										&& fullUrl.charAt(fullUrl.length()
-														- resourceId.getIdPart().length()
-														- 1)
-												== ':'
-										&& fullUrl.endsWith(resourceId.getIdPart())) {
-									resourceId.setValue(fullUrl);
-								} else {
-									IIdType fullUrlId = myContext.getVersion().newIdType();
-									fullUrlId.setValue(fullUrl);
-									if (myContext.getVersion().getVersion().isOlderThan(FhirVersionEnum.DSTU3)) {
-										IIdType newId = fullUrlId;
-										if (!newId.hasVersionIdPart() && resourceId.hasVersionIdPart()) {
-											newId = newId.withVersion(resourceId.getVersionIdPart());
-										}
-										resourceId.setValue(newId.getValue());
-									} else if (StringUtils.equals(fullUrlId.getIdPart(), resourceId.getIdPart())) {
-										if (fullUrlId.hasBaseUrl()) {
-											IIdType newResourceId = resourceId.withServerBase(
-													fullUrlId.getBaseUrl(), resourceId.getResourceType());
-											resourceId.setValue(newResourceId.getValue());
-										}
+								IIdType fullUrlId = myContext.getVersion().newIdType();
+								fullUrlId.setValue(fullUrl);
+								if (myContext.getVersion().getVersion().isOlderThan(FhirVersionEnum.DSTU3)) {
+									IIdType newId = fullUrlId;
+									if (!newId.hasVersionIdPart() && resourceId.hasVersionIdPart()) {
+										newId = newId.withVersion(resourceId.getVersionIdPart());
+									}
+									resourceId.setValue(newId.getValue());
+								} else if (StringUtils.equals(fullUrlId.getIdPart(), resourceId.getIdPart())) {
+									if (fullUrlId.hasBaseUrl()) {
+										IIdType newResourceId = resourceId.withServerBase(
+												fullUrlId.getBaseUrl(), resourceId.getResourceType());
+										resourceId.setValue(newResourceId.getValue());
 									}
 								}
 							}
 						}
 					}
-				});
-			}
+				}
+			});
 		}
-
-		return retVal;
 	}
 
 	@SuppressWarnings("cast")
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser;
+
+import org.hl7.fhir.instance.model.api.IBase;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * A list of model elements which are only parsed from their JSON text the first time they are
+ * accessed. The JSON parser installs this list directly into a repeating field (e.g.
+ * <code>Bundle.entry</code>) when lazy parsing is enabled, so that the model accessors, the child
+ * accessors and the terser all see it as an ordinary list.
+ * <p>
+ * The list keeps the text of the document the elements were read from, and the range of that text
+ * which holds each element. The text is released once every element has been parsed.
+ * </p>
+ * <p>
+ * The list can be modified like any other list. Access is synchronized so that a parsed resource
+ * can still be read from several threads.
+ * </p>
+ *
+ * @see ca.uhn.fhir.context.ParserOptions#setLazyBundleEntryParsing(boolean)
+ */
+final class DeferredElementList<T extends IBase> extends AbstractList<T> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Each value is either a parsed element, or the {@link TextRange} it is still to be parsed from
+	 */
+	private final List<Object> myValues;
+
+	private final transient Function<String, T> myElementParser;
+	private transient String mySource;
+	private transient int myUnparsedCount;
+
+	/**
+	 * @param theSource        The JSON text which the elements were read from
+	 * @param theRanges        The range of the text which holds each element
+	 * @param theElementParser Parses the text of a single element
+	 */
+	DeferredElementList(String theSource, List<TextRange> theRanges, Function<String, T> theElementParser) {
+		myValues = new ArrayList<>(theRanges);
+		mySource = theSource;
+		myUnparsedCount = theRanges.size();
+		myElementParser = theElementParser;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized T get(int theIndex) {
+		Object value = myValues.get(theIndex);
+		if (value instanceof TextRange) {
+			TextRange range = (TextRange) value;
+			T element = myElementParser.apply(mySource.substring(range.myStart, range.myEnd));
+			myValues.set(theIndex, element);
+			if (--myUnparsedCount == 0) {
+				mySource = null;
+			}
+			return element;
+		}
+		return (T) value;
+	}
+
+	@Override
+	public synchronized int size() {
+		return myValues.size();
+	}
+
+	@Override
+	public synchronized T set(int theIndex, T theElement) {
+		T retVal = get(theIndex);
+		myValues.set(theIndex, theElement);
+		return retVal;
+	}
+
+	@Override
+	public synchronized void add(int theIndex, T theElement) {
+		myValues.add(theIndex, theElement);
+		modCount++;
+	}
+
+	@Override
+	public synchronized T remove(int theIndex) {
+		T retVal = get(theIndex);
+		myValues.remove(theIndex);
+		modCount++;
+		return retVal;
+	}
+
+	@Override
+	public synchronized void clear() {
+		myValues.clear();
+		mySource = null;
+		myUnparsedCount = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns <code>true</code> if the element at the given index has been parsed
+	 */
+	synchronized boolean isParsed(int theIndex) {
+		return !(myValues.get(theIndex) instanceof TextRange);
+	}
+
+	/**
+	 * Java serialization writes a plain list, which parses any elements that haven't been parsed yet
+	 */
+	private Object writeReplace() {
+		return new ArrayList<>(this);
+	}
+
+	/**
+	 * The start (inclusive) and end (exclusive) character offsets of an element in the source text
+	 */
+	static final class TextRange {
+		private final int myStart;
+		private final int myEnd;
+
+		TextRange(int theStart, int theEnd) {
+			myStart = theStart;
+			myEnd = theEnd;
+		}
+	}
+}
@@ -54,6 +54,7 @@ import ca.uhn.fhir.parser.json.JsonLikeStructure;
 import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.text.WordUtils;
@@ -72,6 +73,7 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -98,6 +100,8 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	private Boolean myIsSupportsFhirComment;
 
+	private Boolean myLazyBundleEntryParsing;
+
 	/**
 	 * Do not use this constructor, the recommended way to obtain a new instance of the JSON parser is to invoke
 	 * {@link FhirContext#newJsonParser()}.
@@ -108,6 +112,27 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		super(theContext, theParserErrorHandler);
 	}
 
+	/**
+	 * Creates the parser which Bundle entries deferred by this parser are parsed with when they are first
+	 * accessed. It takes the settings which this parser and the context's parser options have now, so
+	 * changing either after a Bundle has been parsed doesn't change how its entries are parsed.
+	 */
+	JsonParser newDeferredEntryParser() {
+		JsonParser retVal = new JsonParser(getContext(), getErrorHandler());
+		retVal.setPreferTypes(getPreferTypes());
+		retVal.setOverrideResourceIdWithBundleEntryFullUrl(isOverrideResourceIdWithBundleEntryFullUrl());
+		retVal.myLazyBundleEntryParsing = isLazyBundleEntryParsing();
+		return retVal;
+	}
+
+	boolean isLazyBundleEntryParsing() {
+		Boolean lazyBundleEntryParsing = myLazyBundleEntryParsing;
+		if (lazyBundleEntryParsing != null) {
+			return lazyBundleEntryParsing;
+		}
+		return getContext().getParserOptions().isLazyBundleEntryParsing();
+	}
+
 	private boolean addToHeldComments(
 			int valueIdx, List<String> theCommentsToAdd, ArrayList<ArrayList<String>> theListToAddTo) {
 		if (theCommentsToAdd.size() > 0) {
@@ -236,6 +261,20 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (isLazyBundleEntryParsing()) {
+			// Deferred entries are parsed later from their text, so the whole document is read first
+			String source;
+			try {
+				source = IOUtils.toString(theReader);
+			} catch (IOException e) {
+				throw JacksonStructure.createParseException(e);
+			}
+			return new JsonTokenStreamParser(this, source).parse(theResourceType, new StringReader(source));
+		}
+		if (getContext().getParserOptions().isStreamingJsonParsing()) {
+			return new JsonTokenStreamParser(this, null).parse(theResourceType, theReader);
+		}
+
 		JsonLikeStructure jsonStructure = new JacksonStructure();
 		jsonStructure.load(theReader);
 
@@ -1229,19 +1268,22 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 	}
 
 	private BaseJsonLikeArray grabJsonArray(BaseJsonLikeObject theObject, String nextName, String thePosition) {
-		BaseJsonLikeValue object = theObject.get(nextName);
-		if (object == null || object.isNull()) {
+		return asJsonArray(theObject.get(nextName), thePosition);
+	}
+
+	BaseJsonLikeArray asJsonArray(BaseJsonLikeValue theValue, String thePosition) {
+		if (theValue == null || theValue.isNull()) {
 			return null;
 		}
-		if (!object.isArray()) {
+		if (!theValue.isArray()) {
 			throw new DataFormatException(
 					Msg.code(1841) + "Syntax error parsing JSON FHIR structure: Expected ARRAY at element '"
-							+ thePosition + "', found '" + object.getJsonType() + "'");
+							+ thePosition + "', found '" + theValue.getJsonType() + "'");
 		}
-		return object.getAsArray();
+		return theValue.getAsArray();
 	}
 
-	private void parseAlternates(
+	void parseAlternates(
 			BaseJsonLikeValue theAlternateVal,
 			ParserState<?> theState,
 			String theElementName,
@@ -1378,7 +1420,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
-	private void parseChildren(
+	void parseChildren(
 			ParserState<?> theState,
 			String theName,
 			BaseJsonLikeValue theJsonVal,
@@ -1455,7 +1497,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
-	private void parseExtension(ParserState<?> theState, BaseJsonLikeArray theValues, boolean theIsModifier) {
+	void parseExtension(ParserState<?> theState, BaseJsonLikeArray theValues, boolean theIsModifier) {
 		int allUnderscoreNames = 0;
 		int handledUnderscoreNames = 0;
 
@@ -1538,7 +1580,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
-	private void parseFhirComments(BaseJsonLikeValue theObject, ParserState<?> theState) {
+	void parseFhirComments(BaseJsonLikeValue theObject, ParserState<?> theState) {
 		if (isSupportsFhirComment()) {
 			if (theObject.isArray()) {
 				BaseJsonLikeArray comments = theObject.getAsArray();
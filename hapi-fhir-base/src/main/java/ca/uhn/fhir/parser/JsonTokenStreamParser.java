@@ -0,0 +1,500 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeDeclaredChildDefinition;
+import ca.uhn.fhir.context.ConfigurationException;
+import ca.uhn.fhir.context.ParserOptions;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.json.BaseJsonLikeArray;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ScalarType;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ValueType;
+import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
+import com.fasterxml.jackson.core.JsonToken;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Parses a JSON resource by driving {@link ParserState} directly from the tokens of a Jackson
+ * streaming parser, instead of first reading the whole document into a tree as
+ * {@link JacksonStructure#load(Reader)} does. This is used by {@link JsonParser} when
+ * {@link ParserOptions#isStreamingJsonParsing()} is enabled.
+ * <p>
+ * Complex elements, including contained resources and Bundle entries, are parsed as they are read.
+ * Primitive values are held until the end of the JSON object they appear in, so that they can be
+ * paired with their <code>_element</code> extensions whichever of the two comes first. The few parts
+ * of a document which can't be parsed before their siblings are known (extensions, which need their
+ * <code>url</code>, and properties which come before <code>resourceType</code>) are read into a small
+ * tree and handed to the tree-based methods of {@link JsonParser}, so both modes share the same rules.
+ * </p>
+ * <p>
+ * This is also used when {@link ParserOptions#isLazyBundleEntryParsing()} is enabled, whether or not
+ * streaming parsing is. Then the entries of a Bundle are skipped over rather than parsed, and only the
+ * range of the source text which holds each of them is kept in a {@link DeferredElementList}.
+ * </p>
+ */
+class JsonTokenStreamParser {
+
+	private final JsonParser myParser;
+	private final String mySource;
+	private com.fasterxml.jackson.core.JsonParser myTokens;
+
+	/**
+	 * @param theParser The parser which holds the settings and the error handler to parse with
+	 * @param theSource The complete text which is being parsed, if Bundle entries should be deferred,
+	 *                  or <code>null</code> if they should be parsed as they are read
+	 */
+	JsonTokenStreamParser(JsonParser theParser, String theSource) {
+		myParser = theParser;
+		mySource = theSource;
+	}
+
+	<T extends IBaseResource> T parse(Class<T> theResourceType, Reader theReader) {
+		try (com.fasterxml.jackson.core.JsonParser tokens = JacksonStructure.createStreamingParser(theReader)) {
+			myTokens = tokens;
+
+			JsonToken firstToken = tokens.nextToken();
+			if (firstToken == null) {
+				throw new DataFormatException(Msg.code(2515) + "Did not find any content to parse");
+			}
+			if (firstToken != JsonToken.START_OBJECT) {
+				throw new DataFormatException(Msg.code(2516)
+						+ "Content does not appear to be FHIR JSON, expected a JSON object but found: " + firstToken);
+			}
+
+			List<BufferedProperty> propertiesBeforeResourceType = new ArrayList<>();
+			String resourceType = readUntilResourceType(propertiesBeforeResourceType);
+			if (isBlank(resourceType)) {
+				throw new DataFormatException(
+						Msg.code(2517) + "Invalid JSON content detected, missing required element: 'resourceType'");
+			}
+
+			ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(
+					myParser, theResourceType, myParser.getContext(), true, myParser.getErrorHandler());
+			state.enteringNewElement(null, resourceType);
+
+			parseObject(state, propertiesBeforeResourceType);
+
+			state.endingElement();
+			state.endingElement();
+
+			JsonToken trailingToken = tokens.nextToken();
+			if (trailingToken != null) {
+				throw new DataFormatException(Msg.code(2518)
+						+ "Failed to parse JSON encoded FHIR content: unexpected " + trailingToken
+						+ " after the end of the resource");
+			}
+
+			@SuppressWarnings("unchecked")
+			T retVal = (T) state.getObject();
+
+			return retVal;
+		} catch (IOException e) {
+			throw JacksonStructure.createParseException(e);
+		}
+	}
+
+	/**
+	 * Parses the source text, which holds a single entry of a Bundle that was deferred by
+	 * {@link #deferBundleEntries(ParserState, String, PendingValues)}. The entry is parsed into an
+	 * otherwise empty Bundle, so that it gets the same processing (e.g. setting the resource ID from
+	 * the fullUrl) as it would have had in the original Bundle.
+	 */
+	IBase parseBundleEntry(RuntimeResourceDefinition theBundleDef, boolean theRootBundle) {
+		try (com.fasterxml.jackson.core.JsonParser tokens =
+				JacksonStructure.createStreamingParser(new StringReader(mySource))) {
+			myTokens = tokens;
+
+			ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(
+					myParser,
+					theBundleDef.getImplementingClass(),
+					myParser.getContext(),
+					true,
+					myParser.getErrorHandler());
+			state.enteringNewElement(null, theBundleDef.getName());
+			if (tokens.nextToken() == JsonToken.START_OBJECT) {
+				parseComplexElement(state, "entry", null, true);
+			} else {
+				myParser.parseChildren(state, "entry", JacksonStructure.readValue(tokens), null, "_entry", true);
+			}
+			state.endingElement();
+			state.endingElement();
+
+			IBaseBundle bundle = (IBaseBundle) state.getObject();
+			if (theRootBundle) {
+				myParser.overrideResourceIdsWithBundleEntryFullUrls(bundle);
+			}
+			return theBundleDef.getChildByName("entry").getAccessor().getValues(bundle).get(0);
+		} catch (IOException e) {
+			throw JacksonStructure.createParseException(e);
+		}
+	}
+
+	/**
+	 * Reads the properties of the current object until the <code>resourceType</code> property is found.
+	 * The properties which come before it are read into trees and added to the given list.
+	 *
+	 * @return The resource type, or <code>null</code> if the object has no <code>resourceType</code> string
+	 */
+	private String readUntilResourceType(List<BufferedProperty> theBuffer) throws IOException {
+		while (myTokens.nextToken() == JsonToken.FIELD_NAME) {
+			String name = myTokens.currentName();
+			JsonToken valueToken = myTokens.nextToken();
+			if ("resourceType".equals(name) && valueToken == JsonToken.VALUE_STRING) {
+				return myTokens.getText();
+			}
+			theBuffer.add(new BufferedProperty(name, JacksonStructure.readValue(myTokens)));
+		}
+		return null;
+	}
+
+	/**
+	 * Parses the remaining properties of the current object, up to and including its closing token
+	 */
+	private void parseObject(ParserState<?> theState, List<BufferedProperty> theAlreadyRead) throws IOException {
+		PendingValues pending = new PendingValues();
+		for (BufferedProperty next : theAlreadyRead) {
+			parseBufferedProperty(theState, next.myName, next.myValue, pending);
+		}
+
+		while (myTokens.nextToken() == JsonToken.FIELD_NAME) {
+			String name = myTokens.currentName();
+			JsonToken valueToken = myTokens.nextToken();
+			if (isStreamable(name) && valueToken == JsonToken.START_OBJECT) {
+				BaseJsonLikeValue alternate = pending.takeAlternate(name);
+				parseComplexElement(theState, name, alternate, false);
+				pending.addStreamedName(name);
+			} else if (isStreamable(name) && valueToken == JsonToken.START_ARRAY) {
+				if (!deferBundleEntries(theState, name, pending)) {
+					parseArray(theState, name, pending);
+				}
+			} else {
+				parseBufferedProperty(theState, name, JacksonStructure.readValue(myTokens), pending);
+			}
+		}
+
+		pending.flush(theState);
+	}
+
+	private void parseBufferedProperty(
+			ParserState<?> theState, String theName, BaseJsonLikeValue theValue, PendingValues thePending) {
+		if ("resourceType".equals(theName)) {
+			if (!theState.isToplevelResourceElement()) {
+				thePending.addValue(theName, -1, theValue);
+			}
+		} else if ("extension".equals(theName)) {
+			BaseJsonLikeArray array = myParser.asJsonArray(theValue, "extension");
+			if (array != null) {
+				myParser.parseExtension(theState, array, false);
+			}
+		} else if ("modifierExtension".equals(theName)) {
+			BaseJsonLikeArray array = myParser.asJsonArray(theValue, "modifierExtension");
+			if (array != null) {
+				myParser.parseExtension(theState, array, true);
+			}
+		} else if ("fhir_comments".equals(theName)) {
+			myParser.parseFhirComments(theValue, theState);
+		} else if (theName.startsWith("_")) {
+			thePending.addAlternate(theName, theValue);
+		} else {
+			thePending.addValue(theName, -1, theValue);
+		}
+	}
+
+	/**
+	 * Parses an array. Objects in the array are parsed as they are read, and any other values are
+	 * held until the end of the enclosing object so that they can be paired with their extensions.
+	 */
+	private void parseArray(ParserState<?> theState, String theName, PendingValues thePending) throws IOException {
+		if (theName.equals("id")) {
+			reportIdNotString(ValueType.ARRAY, null);
+		}
+		thePending.addArrayName(theName);
+
+		int index = 0;
+		while (myTokens.nextToken() != JsonToken.END_ARRAY) {
+			if (myTokens.currentToken() == JsonToken.START_OBJECT) {
+				BaseJsonLikeValue alternate = thePending.takeAlternateArrayElement(theName, index);
+				parseComplexElement(theState, theName, alternate, true);
+				thePending.addStreamedName(theName);
+			} else {
+				thePending.addValue(theName, index, JacksonStructure.readValue(myTokens));
+			}
+			index++;
+		}
+	}
+
+	/**
+	 * If lazy parsing is enabled and the array whose opening token has just been read holds the entries
+	 * of a Bundle, this skips over the array and sets <code>Bundle.entry</code> to a list which parses
+	 * each entry from its text the first time it is accessed.
+	 *
+	 * @return Returns <code>true</code> if the entries were deferred, or <code>false</code> if the array
+	 * has not been read and should be parsed normally
+	 */
+	private boolean deferBundleEntries(ParserState<?> theState, String theName, PendingValues thePending)
+			throws IOException {
+		if (mySource == null
+				|| !"entry".equals(theName)
+				|| !theState.isToplevelResourceElement()
+				|| thePending.hasAlternate(theName)) {
+			return false;
+		}
+
+		IBase bundle = theState.getCurrentElement();
+		RuntimeResourceDefinition bundleDef = myParser.getContext().getResourceDefinition((IBaseResource) bundle);
+		BaseRuntimeChildDefinition entryChild = bundleDef.getChildByName("entry");
+		if (!"Bundle".equals(bundleDef.getName()) || !(entryChild instanceof BaseRuntimeDeclaredChildDefinition)) {
+			return false;
+		}
+
+		List<DeferredElementList.TextRange> ranges = new ArrayList<>();
+		while (myTokens.nextToken() != JsonToken.END_ARRAY) {
+			int start = (int) myTokens.currentTokenLocation().getCharOffset();
+			if (myTokens.currentToken().isStructStart()) {
+				myTokens.skipChildren();
+			} else {
+				// Makes sure the whole of a string value has been read
+				myTokens.getText();
+			}
+			int end = (int) myTokens.currentLocation().getCharOffset();
+			ranges.add(new DeferredElementList.TextRange(start, end));
+		}
+		thePending.addStreamedName(theName);
+
+		Function<String, IBase> entryParser =
+				newDeferredEntryParser(myParser.newDeferredEntryParser(), bundleDef, theState.isRootResourceElement());
+		Field entryField = ((BaseRuntimeDeclaredChildDefinition) entryChild).getField();
+		try {
+			entryField.set(bundle, new DeferredElementList<>(mySource, ranges, entryParser));
+		} catch (IllegalAccessException e) {
+			throw new ConfigurationException(Msg.code(2523) + "Failed to set value", e);
+		}
+		return true;
+	}
+
+	/**
+	 * This is static so that the deferred entries don't hold on to this parser or to the parser that
+	 * created it, only to a parser with the same settings
+	 */
+	private static Function<String, IBase> newDeferredEntryParser(
+			JsonParser theEntryParser, RuntimeResourceDefinition theBundleDef, boolean theRootBundle) {
+		return t -> new JsonTokenStreamParser(theEntryParser, t).parseBundleEntry(theBundleDef, theRootBundle);
+	}
+
+	/**
+	 * Parses a complex element (or a resource, if the current state expects one) whose opening token
+	 * has just been read. This mirrors the object handling in
+	 * {@link JsonParser#parseChildren(ParserState, String, BaseJsonLikeValue, BaseJsonLikeValue, String, boolean)}.
+	 */
+	private void parseComplexElement(
+			ParserState<?> theState, String theName, BaseJsonLikeValue theAlternate, boolean theInArray)
+			throws IOException {
+		if (theName.equals("id")) {
+			reportIdNotString(ValueType.OBJECT, null);
+		}
+		if (!theInArray && theState.elementIsRepeating(theName)) {
+			myParser.getErrorHandler()
+					.incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+		}
+
+		String alternateName = '_' + theName;
+		theState.enteringNewElement(null, theName);
+		myParser.parseAlternates(theAlternate, theState, alternateName, alternateName);
+		if (theState.isPreResource()) {
+			List<BufferedProperty> propertiesBeforeResourceType = new ArrayList<>();
+			String resourceType = readUntilResourceType(propertiesBeforeResourceType);
+			if (resourceType == null) {
+				throw new DataFormatException(Msg.code(2519)
+						+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
+			}
+			theState.enteringNewElement(null, resourceType);
+			parseObject(theState, propertiesBeforeResourceType);
+			theState.endingElement();
+		} else {
+			parseObject(theState, Collections.emptyList());
+		}
+		theState.endingElement();
+	}
+
+	private void reportIdNotString(ValueType theFoundType, ScalarType theFoundScalarType) {
+		myParser.getErrorHandler()
+				.incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, theFoundType, theFoundScalarType);
+	}
+
+	private static boolean isStreamable(String theName) {
+		switch (theName) {
+			case "resourceType":
+			case "extension":
+			case "modifierExtension":
+			case "fhir_comments":
+				return false;
+			default:
+				return !theName.startsWith("_");
+		}
+	}
+
+	private static class BufferedProperty {
+		private final String myName;
+		private final BaseJsonLikeValue myValue;
+
+		private BufferedProperty(String theName, BaseJsonLikeValue theValue) {
+			myName = theName;
+			myValue = theValue;
+		}
+	}
+
+	private static class PendingValue {
+		private final String myName;
+		private final int myIndex;
+		private final BaseJsonLikeValue myValue;
+
+		private PendingValue(String theName, int theIndex, BaseJsonLikeValue theValue) {
+			myName = theName;
+			myIndex = theIndex;
+			myValue = theValue;
+		}
+	}
+
+	/**
+	 * The lookahead buffer for one JSON object: the primitive values and <code>_element</code>
+	 * extensions which have been read but not yet parsed, and the names of the complex elements
+	 * which have already been parsed.
+	 */
+	private class PendingValues {
+		private final List<PendingValue> myValues = new ArrayList<>();
+		private final Map<String, BaseJsonLikeValue> myAlternates = new LinkedHashMap<>();
+		private final Set<String> myPairedAlternateNames = new HashSet<>();
+		private final Set<String> myInvalidAlternateNames = new HashSet<>();
+		private final Set<String> myStreamedNames = new HashSet<>();
+		private final Set<String> myArrayNames = new HashSet<>();
+
+		void addValue(String theName, int theIndex, BaseJsonLikeValue theValue) {
+			myValues.add(new PendingValue(theName, theIndex, theValue));
+		}
+
+		void addAlternate(String theAlternateName, BaseJsonLikeValue theValue) {
+			myAlternates.put(theAlternateName, theValue);
+		}
+
+		void addStreamedName(String theName) {
+			myStreamedNames.add(theName);
+		}
+
+		void addArrayName(String theName) {
+			myArrayNames.add(theName);
+		}
+
+		boolean hasAlternate(String theName) {
+			return myAlternates.containsKey('_' + theName);
+		}
+
+		BaseJsonLikeValue takeAlternate(String theName) {
+			String alternateName = '_' + theName;
+			BaseJsonLikeValue retVal = myAlternates.get(alternateName);
+			if (retVal != null) {
+				myPairedAlternateNames.add(alternateName);
+			}
+			return retVal;
+		}
+
+		BaseJsonLikeValue takeAlternateArrayElement(String theName, int theIndex) {
+			String alternateName = '_' + theName;
+			BaseJsonLikeValue alternate = takeAlternate(theName);
+			if (alternate == null) {
+				return null;
+			}
+			if (!alternate.isArray()) {
+				if (myInvalidAlternateNames.add(alternateName)) {
+					myParser.getErrorHandler()
+							.incorrectJsonType(
+									null, alternateName, ValueType.ARRAY, null, alternate.getJsonType(), null);
+				}
+				return null;
+			}
+			BaseJsonLikeArray array = alternate.getAsArray();
+			if (array.size() > theIndex) {
+				return array.get(theIndex);
+			}
+			return null;
+		}
+
+		void flush(ParserState<?> theState) {
+			for (PendingValue next : myValues) {
+				String alternateName = '_' + next.myName;
+				if (next.myIndex == -1) {
+					BaseJsonLikeValue alternate = takeAlternate(next.myName);
+					myParser.parseChildren(theState, next.myName, next.myValue, alternate, alternateName, false);
+				} else {
+					BaseJsonLikeValue alternate = takeAlternateArrayElement(next.myName, next.myIndex);
+					myParser.parseChildren(theState, next.myName, next.myValue, alternate, alternateName, true);
+				}
+			}
+
+			/*
+			 * This happens if an element has an extension but no actual value. I.e.
+			 * if a resource has a "_status" element but no corresponding "status"
+			 * element.
+			 */
+			for (Map.Entry<String, BaseJsonLikeValue> next : myAlternates.entrySet()) {
+				String alternateName = next.getKey();
+				if (alternateName.length() == 1 || myPairedAlternateNames.contains(alternateName)) {
+					continue;
+				}
+
+				String name = alternateName.substring(1);
+				BaseJsonLikeValue value = next.getValue();
+				if (myStreamedNames.contains(name)) {
+					// The element was already parsed before its extensions were read
+					myParser.getErrorHandler().unknownElement(null, alternateName);
+				} else if (myArrayNames.contains(name)) {
+					// An empty array has nothing to pair the extensions with
+					continue;
+				} else if (value.isObject()) {
+					theState.enteringNewElement(null, name);
+					myParser.parseAlternates(value, theState, alternateName, alternateName);
+					theState.endingElement();
+				} else {
+					myParser.getErrorHandler()
+							.incorrectJsonType(null, alternateName, ValueType.OBJECT, null, value.getJsonType(), null);
+				}
+			}
+		}
+	}
+}
@@ -154,6 +154,18 @@ class ParserState<T> {
 		return myState instanceof ParserState.ResourceStateHl7Org || myState instanceof ParserState.ResourceStateHapi;
 	}
 
+	/**
+	 * Returns <code>true</code> if the parser is positioned directly inside the outermost resource being
+	 * parsed (as opposed to a contained or nested resource)
+	 */
+	boolean isRootResourceElement() {
+		return isToplevelResourceElement() && myState.myStack != null && myState.myStack.myStack == null;
+	}
+
+	IBase getCurrentElement() {
+		return myState.getCurrentElement();
+	}
+
 	private Object newContainedDt(IResource theTarget) {
 		return ReflectionUtil.newInstance(theTarget
 				.getStructureFhirVersionEnum()
@@ -1178,10 +1190,19 @@ class ParserState<T> {
 			final boolean bundle = "Bundle".equals(myContext.getResourceType(myInstance));
 			if (bundle) {
 
+				List<IBase> entries = myContext
+						.getResourceDefinition(myInstance)
+						.getChildByName("entry")
+						.getAccessor()
+						.getValues(myInstance);
+				if (entries instanceof DeferredElementList) {
+					// With lazy parsing, each entry is stitched separately when it is parsed
+					return;
+				}
+
 				FhirTerser t = myContext.newTerser();
 
 				Map<String, IBaseResource> idToResource = new HashMap<>();
-				List<IBase> entries = t.getValues(myInstance, "Bundle.entry", IBase.class);
 				for (IBase nextEntry : entries) {
 					IPrimitiveType<?> fullUrl = t.getSingleValueOrNull(nextEntry, "fullUrl", IPrimitiveType.class);
 					if (fullUrl != null && isNotBlank(fullUrl.getValueAsString())) {
@@ -0,0 +1,97 @@
+package ca.uhn.fhir.interceptor.executor;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InterceptorMetricsCollectorTest {
+
+	private final InterceptorMetricsCollector mySvc = new InterceptorMetricsCollector();
+
+	@Test
+	public void testPercentiles() {
+		Object interceptor = new Object();
+		for (int i = 1; i <= 100; i++) {
+			mySvc.hookInvoked(Pointcut.TEST_RB, interceptor, i * 1000L, true);
+		}
+		mySvc.hookInvoked(Pointcut.TEST_RB, interceptor, 5000L, false);
+
+		List<InterceptorMetricsCollector.HookMetrics> metrics = mySvc.getMetrics();
+		assertEquals(1, metrics.size());
+		InterceptorMetricsCollector.HookMetrics hookMetrics = metrics.get(0);
+		assertEquals("TEST_RB", hookMetrics.getPointcut());
+		assertEquals(Object.class.getName(), hookMetrics.getInterceptorType());
+		assertEquals(101, hookMetrics.getCount());
+		assertEquals(1, hookMetrics.getFailureCount());
+		assertEquals(5055, hookMetrics.getTotalMicros());
+		assertEquals(50, hookMetrics.getMeanMicros());
+		assertEquals(100, hookMetrics.getMaxMicros());
+
+		// Percentiles are the upper bound of a power-of-two bucket, so they are never less than
+		// the actual value and never more than twice it
+		assertTrue(hookMetrics.getP50Micros() >= 50 && hookMetrics.getP50Micros() <= 100, hookMetrics.getP50Micros() + "");
+		assertTrue(hookMetrics.getP95Micros() >= 94 && hookMetrics.getP95Micros() <= 100, hookMetrics.getP95Micros() + "");
+		assertEquals(100, hookMetrics.getP99Micros());
+	}
+
+	@Test
+	public void testSortedByTotalTime() {
+		mySvc.hookInvoked(Pointcut.TEST_RB, "a string", 1000, true);
+		mySvc.hookInvoked(Pointcut.TEST_RO, 123, 5000, true);
+		mySvc.hookInvoked(Pointcut.TEST_RB, 123, 2000, true);
+
+		List<InterceptorMetricsCollector.HookMetrics> metrics = mySvc.getMetrics();
+		assertEquals(3, metrics.size());
+		assertEquals("TEST_RO", metrics.get(0).getPointcut());
+		assertEquals("TEST_RB", metrics.get(1).getPointcut());
+		assertEquals(Integer.class.getName(), metrics.get(1).getInterceptorType());
+		assertEquals(String.class.getName(), metrics.get(2).getInterceptorType());
+
+		mySvc.clear();
+		assertTrue(mySvc.getMetrics().isEmpty());
+	}
+
+	@Test
+	public void testRecordedByInterceptorService() {
+		class MyInterceptor {
+			@Hook(Pointcut.TEST_RB)
+			public boolean testRb(String theString0) {
+				if (theString0.equals("FAIL")) {
+					throw new IllegalArgumentException();
+				}
+				return true;
+			}
+		}
+
+		InterceptorService svc = new InterceptorService();
+		svc.registerInterceptor(new MyInterceptor());
+
+		// Nothing is recorded until the sink is set
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		svc.setMetricsSink(mySvc);
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertThrows(IllegalArgumentException.class, () -> svc.callHooks(Pointcut.TEST_RB, new HookParams("FAIL", "B")));
+
+		List<InterceptorMetricsCollector.HookMetrics> metrics = mySvc.getMetrics();
+		assertEquals(1, metrics.size());
+		assertEquals("TEST_RB", metrics.get(0).getPointcut());
+		assertEquals(MyInterceptor.class.getName(), metrics.get(0).getInterceptorType());
+		assertEquals(3, metrics.get(0).getCount());
+		assertEquals(1, metrics.get(0).getFailureCount());
+
+		String json = JsonUtil.serialize(metrics);
+		assertThat(json, containsString("\"pointcut\" : \"TEST_RB\""));
+		assertThat(json, containsString("\"count\" : 3"));
+	}
+}
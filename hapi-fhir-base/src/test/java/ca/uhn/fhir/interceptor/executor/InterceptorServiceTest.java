@@ -299,6 +299,37 @@ public class InterceptorServiceTest {
 		assertSame("B", interceptor1.myLastString1);
 	}
 
+	@Test
+	public void testRegisterInterceptorFromWithinHook() {
+		InterceptorService svc = new InterceptorService();
+
+		class RegisteredLaterInterceptor {
+			@Hook(Pointcut.TEST_RB)
+			private void testRb(String theString0) {
+				myInvocations.add("RegisteredLaterInterceptor.testRb " + theString0);
+			}
+		}
+
+		class RegisteringInterceptor {
+			@Hook(value = Pointcut.TEST_RB, order = -100)
+			public boolean testRb(String theString0) {
+				myInvocations.add("RegisteringInterceptor.testRb " + theString0);
+				svc.registerInterceptor(new RegisteredLaterInterceptor());
+				return true;
+			}
+		}
+
+		svc.registerInterceptor(new RegisteringInterceptor());
+
+		// The interceptor registered during the call is only invoked on the following calls
+		assertTrue(svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B")));
+		assertThat(myInvocations, contains("RegisteringInterceptor.testRb A"));
+
+		myInvocations.clear();
+		assertTrue(svc.callHooks(Pointcut.TEST_RB, new HookParams("C", "D")));
+		assertThat(myInvocations, contains("RegisteringInterceptor.testRb C", "RegisteredLaterInterceptor.testRb C"));
+	}
+
 	@Test
 	public void testInvokeGlobalInterceptorMethods_MethodAbortsProcessing() {
 		InterceptorService svc = new InterceptorService();
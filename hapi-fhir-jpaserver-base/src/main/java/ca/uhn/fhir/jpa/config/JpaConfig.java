@@ -51,11 +51,17 @@ import ca.uhn.fhir.jpa.dao.IJpaStorageResourceParser;
 import ca.uhn.fhir.jpa.dao.ISearchBuilder;
 import ca.uhn.fhir.jpa.dao.JpaStorageResourceParser;
 import ca.uhn.fhir.jpa.dao.MatchResourceUrlService;
+import ca.uhn.fhir.jpa.dao.ResourceCompressionDictionarySvc;
 import ca.uhn.fhir.jpa.dao.ResourceHistoryCalculator;
 import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
 import ca.uhn.fhir.jpa.dao.TransactionProcessor;
+import ca.uhn.fhir.jpa.dao.data.IMemoryCacheInvalidationDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceCompressionDictionaryDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexPendingDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceModifiedDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceSearchUrlDao;
+import ca.uhn.fhir.jpa.dao.data.ISearchParamStatisticsDao;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeEverythingService;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeOperation;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeService;
@@ -68,6 +74,7 @@ import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.dao.index.SearchParamWithInlineReferencesExtractor;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.dao.validation.SearchParameterDaoValidator;
 import ca.uhn.fhir.jpa.delete.DeleteConflictFinderService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictService;
@@ -79,6 +86,7 @@ import ca.uhn.fhir.jpa.interceptor.CascadingDeleteInterceptor;
 import ca.uhn.fhir.jpa.interceptor.JpaConsentContextServices;
 import ca.uhn.fhir.jpa.interceptor.OverridePathBasedReferentialIntegrityForDeletesInterceptor;
 import ca.uhn.fhir.jpa.interceptor.validation.RepositoryValidatingRuleBuilder;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
 import ca.uhn.fhir.jpa.packages.IHapiPackageCacheManager;
@@ -102,11 +110,14 @@ import ca.uhn.fhir.jpa.provider.ValueSetOperationProviderDstu2;
 import ca.uhn.fhir.jpa.sched.AutowiringSpringBeanJobFactory;
 import ca.uhn.fhir.jpa.sched.HapiSchedulerServiceImpl;
 import ca.uhn.fhir.jpa.search.ISynchronousSearchSvc;
+import ca.uhn.fhir.jpa.search.KeysetPagingSvc;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProviderFactory;
 import ca.uhn.fhir.jpa.search.PersistedJpaSearchFirstPageBundleProvider;
 import ca.uhn.fhir.jpa.search.ResourceSearchUrlSvc;
+import ca.uhn.fhir.jpa.search.SearchParamStatisticsSvc;
 import ca.uhn.fhir.jpa.search.SearchStrategyFactory;
+import ca.uhn.fhir.jpa.search.SearchTotalEstimateSvc;
 import ca.uhn.fhir.jpa.search.SearchUrlJobMaintenanceSvcImpl;
 import ca.uhn.fhir.jpa.search.SynchronousSearchSvcImpl;
 import ca.uhn.fhir.jpa.search.builder.QueryStack;
@@ -135,7 +146,10 @@ import ca.uhn.fhir.jpa.search.cache.DatabaseSearchCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.DatabaseSearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
+import ca.uhn.fhir.jpa.search.cache.LocalFirstSearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.elastic.IndexNamePrefixLayoutStrategy;
+import ca.uhn.fhir.jpa.search.reindex.DeferredIndexingSvcImpl;
+import ca.uhn.fhir.jpa.search.reindex.IDeferredIndexingSvc;
 import ca.uhn.fhir.jpa.search.reindex.IInstanceReindexService;
 import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
 import ca.uhn.fhir.jpa.search.reindex.InstanceReindexServiceImpl;
@@ -159,6 +173,7 @@ import ca.uhn.fhir.jpa.term.api.ITermConceptMappingSvc;
 import ca.uhn.fhir.jpa.term.api.ITermReadSvc;
 import ca.uhn.fhir.jpa.term.api.ITermReindexingSvc;
 import ca.uhn.fhir.jpa.term.config.TermCodeSystemConfig;
+import ca.uhn.fhir.jpa.util.DatabaseMemoryCacheInvalidationBroadcaster;
 import ca.uhn.fhir.jpa.util.JpaHapiTransactionService;
 import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.jpa.util.PersistenceContextProvider;
@@ -335,6 +350,16 @@ public class JpaConfig {
 		return new MemoryCacheService(theStorageSettings);
 	}
 
+	@Bean
+	public DatabaseMemoryCacheInvalidationBroadcaster databaseMemoryCacheInvalidationBroadcaster(
+			JpaStorageSettings theStorageSettings,
+			MemoryCacheService theMemoryCacheService,
+			IMemoryCacheInvalidationDao theMemoryCacheInvalidationDao,
+			IHapiTransactionService theTransactionService) {
+		return new DatabaseMemoryCacheInvalidationBroadcaster(
+				theStorageSettings, theMemoryCacheService, theMemoryCacheInvalidationDao, theTransactionService);
+	}
+
 	@Bean
 	@Primary
 	public IResourceLinkResolver daoResourceLinkResolver() {
@@ -362,10 +387,17 @@ public class JpaConfig {
 	}
 
 	@Bean
-	public ISearchResultCacheSvc searchResultCacheSvc() {
+	public DatabaseSearchResultCacheSvcImpl databaseSearchResultCacheSvc() {
 		return new DatabaseSearchResultCacheSvcImpl();
 	}
 
+	@Bean
+	@Primary
+	public ISearchResultCacheSvc searchResultCacheSvc(
+			DatabaseSearchResultCacheSvcImpl theDatabaseSearchResultCacheSvc, JpaStorageSettings theStorageSettings) {
+		return new LocalFirstSearchResultCacheSvcImpl(theDatabaseSearchResultCacheSvc, theStorageSettings);
+	}
+
 	@Bean
 	public ITermConceptMappingSvc termConceptMappingSvc() {
 		return new TermConceptMappingSvcImpl();
@@ -392,6 +424,21 @@ public class JpaConfig {
 		return new ResourceReindexingSvcImpl();
 	}
 
+	@Bean
+	public IDeferredIndexingSvc deferredIndexingSvc(
+			JpaStorageSettings theStorageSettings,
+			ISearchParamRegistry theSearchParamRegistry,
+			IResourceIndexPendingDao theResourceIndexPendingDao,
+			IHapiTransactionService theTransactionService,
+			DaoRegistry theDaoRegistry) {
+		return new DeferredIndexingSvcImpl(
+				theStorageSettings,
+				theSearchParamRegistry,
+				theResourceIndexPendingDao,
+				theTransactionService,
+				theDaoRegistry);
+	}
+
 	@Bean
 	@Lazy
 	public IInstanceReindexService instanceReindexService() {
@@ -804,6 +851,27 @@ public class JpaConfig {
 		return new SynchronousSearchSvcImpl();
 	}
 
+	@Bean
+	public KeysetPagingSvc keysetPagingSvc() {
+		return new KeysetPagingSvc();
+	}
+
+	@Bean
+	public SearchParamStatisticsSvc searchParamStatisticsSvc(
+			JpaStorageSettings theStorageSettings,
+			PartitionSettings thePartitionSettings,
+			IHapiTransactionService theTransactionService,
+			ISearchParamStatisticsDao theStatisticsDao) {
+		return new SearchParamStatisticsSvc(
+				theStorageSettings, thePartitionSettings, theTransactionService, theStatisticsDao);
+	}
+
+	@Bean
+	public SearchTotalEstimateSvc searchTotalEstimateSvc(
+			JpaStorageSettings theStorageSettings, FhirContext theFhirContext) {
+		return new SearchTotalEstimateSvc(theStorageSettings, theFhirContext);
+	}
+
 	@Bean
 	public VersionCanonicalizer versionCanonicalizer(FhirContext theFhirContext) {
 		return new VersionCanonicalizer(theFhirContext);
@@ -871,9 +939,19 @@ public class JpaConfig {
 		return new MetaTagSorterAlphabetical();
 	}
 
+	@Bean
+	public ResourceCompressionDictionarySvc resourceCompressionDictionarySvc(
+			IResourceCompressionDictionaryDao theResourceCompressionDictionaryDao,
+			IResourceHistoryTableDao theResourceHistoryTableDao) {
+		return new ResourceCompressionDictionarySvc(theResourceCompressionDictionaryDao, theResourceHistoryTableDao);
+	}
+
 	@Bean
 	public ResourceHistoryCalculator resourceHistoryCalculator(
-			FhirContext theFhirContext, HibernatePropertiesProvider theHibernatePropertiesProvider) {
-		return new ResourceHistoryCalculator(theFhirContext, theHibernatePropertiesProvider.isOracleDialect());
+			FhirContext theFhirContext,
+			HibernatePropertiesProvider theHibernatePropertiesProvider,
+			ResourceCompressionDictionarySvc theResourceCompressionDictionarySvc) {
+		return new ResourceHistoryCalculator(
+				theFhirContext, theHibernatePropertiesProvider.isOracleDialect(), theResourceCompressionDictionarySvc);
 	}
 }
@@ -35,9 +35,12 @@ import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.search.ExceptionService;
 import ca.uhn.fhir.jpa.search.ISynchronousSearchSvc;
+import ca.uhn.fhir.jpa.search.KeysetPagingSvc;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProviderFactory;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
 import ca.uhn.fhir.jpa.search.SearchStrategyFactory;
+import ca.uhn.fhir.jpa.search.SearchTotalEstimateSvc;
+import ca.uhn.fhir.jpa.search.builder.ParallelAndPredicateSvc;
 import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchContinuationTask;
@@ -114,6 +117,9 @@ public class SearchConfig {
 	@Autowired
 	private IPagingProvider myPagingProvider;
 
+	@Autowired
+	private SearchTotalEstimateSvc mySearchTotalEstimateSvc;
+
 	@Autowired
 	private BeanFactory myBeanFactory;
 
@@ -129,9 +135,12 @@ public class SearchConfig {
 	@Autowired
 	private HapiTransactionService myHapiTransactionService;
 
+	@Autowired
+	private KeysetPagingSvc myKeysetPagingSvc;
+
 	@Bean
 	public ISearchCoordinatorSvc searchCoordinatorSvc() {
-		return new SearchCoordinatorSvcImpl(
+		SearchCoordinatorSvcImpl retVal = new SearchCoordinatorSvcImpl(
 				myContext,
 				myStorageSettings,
 				myInterceptorBroadcaster,
@@ -146,6 +155,13 @@ public class SearchConfig {
 				mySearchStrategyFactory,
 				exceptionService(),
 				myBeanFactory);
+		retVal.setKeysetPagingSvc(myKeysetPagingSvc);
+		return retVal;
+	}
+
+	@Bean
+	public ParallelAndPredicateSvc parallelAndPredicateSvc() {
+		return new ParallelAndPredicateSvc();
 	}
 
 	@Bean
@@ -178,7 +194,7 @@ public class SearchConfig {
 	@Bean(name = SEARCH_TASK)
 	@Scope("prototype")
 	public SearchTask createSearchTask(SearchTaskParameters theParams) {
-		return new SearchTask(
+		SearchTask retVal = new SearchTask(
 				theParams,
 				myHapiTransactionService,
 				myContext,
@@ -188,12 +204,14 @@ public class SearchConfig {
 				myStorageSettings,
 				mySearchCacheSvc,
 				myPagingProvider);
+		retVal.setSearchTotalEstimateSvc(mySearchTotalEstimateSvc);
+		return retVal;
 	}
 
 	@Bean(name = CONTINUE_TASK)
 	@Scope("prototype")
 	public SearchContinuationTask createSearchContinuationTask(SearchTaskParameters theParams) {
-		return new SearchContinuationTask(
+		SearchContinuationTask retVal = new SearchContinuationTask(
 				theParams,
 				myHapiTransactionService,
 				myContext,
@@ -205,5 +223,7 @@ public class SearchConfig {
 				myPagingProvider,
 				exceptionService() // singleton
 				);
+		retVal.setSearchTotalEstimateSvc(mySearchTotalEstimateSvc);
+		return retVal;
 	}
 }
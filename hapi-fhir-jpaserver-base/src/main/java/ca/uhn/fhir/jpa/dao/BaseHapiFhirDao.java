@@ -69,6 +69,7 @@ import ca.uhn.fhir.jpa.model.search.ExtendedHSearchIndexData;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
 import ca.uhn.fhir.jpa.partition.IPartitionLookupSvc;
+import ca.uhn.fhir.jpa.search.reindex.IDeferredIndexingSvc;
 import ca.uhn.fhir.jpa.searchparam.extractor.LogicalReferenceHelper;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
@@ -264,6 +265,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	@Autowired
 	protected ResourceHistoryCalculator myResourceHistoryCalculator;
 
+	@Autowired
+	protected IDeferredIndexingSvc myDeferredIndexingSvc;
+
 	protected final CodingSpy myCodingSpy = new CodingSpy();
 
 	@VisibleForTesting
@@ -644,6 +648,22 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			IBaseResource theResource,
 			ResourceTable theEntity,
 			boolean thePerformIndexing) {
+		return populateResourceIntoEntity(
+				theTransactionDetails, theRequest, theResource, theEntity, thePerformIndexing, null);
+	}
+
+	/**
+	 * @param theResourceHistoryState The resource as already encoded by
+	 *                                {@link #calculateResourceHistoryState(IBaseResource, ResourceTable)},
+	 *                                or {@literal null} to encode it here
+	 */
+	private EncodedResource populateResourceIntoEntity(
+			TransactionDetails theTransactionDetails,
+			RequestDetails theRequest,
+			IBaseResource theResource,
+			ResourceTable theEntity,
+			boolean thePerformIndexing,
+			@Nullable ResourceHistoryState theResourceHistoryState) {
 		if (theEntity.getResourceType() == null) {
 			theEntity.setResourceType(toResourceName(theResource));
 		}
@@ -651,6 +671,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		byte[] resourceBinary;
 		String resourceText;
 		ResourceEncodingEnum encoding;
+		ResourceHistoryState resourceHistoryState = null;
 		boolean changed = false;
 
 		if (theEntity.getDeleted() == null) {
@@ -671,38 +692,21 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 				} else {
 
-					encoding = myStorageSettings.getResourceEncoding();
-
-					String resourceType = theEntity.getResourceType();
-
-					List<String> excludeElements = new ArrayList<>(8);
-					IBaseMetaType meta = theResource.getMeta();
-
-					IBaseExtension<?, ?> sourceExtension = getExcludedElements(resourceType, excludeElements, meta);
-
-					theEntity.setFhirVersion(myContext.getVersion().getVersion());
-
-					// TODO:  LD: Once 2024-02 it out the door we should consider further refactoring here to move
-					// more of this logic within the calculator and eliminate more local variables
-					final ResourceHistoryState calculate = myResourceHistoryCalculator.calculateResourceHistoryState(
-							theResource, encoding, excludeElements);
+					resourceHistoryState = theResourceHistoryState;
+					if (resourceHistoryState == null) {
+						resourceHistoryState = calculateResourceHistoryState(theResource, theEntity);
+					}
 
-					resourceText = calculate.getResourceText();
-					resourceBinary = calculate.getResourceBinary();
-					encoding = calculate.getEncoding(); // This may be a no-op
-					final HashCode hashCode = calculate.getHashCode();
+					resourceText = resourceHistoryState.getResourceText();
+					resourceBinary = resourceHistoryState.getResourceBinary();
+					encoding = resourceHistoryState.getEncoding(); // This may be a no-op
+					final HashCode hashCode = resourceHistoryState.getHashCode();
 
 					String hashSha256 = hashCode.toString();
 					if (!hashSha256.equals(theEntity.getHashSha256())) {
 						changed = true;
 					}
 					theEntity.setHashSha256(hashSha256);
-
-					if (sourceExtension != null) {
-						IBaseExtension<?, ?> newSourceExtension = ((IBaseHasExtensions) meta).addExtension();
-						newSourceExtension.setUrl(sourceExtension.getUrl());
-						newSourceExtension.setValue(sourceExtension.getValue());
-					}
 				}
 
 			} else {
@@ -753,8 +757,13 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 				} else {
 					// TODO:  LD: Once 2024-02 it out the door we should consider further refactoring here to move
 					// more of this logic within the calculator and eliminate more local variables
-					changed = myResourceHistoryCalculator.isResourceHistoryChanged(
-							currentHistoryVersion, resourceBinary, resourceText);
+					if (resourceHistoryState != null) {
+						changed = myResourceHistoryCalculator.isResourceHistoryChanged(
+								currentHistoryVersion, resourceHistoryState);
+					} else {
+						changed = myResourceHistoryCalculator.isResourceHistoryChanged(
+								currentHistoryVersion, resourceBinary, resourceText);
+					}
 				}
 			}
 		}
@@ -763,11 +772,83 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		retVal.setEncoding(encoding);
 		retVal.setResourceBinary(resourceBinary);
 		retVal.setResourceText(resourceText);
+		retVal.setContentHash(resourceHistoryState != null ? resourceHistoryState.getContentHash() : null);
 		retVal.setChanged(changed);
 
 		return retVal;
 	}
 
+	/**
+	 * Encodes the resource the way it is stored in the {@link ResourceHistoryTable}
+	 */
+	private ResourceHistoryState calculateResourceHistoryState(IBaseResource theResource, ResourceTable theEntity) {
+		ResourceEncodingEnum encoding = myStorageSettings.getResourceEncoding();
+
+		String resourceType = theEntity.getResourceType();
+
+		List<String> excludeElements = new ArrayList<>(8);
+		IBaseMetaType meta = theResource.getMeta();
+
+		IBaseExtension<?, ?> sourceExtension = getExcludedElements(resourceType, excludeElements, meta);
+
+		theEntity.setFhirVersion(myContext.getVersion().getVersion());
+
+		final ResourceHistoryState retVal =
+				myResourceHistoryCalculator.calculateResourceHistoryState(theResource, encoding, excludeElements);
+
+		if (sourceExtension != null) {
+			IBaseExtension<?, ?> newSourceExtension = ((IBaseHasExtensions) meta).addExtension();
+			newSourceExtension.setUrl(sourceExtension.getUrl());
+			newSourceExtension.setValue(sourceExtension.getValue());
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Should an update be checked for changes before the search parameter indexes are extracted
+	 * from it? See {@link JpaStorageSettings#setDetectUnchangedUpdatesBeforeIndexing(boolean)}. This
+	 * is only done for updates which will be treated as a no-op if nothing has changed.
+	 */
+	private boolean isUnchangedCheckBeforeIndexingApplicable(
+			IBaseResource theResource,
+			ResourceTable theEntity,
+			boolean thePerformIndexing,
+			boolean theUpdateVersion,
+			boolean theForceUpdate) {
+		return thePerformIndexing
+				&& theResource != null
+				&& !theForceUpdate
+				&& myStorageSettings.isDetectUnchangedUpdatesBeforeIndexing()
+				&& myStorageSettings.isSuppressUpdatesWithNoChange()
+				&& theEntity.getId() != null
+				&& theEntity.getDeleted() == null
+				&& theEntity.getHashSha256() != null
+				&& (theEntity.getVersion() > 1 || theUpdateVersion)
+				&& CURRENTLY_REINDEXING.get(theResource) != Boolean.TRUE
+				&& !myExternallyStoredResourceServiceRegistry.hasProviders();
+	}
+
+	/**
+	 * Encodes the resource before its search parameter indexes are extracted, and if it has the same
+	 * hash as the current version, populates it into the entity. Returns {@literal null} without
+	 * touching the entity if the hash differs, since extracting the indexes can modify references in
+	 * the resource and the resource must then be encoded again afterward.
+	 */
+	@Nullable
+	private EncodedResource populateResourceIntoEntityIfHashUnchanged(
+			TransactionDetails theTransactionDetails,
+			RequestDetails theRequest,
+			IBaseResource theResource,
+			ResourceTable theEntity) {
+		ResourceHistoryState resourceHistoryState = calculateResourceHistoryState(theResource, theEntity);
+		if (!resourceHistoryState.getHashCode().toString().equals(theEntity.getHashSha256())) {
+			return null;
+		}
+		return populateResourceIntoEntity(
+				theTransactionDetails, theRequest, theResource, theEntity, true, resourceHistoryState);
+	}
+
 	/**
 	 * helper to format the meta element for serialization of the resource.
 	 *
@@ -1080,7 +1161,28 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 		ResourceIndexedSearchParams newParams = null;
 
-		EncodedResource changed;
+		/*
+		 * Writes to deferred types store the resource body now and leave the existing
+		 * indexes in place until the deferred indexing job reindexes the new version.
+		 * Conditional writes are resolved against the indexes, so they are never deferred.
+		 */
+		boolean deferIndexing = thePerformIndexing
+				&& theDeletedTimestampOrNull == null
+				&& theResource != null
+				&& myDeferredIndexingSvc != null
+				&& CURRENTLY_REINDEXING.get(theResource) != Boolean.TRUE
+				&& entity.getCreatedByMatchUrl() == null
+				&& entity.getUpdatedByMatchUrl() == null
+				&& myDeferredIndexingSvc.isDeferred(entity.getResourceType());
+
+		EncodedResource changed = null;
+		if (theDeletedTimestampOrNull == null
+				&& !deferIndexing
+				&& isUnchangedCheckBeforeIndexingApplicable(
+						theResource, entity, thePerformIndexing, theUpdateVersion, theForceUpdate)) {
+			changed = populateResourceIntoEntityIfHashUnchanged(theTransactionDetails, theRequest, theResource, entity);
+		}
+
 		if (theDeletedTimestampOrNull != null) {
 			// DELETE
 
@@ -1091,6 +1193,29 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			entity.setIndexStatus(INDEX_STATUS_INDEXED);
 			changed = populateResourceIntoEntity(theTransactionDetails, theRequest, theResource, entity, true);
 
+		} else if (changed != null && !changed.isChanged()) {
+
+			// UPDATE which doesn't change anything, detected before indexing. This is
+			// handled as a no-op below, so the indexes don't need to be extracted.
+
+		} else if (deferIndexing) {
+
+			// CREATE or UPDATE with deferred indexing. Anything which can reject the write or
+			// rewrite references in the body still happens now, only the index rows are deferred.
+
+			entity.setDeleted(null);
+			failIfPartitionMismatch(theRequest, entity);
+			mySearchParamWithInlineReferencesExtractor.resolveReferencesWithoutIndexing(
+					determineIndexingPartition(entity), theTransactionDetails, entity, theResource, theRequest);
+			changed = populateResourceIntoEntity(theTransactionDetails, theRequest, theResource, entity, true);
+			if (theForceUpdate) {
+				changed.setChanged(true);
+			}
+			if (changed.isChanged()) {
+				entity.setUpdated(theTransactionDetails.getTransactionDate());
+				entity.setIndexStatus(null);
+			}
+
 		} else {
 
 			// CREATE or UPDATE
@@ -1125,14 +1250,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 				newParams = ResourceIndexedSearchParams.withSets();
 
-				RequestPartitionId requestPartitionId;
-				if (!myPartitionSettings.isPartitioningEnabled()) {
-					requestPartitionId = RequestPartitionId.allPartitions();
-				} else if (entity.getPartitionId() != null) {
-					requestPartitionId = entity.getPartitionId().toPartitionId();
-				} else {
-					requestPartitionId = RequestPartitionId.defaultPartition();
-				}
+				RequestPartitionId requestPartitionId = determineIndexingPartition(entity);
 
 				failIfPartitionMismatch(theRequest, entity);
 
@@ -1148,7 +1266,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 						thePerformIndexing);
 
 				// Actually persist the ResourceTable and ResourceHistoryTable entities
-				changed = populateResourceIntoEntity(theTransactionDetails, theRequest, theResource, entity, true);
+				if (changed == null) {
+					changed = populateResourceIntoEntity(theTransactionDetails, theRequest, theResource, entity, true);
+				}
 
 				if (theForceUpdate) {
 					changed.setChanged(true);
@@ -1196,6 +1316,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 		if (entity.getId() != null && theUpdateVersion) {
 			entity.markVersionUpdatedInCurrentTransaction();
+			myMemoryCacheService.invalidateAfterCommit(
+					MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, entity.getId());
 		}
 
 		/*
@@ -1225,6 +1347,14 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			createHistoryEntry(theRequest, theResource, entity, changed);
 		}
 
+		if (deferIndexing) {
+			myDeferredIndexingSvc.enqueue(entity);
+			if (theResource != null) {
+				myJpaStorageResourceParser.updateResourceMetadata(entity, theResource);
+			}
+			return entity;
+		}
+
 		/*
 		 * Update the "search param present" table which is used for the
 		 * ?foo:missing=true queries
@@ -1413,7 +1543,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			getExcludedElements(historyEntity.getResourceType(), excludeElements, theResource.getMeta());
 			String encodedResourceString =
 					myResourceHistoryCalculator.encodeResource(theResource, encoding, excludeElements);
-			byte[] resourceBinary = ResourceHistoryCalculator.getResourceBinary(encoding, encodedResourceString);
+			byte[] resourceBinary = myResourceHistoryCalculator.getResourceBinary(
+					encoding, historyEntity.getResourceType(), encodedResourceString);
 			final boolean changed = myResourceHistoryCalculator.isResourceHistoryChanged(
 					historyEntity, resourceBinary, encodedResourceString);
 
@@ -1429,14 +1560,16 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 			myResourceHistoryCalculator.populateEncodedResource(
 					encodedResource, encodedResourceString, resourceBinary, encoding);
+			encodedResource.setContentHash(ResourceHistoryCalculator.calculateContentHash(encodedResourceString));
 		}
 		/*
 		 * Save the resource itself to the resourceHistoryTable
 		 */
 		historyEntity = myEntityManager.merge(historyEntity);
 		historyEntity.setEncoding(encodedResource.getEncoding());
-		historyEntity.setResource(encodedResource.getResourceBinary());
+		historyEntity.setStoredResourceBytes(encodedResource.getResourceBinary());
 		historyEntity.setResourceTextVc(encodedResource.getResourceText());
+		historyEntity.setContentHash(encodedResource.getContentHash());
 		myResourceHistoryTableDao.save(historyEntity);
 
 		myJpaStorageResourceParser.updateResourceMetadata(historyEntity, theResource);
@@ -1454,6 +1587,17 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		encodedResource.setEncoding(theEncoding);
 	}
 
+	@Nonnull
+	private RequestPartitionId determineIndexingPartition(ResourceTable theEntity) {
+		if (!myPartitionSettings.isPartitioningEnabled()) {
+			return RequestPartitionId.allPartitions();
+		} else if (theEntity.getPartitionId() != null) {
+			return theEntity.getPartitionId().toPartitionId();
+		} else {
+			return RequestPartitionId.defaultPartition();
+		}
+	}
+
 	/**
 	 * TODO eventually consider refactoring this to be part of an interceptor.
 	 * <p>
@@ -1515,8 +1659,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		}
 
 		historyEntry.setEncoding(theChanged.getEncoding());
-		historyEntry.setResource(theChanged.getResourceBinary());
+		historyEntry.setStoredResourceBytes(theChanged.getResourceBinary());
 		historyEntry.setResourceTextVc(theChanged.getResourceText());
+		historyEntry.setContentHash(theChanged.getContentHash());
 
 		ourLog.debug("Saving history entry ID[{}] for RES_ID[{}]", historyEntry.getId(), historyEntry.getResourceId());
 		myResourceHistoryTableDao.save(historyEntry);
@@ -1946,6 +2091,13 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				resourceText = GZipUtil.decompress(theResourceBytes);
 				break;
+			case JSONB:
+				resourceText = BinaryJsonUtil.decodeToString(theResourceBytes);
+				break;
+			case JSOND:
+				// Decompressing needs the dictionary the contents were compressed with
+				throw new InternalErrorException(Msg.code(2529) + "Encoding " + theResourceEncoding
+						+ " must be decoded using ResourceHistoryCalculator#decodeResource");
 			case DEL:
 			case ESR:
 				break;
@@ -126,6 +126,7 @@ import jakarta.persistence.NoResultException;
 import jakarta.persistence.TypedQuery;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseBinary;
 import org.hl7.fhir.instance.model.api.IBaseCoding;
 import org.hl7.fhir.instance.model.api.IBaseMetaType;
 import org.hl7.fhir.instance.model.api.IBaseOperationOutcome;
@@ -1547,6 +1548,15 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 	@Override
 	public T read(IIdType theId, RequestDetails theRequest, boolean theDeletedOk) {
+		return read(theId, theRequest, theDeletedOk, false);
+	}
+
+	@Override
+	public T readForRestResponse(IIdType theId, RequestDetails theRequestDetails) {
+		return read(theId, theRequestDetails, false, true);
+	}
+
+	private T read(IIdType theId, RequestDetails theRequest, boolean theDeletedOk, boolean theForRestResponse) {
 		validateResourceTypeAndThrowInvalidRequestException(theId);
 		TransactionDetails transactionDetails = new TransactionDetails();
 
@@ -1557,18 +1567,28 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 				.withRequest(theRequest)
 				.withTransactionDetails(transactionDetails)
 				.withRequestPartitionId(requestPartitionId)
-				.read(() -> doReadInTransaction(theId, theRequest, theDeletedOk, requestPartitionId));
+				.read(() -> doReadInTransaction(
+						theId, theRequest, theDeletedOk, theForRestResponse, requestPartitionId));
 	}
 
 	private T doReadInTransaction(
-			IIdType theId, RequestDetails theRequest, boolean theDeletedOk, RequestPartitionId theRequestPartitionId) {
+			IIdType theId,
+			RequestDetails theRequest,
+			boolean theDeletedOk,
+			boolean theForRestResponse,
+			RequestPartitionId theRequestPartitionId) {
 		assert TransactionSynchronizationManager.isActualTransactionActive();
 
 		StopWatch w = new StopWatch();
 		BaseHasResource entity = readEntity(theId, true, theRequest, theRequestPartitionId);
 		validateResourceType(entity);
 
-		T retVal = myJpaStorageResourceParser.toResource(myResourceType, entity, null, false);
+		T retVal;
+		if (theForRestResponse && isRawJsonPassthroughPossible(theRequest, entity)) {
+			retVal = myJpaStorageResourceParser.toResourceWithRawJsonBody(myResourceType, entity);
+		} else {
+			retVal = myJpaStorageResourceParser.toResource(myResourceType, entity, null, false);
+		}
 
 		if (!theDeletedOk) {
 			if (isDeleted(entity)) {
@@ -1585,6 +1605,25 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 		return retVal;
 	}
 
+	/**
+	 * The stored JSON body can only be passed through to the client unparsed if nothing other
+	 * than the REST server needs to see the resource model before it is written to the response
+	 */
+	private boolean isRawJsonPassthroughPossible(RequestDetails theRequest, BaseHasResource theEntity) {
+		if (!getStorageSettings().isRawJsonPassthroughEnabled() || theRequest == null) {
+			return false;
+		}
+		if (isDeleted(theEntity) || IBaseBinary.class.isAssignableFrom(myResourceType)) {
+			return false;
+		}
+		return !CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PREACCESS_RESOURCES, myInterceptorBroadcaster, theRequest)
+				&& !CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PRESHOW_RESOURCES, myInterceptorBroadcaster, theRequest)
+				&& !CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.SERVER_OUTGOING_RESPONSE, myInterceptorBroadcaster, theRequest);
+	}
+
 	@Nullable
 	private T invokeStoragePreShowResources(RequestDetails theRequest, T retVal) {
 		retVal = invokeStoragePreShowResources(myInterceptorBroadcaster, theRequest, retVal);
@@ -1721,14 +1760,24 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 	private void reindexOptimizeStorageHistoryEntity(ResourceTable entity, ResourceHistoryTable historyEntity) {
 		boolean changed = false;
-		if (historyEntity.getEncoding() == ResourceEncodingEnum.JSONC
-				|| historyEntity.getEncoding() == ResourceEncodingEnum.JSON) {
-			byte[] resourceBytes = historyEntity.getResource();
+		ResourceEncodingEnum encoding = historyEntity.getEncoding();
+		if (encoding == ResourceEncodingEnum.JSONC
+				|| encoding == ResourceEncodingEnum.JSON
+				|| encoding == ResourceEncodingEnum.JSONB
+				|| encoding == ResourceEncodingEnum.JSOND) {
+			ResourceEncodingEnum targetEncoding = myStorageSettings.getResourceEncoding();
+			byte[] resourceBytes = historyEntity.getStoredResourceBytes();
+			String resourceText = null;
 			if (resourceBytes != null) {
-				String resourceText = decodeResource(resourceBytes, historyEntity.getEncoding());
-				if (myResourceHistoryCalculator.conditionallyAlterHistoryEntity(entity, historyEntity, resourceText)) {
-					changed = true;
-				}
+				resourceText = myResourceHistoryCalculator.decodeResource(resourceBytes, encoding);
+			} else if (targetEncoding == ResourceEncodingEnum.JSONB || targetEncoding == ResourceEncodingEnum.JSOND) {
+				// Inline JSON text only needs to be rewritten when converting to a binary encoding
+				resourceText = historyEntity.getResourceTextVc();
+			}
+			if (resourceText != null
+					&& myResourceHistoryCalculator.conditionallyAlterHistoryEntity(
+							entity, historyEntity, resourceText, targetEncoding)) {
+				changed = true;
 			}
 		}
 		if (isBlank(historyEntity.getSourceUri()) && isBlank(historyEntity.getRequestId())) {
@@ -1972,6 +2021,14 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 			cacheControlDirective.parse(theRequest.getHeaders(Constants.HEADER_CACHE_CONTROL));
 		}
 
+		/*
+		 * Give deferred indexing a chance to catch up. This is skipped inside an existing
+		 * transaction, since anything it wrote itself can't be indexed until it commits.
+		 */
+		if (myDeferredIndexingSvc != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+			myDeferredIndexingSvc.awaitIndexing(getResourceName());
+		}
+
 		RequestPartitionId requestPartitionId =
 				myRequestPartitionHelperService.determineReadPartitionForRequestForSearchType(
 						theRequest, getResourceName(), theParams);
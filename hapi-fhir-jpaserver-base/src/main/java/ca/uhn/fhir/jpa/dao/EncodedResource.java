@@ -27,6 +27,7 @@ class EncodedResource {
 	private byte[] myResource;
 	private ResourceEncodingEnum myEncoding;
 	private String myResourceText;
+	private String myContentHash;
 
 	public ResourceEncodingEnum getEncoding() {
 		return myEncoding;
@@ -59,4 +60,12 @@ class EncodedResource {
 	public void setResourceText(String theResourceText) {
 		myResourceText = theResourceText;
 	}
+
+	public String getContentHash() {
+		return myContentHash;
+	}
+
+	public void setContentHash(String theContentHash) {
+		myContentHash = theContentHash;
+	}
 }
@@ -39,6 +39,17 @@ public interface IJpaStorageResourceParser extends IStorageResourceParser {
 			Collection<ResourceTag> theTagList,
 			boolean theForHistoryOperation);
 
+	/**
+	 * Like {@link #toResource(Class, IBaseResourceEntity, Collection, boolean)}, but if the stored
+	 * resource body is eligible, it is not parsed. Instead, the returned resource only has its ID and
+	 * metadata populated, and the stored JSON is attached to it as a
+	 * {@link ca.uhn.fhir.rest.server.util.RawJsonResourceBody} so that it can be written directly
+	 * to a REST response.
+	 *
+	 * @since 7.2.0
+	 */
+	<R extends IBaseResource> R toResourceWithRawJsonBody(Class<R> theResourceType, IBaseResourceEntity theEntity);
+
 	/**
 	 * Populate the metadata (Resource.meta.*) from a storage entity and other related
 	 * objects pulled from the database
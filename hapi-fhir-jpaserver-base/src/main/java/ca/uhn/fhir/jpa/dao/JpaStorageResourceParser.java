@@ -52,9 +52,10 @@ import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.model.valueset.BundleEntryTransactionMethodEnum;
 import ca.uhn.fhir.parser.DataFormatException;
-import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.parser.LenientErrorHandler;
+import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.util.RawJsonResourceBody;
 import ca.uhn.fhir.util.IMetaTagSorter;
 import ca.uhn.fhir.util.MetaUtil;
 import jakarta.annotation.Nullable;
@@ -74,7 +75,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
-import static ca.uhn.fhir.jpa.dao.BaseHapiFhirDao.decodeResource;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -103,6 +103,9 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	@Autowired
 	IMetaTagSorter myMetaTagSorter;
 
+	@Autowired
+	private ResourceHistoryCalculator myResourceHistoryCalculator;
+
 	@Override
 	public IBaseResource toResource(IBasePersistedResource theEntity, boolean theForHistoryOperation) {
 		RuntimeResourceDefinition type = myFhirContext.getResourceDefinition(theEntity.getResourceType());
@@ -116,6 +119,21 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			IBaseResourceEntity theEntity,
 			Collection<ResourceTag> theTagList,
 			boolean theForHistoryOperation) {
+		return toResource(theResourceType, theEntity, theTagList, theForHistoryOperation, false);
+	}
+
+	@Override
+	public <R extends IBaseResource> R toResourceWithRawJsonBody(
+			Class<R> theResourceType, IBaseResourceEntity theEntity) {
+		return toResource(theResourceType, theEntity, null, false, true);
+	}
+
+	private <R extends IBaseResource> R toResource(
+			Class<R> theResourceType,
+			IBaseResourceEntity theEntity,
+			Collection<ResourceTag> theTagList,
+			boolean theForHistoryOperation,
+			boolean theAllowRawJsonBody) {
 
 		// 1. get resource, it's encoding and the tags if any
 		byte[] resourceBytes;
@@ -128,7 +146,7 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 
 		if (theEntity instanceof ResourceHistoryTable) {
 			ResourceHistoryTable history = (ResourceHistoryTable) theEntity;
-			resourceBytes = history.getResource();
+			resourceBytes = history.getStoredResourceBytes();
 			resourceText = history.getResourceTextVc();
 			resourceEncoding = history.getEncoding();
 			switch (myStorageSettings.getTagStorageMode()) {
@@ -172,7 +190,7 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 				}
 			}
 
-			resourceBytes = history.getResource();
+			resourceBytes = history.getStoredResourceBytes();
 			resourceEncoding = history.getEncoding();
 			resourceText = history.getResourceTextVc();
 			switch (myStorageSettings.getTagStorageMode()) {
@@ -194,7 +212,7 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		} else if (theEntity instanceof ResourceSearchView) {
 			// This is the search View
 			ResourceSearchView view = (ResourceSearchView) theEntity;
-			resourceBytes = view.getResource();
+			resourceBytes = view.getStoredResourceBytes();
 			resourceText = view.getResourceTextVc();
 			resourceEncoding = view.getEncoding();
 			version = view.getVersion();
@@ -222,8 +240,14 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		// 3. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = determineTypeToParse(theResourceType, tagList);
 
-		// 4. parse the text to FHIR
-		R retVal = parseResource(theEntity, resourceEncoding, decodedResourceText, resourceType);
+		// 4. parse the text to FHIR, unless it can be passed through to the client as-is
+		R retVal = null;
+		if (theAllowRawJsonBody && resourceType.equals(theResourceType)) {
+			retVal = createRawJsonBodyShell(theEntity, resourceEncoding, decodedResourceText, resourceType);
+		}
+		if (retVal == null) {
+			retVal = parseResource(theEntity, resourceEncoding, resourceBytes, decodedResourceText, resourceType);
+		}
 
 		// 5. fill MetaData
 		retVal = populateResourceMetadata(theEntity, theForHistoryOperation, tagList, version, retVal);
@@ -258,6 +282,7 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	private <R extends IBaseResource> R parseResource(
 			IBaseResourceEntity theEntity,
 			ResourceEncodingEnum theResourceEncoding,
+			byte[] theResourceBytes,
 			String theDecodedResourceText,
 			Class<R> theResourceType) {
 		R retVal;
@@ -275,11 +300,17 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 
 		} else if (theResourceEncoding != ResourceEncodingEnum.DEL) {
 
-			IParser parser = new TolerantJsonParser(
+			TolerantJsonParser parser = new TolerantJsonParser(
 					getContext(theEntity.getFhirVersion()), LENIENT_ERROR_HANDLER, theEntity.getId());
 
 			try {
-				retVal = parser.parseResource(theResourceType, theDecodedResourceText);
+				if (theResourceEncoding == ResourceEncodingEnum.JSONB) {
+					JacksonStructure structure = new JacksonStructure();
+					structure.setNativeObject(BinaryJsonUtil.decodeToTree(theResourceBytes));
+					retVal = parser.parseResource(theResourceType, structure);
+				} else {
+					retVal = parser.parseResource(theResourceType, theDecodedResourceText);
+				}
 			} catch (Exception e) {
 				StringBuilder b = new StringBuilder();
 				b.append("Failed to parse database resource[");
@@ -306,6 +337,37 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		return retVal;
 	}
 
+	/**
+	 * Creates an empty resource with the stored JSON attached to it, or returns <code>null</code>
+	 * if the stored JSON can't be used without parsing it
+	 */
+	@Nullable
+	private <R extends IBaseResource> R createRawJsonBodyShell(
+			IBaseResourceEntity theEntity,
+			ResourceEncodingEnum theResourceEncoding,
+			String theDecodedResourceText,
+			Class<R> theResourceType) {
+		if (theResourceEncoding == ResourceEncodingEnum.ESR
+				|| theResourceEncoding == ResourceEncodingEnum.DEL
+				|| theResourceEncoding == ResourceEncodingEnum.JSONB) {
+			return null;
+		}
+		FhirVersionEnum version = myFhirContext.getVersion().getVersion();
+		if (theEntity.getFhirVersion() != version || !version.isRi()) {
+			return null;
+		}
+
+		RuntimeResourceDefinition def = myFhirContext.getResourceDefinition(theResourceType);
+		RawJsonResourceBody body = RawJsonResourceBody.createIfEligible(def.getName(), theDecodedResourceText);
+		if (body == null) {
+			return null;
+		}
+
+		R retVal = theResourceType.cast(def.newInstance());
+		body.attachTo(retVal);
+		return retVal;
+	}
+
 	@SuppressWarnings("unchecked")
 	private <R extends IBaseResource> Class<R> determineTypeToParse(
 			Class<R> theResourceType, @Nullable Collection<? extends BaseTag> tagList) {
@@ -535,13 +597,16 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		return FhirContext.forCached(theVersion);
 	}
 
-	private static String decodedResourceText(
+	private String decodedResourceText(
 			byte[] resourceBytes, String resourceText, ResourceEncodingEnum resourceEncoding) {
 		String decodedResourceText;
 		if (resourceText != null) {
 			decodedResourceText = resourceText;
+		} else if (resourceEncoding == ResourceEncodingEnum.JSONB) {
+			// Parsed directly from the binary, see parseResource
+			decodedResourceText = null;
 		} else {
-			decodedResourceText = decodeResource(resourceBytes, resourceEncoding);
+			decodedResourceText = myResourceHistoryCalculator.decodeResource(resourceBytes, resourceEncoding);
 		}
 		return decodedResourceText;
 	}
@@ -0,0 +1,385 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.dao.data.IResourceCompressionDictionaryDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.model.entity.ResourceCompressionDictionaryEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Compresses and decompresses resource bodies stored with the {@link ResourceEncodingEnum#JSOND}
+ * encoding, and trains the per-resource-type preset dictionaries that encoding uses.
+ * <p>
+ * A preset dictionary lets the compressor refer back to strings (field names, code systems,
+ * profile URLs, etc.) that are common across resources of a type, which is where most of the
+ * gain comes from on small resources that gzip compresses poorly on their own.
+ * </p>
+ * <p>
+ * Each stored body starts with a format byte followed by the PID of the dictionary it was
+ * compressed with (0 if no dictionary had been trained for the type yet), so old bodies remain
+ * readable after a dictionary is retrained.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class ResourceCompressionDictionarySvc {
+
+	public static final int DEFAULT_SAMPLE_SIZE = 1000;
+
+	/**
+	 * Deflate can only refer back 32KB, so any dictionary content beyond that would be ignored
+	 */
+	public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+	private static final org.slf4j.Logger ourLog =
+			org.slf4j.LoggerFactory.getLogger(ResourceCompressionDictionarySvc.class);
+	private static final byte FORMAT_VERSION = 1;
+	private static final int MAX_FRAGMENT_LENGTH = 256;
+	private static final long CURRENT_DICTIONARY_REFRESH_MILLIS = 60 * 1000L;
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final IResourceCompressionDictionaryDao myResourceCompressionDictionaryDao;
+	private final IResourceHistoryTableDao myResourceHistoryTableDao;
+	private final Map<Long, byte[]> myDictionaries = new ConcurrentHashMap<>();
+	private final Map<String, CurrentDictionary> myCurrentDictionaries = new ConcurrentHashMap<>();
+
+	public ResourceCompressionDictionarySvc(
+			IResourceCompressionDictionaryDao theResourceCompressionDictionaryDao,
+			IResourceHistoryTableDao theResourceHistoryTableDao) {
+		myResourceCompressionDictionaryDao = theResourceCompressionDictionaryDao;
+		myResourceHistoryTableDao = theResourceHistoryTableDao;
+	}
+
+	/**
+	 * Compresses a resource body using the newest dictionary trained for the given resource type
+	 */
+	public byte[] compress(String theResourceType, String theEncodedResource) {
+		long dictionaryPid = getCurrentDictionaryPid(theResourceType);
+		byte[] dictionary = dictionaryPid != 0 ? getDictionary(dictionaryPid) : null;
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream(theEncodedResource.length() / 3 + 16);
+		os.write(FORMAT_VERSION);
+		writeVarLong(os, dictionaryPid);
+
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(theEncodedResource.getBytes(StandardCharsets.UTF_8));
+			deflater.finish();
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				os.write(buffer, 0, count);
+			}
+		} finally {
+			deflater.end();
+		}
+		return os.toByteArray();
+	}
+
+	public String decompress(byte[] theContents) {
+		int[] position = new int[] {1};
+		if (theContents.length == 0 || theContents[0] != FORMAT_VERSION) {
+			throw new DataFormatException(Msg.code(2510) + "Unsupported compressed resource format version");
+		}
+		long dictionaryPid = readVarLong(theContents, position);
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(theContents, position[0], theContents.length - position[0]);
+			ByteArrayOutputStream os = new ByteArrayOutputStream(theContents.length * 4);
+			byte[] buffer = new byte[4096];
+			while (!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if (count == 0) {
+					if (inflater.needsDictionary()) {
+						if (dictionaryPid == 0) {
+							throw new DataFormatException(
+									Msg.code(2511) + "Compressed contents require a dictionary but none is recorded");
+						}
+						inflater.setDictionary(getDictionary(dictionaryPid));
+					} else if (inflater.needsInput()) {
+						throw new DataFormatException(Msg.code(2525) + "Truncated compressed resource contents");
+					}
+				}
+				os.write(buffer, 0, count);
+			}
+			return os.toString(StandardCharsets.UTF_8);
+		} catch (java.util.zip.DataFormatException e) {
+			throw new DataFormatException(Msg.code(2526) + "Failed to decompress contents: " + e.getMessage(), e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the given contents were compressed with the newest dictionary
+	 * for the resource type, meaning that recompressing them would not change anything.
+	 */
+	public boolean isCompressedWithCurrentDictionary(String theResourceType, byte[] theContents) {
+		if (theContents == null || theContents.length == 0 || theContents[0] != FORMAT_VERSION) {
+			return false;
+		}
+		return readVarLong(theContents, new int[] {1}) == getCurrentDictionaryPid(theResourceType);
+	}
+
+	/**
+	 * Trains a new dictionary for the given resource type from the most recently updated stored
+	 * versions of resources of that type, and makes it the dictionary used for new writes.
+	 * Existing resource bodies are not recompressed - Run a <code>$reindex</code> with
+	 * <code>optimizeStorage</code> enabled to do that.
+	 *
+	 * @param theResourceType The resource type
+	 * @param theSampleSize   The maximum number of stored resource versions to sample
+	 */
+	@Transactional
+	public ResourceCompressionDictionaryEntity trainDictionary(String theResourceType, int theSampleSize) {
+		Validate.notBlank(theResourceType, "theResourceType must not be blank");
+		Validate.isTrue(theSampleSize > 0, "theSampleSize must be greater than 0");
+
+		List<String> samples = new ArrayList<>();
+		for (ResourceHistoryTable next : myResourceHistoryTableDao.findNewestForResourceType(
+				PageRequest.of(0, theSampleSize), theResourceType)) {
+			String text = decodeSample(next);
+			if (isNotBlank(text)) {
+				samples.add(text);
+			}
+		}
+		if (samples.isEmpty()) {
+			throw new InvalidRequestException(
+					Msg.code(2512) + "No stored resources of type " + theResourceType + " to train a dictionary from");
+		}
+
+		int version =
+				myResourceCompressionDictionaryDao
+						.findNewestForResourceType(PageRequest.of(0, 1), theResourceType)
+						.stream()
+						.findFirst()
+						.map(t -> t.getVersion() + 1)
+						.orElse(1);
+
+		ResourceCompressionDictionaryEntity entity = new ResourceCompressionDictionaryEntity();
+		entity.setResourceType(theResourceType);
+		entity.setVersion(version);
+		entity.setDictionary(buildDictionary(samples, MAX_DICTIONARY_SIZE));
+		entity.setSampleCount(samples.size());
+		entity.setCreated(new Date());
+		entity = myResourceCompressionDictionaryDao.save(entity);
+
+		ourLog.info("Trained compression dictionary {} from {} samples", entity, samples.size());
+
+		/*
+		 * Writes must not reference the new dictionary until its row is visible to the
+		 * readers, so it only becomes current once the transaction has committed
+		 */
+		long pid = entity.getId();
+		byte[] dictionary = entity.getDictionary();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					publishDictionary(theResourceType, pid, dictionary);
+				}
+			});
+		} else {
+			publishDictionary(theResourceType, pid, dictionary);
+		}
+		return entity;
+	}
+
+	private void publishDictionary(String theResourceType, long thePid, byte[] theDictionary) {
+		myDictionaries.put(thePid, theDictionary);
+		myCurrentDictionaries.put(theResourceType, new CurrentDictionary(thePid));
+	}
+
+	@Nullable
+	private String decodeSample(ResourceHistoryTable theHistoryEntity) {
+		if (theHistoryEntity.getResourceTextVc() != null) {
+			return theHistoryEntity.getResourceTextVc();
+		}
+		byte[] resource = theHistoryEntity.getStoredResourceBytes();
+		if (resource == null) {
+			return null;
+		}
+		if (theHistoryEntity.getEncoding() == ResourceEncodingEnum.JSOND) {
+			return decompress(resource);
+		}
+		return BaseHapiFhirDao.decodeResource(resource, theHistoryEntity.getEncoding());
+	}
+
+	private long getCurrentDictionaryPid(String theResourceType) {
+		long now = System.currentTimeMillis();
+		CurrentDictionary current = myCurrentDictionaries.get(theResourceType);
+		if (current == null || current.myLoadedAt + CURRENT_DICTIONARY_REFRESH_MILLIS < now) {
+			long pid =
+					myResourceCompressionDictionaryDao
+							.findNewestForResourceType(PageRequest.of(0, 1), theResourceType)
+							.stream()
+							.findFirst()
+							.map(t -> {
+								myDictionaries.putIfAbsent(t.getId(), t.getDictionary());
+								return t.getId();
+							})
+							.orElse(0L);
+			current = new CurrentDictionary(pid);
+			myCurrentDictionaries.put(theResourceType, current);
+		}
+		return current.myPid;
+	}
+
+	private byte[] getDictionary(long thePid) {
+		return myDictionaries.computeIfAbsent(thePid, pid -> myResourceCompressionDictionaryDao
+				.findById(pid)
+				.map(ResourceCompressionDictionaryEntity::getDictionary)
+				.orElseThrow(() -> new DataFormatException(Msg.code(2513) + "Unknown compression dictionary: " + pid)));
+	}
+
+	/**
+	 * Builds a preset dictionary from the field names and short string values which appear in
+	 * more than one of the samples. Deflate encodes references to nearby content more cheaply,
+	 * so the fragments which save the most are placed at the end of the dictionary.
+	 */
+	@VisibleForTesting
+	static byte[] buildDictionary(Collection<String> theSamples, int theMaxSize) {
+		Map<String, Integer> documentFrequencies = new HashMap<>();
+		for (String next : theSamples) {
+			for (String fragment : extractFragments(next)) {
+				documentFrequencies.merge(fragment, 1, Integer::sum);
+			}
+		}
+
+		int minimumFrequency = theSamples.size() > 1 ? 2 : 1;
+		List<Map.Entry<String, Integer>> candidates = new ArrayList<>();
+		for (Map.Entry<String, Integer> next : documentFrequencies.entrySet()) {
+			if (next.getValue() >= minimumFrequency) {
+				candidates.add(next);
+			}
+		}
+		Comparator<Map.Entry<String, Integer>> byScore =
+				Comparator.comparingLong(t -> (long) t.getValue() * t.getKey().length());
+		candidates.sort(byScore.reversed().thenComparing(Map.Entry::getKey));
+
+		List<byte[]> selected = new ArrayList<>();
+		int size = 0;
+		for (Map.Entry<String, Integer> next : candidates) {
+			byte[] bytes = next.getKey().getBytes(StandardCharsets.UTF_8);
+			if (size + bytes.length <= theMaxSize) {
+				selected.add(bytes);
+				size += bytes.length;
+			}
+		}
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream(size);
+		for (int i = selected.size() - 1; i >= 0; i--) {
+			os.writeBytes(selected.get(i));
+		}
+		return os.toByteArray();
+	}
+
+	private static Set<String> extractFragments(String theEncodedResource) {
+		Set<String> retVal = new HashSet<>();
+		try (JsonParser parser = JSON_FACTORY.createParser(theEncodedResource)) {
+			for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+				if (token == JsonToken.FIELD_NAME) {
+					retVal.add("\"" + parser.getCurrentName() + "\":");
+				} else if (token == JsonToken.VALUE_STRING) {
+					String value = parser.getText();
+					if (value.length() <= MAX_FRAGMENT_LENGTH
+							&& value.indexOf('"') == -1
+							&& value.indexOf('\\') == -1) {
+						retVal.add("\"" + value + "\"");
+					}
+				}
+			}
+		} catch (IOException e) {
+			ourLog.debug("Skipping unparseable dictionary sample: {}", e.toString());
+		}
+		return retVal;
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream theOutputStream, long theValue) {
+		long value = theValue;
+		while ((value & ~0x7FL) != 0) {
+			theOutputStream.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		theOutputStream.write((int) value);
+	}
+
+	private static long readVarLong(byte[] theContents, int[] thePosition) {
+		long retVal = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (thePosition[0] >= theContents.length) {
+				break;
+			}
+			byte next = theContents[thePosition[0]++];
+			retVal |= (long) (next & 0x7F) << shift;
+			if ((next & 0x80) == 0) {
+				return retVal;
+			}
+		}
+		throw new DataFormatException(Msg.code(2527) + "Truncated compressed resource contents");
+	}
+
+	private static class CurrentDictionary {
+		private final long myPid;
+		private final long myLoadedAt;
+
+		private CurrentDictionary(long thePid) {
+			myPid = thePid;
+			myLoadedAt = System.currentTimeMillis();
+		}
+	}
+}
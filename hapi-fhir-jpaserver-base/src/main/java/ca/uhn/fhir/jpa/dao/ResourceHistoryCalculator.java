@@ -30,6 +30,7 @@ import com.google.common.hash.Hashing;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.nio.charset.StandardCharsets;
@@ -44,13 +45,23 @@ import java.util.List;
 public class ResourceHistoryCalculator {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceHistoryCalculator.class);
 	private static final HashFunction SHA_256 = Hashing.sha256();
+	private static final HashFunction CONTENT_HASH = Hashing.murmur3_128();
 
 	private final FhirContext myFhirContext;
 	private final boolean myIsOracleDialect;
+	private final ResourceCompressionDictionarySvc myResourceCompressionDictionarySvc;
 
 	public ResourceHistoryCalculator(FhirContext theFhirContext, boolean theIsOracleDialect) {
+		this(theFhirContext, theIsOracleDialect, null);
+	}
+
+	public ResourceHistoryCalculator(
+			FhirContext theFhirContext,
+			boolean theIsOracleDialect,
+			@Nullable ResourceCompressionDictionarySvc theResourceCompressionDictionarySvc) {
 		myFhirContext = theFhirContext;
 		myIsOracleDialect = theIsOracleDialect;
+		myResourceCompressionDictionarySvc = theResourceCompressionDictionarySvc;
 	}
 
 	ResourceHistoryState calculateResourceHistoryState(
@@ -61,9 +72,10 @@ public class ResourceHistoryCalculator {
 		final ResourceEncodingEnum encoding;
 		final HashCode hashCode;
 
-		if (myIsOracleDialect) {
+		if (isStoredAsBinary(theEncoding)) {
 			resourceText = null;
-			resourceBinary = getResourceBinary(theEncoding, encodedResource);
+			resourceBinary =
+					getResourceBinary(theEncoding, myFhirContext.getResourceType(theResource), encodedResource);
 			encoding = theEncoding;
 			hashCode = SHA_256.hashBytes(resourceBinary);
 		} else {
@@ -73,19 +85,53 @@ public class ResourceHistoryCalculator {
 			hashCode = SHA_256.hashUnencodedChars(encodedResource);
 		}
 
-		return new ResourceHistoryState(resourceText, resourceBinary, encoding, hashCode);
+		return new ResourceHistoryState(
+				resourceText, resourceBinary, encoding, hashCode, calculateContentHash(encodedResource));
+	}
+
+	/**
+	 * Calculates the hash stored in {@link ResourceHistoryTable#getContentHash()} for the given
+	 * encoded resource text.
+	 */
+	@Nonnull
+	static String calculateContentHash(String theEncodedResource) {
+		return CONTENT_HASH.hashUnencodedChars(theEncodedResource).toString();
 	}
 
 	boolean conditionallyAlterHistoryEntity(
-			ResourceTable theEntity, ResourceHistoryTable theHistoryEntity, String theResourceText) {
+			ResourceTable theEntity,
+			ResourceHistoryTable theHistoryEntity,
+			String theResourceText,
+			ResourceEncodingEnum theEncoding) {
+		if (theEncoding == ResourceEncodingEnum.JSONB || theEncoding == ResourceEncodingEnum.JSOND) {
+			if (theHistoryEntity.getEncoding() == theEncoding
+					&& (theEncoding == ResourceEncodingEnum.JSONB
+							|| getResourceCompressionDictionarySvc()
+									.isCompressedWithCurrentDictionary(
+											theHistoryEntity.getResourceType(),
+											theHistoryEntity.getResourceBinary()))) {
+				return false;
+			}
+			ourLog.debug(
+					"Storing text of resource {} version {} as {}",
+					theEntity.getResourceId(),
+					theHistoryEntity.getVersion(),
+					theEncoding);
+			theHistoryEntity.setEncoding(theEncoding);
+			theHistoryEntity.setStoredResourceBytes(
+					getResourceBinary(theEncoding, theHistoryEntity.getResourceType(), theResourceText));
+			theHistoryEntity.setResourceTextVc(null);
+			return true;
+		}
+
 		if (!myIsOracleDialect) {
 			ourLog.debug(
 					"Storing text of resource {} version {} as inline VARCHAR",
 					theEntity.getResourceId(),
 					theHistoryEntity.getVersion());
-			theHistoryEntity.setResourceTextVc(theResourceText);
-			theHistoryEntity.setResource(null);
 			theHistoryEntity.setEncoding(ResourceEncodingEnum.JSON);
+			theHistoryEntity.setResourceTextVc(theResourceText);
+			theHistoryEntity.setStoredResourceBytes(null);
 			return true;
 		}
 
@@ -96,8 +142,45 @@ public class ResourceHistoryCalculator {
 			ResourceHistoryTable theCurrentHistoryVersion,
 			@Nullable byte[] theResourceBinary,
 			@Nullable String resourceText) {
-		if (myIsOracleDialect) {
-			return !Arrays.equals(theCurrentHistoryVersion.getResource(), theResourceBinary);
+		if (theCurrentHistoryVersion.getContentHash() != null && resourceText != null) {
+			return !theCurrentHistoryVersion.getContentHash().equals(calculateContentHash(resourceText));
+		}
+		return isResourceHistoryChangedComparingContents(theCurrentHistoryVersion, theResourceBinary, resourceText);
+	}
+
+	/**
+	 * Same as {@link #isResourceHistoryChanged(ResourceHistoryTable, byte[], String)}, but uses a content hash
+	 * which has already been calculated for the new resource text.
+	 */
+	boolean isResourceHistoryChanged(
+			ResourceHistoryTable theCurrentHistoryVersion, ResourceHistoryState theResourceHistoryState) {
+		if (theCurrentHistoryVersion.getContentHash() != null) {
+			return !theCurrentHistoryVersion.getContentHash().equals(theResourceHistoryState.getContentHash());
+		}
+		if (theCurrentHistoryVersion.getEncoding() == ResourceEncodingEnum.JSOND) {
+			String currentText =
+					decodeResource(theCurrentHistoryVersion.getResourceBinary(), ResourceEncodingEnum.JSOND);
+			return !calculateContentHash(currentText).equals(theResourceHistoryState.getContentHash());
+		}
+		return isResourceHistoryChangedComparingContents(
+				theCurrentHistoryVersion,
+				theResourceHistoryState.getResourceBinary(),
+				theResourceHistoryState.getResourceText());
+	}
+
+	private boolean isResourceHistoryChangedComparingContents(
+			ResourceHistoryTable theCurrentHistoryVersion,
+			@Nullable byte[] theResourceBinary,
+			@Nullable String resourceText) {
+		if (theCurrentHistoryVersion.getEncoding() == ResourceEncodingEnum.JSOND) {
+			// The compressed bytes depend on which dictionary was current, so compare the contents
+			String currentText =
+					decodeResource(theCurrentHistoryVersion.getResourceBinary(), ResourceEncodingEnum.JSOND);
+			return !StringUtils.equals(currentText, resourceText);
+		}
+
+		if (myIsOracleDialect || theCurrentHistoryVersion.getEncoding() == ResourceEncodingEnum.JSONB) {
+			return !Arrays.equals(theCurrentHistoryVersion.getStoredResourceBytes(), theResourceBinary);
 		}
 
 		return !StringUtils.equals(theCurrentHistoryVersion.getResourceTextVc(), resourceText);
@@ -124,17 +207,58 @@ public class ResourceHistoryCalculator {
 				return theEncodedResource.getBytes(StandardCharsets.UTF_8);
 			case JSONC:
 				return GZipUtil.compress(theEncodedResource);
+			case JSONB:
+				return BinaryJsonUtil.encode(theEncodedResource);
 			default:
 				return new byte[0];
 		}
 	}
 
+	/**
+	 * Same as {@link #getResourceBinary(ResourceEncodingEnum, String)}, but also supports
+	 * {@link ResourceEncodingEnum#JSOND} which compresses using a dictionary for the resource type.
+	 */
+	@Nonnull
+	byte[] getResourceBinary(ResourceEncodingEnum theEncoding, String theResourceType, String theEncodedResource) {
+		if (theEncoding == ResourceEncodingEnum.JSOND) {
+			return getResourceCompressionDictionarySvc().compress(theResourceType, theEncodedResource);
+		}
+		return getResourceBinary(theEncoding, theEncodedResource);
+	}
+
+	/**
+	 * Same as {@link BaseHapiFhirDao#decodeResource(byte[], ResourceEncodingEnum)}, but also supports
+	 * {@link ResourceEncodingEnum#JSOND}.
+	 */
+	String decodeResource(byte[] theResourceBytes, ResourceEncodingEnum theResourceEncoding) {
+		if (theResourceEncoding == ResourceEncodingEnum.JSOND) {
+			return getResourceCompressionDictionarySvc().decompress(theResourceBytes);
+		}
+		return BaseHapiFhirDao.decodeResource(theResourceBytes, theResourceEncoding);
+	}
+
+	/**
+	 * Binary encodings are stored in the non-LOB {@link ResourceHistoryTable#getResourceBinary()}
+	 * column on every database. On Oracle everything else goes into the legacy LOB column too.
+	 */
+	private boolean isStoredAsBinary(ResourceEncodingEnum theEncoding) {
+		return myIsOracleDialect || theEncoding.isStoredInBinaryColumn();
+	}
+
+	private ResourceCompressionDictionarySvc getResourceCompressionDictionarySvc() {
+		Validate.notNull(
+				myResourceCompressionDictionarySvc,
+				"No compression dictionary service available for encoding %s",
+				ResourceEncodingEnum.JSOND);
+		return myResourceCompressionDictionarySvc;
+	}
+
 	void populateEncodedResource(
 			EncodedResource theEncodedResource,
 			String theEncodedResourceString,
 			@Nullable byte[] theResourceBinary,
 			ResourceEncodingEnum theEncoding) {
-		if (myIsOracleDialect) {
+		if (isStoredAsBinary(theEncoding)) {
 			populateEncodedResourceInner(theEncodedResource, null, theResourceBinary, theEncoding);
 		} else {
 			populateEncodedResourceInner(theEncodedResource, theEncodedResourceString, null, ResourceEncodingEnum.JSON);
@@ -41,16 +41,19 @@ public class ResourceHistoryState {
 
 	private final ResourceEncodingEnum myEncoding;
 	private final HashCode myHashCode;
+	private final String myContentHash;
 
 	public ResourceHistoryState(
 			@Nullable String theResourceText,
 			@Nullable byte[] theResourceBinary,
 			ResourceEncodingEnum theEncoding,
-			HashCode theHashCode) {
+			HashCode theHashCode,
+			String theContentHash) {
 		myResourceText = theResourceText;
 		myResourceBinary = theResourceBinary;
 		myEncoding = theEncoding;
 		myHashCode = theHashCode;
+		myContentHash = theContentHash;
 	}
 
 	@Nullable
@@ -71,6 +74,14 @@ public class ResourceHistoryState {
 		return myHashCode;
 	}
 
+	/**
+	 * Hash of the encoded resource text, which unlike {@link #getHashCode()} does not
+	 * depend on the encoding used to store it.
+	 */
+	public String getContentHash() {
+		return myContentHash;
+	}
+
 	@Override
 	public boolean equals(Object theO) {
 		if (this == theO) {
@@ -83,12 +94,13 @@ public class ResourceHistoryState {
 		return Objects.equals(myResourceText, that.myResourceText)
 				&& Arrays.equals(myResourceBinary, that.myResourceBinary)
 				&& myEncoding == that.myEncoding
-				&& Objects.equals(myHashCode, that.myHashCode);
+				&& Objects.equals(myHashCode, that.myHashCode)
+				&& Objects.equals(myContentHash, that.myContentHash);
 	}
 
 	@Override
 	public int hashCode() {
-		int result = Objects.hash(myResourceText, myEncoding, myHashCode);
+		int result = Objects.hash(myResourceText, myEncoding, myHashCode, myContentHash);
 		result = 31 * result + Arrays.hashCode(myResourceBinary);
 		return result;
 	}
@@ -100,6 +112,7 @@ public class ResourceHistoryState {
 				.add("myResourceBinary=" + Arrays.toString(myResourceBinary))
 				.add("myEncoding=" + myEncoding)
 				.add("myHashCode=" + myHashCode)
+				.add("myContentHash=" + myContentHash)
 				.toString();
 	}
 }
@@ -30,6 +30,7 @@ import ca.uhn.fhir.jpa.config.HapiFhirHibernateJpaDialect;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamUri;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
@@ -39,12 +40,14 @@ import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.UriParam;
 import ca.uhn.fhir.util.ResourceReferenceInfo;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.ListMultimap;
-import jakarta.annotation.Nullable;
+import com.google.common.collect.SetMultimap;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.PersistenceContextType;
@@ -55,6 +58,7 @@ import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
 import org.apache.commons.lang3.Validate;
 import org.hibernate.internal.SessionImpl;
 import org.hl7.fhir.instance.model.api.IBase;
@@ -67,22 +71,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.util.UrlUtil.determineResourceTypeInResourceUrl;
 import static org.apache.commons.lang3.StringUtils.countMatches;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class TransactionProcessor extends BaseTransactionProcessor {
 
 	public static final Pattern SINGLE_PARAMETER_MATCH_URL_PATTERN = Pattern.compile("^[^?]+[?][a-z0-9-]+=[^&,]+$");
+	/**
+	 * Match URLs with one or more unmodified parameters, each having a single value
+	 */
+	public static final Pattern SIMPLE_MATCH_URL_PATTERN =
+			Pattern.compile("^[^?]+[?][a-z0-9-]+=[^&,]+(&[a-z0-9-]+=[^&,]+)*$");
+
 	private static final Logger ourLog = LoggerFactory.getLogger(TransactionProcessor.class);
 
 	@Autowired
@@ -223,23 +234,16 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 				}
 			}
 		}
-		List<JpaPid> outcome =
-				myIdHelperService.resolveResourcePersistentIdsWithCache(theRequestPartitionId, idsToPreResolve).stream()
-						.collect(Collectors.toList());
+		List<JpaPid> outcome = myIdHelperService.preResolveResourcePersistentIds(
+				theRequestPartitionId, idsToPreResolve, false, theTransactionDetails);
 		for (JpaPid next : outcome) {
 			foundIds.add(
 					next.getAssociatedResourceId().toUnqualifiedVersionless().getValue());
-			theTransactionDetails.addResolvedResourceId(next.getAssociatedResourceId(), next);
 			if (myStorageSettings.getResourceClientIdStrategy() != JpaStorageSettings.ClientIdStrategyEnum.ANY
 					|| !next.getAssociatedResourceId().isIdPartValidLong()) {
 				idsToPreFetch.add(next.getId());
 			}
 		}
-		for (IIdType next : idsToPreResolve) {
-			if (!foundIds.contains(next.toUnqualifiedVersionless().getValue())) {
-				theTransactionDetails.addResolvedResourceId(next.toUnqualifiedVersionless(), null);
-			}
-		}
 	}
 
 	private void preFetchConditionalUrls(
@@ -283,151 +287,161 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			}
 		}
 
-		new QueryChunker<MatchUrlToResolve>()
-				.chunk(
-						searchParameterMapsToResolve,
-						100,
-						map -> preFetchSearchParameterMaps(
-								theTransactionDetails, theRequestPartitionId, map, idsToPreFetch));
+		preFetchSearchParameterMaps(
+				theTransactionDetails, theRequestPartitionId, searchParameterMapsToResolve, idsToPreFetch);
 	}
 
 	/**
-	 * @param theTransactionDetails    The active transaction details
-	 * @param theRequestPartitionId    The active partition
-	 * @param theInputParameters       These are the search parameter maps that will actually be resolved
-	 * @param theOutputPidsToLoadFully This list will be added to with any resource PIDs that need to be fully
-	 *                                 pre-loaded (ie. fetch the actual resource body since we're presumably
-	 *                                 going to update it and will need to see its current state eventually)
+	 * Groups the match URLs we are able to resolve by resource type and parameter shape (ie. the
+	 * same set of parameter names, each resolvable to a single index hash) so that each group can be
+	 * resolved with a single query.
 	 */
 	private void preFetchSearchParameterMaps(
 			TransactionDetails theTransactionDetails,
 			RequestPartitionId theRequestPartitionId,
 			List<MatchUrlToResolve> theInputParameters,
 			List<Long> theOutputPidsToLoadFully) {
-		Set<Long> systemAndValueHashes = new HashSet<>();
-		Set<Long> valueHashes = new HashSet<>();
+		ListMultimap<String, MatchUrlToResolve> shapeToMatchUrls = ArrayListMultimap.create();
 		for (MatchUrlToResolve next : theInputParameters) {
-			Collection<List<List<IQueryParameterType>>> values = next.myMatchUrlSearchMap.values();
-			if (values.size() == 1) {
-				List<List<IQueryParameterType>> andList = values.iterator().next();
-				IQueryParameterType param = andList.get(0).get(0);
-
-				if (param instanceof TokenParam) {
-					buildHashPredicateFromTokenParam(
-							(TokenParam) param, theRequestPartitionId, next, systemAndValueHashes, valueHashes);
-				}
+			if (next.calculateHashes(myPartitionSettings, theRequestPartitionId)) {
+				shapeToMatchUrls.put(next.myShapeKey, next);
 			}
 		}
 
-		preFetchSearchParameterMapsToken(
-				"myHashSystemAndValue",
-				systemAndValueHashes,
-				theTransactionDetails,
-				theRequestPartitionId,
-				theInputParameters,
-				theOutputPidsToLoadFully);
-		preFetchSearchParameterMapsToken(
-				"myHashValue",
-				valueHashes,
-				theTransactionDetails,
-				theRequestPartitionId,
-				theInputParameters,
-				theOutputPidsToLoadFully);
-
-		// For each SP Map which did not return a result, tag it as not found.
-		if (!valueHashes.isEmpty() || !systemAndValueHashes.isEmpty()) {
-			theInputParameters.stream()
-					// No matches
-					.filter(match -> !match.myResolved)
-					.forEach(match -> {
-						ourLog.debug("Was unable to match url {} from database", match.myRequestUrl);
-						theTransactionDetails.addResolvedMatchUrl(
-								myFhirContext, match.myRequestUrl, TransactionDetails.NOT_FOUND);
-					});
+		for (String nextShape : shapeToMatchUrls.keySet()) {
+			new QueryChunker<MatchUrlToResolve>()
+					.chunk(
+							shapeToMatchUrls.get(nextShape),
+							100,
+							chunk -> preFetchSearchParameterMapsForShape(
+									theTransactionDetails, theRequestPartitionId, chunk, theOutputPidsToLoadFully));
 		}
 	}
 
 	/**
-	 * Here we do a select against the {@link ResourceIndexedSearchParamToken} table for any rows that have the
-	 * specific sys+val or val hashes we know we need to pre-fetch.
+	 * Here we do a select against the index tables for any rows that have the specific hashes we
+	 * know we need to pre-fetch. All match URLs passed in here have the same shape, so the query
+	 * joins one index table alias per parameter on the resource PID, with each alias restricted to
+	 * the hashes for that parameter across all of the match URLs.
 	 * <p>
-	 * Note that we do a tuple query for only 2 columns in order to ensure that we can get by with only
-	 * the data in the index (ie no need to load the actual table rows).
+	 * Note that we do a tuple query for only the PID and hash columns in order to ensure that we can
+	 * get by with only the data in the indexes (ie no need to load the actual table rows).
 	 */
-	private void preFetchSearchParameterMapsToken(
-			String theIndexColumnName,
-			Set<Long> theHashesForIndexColumn,
+	private void preFetchSearchParameterMapsForShape(
 			TransactionDetails theTransactionDetails,
 			RequestPartitionId theRequestPartitionId,
 			List<MatchUrlToResolve> theInputParameters,
 			List<Long> theOutputPidsToLoadFully) {
-		if (!theHashesForIndexColumn.isEmpty()) {
-			ListMultimap<Long, MatchUrlToResolve> hashToSearchMap =
-					buildHashToSearchMap(theInputParameters, theIndexColumnName);
-			CriteriaBuilder cb = myEntityManager.getCriteriaBuilder();
-			CriteriaQuery<Tuple> cq = cb.createTupleQuery();
-			Root<ResourceIndexedSearchParamToken> from = cq.from(ResourceIndexedSearchParamToken.class);
-			cq.multiselect(from.get("myResourcePid"), from.get(theIndexColumnName));
-
-			Predicate masterPredicate;
-			if (theHashesForIndexColumn.size() == 1) {
-				masterPredicate = cb.equal(
-						from.get(theIndexColumnName),
-						theHashesForIndexColumn.iterator().next());
+		List<MatchUrlHashColumnEnum> columns = theInputParameters.get(0).myHashColumns;
+
+		ListMultimap<List<Long>, MatchUrlToResolve> hashesToMatchUrl = ArrayListMultimap.create();
+		List<Set<Long>> hashesForColumn = new ArrayList<>();
+		for (int i = 0; i < columns.size(); i++) {
+			hashesForColumn.add(new HashSet<>());
+		}
+		for (MatchUrlToResolve next : theInputParameters) {
+			hashesToMatchUrl.put(next.myHashes, next);
+			for (int i = 0; i < columns.size(); i++) {
+				hashesForColumn.get(i).add(next.myHashes.get(i));
+			}
+		}
+
+		CriteriaBuilder cb = myEntityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+		List<Selection<?>> selections = new ArrayList<>();
+		List<Predicate> predicates = new ArrayList<>();
+		Root<?> first = null;
+		for (int i = 0; i < columns.size(); i++) {
+			MatchUrlHashColumnEnum column = columns.get(i);
+			Root<?> from = cq.from(column.getEntityType());
+			if (first == null) {
+				first = from;
+				selections.add(from.get("myResourcePid"));
 			} else {
-				masterPredicate = from.get(theIndexColumnName).in(theHashesForIndexColumn);
+				predicates.add(cb.equal(from.get("myResourcePid"), first.get("myResourcePid")));
 			}
+			selections.add(from.get(column.getHashAttribute()));
 
-			if (myPartitionSettings.isPartitioningEnabled()
-					&& !myPartitionSettings.isIncludePartitionInSearchHashes()) {
-				if (theRequestPartitionId.isDefaultPartition()) {
-					Predicate partitionIdCriteria = cb.isNull(from.get("myPartitionIdValue"));
-					masterPredicate = cb.and(partitionIdCriteria, masterPredicate);
-				} else if (!theRequestPartitionId.isAllPartitions()) {
-					Predicate partitionIdCriteria =
-							from.get("myPartitionIdValue").in(theRequestPartitionId.getPartitionIds());
-					masterPredicate = cb.and(partitionIdCriteria, masterPredicate);
-				}
+			Set<Long> hashes = hashesForColumn.get(i);
+			if (hashes.size() == 1) {
+				predicates.add(cb.equal(
+						from.get(column.getHashAttribute()), hashes.iterator().next()));
+			} else {
+				predicates.add(from.get(column.getHashAttribute()).in(hashes));
 			}
+		}
 
-			cq.where(masterPredicate);
-
-			TypedQuery<Tuple> query = myEntityManager.createQuery(cq);
-
-			/*
-			 * If we have 10 unique conditional URLs we're resolving, each one should
-			 * resolve to 0..1 resources if they are valid as conditional URLs. So we would
-			 * expect this query to return 0..10 rows, since conditional URLs for all
-			 * conditional operations except DELETE (which isn't being applied here) are
-			 * only allowed to resolve to 0..1 resources.
-			 *
-			 * If a conditional URL matches 2+ resources that is an error, and we'll
-			 * be throwing an exception below. This limit is here for safety just to
-			 * ensure that if someone uses a conditional URL that matches a million resources,
-			 * we don't do a super-expensive fetch.
-			 */
-			query.setMaxResults(theHashesForIndexColumn.size() + 1);
-
-			List<Tuple> results = query.getResultList();
-
-			for (Tuple nextResult : results) {
-				Long nextResourcePid = nextResult.get(0, Long.class);
-				Long nextHash = nextResult.get(1, Long.class);
-				List<MatchUrlToResolve> matchedSearch = hashToSearchMap.get(nextHash);
-				matchedSearch.forEach(matchUrl -> {
-					ourLog.debug("Matched url {} from database", matchUrl.myRequestUrl);
-					if (matchUrl.myShouldPreFetchResourceBody) {
-						theOutputPidsToLoadFully.add(nextResourcePid);
-					}
-					myMatchResourceUrlService.matchUrlResolved(
-							theTransactionDetails,
-							matchUrl.myResourceDefinition.getName(),
-							matchUrl.myRequestUrl,
-							JpaPid.fromId(nextResourcePid));
-					theTransactionDetails.addResolvedMatchUrl(
-							myFhirContext, matchUrl.myRequestUrl, JpaPid.fromId(nextResourcePid));
-					matchUrl.setResolved(true);
-				});
+		if (myPartitionSettings.isPartitioningEnabled() && !myPartitionSettings.isIncludePartitionInSearchHashes()) {
+			if (theRequestPartitionId.isDefaultPartition()) {
+				predicates.add(cb.isNull(first.get("myPartitionIdValue")));
+			} else if (!theRequestPartitionId.isAllPartitions()) {
+				predicates.add(first.get("myPartitionIdValue").in(theRequestPartitionId.getPartitionIds()));
+			}
+		}
+
+		cq.multiselect(selections);
+		cq.where(cb.and(predicates.toArray(new Predicate[0])));
+
+		TypedQuery<Tuple> query = myEntityManager.createQuery(cq);
+
+		/*
+		 * If we have 10 unique conditional URLs we're resolving, each one should
+		 * resolve to 0..1 resources if they are valid as conditional URLs. So we would
+		 * expect this query to return about 0..10 rows, since conditional URLs for all
+		 * conditional operations except DELETE (which isn't being applied here) are
+		 * only allowed to resolve to 0..1 resources. When several parameters are joined
+		 * a resource can also produce rows for hash combinations that belong to no URL,
+		 * so we leave some headroom for those.
+		 *
+		 * If a conditional URL matches 2+ resources that is an error, which will be
+		 * reported when the entry itself is processed. This limit is here for safety just to
+		 * ensure that if someone uses a conditional URL that matches a million resources,
+		 * we don't do a super-expensive fetch.
+		 */
+		int maxResults = hashesForColumn.get(0).size() + 1;
+		if (columns.size() > 1) {
+			maxResults = (theInputParameters.size() * 2) + 1;
+		}
+		query.setMaxResults(maxResults);
+
+		List<Tuple> results = query.getResultList();
+		if (results.size() >= maxResults) {
+			// We can't tell which URLs have been cut off, so leave them all for the normal resolution path
+			ourLog.debug("Too many matches pre-fetching {} match URLs, skipping", theInputParameters.size());
+			return;
+		}
+
+		SetMultimap<MatchUrlToResolve, Long> matchUrlToPids = LinkedHashMultimap.create();
+		for (Tuple nextResult : results) {
+			Long nextResourcePid = nextResult.get(0, Long.class);
+			List<Long> nextHashes = new ArrayList<>(columns.size());
+			for (int i = 0; i < columns.size(); i++) {
+				nextHashes.add(nextResult.get(i + 1, Long.class));
+			}
+			for (MatchUrlToResolve matchUrl : hashesToMatchUrl.get(nextHashes)) {
+				matchUrlToPids.put(matchUrl, nextResourcePid);
+			}
+		}
+
+		for (MatchUrlToResolve matchUrl : theInputParameters) {
+			Set<Long> pids = matchUrlToPids.get(matchUrl);
+			if (pids.isEmpty()) {
+				ourLog.debug("Was unable to match url {} from database", matchUrl.myRequestUrl);
+				theTransactionDetails.addResolvedMatchUrl(
+						myFhirContext, matchUrl.myRequestUrl, TransactionDetails.NOT_FOUND);
+			} else if (pids.size() == 1) {
+				Long resourcePid = pids.iterator().next();
+				ourLog.debug("Matched url {} from database", matchUrl.myRequestUrl);
+				if (matchUrl.myShouldPreFetchResourceBody) {
+					theOutputPidsToLoadFully.add(resourcePid);
+				}
+				myMatchResourceUrlService.matchUrlResolved(
+						theTransactionDetails,
+						matchUrl.myResourceDefinition.getName(),
+						matchUrl.myRequestUrl,
+						JpaPid.fromId(resourcePid));
+				theTransactionDetails.addResolvedMatchUrl(
+						myFhirContext, matchUrl.myRequestUrl, JpaPid.fromId(resourcePid));
 			}
 		}
 	}
@@ -463,7 +477,7 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			if (theShouldPreFetchResourceBody) {
 				theOutputIdsToPreFetch.add(cachedId.getId());
 			}
-		} else if (SINGLE_PARAMETER_MATCH_URL_PATTERN.matcher(theRequestUrl).matches()) {
+		} else if (SIMPLE_MATCH_URL_PATTERN.matcher(theRequestUrl).matches()) {
 			RuntimeResourceDefinition resourceDefinition = myFhirContext.getResourceDefinition(theResourceType);
 			SearchParameterMap matchUrlSearchMap =
 					myMatchUrlService.translateMatchUrl(theRequestUrl, resourceDefinition);
@@ -490,52 +504,6 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		return retVal;
 	}
 
-	/**
-	 * Given a token parameter, build the query predicate based on its hash. Uses system and value if both are available, otherwise just value.
-	 * If neither are available, it returns null.
-	 */
-	@Nullable
-	private void buildHashPredicateFromTokenParam(
-			TokenParam theTokenParam,
-			RequestPartitionId theRequestPartitionId,
-			MatchUrlToResolve theMatchUrl,
-			Set<Long> theSysAndValuePredicates,
-			Set<Long> theValuePredicates) {
-		if (isNotBlank(theTokenParam.getValue()) && isNotBlank(theTokenParam.getSystem())) {
-			theMatchUrl.myHashSystemAndValue = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(
-					myPartitionSettings,
-					theRequestPartitionId,
-					theMatchUrl.myResourceDefinition.getName(),
-					theMatchUrl.myMatchUrlSearchMap.keySet().iterator().next(),
-					theTokenParam.getSystem(),
-					theTokenParam.getValue());
-			theSysAndValuePredicates.add(theMatchUrl.myHashSystemAndValue);
-		} else if (isNotBlank(theTokenParam.getValue())) {
-			theMatchUrl.myHashValue = ResourceIndexedSearchParamToken.calculateHashValue(
-					myPartitionSettings,
-					theRequestPartitionId,
-					theMatchUrl.myResourceDefinition.getName(),
-					theMatchUrl.myMatchUrlSearchMap.keySet().iterator().next(),
-					theTokenParam.getValue());
-			theValuePredicates.add(theMatchUrl.myHashValue);
-		}
-	}
-
-	private ListMultimap<Long, MatchUrlToResolve> buildHashToSearchMap(
-			List<MatchUrlToResolve> searchParameterMapsToResolve, String theIndex) {
-		ListMultimap<Long, MatchUrlToResolve> hashToSearch = ArrayListMultimap.create();
-		// Build a lookup map so we don't have to iterate over the searches repeatedly.
-		for (MatchUrlToResolve nextSearchParameterMap : searchParameterMapsToResolve) {
-			if (nextSearchParameterMap.myHashSystemAndValue != null && theIndex.equals("myHashSystemAndValue")) {
-				hashToSearch.put(nextSearchParameterMap.myHashSystemAndValue, nextSearchParameterMap);
-			}
-			if (nextSearchParameterMap.myHashValue != null && theIndex.equals("myHashValue")) {
-				hashToSearch.put(nextSearchParameterMap.myHashValue, nextSearchParameterMap);
-			}
-		}
-		return hashToSearch;
-	}
-
 	@Override
 	protected void flushSession(Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome) {
 		try {
@@ -585,15 +553,40 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		myApplicationContext = theAppCtx;
 	}
 
+	/**
+	 * Index hash columns that a single match URL parameter value can be resolved against
+	 */
+	private enum MatchUrlHashColumnEnum {
+		TOKEN_SYSTEM_AND_VALUE(ResourceIndexedSearchParamToken.class, "myHashSystemAndValue"),
+		TOKEN_VALUE(ResourceIndexedSearchParamToken.class, "myHashValue"),
+		URI(ResourceIndexedSearchParamUri.class, "myHashUri");
+
+		private final Class<?> myEntityType;
+		private final String myHashAttribute;
+
+		MatchUrlHashColumnEnum(Class<?> theEntityType, String theHashAttribute) {
+			myEntityType = theEntityType;
+			myHashAttribute = theHashAttribute;
+		}
+
+		public Class<?> getEntityType() {
+			return myEntityType;
+		}
+
+		public String getHashAttribute() {
+			return myHashAttribute;
+		}
+	}
+
 	private static class MatchUrlToResolve {
 
 		private final String myRequestUrl;
 		private final SearchParameterMap myMatchUrlSearchMap;
 		private final RuntimeResourceDefinition myResourceDefinition;
 		private final boolean myShouldPreFetchResourceBody;
-		public boolean myResolved;
-		private Long myHashValue;
-		private Long myHashSystemAndValue;
+		private final List<MatchUrlHashColumnEnum> myHashColumns = new ArrayList<>();
+		private final List<Long> myHashes = new ArrayList<>();
+		private String myShapeKey;
 
 		public MatchUrlToResolve(
 				String theRequestUrl,
@@ -606,8 +599,69 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 			myShouldPreFetchResourceBody = theShouldPreFetchResourceBody;
 		}
 
-		public void setResolved(boolean theResolved) {
-			myResolved = theResolved;
+		/**
+		 * Calculates the index hash for every parameter in the match URL, along with a key describing
+		 * the shape of the URL (resource type, parameter names and hash columns). Parameters are
+		 * sorted by name so that URLs with the same parameters in a different order share a shape.
+		 *
+		 * @return Returns <code>false</code> if any parameter can't be resolved using a single hash,
+		 * in which case the URL will be resolved by a regular search when its entry is processed
+		 */
+		public boolean calculateHashes(PartitionSettings thePartitionSettings, RequestPartitionId thePartitionId) {
+			if (myMatchUrlSearchMap.isEmpty()) {
+				return false;
+			}
+			String resourceType = myResourceDefinition.getName();
+			StringBuilder shapeKey = new StringBuilder(resourceType);
+			for (String nextParamName : new TreeSet<>(myMatchUrlSearchMap.keySet())) {
+				for (List<IQueryParameterType> nextOrList : myMatchUrlSearchMap.get(nextParamName)) {
+					if (nextOrList.size() != 1) {
+						return false;
+					}
+					IQueryParameterType param = nextOrList.get(0);
+					MatchUrlHashColumnEnum column;
+					long hash;
+					if (param instanceof TokenParam) {
+						TokenParam tokenParam = (TokenParam) param;
+						if (tokenParam.getModifier() != null || isBlank(tokenParam.getValue())) {
+							return false;
+						}
+						if (isNotBlank(tokenParam.getSystem())) {
+							column = MatchUrlHashColumnEnum.TOKEN_SYSTEM_AND_VALUE;
+							hash = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(
+									thePartitionSettings,
+									thePartitionId,
+									resourceType,
+									nextParamName,
+									tokenParam.getSystem(),
+									tokenParam.getValue());
+						} else {
+							column = MatchUrlHashColumnEnum.TOKEN_VALUE;
+							hash = ResourceIndexedSearchParamToken.calculateHashValue(
+									thePartitionSettings,
+									thePartitionId,
+									resourceType,
+									nextParamName,
+									tokenParam.getValue());
+						}
+					} else if (param instanceof UriParam) {
+						UriParam uriParam = (UriParam) param;
+						if (uriParam.getQualifier() != null || isBlank(uriParam.getValue())) {
+							return false;
+						}
+						column = MatchUrlHashColumnEnum.URI;
+						hash = ResourceIndexedSearchParamUri.calculateHashUri(
+								thePartitionSettings, thePartitionId, resourceType, nextParamName, uriParam.getValue());
+					} else {
+						return false;
+					}
+					myHashColumns.add(column);
+					myHashes.add(hash);
+					shapeKey.append('|').append(nextParamName).append(':').append(column);
+				}
+			}
+			myShapeKey = shapeKey.toString();
+			return true;
 		}
 	}
 }
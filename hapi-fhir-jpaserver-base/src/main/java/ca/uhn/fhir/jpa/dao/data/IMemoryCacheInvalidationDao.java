@@ -0,0 +1,46 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.model.entity.MemoryCacheInvalidationEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+
+public interface IMemoryCacheInvalidationDao
+		extends JpaRepository<MemoryCacheInvalidationEntity, Long>, IHapiFhirJpaRepository {
+
+	@Query("SELECT e FROM MemoryCacheInvalidationEntity e WHERE e.myCreated > :cutoff AND e.myNodeId <> :nodeid"
+			+ " AND e.myId > :afterid ORDER BY e.myId ASC")
+	Slice<MemoryCacheInvalidationEntity> findFromOtherNodesCreatedAfter(
+			@Param("cutoff") Date theCutoff,
+			@Param("nodeid") String theNodeId,
+			@Param("afterid") long theAfterId,
+			Pageable thePage);
+
+	@Modifying
+	@Query("DELETE FROM MemoryCacheInvalidationEntity e WHERE e.myCreated < :cutoff")
+	int deleteCreatedBefore(@Param("cutoff") Date theCutoff);
+}
@@ -70,6 +70,9 @@ public interface IResourceHistoryTableDao extends JpaRepository<ResourceHistoryT
 			+ "WHERE v.myResourceVersion <> t.myVersion")
 	Slice<Long> findIdsOfPreviousVersionsOfResources(Pageable thePage);
 
+	@Query("SELECT v FROM ResourceHistoryTable v WHERE v.myResourceType = :restype ORDER BY v.myUpdated DESC")
+	Slice<ResourceHistoryTable> findNewestForResourceType(Pageable thePage, @Param("restype") String theResourceType);
+
 	@Modifying
 	@Query(
 			"UPDATE ResourceHistoryTable r SET r.myResourceVersion = :newVersion WHERE r.myResourceId = :id AND r.myResourceVersion = :oldVersion")
@@ -0,0 +1,57 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexPendingEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface IResourceIndexPendingDao
+		extends JpaRepository<ResourceIndexPendingEntity, Long>, IHapiFhirJpaRepository {
+
+	@Query("SELECT p FROM ResourceIndexPendingEntity p WHERE COALESCE(p.myFailureCount, 0) < :maxfail"
+			+ " ORDER BY p.myCreated ASC")
+	Slice<ResourceIndexPendingEntity> findOldest(@Param("maxfail") int theMaxFailures, Pageable thePage);
+
+	@Query("SELECT COUNT(p) FROM ResourceIndexPendingEntity p WHERE p.myResourceType = :restype"
+			+ " AND COALESCE(p.myFailureCount, 0) < :maxfail")
+	long countForResourceType(@Param("restype") String theResourceType, @Param("maxfail") int theMaxFailures);
+
+	/**
+	 * Also clears any failures, so that a parked resource is retried once it is written again
+	 */
+	@Modifying
+	@Query("UPDATE ResourceIndexPendingEntity p SET p.myResourceVersion = :resver, p.myFailureCount = 0"
+			+ " WHERE p.myResourceId = :resid")
+	int updateVersion(@Param("resid") Long theResourceId, @Param("resver") long theResourceVersion);
+
+	@Modifying
+	@Query("UPDATE ResourceIndexPendingEntity p SET p.myFailureCount = COALESCE(p.myFailureCount, 0) + 1"
+			+ " WHERE p.myResourceId = :resid")
+	int incrementFailureCount(@Param("resid") Long theResourceId);
+
+	@Modifying
+	@Query("DELETE FROM ResourceIndexPendingEntity p WHERE p.myResourceId = :resid AND p.myResourceVersion <= :resver")
+	int deleteIfIndexed(@Param("resid") Long theResourceId, @Param("resver") long theIndexedVersion);
+}
@@ -21,14 +21,17 @@ package ca.uhn.fhir.jpa.dao.index;
 
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.search.SearchParamStatisticsSvc;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.util.AddRemoveCount;
 import com.google.common.annotations.VisibleForTesting;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.PersistenceContextType;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -45,6 +48,9 @@ public class DaoSearchParamSynchronizer {
 	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
 	protected EntityManager myEntityManager;
 
+	@Autowired(required = false)
+	private SearchParamStatisticsSvc mySearchParamStatisticsSvc;
+
 	public AddRemoveCount synchronizeSearchParamsToDatabase(
 			ResourceIndexedSearchParams theParams,
 			ResourceTable theEntity,
@@ -114,7 +120,12 @@ public class DaoSearchParamSynchronizer {
 
 		List<T> paramsToRemove = subtract(theExistingParams, newParams);
 		List<T> paramsToAdd = subtract(newParams, theExistingParams);
-		tryToReuseIndexEntities(paramsToRemove, paramsToAdd);
+		if (mySearchParamStatisticsSvc != null) {
+			// Must happen before the rows to remove are reused for new values
+			mySearchParamStatisticsSvc.recordChanges(paramsToAdd, paramsToRemove);
+		}
+		Session session = myEntityManager.unwrap(Session.class);
+		tryToReuseIndexEntities(session, paramsToRemove, paramsToAdd);
 
 		for (T next : paramsToRemove) {
 			if (!myEntityManager.contains(next)) {
@@ -126,7 +137,21 @@ public class DaoSearchParamSynchronizer {
 			myEntityManager.remove(next);
 		}
 		for (T next : paramsToAdd) {
-			myEntityManager.merge(next);
+			if (next.getId() != null) {
+				// A reused row, which will be written as an update
+				myEntityManager.merge(next);
+				continue;
+			}
+
+			/*
+			 * Brand new rows don't need to be copied into a managed instance, and since index
+			 * rows are never modified once written (other than by this class reusing them, which
+			 * makes them writable again) we mark them as read-only. This means that Hibernate
+			 * doesn't keep a snapshot of them or dirty-check them every time the session is
+			 * flushed, which adds up quickly in large transactions.
+			 */
+			myEntityManager.persist(next);
+			session.setReadOnly(next, true);
 		}
 
 		// TODO:  are there any unintended consequences to fixing this bug?
@@ -141,11 +166,12 @@ public class DaoSearchParamSynchronizer {
 	 * otherwise been added. In other words, we're trying to replace
 	 * "one delete + one insert" with "one update"
 	 *
+	 * @param theSession         The current session
 	 * @param theIndexesToRemove The rows that would be removed
 	 * @param theIndexesToAdd    The rows that would be added
 	 */
 	private <T extends BaseResourceIndex> void tryToReuseIndexEntities(
-			List<T> theIndexesToRemove, List<T> theIndexesToAdd) {
+			Session theSession, List<T> theIndexesToRemove, List<T> theIndexesToAdd) {
 		for (int addIndex = 0; addIndex < theIndexesToAdd.size(); addIndex++) {
 
 			// If there are no more rows to remove, there's nothing we can reuse
@@ -160,6 +186,9 @@ public class DaoSearchParamSynchronizer {
 
 			// Take a row we were going to remove, and repurpose its ID
 			T entityToReuse = theIndexesToRemove.remove(theIndexesToRemove.size() - 1);
+			if (myEntityManager.contains(entityToReuse)) {
+				theSession.setReadOnly(entityToReuse, false);
+			}
 			entityToReuse.copyMutableValuesFrom(targetEntity);
 			theIndexesToAdd.set(addIndex, entityToReuse);
 		}
@@ -117,6 +117,25 @@ public class SearchParamWithInlineReferencesExtractor extends BaseSearchParamWit
 				ISearchParamExtractor.ALL_PARAMS);
 	}
 
+	/**
+	 * Performs the parts of {@link #populateFromResource} which can cause the write to fail
+	 * or which modify the resource body (inline match URL substitution and reference
+	 * validation), without extracting any index rows. Used for writes whose indexing is
+	 * deferred.
+	 *
+	 * @since 7.2.0
+	 */
+	public void resolveReferencesWithoutIndexing(
+			RequestPartitionId theRequestPartitionId,
+			TransactionDetails theTransactionDetails,
+			ResourceTable theEntity,
+			IBaseResource theResource,
+			RequestDetails theRequest) {
+		extractInlineReferences(theRequest, theResource, theTransactionDetails);
+		mySearchParamExtractorService.validateResourceLinks(
+				theRequestPartitionId, theRequest, theEntity, theResource, theTransactionDetails);
+	}
+
 	@Nullable
 	private Collection<? extends BaseResourceIndexedSearchParam> findParameterIndexes(
 			ResourceIndexedSearchParams theParams, RuntimeSearchParam nextCompositeOf) {
@@ -59,6 +59,7 @@ import java.util.Date;
 		+ "               h.res_updated       as res_updated,    "
 		+ "               h.res_text          as res_text,       "
 		+ "               h.res_text_vc       as res_text_vc,    "
+		+ "               h.res_text_bin      as res_text_bin,   "
 		+ "               h.res_encoding      as res_encoding,   "
 		+ "               h.PARTITION_ID      as PARTITION_ID,   "
 		+ "               p.SOURCE_URI        as PROV_SOURCE_URI,"
@@ -116,6 +117,9 @@ public class ResourceSearchView implements IBaseResourceEntity, Serializable {
 	@Column(name = "RES_TEXT_VC")
 	private String myResourceTextVc;
 
+	@Column(name = "RES_TEXT_BIN")
+	private byte[] myResourceBinary;
+
 	@Column(name = "RES_ENCODING")
 	@Enumerated(EnumType.STRING)
 	private ResourceEncodingEnum myEncoding;
@@ -236,6 +240,16 @@ public class ResourceSearchView implements IBaseResourceEntity, Serializable {
 		return myResource;
 	}
 
+	/**
+	 * @see ResourceHistoryTable#getStoredResourceBytes()
+	 */
+	public byte[] getStoredResourceBytes() {
+		if (myEncoding != null && myEncoding.isStoredInBinaryColumn()) {
+			return myResourceBinary;
+		}
+		return myResource;
+	}
+
 	public ResourceEncodingEnum getEncoding() {
 		return myEncoding;
 	}
@@ -164,6 +164,9 @@ public class Search implements ICachedSearchDetails, Serializable {
 	@Column(name = "TOTAL_COUNT", nullable = true)
 	private Integer myTotalCount;
 
+	@Column(name = "ESTIMATED_TOTAL", nullable = true)
+	private Integer myEstimatedTotal;
+
 	@Column(name = SEARCH_UUID, length = SEARCH_UUID_COLUMN_LENGTH, nullable = false, updatable = false)
 	private String myUuid;
 
@@ -396,6 +399,24 @@ public class Search implements ICachedSearchDetails, Serializable {
 		myTotalCount = theTotalCount;
 	}
 
+	/**
+	 * The estimated number of matching resources, for searches using <code>_total=estimated</code>.
+	 * This is computed once when the search starts, and is <code>null</code> if no estimate
+	 * could be made.
+	 *
+	 * @since 7.2.0
+	 */
+	public Integer getEstimatedTotal() {
+		return myEstimatedTotal;
+	}
+
+	/**
+	 * @since 7.2.0
+	 */
+	public void setEstimatedTotal(Integer theEstimatedTotal) {
+		myEstimatedTotal = theEstimatedTotal;
+	}
+
 	@Override
 	public String getUuid() {
 		return myUuid;
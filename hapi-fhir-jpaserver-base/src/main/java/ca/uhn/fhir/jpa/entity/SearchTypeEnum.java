@@ -23,4 +23,9 @@ public enum SearchTypeEnum {
 	EVERYTHING,
 	SEARCH,
 	HISTORY,
+	/**
+	 * A search which is paged using keyset (seek) pagination. No results are stored for
+	 * searches of this type, the entity only holds the search parameters.
+	 */
+	KEYSET,
 }
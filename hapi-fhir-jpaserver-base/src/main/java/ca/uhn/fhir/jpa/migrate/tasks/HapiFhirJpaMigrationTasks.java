@@ -118,6 +118,92 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		init660();
 		init680();
 		init700();
+		init720();
+	}
+
+	protected void init720() {
+		/* ************************************************
+		 * Start of 7.2 migrations
+		 *********************************************** */
+
+		Builder version = forVersion(VersionEnum.V7_2_0);
+
+		// Preset dictionaries for the JSOND resource encoding
+		version.addIdGenerator("20240401.1", "SEQ_RES_COMPRESS_DICT");
+		Builder.BuilderAddTableByColumns compressionDictionary =
+				version.addTableByColumns("20240401.2", "HFJ_RES_COMPRESS_DICT", "PID");
+		compressionDictionary.addColumn("PID").nonNullable().type(ColumnTypeEnum.LONG);
+		compressionDictionary.addColumn("RES_TYPE").nonNullable().type(ColumnTypeEnum.STRING, 40);
+		compressionDictionary.addColumn("DICT_VERSION").nonNullable().type(ColumnTypeEnum.INT);
+		compressionDictionary.addColumn("DICT_DATA").nonNullable().type(ColumnTypeEnum.BLOB);
+		compressionDictionary.addColumn("SAMPLE_COUNT").nonNullable().type(ColumnTypeEnum.INT);
+		compressionDictionary.addColumn("CREATED_TIME").nonNullable().type(ColumnTypeEnum.DATE_TIMESTAMP);
+		compressionDictionary
+				.addIndex("20240401.3", "IDX_RESCOMPDICT_TYPE_VER")
+				.unique(true)
+				.withColumns("RES_TYPE", "DICT_VERSION");
+
+		// Queue of resources written with deferred indexing
+		Builder.BuilderAddTableByColumns indexPending =
+				version.addTableByColumns("20240402.1", "HFJ_RES_IDX_PENDING", "RES_ID");
+		indexPending.addColumn("RES_ID").nonNullable().type(ColumnTypeEnum.LONG);
+		indexPending.addColumn("RES_TYPE").nonNullable().type(ColumnTypeEnum.STRING, 40);
+		indexPending.addColumn("RES_VER").nonNullable().type(ColumnTypeEnum.LONG);
+		indexPending.addColumn("CREATED_TIME").nonNullable().type(ColumnTypeEnum.DATE_TIMESTAMP);
+		indexPending.addIndex("20240402.2", "IDX_RESIDXPEND_TYPE").unique(false).withColumns("RES_TYPE");
+
+		// Invalidations of the in-memory caches, polled by the other nodes
+		version.addIdGenerator("20240403.1", "SEQ_CACHE_INVALIDATION");
+		Builder.BuilderAddTableByColumns cacheInvalidation =
+				version.addTableByColumns("20240403.2", "HFJ_CACHE_INVALIDATION", "PID");
+		cacheInvalidation.addColumn("PID").nonNullable().type(ColumnTypeEnum.LONG);
+		cacheInvalidation.addColumn("NODE_ID").nonNullable().type(ColumnTypeEnum.STRING, 40);
+		cacheInvalidation.addColumn("CREATED_TIME").nonNullable().type(ColumnTypeEnum.DATE_TIMESTAMP);
+		cacheInvalidation.addColumn("MESSAGE_TEXT").nonNullable().type(ColumnTypeEnum.TEXT);
+		cacheInvalidation
+				.addIndex("20240403.3", "IDX_CACHEINVAL_CREATED")
+				.unique(false)
+				.withColumns("CREATED_TIME");
+
+		// Hash of the resource contents, used to detect updates with no changes
+		version.onTable("HFJ_RES_VER")
+				.addColumn("20240404.1", "RES_CONTENT_HASH")
+				.nullable()
+				.type(ColumnTypeEnum.STRING, 32);
+
+		// Failed deferred indexing attempts, so that a resource which keeps failing stops being retried
+		version.onTable("HFJ_RES_IDX_PENDING")
+				.addColumn("20240405.1", "FAILURE_COUNT")
+				.nullable()
+				.type(ColumnTypeEnum.INT);
+
+		// The deferred indexing job polls the pending rows oldest first
+		version.onTable("HFJ_RES_IDX_PENDING")
+				.addIndex("20240406.1", "IDX_RESIDXPEND_CREATED")
+				.unique(false)
+				.withColumns("CREATED_TIME");
+
+		// Resource bodies in a binary encoding, stored outside of the RES_TEXT large object column
+		version.onTable("HFJ_RES_VER")
+				.addColumn("20240407.1", "RES_TEXT_BIN")
+				.nullable()
+				.type(ColumnTypeEnum.BINARY);
+
+		// Search parameter statistics, rebuilt by one node and loaded by all of them
+		Builder.BuilderAddTableByColumns paramStatistics =
+				version.addTableByColumns("20240408.1", "HFJ_SPIDX_STATS", "HASH_IDENTITY");
+		paramStatistics.addColumn("HASH_IDENTITY").nonNullable().type(ColumnTypeEnum.LONG);
+		paramStatistics.addColumn("RES_TYPE").nonNullable().type(ColumnTypeEnum.STRING, 40);
+		paramStatistics.addColumn("SP_NAME").nonNullable().type(ColumnTypeEnum.STRING, 100);
+		paramStatistics.addColumn("ROW_COUNT").nonNullable().type(ColumnTypeEnum.LONG);
+		paramStatistics.addColumn("VALUE_SKETCH").nullable().type(ColumnTypeEnum.BINARY);
+		paramStatistics.addColumn("UPDATED_TIME").nonNullable().type(ColumnTypeEnum.DATE_TIMESTAMP);
+
+		// The _total=estimated estimate, computed once per search instead of on every page request
+		version.onTable("HFJ_SEARCH")
+				.addColumn("20240409.1", "ESTIMATED_TOTAL")
+				.nullable()
+				.type(ColumnTypeEnum.INT);
 	}
 
 	protected void init700() {
@@ -20,6 +20,8 @@
 package ca.uhn.fhir.jpa.provider;
 
 import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.dao.ResourceCompressionDictionarySvc;
+import ca.uhn.fhir.jpa.search.SearchParamStatisticsSvc;
 import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
 import ca.uhn.fhir.jpa.term.api.ITermReadSvc;
 import ca.uhn.fhir.jpa.term.api.ReindexTerminologyResult;
@@ -69,6 +71,12 @@ public abstract class BaseJpaSystemProvider<T, MT> extends BaseStorageSystemProv
 	@Autowired
 	private ITermReadSvc myTermReadSvc;
 
+	@Autowired(required = false)
+	private SearchParamStatisticsSvc mySearchParamStatisticsSvc;
+
+	@Autowired(required = false)
+	private ResourceCompressionDictionarySvc myResourceCompressionDictionarySvc;
+
 	public BaseJpaSystemProvider() {
 		// nothing
 	}
@@ -77,6 +85,14 @@ public abstract class BaseJpaSystemProvider<T, MT> extends BaseStorageSystemProv
 		return myResourceReindexingSvc;
 	}
 
+	protected SearchParamStatisticsSvc getSearchParamStatisticsSvc() {
+		return mySearchParamStatisticsSvc;
+	}
+
+	protected ResourceCompressionDictionarySvc getResourceCompressionDictionarySvc() {
+		return myResourceCompressionDictionarySvc;
+	}
+
 	@History
 	public IBundleProvider historyServer(
 			HttpServletRequest theRequest,
@@ -19,17 +19,23 @@
  */
 package ca.uhn.fhir.jpa.provider;
 
+import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
+import ca.uhn.fhir.jpa.dao.ResourceCompressionDictionarySvc;
+import ca.uhn.fhir.jpa.model.entity.ResourceCompressionDictionaryEntity;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.search.SearchParamStatisticsSvc;
 import ca.uhn.fhir.model.api.annotation.Description;
 import ca.uhn.fhir.rest.annotation.Operation;
 import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.Transaction;
 import ca.uhn.fhir.rest.annotation.TransactionParam;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.provider.ProviderConstants;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.util.ParametersUtil;
+import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseParameters;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -40,6 +46,8 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public final class JpaSystemProvider<T, MT> extends BaseJpaSystemProvider<T, MT> {
@@ -119,6 +127,78 @@ public final class JpaSystemProvider<T, MT> extends BaseJpaSystemProvider<T, MT>
 		return retVal;
 	}
 
+	@Operation(name = JpaConstants.OPERATION_SEARCH_PARAM_STATS, idempotent = true)
+	@Description(
+			shortDefinition =
+					"Provides the approximate search parameter index statistics which are used when planning searches")
+	public IBaseParameters searchParamStats(
+			@OperationParam(name = "resourceType", min = 0, max = 1, typeName = "code")
+					IPrimitiveType<String> theResourceType) {
+		IBaseParameters retVal = ParametersUtil.newInstance(getContext());
+
+		SearchParamStatisticsSvc statisticsSvc = getSearchParamStatisticsSvc();
+		boolean enabled = statisticsSvc != null && statisticsSvc.isEnabled();
+		ParametersUtil.addParameterToParametersBoolean(getContext(), retVal, "enabled", enabled);
+		if (!enabled) {
+			return retVal;
+		}
+		ParametersUtil.addParameterToParametersBoolean(getContext(), retVal, "warm", statisticsSvc.isWarm());
+
+		String resourceType = theResourceType != null ? defaultIfBlank(theResourceType.getValueAsString(), null) : null;
+		for (SearchParamStatisticsSvc.ParamStatistics next : statisticsSvc.getStatistics(resourceType)) {
+			IBase statistic = ParametersUtil.addParameterToParameters(getContext(), retVal, "statistic");
+			ParametersUtil.addPartCode(getContext(), statistic, "resourceType", next.getResourceType());
+			ParametersUtil.addPartString(getContext(), statistic, "paramName", next.getParamName());
+			ParametersUtil.addPartString(
+					getContext(), statistic, "hashIdentity", Long.toString(next.getHashIdentity()));
+			ParametersUtil.addPartInteger(getContext(), statistic, "rowCount", toInteger(next.getRowCount()));
+		}
+
+		return retVal;
+	}
+
+	@Operation(
+			name = JpaConstants.OPERATION_TRAIN_COMPRESSION_DICTIONARY,
+			idempotent = false,
+			returnParameters = {
+				@OperationParam(name = "resourceType", typeName = "code"),
+				@OperationParam(name = "version", typeName = "integer"),
+				@OperationParam(name = "size", typeName = "integer"),
+				@OperationParam(name = "sampleCount", typeName = "integer")
+			})
+	@Description(
+			shortDefinition =
+					"Trains a new compression dictionary for a resource type from a sample of its stored versions, for use by the JSOND resource encoding")
+	public IBaseParameters trainCompressionDictionary(
+			@OperationParam(name = "resourceType", min = 1, max = 1, typeName = "code")
+					IPrimitiveType<String> theResourceType,
+			@OperationParam(name = "sampleSize", min = 0, max = 1, typeName = "integer")
+					IPrimitiveType<Integer> theSampleSize) {
+		String resourceType = theResourceType != null ? theResourceType.getValueAsString() : null;
+		if (isBlank(resourceType) || !getContext().getResourceTypes().contains(resourceType)) {
+			throw new InvalidRequestException(Msg.code(2514) + "Invalid resource type: " + resourceType);
+		}
+		int sampleSize = ResourceCompressionDictionarySvc.DEFAULT_SAMPLE_SIZE;
+		if (theSampleSize != null && theSampleSize.getValue() != null) {
+			sampleSize = theSampleSize.getValue();
+		}
+
+		ResourceCompressionDictionaryEntity dictionary =
+				getResourceCompressionDictionarySvc().trainDictionary(resourceType, sampleSize);
+
+		IBaseParameters retVal = ParametersUtil.newInstance(getContext());
+		ParametersUtil.addParameterToParametersCode(getContext(), retVal, "resourceType", resourceType);
+		ParametersUtil.addParameterToParametersInteger(getContext(), retVal, "version", dictionary.getVersion());
+		ParametersUtil.addParameterToParametersInteger(getContext(), retVal, "size", dictionary.getDictionary().length);
+		ParametersUtil.addParameterToParametersInteger(
+				getContext(), retVal, "sampleCount", dictionary.getSampleCount());
+		return retVal;
+	}
+
+	private static int toInteger(long theValue) {
+		return (int) Math.min(theValue, Integer.MAX_VALUE);
+	}
+
 	@Operation(
 			name = ProviderConstants.OPERATION_META,
 			idempotent = true,
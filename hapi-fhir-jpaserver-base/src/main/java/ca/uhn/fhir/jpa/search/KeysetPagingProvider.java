@@ -0,0 +1,56 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Paging provider which supports keyset paginated searches (see {@link KeysetPagingSvc}) in
+ * addition to the normal database backed searches. Keyset pages are addressed using a page ID
+ * which encodes the position of the last row of the previous page.
+ * <p>
+ * Keyset pagination is only used if this provider is registered with the server and
+ * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setKeysetPagingEnabled(boolean)} is enabled.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class KeysetPagingProvider extends DatabaseBackedPagingProvider {
+
+	@Autowired
+	private KeysetPagingSvc myKeysetPagingSvc;
+
+	/**
+	 * Constructor
+	 */
+	public KeysetPagingProvider() {
+		super();
+	}
+
+	@Override
+	public IBundleProvider retrieveResultList(
+			@Nullable RequestDetails theRequestDetails, @Nonnull String theSearchId, String thePageId) {
+		return myKeysetPagingSvc.fetchPage(theRequestDetails, theSearchId, thePageId);
+	}
+}
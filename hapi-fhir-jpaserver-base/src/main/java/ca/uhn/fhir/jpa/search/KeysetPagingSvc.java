@@ -0,0 +1,478 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.interceptor.model.ReadPartitionIdRequestDetails;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.dao.IResultIterator;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
+import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
+import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
+import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
+import ca.uhn.fhir.jpa.searchparam.KeysetPosition;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.interceptor.ServerInterceptorUtil;
+import ca.uhn.fhir.rest.server.method.ResponsePage;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Executes searches using keyset (seek) pagination. Instead of storing the result PIDs of a
+ * search in the HFJ_SEARCH_RESULT table and paging through them with an offset, each page is
+ * fetched with a fresh query which seeks past the last row of the previous page, so the cost
+ * of a page does not depend on how deep into the result set it is.
+ * <p>
+ * Only a {@link Search} entity holding the search parameters is persisted, so that page links
+ * can refer to the search without exposing the parameters to the client.
+ * </p>
+ *
+ * @see JpaStorageSettings#setKeysetPagingEnabled(boolean)
+ * @see KeysetPagingProvider
+ * @since 7.2.0
+ */
+public class KeysetPagingSvc {
+
+	/**
+	 * Page ID used for the first page of a keyset search
+	 */
+	public static final String FIRST_PAGE_ID = "first";
+
+	private static final Logger ourLog = LoggerFactory.getLogger(KeysetPagingSvc.class);
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private FhirContext myContext;
+
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+
+	@Autowired
+	private SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+
+	@Autowired
+	private HapiTransactionService myTxService;
+
+	@Autowired
+	private IInterceptorBroadcaster myInterceptorBroadcaster;
+
+	@Autowired
+	private EntityManager myEntityManager;
+
+	@Autowired
+	private ISearchCacheSvc mySearchCacheSvc;
+
+	@Autowired
+	private IRequestPartitionHelperSvc myRequestPartitionHelperSvc;
+
+	/**
+	 * Returns <code>true</code> if keyset pagination is enabled, the server is using a
+	 * {@link KeysetPagingProvider}, and the given search can be paged using a keyset.
+	 */
+	public boolean isKeysetCandidate(SearchParameterMap theParams, @Nullable RequestDetails theRequestDetails) {
+		if (!myStorageSettings.isKeysetPagingEnabled()) {
+			return false;
+		}
+		if (theRequestDetails == null
+				|| theRequestDetails.getServer() == null
+				|| !(theRequestDetails.getServer().getPagingProvider() instanceof KeysetPagingProvider)) {
+			return false;
+		}
+		if (theParams.getEverythingMode() != null
+				|| theParams.isLastN()
+				|| theParams.getOffset() != null
+				|| theParams.isLoadSynchronous()
+				|| theParams.getLoadSynchronousUpTo() != null
+				|| theParams.getNearDistanceParam() != null
+				|| theParams.containsKey(Constants.PARAM_CONTENT)
+				|| theParams.containsKey(Constants.PARAM_TEXT)) {
+			return false;
+		}
+		if (theParams.getSummaryMode() == SummaryEnum.COUNT) {
+			return false;
+		}
+
+		// Keyset pages don't keep a running count, so they can't report a total or stop after a maximum
+		SearchTotalModeEnum totalMode = theParams.getSearchTotalMode() != null
+				? theParams.getSearchTotalMode()
+				: myStorageSettings.getDefaultTotalMode();
+		if ((totalMode != null && totalMode != SearchTotalModeEnum.NONE)
+				|| myStorageSettings.getFetchSizeDefaultMaximum() != null) {
+			return false;
+		}
+
+		// Searches using the fulltext index may not be resolved by a query which selects RES_UPDATED
+		if (myStorageSettings.isAdvancedHSearchIndexing()) {
+			return false;
+		}
+		return toKeysetSort(theParams.getSort()) != null;
+	}
+
+	/**
+	 * Registers a new keyset search and returns a bundle provider for its first page
+	 *
+	 * @param theSearch A search entity which has already been populated from the search parameters
+	 */
+	public IBundleProvider registerSearch(
+			Search theSearch,
+			SearchParameterMap theParams,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		theSearch.setSearchType(SearchTypeEnum.KEYSET);
+		theSearch.setStatus(SearchStatusEnum.FINISHED);
+		theSearch.setSearchParameterMap(theParams);
+		Search search = myTxService
+				.withRequest(theRequestDetails)
+				.withRequestPartitionId(theRequestPartitionId)
+				.execute(() -> mySearchCacheSvc.save(theSearch, theRequestPartitionId));
+
+		ourLog.debug("Search {} is using keyset pagination", search.getUuid());
+		return new KeysetBundleProvider(search, theParams, null, theRequestDetails, theRequestPartitionId);
+	}
+
+	/**
+	 * Returns a bundle provider for the page of a keyset search identified by the given page ID,
+	 * or <code>null</code> if no keyset search exists with the given ID.
+	 *
+	 * @throws InvalidRequestException If the page ID is blank
+	 */
+	@Nullable
+	public IBundleProvider fetchPage(
+			@Nullable RequestDetails theRequestDetails, @Nonnull String theSearchUuid, @Nullable String thePageId) {
+		if (isBlank(thePageId)) {
+			throw new InvalidRequestException(Msg.code(2528) + "No page ID specified for search " + theSearchUuid);
+		}
+
+		RequestPartitionId searchPartitionId = myRequestPartitionHelperSvc.determineReadPartitionForRequest(
+				theRequestDetails, ReadPartitionIdRequestDetails.forSearchUuid(theSearchUuid));
+		Optional<Search> searchOpt = myTxService
+				.withRequest(theRequestDetails)
+				.withRequestPartitionId(searchPartitionId)
+				.execute(() -> mySearchCacheSvc.fetchByUuid(theSearchUuid, searchPartitionId));
+		if (searchOpt.isEmpty() || searchOpt.get().getSearchType() != SearchTypeEnum.KEYSET) {
+			return null;
+		}
+
+		Search search = searchOpt.get();
+		SearchParameterMap params = search.getSearchParameterMap()
+				.orElseThrow(() -> new IllegalStateException("No map in keyset search " + theSearchUuid));
+		RequestPartitionId requestPartitionId = myRequestPartitionHelperSvc.determineReadPartitionForRequest(
+				theRequestDetails, ReadPartitionIdRequestDetails.forSearchType(search.getResourceType(), params, null));
+
+		KeysetPosition position = FIRST_PAGE_ID.equals(thePageId) ? null : KeysetPosition.fromPageId(thePageId);
+
+		extendExpiryIfNeeded(search, requestPartitionId);
+
+		return new KeysetBundleProvider(search, params, position, theRequestDetails, requestPartitionId);
+	}
+
+	/**
+	 * Searches are normally expunged a fixed time after they are created, but a client paging
+	 * through a very large keyset search may take longer than that, so we push the expiry
+	 * out as long as the search is still being paged.
+	 */
+	private void extendExpiryIfNeeded(Search theSearch, RequestPartitionId theRequestPartitionId) {
+		long expireAfterMillis = myStorageSettings.getExpireSearchResultsAfterMillis();
+		long now = System.currentTimeMillis();
+		Date expiry = theSearch.getExpiryOrNull();
+		if (expiry == null || expiry.getTime() < now + (expireAfterMillis / 2)) {
+			theSearch.setExpiryOrNull(new Date(now + expireAfterMillis));
+			mySearchCacheSvc.save(theSearch, theRequestPartitionId);
+		}
+	}
+
+	/**
+	 * Returns the sort to use for keyset pagination, which must end with the PID tie-breaker,
+	 * or <code>null</code> if the requested sort can not be used with a keyset.
+	 */
+	@Nullable
+	static SortSpec toKeysetSort(@Nullable SortSpec theSort) {
+		if (theSort == null) {
+			return new SortSpec(Constants.PARAM_PID, SortOrderEnum.ASC);
+		}
+
+		SortOrderEnum order = theSort.getOrder() != null ? theSort.getOrder() : SortOrderEnum.ASC;
+		SortSpec chain = theSort.getChain();
+		if (Constants.PARAM_PID.equals(theSort.getParamName()) && chain == null) {
+			return new SortSpec(Constants.PARAM_PID, order);
+		}
+		if (Constants.PARAM_LASTUPDATED.equals(theSort.getParamName())) {
+			if (chain == null) {
+				return new SortSpec(Constants.PARAM_LASTUPDATED, order, new SortSpec(Constants.PARAM_PID, order));
+			}
+			SortOrderEnum chainOrder = chain.getOrder() != null ? chain.getOrder() : SortOrderEnum.ASC;
+			if (Constants.PARAM_PID.equals(chain.getParamName()) && chain.getChain() == null && chainOrder == order) {
+				return new SortSpec(Constants.PARAM_LASTUPDATED, order, new SortSpec(Constants.PARAM_PID, order));
+			}
+		}
+		return null;
+	}
+
+	private KeysetPage loadPage(
+			Search theSearch,
+			SearchParameterMap theParams,
+			@Nullable KeysetPosition thePosition,
+			int thePageSize,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		String resourceType = theSearch.getResourceType();
+		Class<? extends IBaseResource> resourceTypeClass =
+				myContext.getResourceDefinition(resourceType).getImplementingClass();
+
+		SortSpec sort = toKeysetSort(theParams.getSort());
+		boolean sortOnLastUpdated = sort != null && Constants.PARAM_LASTUPDATED.equals(sort.getParamName());
+
+		SearchParameterMap params = theParams.clone();
+		params.setSort(sort);
+		params.setKeysetPosition(thePosition);
+		params.setKeysetPaging(true);
+
+		// Fetch one extra row so that we know whether there is a next page
+		int maxResultsToFetch = thePageSize + 1;
+
+		return myTxService
+				.withRequest(theRequestDetails)
+				.withRequestPartitionId(theRequestPartitionId)
+				.readOnly()
+				.execute(() -> {
+					ISearchBuilder<JpaPid> sb = mySearchBuilderFactory.newSearchBuilder(
+							myDaoRegistry.getResourceDao(resourceType), resourceType, resourceTypeClass);
+					sb.setFetchSize(maxResultsToFetch);
+					sb.setMaxResultsToFetch(maxResultsToFetch);
+
+					SearchRuntimeDetails searchRuntimeDetails =
+							new SearchRuntimeDetails(theRequestDetails, theSearch.getUuid());
+					searchRuntimeDetails.setLoadSynchronous(true);
+
+					List<JpaPid> pids = new ArrayList<>();
+					// The RES_UPDATED of the last row of the page, selected by the page query itself
+					Date lastUpdated = null;
+					try (IResultIterator<JpaPid> resultIter =
+							sb.createQuery(params, searchRuntimeDetails, theRequestDetails, theRequestPartitionId)) {
+						while (resultIter.hasNext() && pids.size() < maxResultsToFetch) {
+							pids.add(resultIter.next());
+							if (pids.size() == thePageSize) {
+								lastUpdated = resultIter.getLastUpdatedOfLastResult();
+							}
+						}
+					} catch (IOException e) {
+						ourLog.error("IO failure during database access", e);
+						throw new InternalErrorException(Msg.code(2500) + e);
+					}
+
+					KeysetPosition nextPosition = null;
+					if (pids.size() > thePageSize) {
+						pids = new ArrayList<>(pids.subList(0, thePageSize));
+						Long lastPid = pids.get(pids.size() - 1).getId();
+						if (sortOnLastUpdated && lastUpdated == null) {
+							throw new InternalErrorException(
+									Msg.code(2531) + "Keyset page query did not select RES_UPDATED for search "
+											+ theSearch.getUuid());
+						}
+						nextPosition = new KeysetPosition(sortOnLastUpdated ? lastUpdated : null, lastPid);
+					}
+
+					JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(pids, () -> sb);
+					HookParams hookParams = new HookParams()
+							.add(IPreResourceAccessDetails.class, accessDetails)
+							.add(RequestDetails.class, theRequestDetails)
+							.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
+					CompositeInterceptorBroadcaster.doCallHooks(
+							myInterceptorBroadcaster,
+							theRequestDetails,
+							Pointcut.STORAGE_PREACCESS_RESOURCES,
+							hookParams);
+					for (int i = pids.size() - 1; i >= 0; i--) {
+						if (accessDetails.isDontReturnResourceAtIndex(i)) {
+							pids.remove(i);
+						}
+					}
+
+					Integer maxIncludes = myStorageSettings.getMaximumIncludesToLoadPerPage();
+					Set<JpaPid> includedPids = sb.loadIncludes(
+							myContext,
+							myEntityManager,
+							pids,
+							params.getRevIncludes(),
+							true,
+							params.getLastUpdated(),
+							theSearch.getUuid(),
+							theRequestDetails,
+							maxIncludes);
+					if (maxIncludes != null) {
+						maxIncludes -= includedPids.size();
+					}
+					if (maxIncludes == null || maxIncludes > 0) {
+						includedPids.addAll(sb.loadIncludes(
+								myContext,
+								myEntityManager,
+								pids,
+								params.getIncludes(),
+								false,
+								params.getLastUpdated(),
+								theSearch.getUuid(),
+								theRequestDetails,
+								maxIncludes));
+					}
+
+					List<JpaPid> allPids = new ArrayList<>(pids);
+					allPids.addAll(includedPids);
+
+					List<IBaseResource> resources = new ArrayList<>();
+					sb.loadResourcesByPid(allPids, includedPids, resources, false, theRequestDetails);
+					resources = ServerInterceptorUtil.fireStoragePreshowResource(
+							resources, theRequestDetails, myInterceptorBroadcaster);
+
+					return new KeysetPage(resources, nextPosition);
+				});
+	}
+
+	private static class KeysetPage {
+		private final List<IBaseResource> myResources;
+		private final KeysetPosition myNextPosition;
+
+		private KeysetPage(List<IBaseResource> theResources, @Nullable KeysetPosition theNextPosition) {
+			myResources = theResources;
+			myNextPosition = theNextPosition;
+		}
+	}
+
+	/**
+	 * Bundle provider for a single page of a keyset search. The page is loaded lazily when
+	 * the server asks for resources, because that is when the requested page size is known.
+	 */
+	private class KeysetBundleProvider implements IBundleProvider {
+
+		private final Search mySearch;
+		private final SearchParameterMap myParams;
+		private final KeysetPosition myPosition;
+		private final RequestDetails myRequestDetails;
+		private final RequestPartitionId myRequestPartitionId;
+		private KeysetPage myPage;
+
+		private KeysetBundleProvider(
+				Search theSearch,
+				SearchParameterMap theParams,
+				@Nullable KeysetPosition thePosition,
+				RequestDetails theRequestDetails,
+				RequestPartitionId theRequestPartitionId) {
+			mySearch = theSearch;
+			myParams = theParams;
+			myPosition = thePosition;
+			myRequestDetails = theRequestDetails;
+			myRequestPartitionId = theRequestPartitionId;
+		}
+
+		@Override
+		public InstantDt getPublished() {
+			return new InstantDt(mySearch.getCreated());
+		}
+
+		@Nonnull
+		@Override
+		public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
+			return getResources(theFromIndex, theToIndex, new ResponsePage.ResponsePageBuilder());
+		}
+
+		@Nonnull
+		@Override
+		public List<IBaseResource> getResources(
+				int theFromIndex, int theToIndex, @Nonnull ResponsePage.ResponsePageBuilder theResponsePageBuilder) {
+			// Indexes are only used to determine the page size, since the position is held by the page ID
+			if (myPage == null) {
+				int pageSize = Math.min(Math.max(theToIndex - theFromIndex, 1), SearchBuilder.getMaximumPageSize());
+				myPage = loadPage(mySearch, myParams, myPosition, pageSize, myRequestDetails, myRequestPartitionId);
+			}
+			return myPage.myResources;
+		}
+
+		@Override
+		public String getUuid() {
+			return mySearch.getUuid();
+		}
+
+		@Override
+		public String getCurrentPageId() {
+			return myPosition != null ? myPosition.toPageId() : FIRST_PAGE_ID;
+		}
+
+		@Override
+		public String getNextPageId() {
+			if (myPage == null || myPage.myNextPosition == null) {
+				return null;
+			}
+			return myPage.myNextPosition.toPageId();
+		}
+
+		@Override
+		public Integer preferredPageSize() {
+			return mySearch.getPreferredPageSize();
+		}
+
+		@Nullable
+		@Override
+		public Integer size() {
+			return null;
+		}
+	}
+}
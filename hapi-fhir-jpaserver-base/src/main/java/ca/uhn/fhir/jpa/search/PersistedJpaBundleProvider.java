@@ -59,6 +59,7 @@ import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
 import com.google.common.annotations.VisibleForTesting;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -460,6 +461,28 @@ public class PersistedJpaBundleProvider implements IBundleProvider {
 		}
 	}
 
+	/**
+	 * For searches using <code>_total=estimated</code>, returns the estimate which was stored with
+	 * the search when it started. It is never lower than the number of results found so far.
+	 * The estimate is not returned by {@link #size()}, since a value which is too low would cut
+	 * paging short.
+	 */
+	@Nullable
+	@Override
+	public Integer getEstimatedTotal() {
+		ensureSearchEntityLoaded();
+		return getEstimatedTotal(mySearchEntity);
+	}
+
+	@Nullable
+	static Integer getEstimatedTotal(Search theSearch) {
+		Integer estimate = theSearch.getEstimatedTotal();
+		if (estimate == null || theSearch.getSearchType() != SearchTypeEnum.SEARCH) {
+			return null;
+		}
+		return Math.max(estimate, theSearch.getNumFound());
+	}
+
 	protected boolean hasIncludes() {
 		ensureSearchEntityLoaded();
 		return !mySearchEntity.getIncludes().isEmpty();
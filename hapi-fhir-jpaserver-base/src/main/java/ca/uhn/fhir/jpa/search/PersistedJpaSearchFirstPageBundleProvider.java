@@ -31,6 +31,7 @@ import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.method.ResponsePage;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -144,4 +145,14 @@ public class PersistedJpaSearchFirstPageBundleProvider extends PersistedJpaBundl
 		}
 		return super.size();
 	}
+
+	/**
+	 * The estimate is stored by the search task, so it is read from the task's copy of the search
+	 */
+	@Nullable
+	@Override
+	public Integer getEstimatedTotal() {
+		mySearchTask.awaitInitialSync();
+		return getEstimatedTotal(mySearchTask.getSearch());
+	}
 }
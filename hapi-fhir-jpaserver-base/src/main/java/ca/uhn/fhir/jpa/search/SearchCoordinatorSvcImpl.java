@@ -119,6 +119,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 	private long myMaxMillisToWaitForRemoteResults = DateUtils.MILLIS_PER_MINUTE;
 	private boolean myNeverUseLocalSearchForUnitTests;
 	private int mySyncSize = DEFAULT_SYNC_SIZE;
+	private KeysetPagingSvc myKeysetPagingSvc;
 
 	/**
 	 * Constructor
@@ -157,6 +158,14 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 		myStorageInterceptorHooks = new StorageInterceptorHooksFacade(myInterceptorBroadcaster);
 	}
 
+	/**
+	 * Sets the service used for keyset paginated searches. If this is not set, keyset
+	 * pagination is never used.
+	 */
+	public void setKeysetPagingSvc(KeysetPagingSvc theKeysetPagingSvc) {
+		myKeysetPagingSvc = theKeysetPagingSvc;
+	}
+
 	@VisibleForTesting
 	Set<String> getActiveSearchIds() {
 		return myIdToSearchTask.keySet();
@@ -372,6 +381,10 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc<JpaPid> {
 
 		validateSearch(theParams);
 
+		if (myKeysetPagingSvc != null && myKeysetPagingSvc.isKeysetCandidate(theParams, theRequestDetails)) {
+			return myKeysetPagingSvc.registerSearch(search, theParams, theRequestDetails, theRequestPartitionId);
+		}
+
 		Class<? extends IBaseResource> resourceTypeClass =
 				myContext.getResourceDefinition(theResourceType).getImplementingClass();
 		final ISearchBuilder<JpaPid> sb =
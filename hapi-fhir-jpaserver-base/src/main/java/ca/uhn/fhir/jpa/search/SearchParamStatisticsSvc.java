@@ -0,0 +1,718 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.ISearchParamStatisticsDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.PartitionablePartitionId;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamCoords;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamDate;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamNumber;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantity;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantityNormalized;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamUri;
+import ca.uhn.fhir.jpa.model.entity.SearchParamStatisticsEntity;
+import ca.uhn.fhir.jpa.model.sched.HapiJob;
+import ca.uhn.fhir.jpa.model.sched.IHasScheduledJobs;
+import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
+import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
+import ca.uhn.fhir.jpa.util.CountMinSketch;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.UriParam;
+import ca.uhn.fhir.util.StopWatch;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceContextType;
+import org.apache.commons.lang3.time.DateUtils;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps approximate, node-local statistics about the search parameter index tables, so that
+ * the query builder can estimate how selective each parameter of a search is.
+ * <p>
+ * Statistics are kept per hash identity (i.e. per partition, resource type and parameter name).
+ * For each parameter we keep the total number of index rows, and for token, string and URI
+ * parameters a count-min sketch of the value hashes so that the number of rows matching a
+ * specific value can be estimated.
+ * </p>
+ * <p>
+ * The statistics are rebuilt from the index tables by a clustered scheduled job, with value
+ * frequencies extrapolated from a sample of the most recently written rows. The node which runs
+ * the rebuild stores the result in the database, and every other node loads the stored result
+ * with a cheap local job, so the index tables are only scanned once per cluster. In between, the
+ * statistics are updated incrementally as index rows are added and removed on each node. No
+ * estimates are made until the first rebuild has been loaded.
+ * </p>
+ *
+ * @see JpaStorageSettings#setSearchParameterStatisticsEnabled(boolean)
+ * @since 7.2.0
+ */
+public class SearchParamStatisticsSvc implements IHasScheduledJobs {
+
+	public static final long REBUILD_INTERVAL_MILLIS = DateUtils.MILLIS_PER_HOUR;
+	public static final long REFRESH_INTERVAL_MILLIS = DateUtils.MILLIS_PER_MINUTE;
+	private static final int SKETCH_DEPTH = 3;
+	private static final int SKETCH_WIDTH = 1024;
+	private static final int SAMPLE_SIZE = 10000;
+	private static final List<Class<? extends BaseResourceIndexedSearchParam>> INDEX_TYPES = List.of(
+			ResourceIndexedSearchParamCoords.class,
+			ResourceIndexedSearchParamDate.class,
+			ResourceIndexedSearchParamNumber.class,
+			ResourceIndexedSearchParamQuantity.class,
+			ResourceIndexedSearchParamQuantityNormalized.class,
+			ResourceIndexedSearchParamString.class,
+			ResourceIndexedSearchParamToken.class,
+			ResourceIndexedSearchParamUri.class);
+	private static final Set<Class<? extends BaseResourceIndexedSearchParam>> SKETCHED_INDEX_TYPES = Set.of(
+			ResourceIndexedSearchParamString.class,
+			ResourceIndexedSearchParamToken.class,
+			ResourceIndexedSearchParamUri.class);
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchParamStatisticsSvc.class);
+
+	private final JpaStorageSettings myStorageSettings;
+	private final PartitionSettings myPartitionSettings;
+	private final IHapiTransactionService myTransactionService;
+	private final ISearchParamStatisticsDao myStatisticsDao;
+	private final ReadWriteLock myStatisticsLock = new ReentrantReadWriteLock();
+	private final Object myRefreshMutex = new Object();
+	private volatile ConcurrentHashMap<Long, ParamStatistics> myStatistics = new ConcurrentHashMap<>();
+	private volatile boolean myWarm;
+	private volatile long myLoadedSnapshotTime;
+	/**
+	 * Changes applied while new statistics are being loaded, which are replayed onto the new
+	 * statistics before they replace the current ones. Guarded by {@link #myStatisticsLock}.
+	 */
+	private Queue<Delta> myDeltasDuringRefresh;
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+
+	/**
+	 * Constructor
+	 */
+	public SearchParamStatisticsSvc(
+			JpaStorageSettings theStorageSettings,
+			PartitionSettings thePartitionSettings,
+			IHapiTransactionService theTransactionService,
+			ISearchParamStatisticsDao theStatisticsDao) {
+		myStorageSettings = theStorageSettings;
+		myPartitionSettings = thePartitionSettings;
+		myTransactionService = theTransactionService;
+		myStatisticsDao = theStatisticsDao;
+	}
+
+	@VisibleForTesting
+	void setEntityManagerForUnitTest(EntityManager theEntityManager) {
+		myEntityManager = theEntityManager;
+	}
+
+	public boolean isEnabled() {
+		return myStorageSettings.isSearchParameterStatisticsEnabled();
+	}
+
+	/**
+	 * @return <code>true</code> if statistics are enabled and have been rebuilt or loaded, so
+	 * that they can be used to plan searches
+	 */
+	public boolean isWarm() {
+		return isEnabled() && myWarm;
+	}
+
+	/**
+	 * Records index rows which are being added and removed. The statistics are only updated once
+	 * the current transaction (if any) has committed. This must be called before removed rows are
+	 * reused for new values, since their old values are captured here.
+	 */
+	public <T extends BaseResourceIndex> void recordChanges(
+			Collection<T> theAddedIndexes, Collection<T> theRemovedIndexes) {
+		if (!isEnabled() || (theAddedIndexes.isEmpty() && theRemovedIndexes.isEmpty())) {
+			return;
+		}
+
+		List<Delta> deltas = new ArrayList<>(theAddedIndexes.size() + theRemovedIndexes.size());
+		addDeltas(theAddedIndexes, 1, deltas);
+		addDeltas(theRemovedIndexes, -1, deltas);
+		if (deltas.isEmpty()) {
+			return;
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					applyDeltas(deltas);
+				}
+			});
+		} else {
+			applyDeltas(deltas);
+		}
+	}
+
+	private <T extends BaseResourceIndex> void addDeltas(Collection<T> theIndexes, int theSign, List<Delta> theDeltas) {
+		for (T next : theIndexes) {
+			if (!(next instanceof BaseResourceIndexedSearchParam)) {
+				continue;
+			}
+			BaseResourceIndexedSearchParam param = (BaseResourceIndexedSearchParam) next;
+			if (param.isMissing() || param.getResourceType() == null || param.getParamName() == null) {
+				continue;
+			}
+
+			Long hashIdentity = toStatisticsKey(
+					PartitionablePartitionId.toRequestPartitionId(param.getPartitionId()),
+					param.getResourceType(),
+					param.getParamName());
+			if (hashIdentity == null) {
+				continue;
+			}
+			Long valueHash1 = null;
+			Long valueHash2 = null;
+			if (param instanceof ResourceIndexedSearchParamToken) {
+				valueHash1 = ((ResourceIndexedSearchParamToken) param).getHashSystemAndValue();
+				valueHash2 = ((ResourceIndexedSearchParamToken) param).getHashValue();
+			} else if (param instanceof ResourceIndexedSearchParamString) {
+				valueHash1 = ((ResourceIndexedSearchParamString) param).getHashExact();
+			} else if (param instanceof ResourceIndexedSearchParamUri) {
+				valueHash1 = ((ResourceIndexedSearchParamUri) param).getHashUri();
+			}
+
+			theDeltas.add(new Delta(
+					hashIdentity, param.getResourceType(), param.getParamName(), theSign, valueHash1, valueHash2));
+		}
+	}
+
+	private void applyDeltas(List<Delta> theDeltas) {
+		Lock lock = myStatisticsLock.readLock();
+		lock.lock();
+		try {
+			applyDeltas(myStatistics, theDeltas);
+			if (myDeltasDuringRefresh != null) {
+				myDeltasDuringRefresh.addAll(theDeltas);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static void applyDeltas(Map<Long, ParamStatistics> theStatistics, Collection<Delta> theDeltas) {
+		for (Delta next : theDeltas) {
+			ParamStatistics stats = theStatistics.computeIfAbsent(
+					next.myHashIdentity, t -> new ParamStatistics(t, next.myResourceType, next.myParamName));
+			stats.myRowCount.add(next.mySign);
+			if (next.myValueHash1 != null) {
+				stats.getSketch().add(next.myValueHash1, next.mySign);
+			}
+			if (next.myValueHash2 != null) {
+				stats.getSketch().add(next.myValueHash2, next.mySign);
+			}
+		}
+	}
+
+	/**
+	 * Estimates the number of index rows which match the given AND/OR list of values for a
+	 * parameter. This is an upper bound for the number of matching resources.
+	 *
+	 * @return The estimate, or <code>null</code> if nothing is known about the parameter or the
+	 * statistics are not {@link #isWarm() warm} yet
+	 */
+	@Nullable
+	public Long estimateMatchCount(
+			String theResourceType,
+			String theParamName,
+			List<List<IQueryParameterType>> theAndOrParams,
+			RequestPartitionId theRequestPartitionId) {
+		if (!isWarm()) {
+			return null;
+		}
+
+		RequestPartitionId keyPartitionId = toKeyPartitionId(theRequestPartitionId);
+		if (keyPartitionId == null) {
+			return null;
+		}
+		ParamStatistics stats = myStatistics.get(BaseResourceIndexedSearchParam.calculateHashIdentity(
+				myPartitionSettings, keyPartitionId, theResourceType, theParamName));
+		if (stats == null) {
+			return null;
+		}
+
+		long rowCount = stats.getRowCount();
+		long retVal = rowCount;
+		for (List<IQueryParameterType> nextOrList : theAndOrParams) {
+			long orEstimate = 0;
+			for (IQueryParameterType nextOr : nextOrList) {
+				Long valueHash = toValueHash(theResourceType, theParamName, nextOr, keyPartitionId);
+				orEstimate +=
+						valueHash != null && stats.mySketch != null ? stats.mySketch.estimate(valueHash) : rowCount;
+				if (orEstimate >= rowCount) {
+					break;
+				}
+			}
+			retVal = Math.min(retVal, Math.min(orEstimate, rowCount));
+		}
+		return retVal;
+	}
+
+	/**
+	 * Index rows and searches are keyed through here so that they always agree. The partition only
+	 * forms part of the key when partitions are included in search hashes.
+	 *
+	 * @return The key, or <code>null</code> if the partition doesn't map to a single key
+	 */
+	@Nullable
+	private Long toStatisticsKey(RequestPartitionId thePartitionId, String theResourceType, String theParamName) {
+		RequestPartitionId keyPartitionId = toKeyPartitionId(thePartitionId);
+		if (keyPartitionId == null) {
+			return null;
+		}
+		return BaseResourceIndexedSearchParam.calculateHashIdentity(
+				myPartitionSettings, keyPartitionId, theResourceType, theParamName);
+	}
+
+	@Nullable
+	private RequestPartitionId toKeyPartitionId(@Nullable RequestPartitionId thePartitionId) {
+		if (!myPartitionSettings.isPartitioningEnabled()
+				|| !myPartitionSettings.isIncludePartitionInSearchHashes()
+				|| thePartitionId == null) {
+			return RequestPartitionId.defaultPartition();
+		}
+		if (thePartitionId.isAllPartitions() || thePartitionId.getPartitionIds().size() != 1) {
+			return null;
+		}
+		return RequestPartitionId.fromPartitionId(thePartitionId.getFirstPartitionIdOrNull());
+	}
+
+	@Nullable
+	private Long toValueHash(
+			String theResourceType,
+			String theParamName,
+			IQueryParameterType theParam,
+			RequestPartitionId theRequestPartitionId) {
+		if (theParam.getMissing() != null) {
+			return null;
+		}
+		if (theParam instanceof TokenParam) {
+			TokenParam token = (TokenParam) theParam;
+			if (token.getModifier() != null || token.getValue() == null) {
+				return null;
+			}
+			if (token.getSystem() != null) {
+				return ResourceIndexedSearchParamToken.calculateHashSystemAndValue(
+						myPartitionSettings,
+						theRequestPartitionId,
+						theResourceType,
+						theParamName,
+						token.getSystem(),
+						token.getValue());
+			}
+			return ResourceIndexedSearchParamToken.calculateHashValue(
+					myPartitionSettings, theRequestPartitionId, theResourceType, theParamName, token.getValue());
+		}
+		if (theParam instanceof StringParam) {
+			StringParam string = (StringParam) theParam;
+			if (!string.isExact() || string.getValue() == null) {
+				return null;
+			}
+			return ResourceIndexedSearchParamString.calculateHashExact(
+					myPartitionSettings, theRequestPartitionId, theResourceType, theParamName, string.getValue());
+		}
+		if (theParam instanceof UriParam) {
+			UriParam uri = (UriParam) theParam;
+			if (uri.getQualifier() != null || uri.getValue() == null) {
+				return null;
+			}
+			return ResourceIndexedSearchParamUri.calculateHashUri(
+					myPartitionSettings, theRequestPartitionId, theResourceType, theParamName, uri.getValue());
+		}
+		return null;
+	}
+
+	/**
+	 * Rebuilds the statistics from the index tables, stores them in the database for the other
+	 * nodes to load, and replaces the statistics held by this node. Row counts are exact, and value
+	 * frequencies are extrapolated from a sample of the most recently written rows of each table.
+	 */
+	public void rebuildStatistics() {
+		if (!isEnabled()) {
+			return;
+		}
+
+		StopWatch sw = new StopWatch();
+		// Truncated so that it compares equal to the stored value on databases with coarse timestamps
+		Date updated = DateUtils.truncate(new Date(), Calendar.SECOND);
+		ConcurrentHashMap<Long, ParamStatistics> statistics = replaceStatistics(() -> {
+			ConcurrentHashMap<Long, ParamStatistics> retVal = myTransactionService
+					.withSystemRequest()
+					.withRequestPartitionId(RequestPartitionId.allPartitions())
+					.readOnly()
+					.execute(this::loadStatistics);
+			myTransactionService
+					.withSystemRequest()
+					.withRequestPartitionId(RequestPartitionId.allPartitions())
+					.execute(() -> storeStatistics(retVal, updated));
+			return retVal;
+		});
+		myLoadedSnapshotTime = updated.getTime();
+		ourLog.info("Rebuilt statistics for {} search parameters in {}", statistics.size(), sw);
+	}
+
+	/**
+	 * Rebuilds the statistics unless another node has already done so recently. Each node schedules
+	 * the clustered rebuild job when it starts, which triggers it straight away.
+	 */
+	void rebuildStatisticsIfStale() {
+		Date lastUpdated = findLastUpdated();
+		if (lastUpdated != null && lastUpdated.getTime() > System.currentTimeMillis() - REBUILD_INTERVAL_MILLIS / 2) {
+			refreshStatistics();
+			return;
+		}
+		rebuildStatistics();
+	}
+
+	/**
+	 * Replaces the statistics held by this node with the ones most recently stored by a rebuild,
+	 * unless they have already been loaded. Changes made on other nodes between the rebuild and
+	 * the load are not reflected until the next rebuild.
+	 */
+	public void refreshStatistics() {
+		if (!isEnabled()) {
+			return;
+		}
+
+		Date lastUpdated = findLastUpdated();
+		if (lastUpdated == null || lastUpdated.getTime() == myLoadedSnapshotTime) {
+			return;
+		}
+
+		StopWatch sw = new StopWatch();
+		ConcurrentHashMap<Long, ParamStatistics> statistics = replaceStatistics(() -> myTransactionService
+				.withSystemRequest()
+				.withRequestPartitionId(RequestPartitionId.allPartitions())
+				.readOnly()
+				.execute(this::loadStoredStatistics));
+		myLoadedSnapshotTime = lastUpdated.getTime();
+		ourLog.info("Loaded statistics for {} search parameters in {}", statistics.size(), sw);
+	}
+
+	@Nullable
+	private Date findLastUpdated() {
+		return myTransactionService
+				.withSystemRequest()
+				.withRequestPartitionId(RequestPartitionId.allPartitions())
+				.readOnly()
+				.execute(myStatisticsDao::findLastUpdated);
+	}
+
+	/**
+	 * Loads new statistics and swaps them in. Changes which are committed while the new statistics
+	 * are being loaded are applied to both, so they aren't lost when the new statistics replace the
+	 * current ones (a change committed just before the load reads its table may be counted twice,
+	 * which is harmless for an estimate).
+	 */
+	private ConcurrentHashMap<Long, ParamStatistics> replaceStatistics(
+			Supplier<ConcurrentHashMap<Long, ParamStatistics>> theLoader) {
+		synchronized (myRefreshMutex) {
+			setDeltasDuringRefresh(new ConcurrentLinkedQueue<>());
+			try {
+				ConcurrentHashMap<Long, ParamStatistics> retVal = theLoader.get();
+
+				Lock lock = myStatisticsLock.writeLock();
+				lock.lock();
+				try {
+					applyDeltas(retVal, myDeltasDuringRefresh);
+					myDeltasDuringRefresh = null;
+					myStatistics = retVal;
+					myWarm = true;
+				} finally {
+					lock.unlock();
+				}
+				return retVal;
+			} finally {
+				setDeltasDuringRefresh(null);
+			}
+		}
+	}
+
+	private void setDeltasDuringRefresh(@Nullable Queue<Delta> theDeltas) {
+		Lock lock = myStatisticsLock.writeLock();
+		lock.lock();
+		try {
+			myDeltasDuringRefresh = theDeltas;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private ConcurrentHashMap<Long, ParamStatistics> loadStatistics() {
+		ConcurrentHashMap<Long, ParamStatistics> retVal = new ConcurrentHashMap<>();
+		for (Class<? extends BaseResourceIndexedSearchParam> nextType : INDEX_TYPES) {
+			String sql = "SELECT t.myPartitionIdValue, t.myResourceType, t.myParamName, COUNT(t) FROM "
+					+ nextType.getSimpleName()
+					+ " t WHERE t.myMissing = false GROUP BY t.myPartitionIdValue, t.myResourceType, t.myParamName";
+			List<Object[]> counts = myEntityManager.createQuery(sql, Object[].class).getResultList();
+			for (Object[] next : counts) {
+				String resourceType = (String) next[1];
+				String paramName = (String) next[2];
+				RequestPartitionId partitionId = RequestPartitionId.fromPartitionId((Integer) next[0]);
+				Long key = toStatisticsKey(partitionId, resourceType, paramName);
+				if (key != null) {
+					retVal.computeIfAbsent(key, t -> new ParamStatistics(t, resourceType, paramName))
+							.myRowCount
+							.add(((Number) next[3]).longValue());
+				}
+			}
+
+			if (SKETCHED_INDEX_TYPES.contains(nextType)) {
+				sampleValues(nextType, retVal);
+			}
+		}
+		return retVal;
+	}
+
+	private void sampleValues(
+			Class<? extends BaseResourceIndexedSearchParam> theType, Map<Long, ParamStatistics> theStatistics) {
+		String sql = "SELECT t FROM " + theType.getSimpleName() + " t WHERE t.myMissing = false ORDER BY t.myId DESC";
+		List<? extends BaseResourceIndexedSearchParam> sample = myEntityManager
+				.createQuery(sql, theType)
+				.setMaxResults(SAMPLE_SIZE)
+				.getResultList();
+
+		List<Delta> deltas = new ArrayList<>(sample.size());
+		addDeltas(sample, 1, deltas);
+		myEntityManager.clear();
+
+		Map<Long, Long> sampledRows = new HashMap<>();
+		for (Delta next : deltas) {
+			sampledRows.merge(next.myHashIdentity, 1L, Long::sum);
+		}
+		for (Delta next : deltas) {
+			ParamStatistics stats = theStatistics.get(next.myHashIdentity);
+			if (stats == null) {
+				continue;
+			}
+			// Each sampled row stands in for this many rows of the same parameter
+			long weight = Math.max(1, stats.getRowCount() / sampledRows.get(next.myHashIdentity));
+			if (next.myValueHash1 != null) {
+				stats.getSketch().add(next.myValueHash1, weight);
+			}
+			if (next.myValueHash2 != null) {
+				stats.getSketch().add(next.myValueHash2, weight);
+			}
+		}
+	}
+
+	private void storeStatistics(Map<Long, ParamStatistics> theStatistics, Date theUpdated) {
+		myStatisticsDao.deleteAllInBatch();
+		for (ParamStatistics next : theStatistics.values()) {
+			SearchParamStatisticsEntity entity = new SearchParamStatisticsEntity();
+			entity.setHashIdentity(next.getHashIdentity());
+			entity.setResourceType(next.getResourceType());
+			entity.setParamName(next.getParamName());
+			entity.setRowCount(next.getRowCount());
+			entity.setValueSketch(next.mySketch != null ? next.mySketch.toBytes() : null);
+			entity.setUpdated(theUpdated);
+			myEntityManager.persist(entity);
+		}
+	}
+
+	private ConcurrentHashMap<Long, ParamStatistics> loadStoredStatistics() {
+		ConcurrentHashMap<Long, ParamStatistics> retVal = new ConcurrentHashMap<>();
+		for (SearchParamStatisticsEntity next : myStatisticsDao.findAll()) {
+			ParamStatistics stats =
+					new ParamStatistics(next.getHashIdentity(), next.getResourceType(), next.getParamName());
+			stats.myRowCount.add(next.getRowCount());
+			if (next.getValueSketch() != null) {
+				stats.mySketch = CountMinSketch.fromBytes(next.getValueSketch());
+			}
+			retVal.put(stats.getHashIdentity(), stats);
+		}
+		return retVal;
+	}
+
+	@Override
+	public void scheduleJobs(ISchedulerService theSchedulerService) {
+		// Only one node scans the index tables, and every node loads what it stored
+		ScheduledJobDefinition rebuildJob = new ScheduledJobDefinition();
+		rebuildJob.setId(RebuildJob.class.getName());
+		rebuildJob.setJobClass(RebuildJob.class);
+		theSchedulerService.scheduleClusteredJob(REBUILD_INTERVAL_MILLIS, rebuildJob);
+
+		ScheduledJobDefinition refreshJob = new ScheduledJobDefinition();
+		refreshJob.setId(RefreshJob.class.getName());
+		refreshJob.setJobClass(RefreshJob.class);
+		theSchedulerService.scheduleLocalJob(REFRESH_INTERVAL_MILLIS, refreshJob);
+	}
+
+	/**
+	 * Returns a snapshot of the statistics for all parameters, optionally restricted to a single
+	 * resource type, sorted by resource type and parameter name
+	 */
+	@Nonnull
+	public List<ParamStatistics> getStatistics(@Nullable String theResourceType) {
+		List<ParamStatistics> retVal = new ArrayList<>();
+		for (ParamStatistics next : myStatistics.values()) {
+			if (theResourceType == null || theResourceType.equals(next.getResourceType())) {
+				retVal.add(next);
+			}
+		}
+		retVal.sort(Comparator.comparing(ParamStatistics::getResourceType)
+				.thenComparing(ParamStatistics::getParamName)
+				.thenComparing(ParamStatistics::getHashIdentity));
+		return retVal;
+	}
+
+	@VisibleForTesting
+	public void clearStatistics() {
+		myStatistics = new ConcurrentHashMap<>();
+		myWarm = false;
+		myLoadedSnapshotTime = 0;
+	}
+
+	private static class Delta {
+		private final long myHashIdentity;
+		private final String myResourceType;
+		private final String myParamName;
+		private final int mySign;
+		private final Long myValueHash1;
+		private final Long myValueHash2;
+
+		private Delta(
+				long theHashIdentity,
+				String theResourceType,
+				String theParamName,
+				int theSign,
+				Long theValueHash1,
+				Long theValueHash2) {
+			myHashIdentity = theHashIdentity;
+			myResourceType = theResourceType;
+			myParamName = theParamName;
+			mySign = theSign;
+			myValueHash1 = theValueHash1;
+			myValueHash2 = theValueHash2;
+		}
+	}
+
+	/**
+	 * Statistics for a single hash identity
+	 */
+	public static class ParamStatistics {
+		private final long myHashIdentity;
+		private final String myResourceType;
+		private final String myParamName;
+		private final LongAdder myRowCount = new LongAdder();
+		private volatile CountMinSketch mySketch;
+
+		ParamStatistics(long theHashIdentity, String theResourceType, String theParamName) {
+			myHashIdentity = theHashIdentity;
+			myResourceType = theResourceType;
+			myParamName = theParamName;
+		}
+
+		public long getHashIdentity() {
+			return myHashIdentity;
+		}
+
+		public String getResourceType() {
+			return myResourceType;
+		}
+
+		public String getParamName() {
+			return myParamName;
+		}
+
+		/**
+		 * Returns the number of index rows as of the last rebuild, plus the number added and minus
+		 * the number removed on this node since the statistics were loaded
+		 */
+		public long getRowCount() {
+			return Math.max(myRowCount.sum(), 0);
+		}
+
+		private CountMinSketch getSketch() {
+			CountMinSketch retVal = mySketch;
+			if (retVal == null) {
+				synchronized (this) {
+					retVal = mySketch;
+					if (retVal == null) {
+						retVal = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+						mySketch = retVal;
+					}
+				}
+			}
+			return retVal;
+		}
+	}
+
+	public static class RebuildJob implements HapiJob {
+		@Autowired
+		private SearchParamStatisticsSvc myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			if (myTarget.isEnabled()) {
+				myTarget.rebuildStatisticsIfStale();
+			}
+		}
+	}
+
+	public static class RefreshJob implements HapiJob {
+		@Autowired
+		private SearchParamStatisticsSvc myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			myTarget.refreshStatistics();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.function.Supplier;
+
+/**
+ * Caches the approximate totals reported for searches using <code>_total=estimated</code>, so
+ * that a dashboard which repeatedly runs the same search only pays for the estimate once per
+ * cache period.
+ * <p>
+ * Entries are keyed by resource type, partition and the normalized search URL, ignoring the
+ * parameters which don't affect the number of matches (paging, sorting, includes and summary
+ * mode). They expire after {@link JpaStorageSettings#getSearchTotalEstimateCacheMillis()}, and the
+ * cache is local to this node.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class SearchTotalEstimateSvc {
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchTotalEstimateSvc.class);
+	private static final int MAXIMUM_CACHED_ESTIMATES = 1000;
+
+	private final JpaStorageSettings myStorageSettings;
+	private final FhirContext myFhirContext;
+	private volatile TimedCache myCache;
+
+	public SearchTotalEstimateSvc(JpaStorageSettings theStorageSettings, FhirContext theFhirContext) {
+		myStorageSettings = theStorageSettings;
+		myFhirContext = theFhirContext;
+	}
+
+	/**
+	 * Returns the cached estimate for the given search, or invokes the supplied estimator
+	 * and caches its result if there is none
+	 *
+	 * @return The estimate, or <code>null</code> if the estimator could not make one
+	 */
+	@Nullable
+	public Long estimateTotal(
+			String theResourceType,
+			SearchParameterMap theParams,
+			@Nullable RequestPartitionId theRequestPartitionId,
+			@Nonnull Supplier<Long> theEstimator) {
+		Cache<String, Long> cache = getCache();
+		if (cache == null) {
+			return theEstimator.get();
+		}
+
+		String key = createCacheKey(theResourceType, theParams, theRequestPartitionId);
+		Long retVal = cache.getIfPresent(key);
+		if (retVal != null) {
+			ourLog.trace("Using cached total estimate {} for {}", retVal, key);
+			return retVal;
+		}
+
+		retVal = theEstimator.get();
+		if (retVal != null) {
+			cache.put(key, retVal);
+		}
+		return retVal;
+	}
+
+	@VisibleForTesting
+	String createCacheKey(
+			String theResourceType, SearchParameterMap theParams, @Nullable RequestPartitionId theRequestPartitionId) {
+		SearchParameterMap params = theParams.clone();
+		params.setCount(null);
+		params.setOffset(null);
+		params.setSort(null);
+		params.setIncludes(new HashSet<>());
+		params.setRevIncludes(new HashSet<>());
+		params.setSummaryMode(null);
+		params.setSearchTotalMode(null);
+
+		String partition = theRequestPartitionId != null ? theRequestPartitionId.toJson() : "";
+		return theResourceType + params.toNormalizedQueryString(myFhirContext) + " " + partition;
+	}
+
+	@Nullable
+	private Cache<String, Long> getCache() {
+		long cacheMillis = myStorageSettings.getSearchTotalEstimateCacheMillis();
+		if (cacheMillis <= 0) {
+			return null;
+		}
+		TimedCache retVal = myCache;
+		if (retVal == null || retVal.myCacheMillis != cacheMillis) {
+			synchronized (this) {
+				retVal = myCache;
+				if (retVal == null || retVal.myCacheMillis != cacheMillis) {
+					retVal = new TimedCache(cacheMillis);
+					myCache = retVal;
+				}
+			}
+		}
+		return retVal.myCache;
+	}
+
+	@VisibleForTesting
+	public void clearCacheForUnitTest() {
+		TimedCache cache = myCache;
+		if (cache != null) {
+			cache.myCache.invalidateAll();
+		}
+	}
+
+	/**
+	 * The cache together with the expiry it was built for, so that both can be read
+	 * with a single volatile read
+	 */
+	private static final class TimedCache {
+		private final long myCacheMillis;
+		private final Cache<String, Long> myCache;
+
+		private TimedCache(long theCacheMillis) {
+			myCacheMillis = theCacheMillis;
+			myCache = CacheFactory.build(theCacheMillis, MAXIMUM_CACHED_ESTIMATES);
+		}
+	}
+}
@@ -39,6 +39,7 @@ import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
@@ -47,6 +48,7 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.interceptor.ServerInterceptorUtil;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
+import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -58,8 +60,10 @@ import java.util.Set;
 import java.util.UUID;
 
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantCount;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
 import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 
 public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 
@@ -88,6 +92,9 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 	@Autowired
 	private IRequestPartitionHelperSvc myRequestPartitionHelperSvc;
 
+	@Autowired
+	private SearchTotalEstimateSvc mySearchTotalEstimateSvc;
+
 	private int mySyncSize = 250;
 
 	@Override
@@ -102,9 +109,11 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 		searchRuntimeDetails.setLoadSynchronous(true);
 
 		boolean theParamWantOnlyCount = isWantOnlyCount(theParams);
-		boolean theParamOrConfigWantCount = nonNull(theParams.getSearchTotalMode())
-				? isWantCount(theParams)
-				: isWantCount(myStorageSettings.getDefaultTotalMode());
+		SearchTotalModeEnum totalMode = nonNull(theParams.getSearchTotalMode())
+				? theParams.getSearchTotalMode()
+				: myStorageSettings.getDefaultTotalMode();
+		boolean theParamOrConfigWantCount = isWantCount(totalMode);
+		boolean wantEstimatedCount = isWantEstimatedCount(totalMode);
 		boolean wantCount = theParamWantOnlyCount || theParamOrConfigWantCount;
 
 		// Execute the query and make sure we return distinct results
@@ -130,8 +139,15 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						List<List<IQueryParameterType>> contentAndTerms = theParams.get(Constants.PARAM_CONTENT);
 						List<List<IQueryParameterType>> textAndTerms = theParams.get(Constants.PARAM_TEXT);
 
-						count = theSb.createCountQuery(
-								theParams, theSearchUuid, theRequestDetails, theRequestPartitionId);
+						count = null;
+						if (wantEstimatedCount && theParamWantOnlyCount) {
+							count = estimateCount(
+									theParams, theRequestDetails, theSearchUuid, theSb, theRequestPartitionId);
+						}
+						if (count == null) {
+							count = theSb.createCountQuery(
+									theParams, theSearchUuid, theRequestDetails, theRequestPartitionId);
+						}
 
 						if (contentAndTerms != null) theParams.put(Constants.PARAM_CONTENT, contentAndTerms);
 						if (textAndTerms != null) theParams.put(Constants.PARAM_TEXT, textAndTerms);
@@ -263,6 +279,15 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 							bundleProvider.setSize(getTotalCount(queryCount, theParams.getOffset(), resources.size()));
 						} else {
 							bundleProvider.setSize(null);
+							if (wantEstimatedCount) {
+								// There are more results than we fetched, so the estimate can't be lower than that
+								int fetched = defaultIfNull(theParams.getOffset(), 0) + resources.size() + 1;
+								Long estimate = estimateCount(
+										theParams, theRequestDetails, theSearchUuid, theSb, theRequestPartitionId);
+								if (estimate != null) {
+									bundleProvider.setEstimatedTotal((int) Math.max(estimate, fetched));
+								}
+							}
 						}
 					}
 
@@ -272,6 +297,21 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 				});
 	}
 
+	@Nullable
+	private Long estimateCount(
+			SearchParameterMap theParams,
+			RequestDetails theRequestDetails,
+			String theSearchUuid,
+			ISearchBuilder<?> theSb,
+			RequestPartitionId theRequestPartitionId) {
+		return mySearchTotalEstimateSvc.estimateTotal(
+				theSb.getResourceName(),
+				theParams,
+				theRequestPartitionId,
+				() -> theSb.createEstimatedCountQuery(
+						theParams.clone(), theSearchUuid, theRequestDetails, theRequestPartitionId));
+	}
+
 	@Override
 	public IBundleProvider executeQuery(
 			String theResourceType,
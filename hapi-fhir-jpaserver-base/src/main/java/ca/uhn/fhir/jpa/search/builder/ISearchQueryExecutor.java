@@ -19,7 +19,10 @@
  */
 package ca.uhn.fhir.jpa.search.builder;
 
+import jakarta.annotation.Nullable;
+
 import java.io.Closeable;
+import java.util.Date;
 import java.util.Iterator;
 
 public interface ISearchQueryExecutor extends Iterator<Long>, Closeable {
@@ -28,4 +31,15 @@ public interface ISearchQueryExecutor extends Iterator<Long>, Closeable {
 	 */
 	@Override
 	void close();
+
+	/**
+	 * Returns the RES_UPDATED value selected along with the resource ID most recently returned
+	 * by {@link #next()}, or <code>null</code> if the query doesn't select it.
+	 *
+	 * @since 7.2.0
+	 */
+	@Nullable
+	default Date getLastUpdatedOfLastResult() {
+		return null;
+	}
 }
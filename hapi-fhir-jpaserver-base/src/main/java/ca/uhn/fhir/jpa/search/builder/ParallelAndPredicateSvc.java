@@ -0,0 +1,382 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.dao.IResultIterator;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
+import ca.uhn.fhir.jpa.search.SearchParamStatisticsSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves independent AND-ed search parameters as separate single-parameter index queries,
+ * running in parallel, and intersects the resulting resource PIDs in memory. The search builder
+ * then uses the intersection to restrict the final SQL query instead of joining the index tables
+ * for those parameters.
+ *
+ * @see JpaStorageSettings#setParallelAndPredicatesEnabled(boolean)
+ * @since 7.2.0
+ */
+public class ParallelAndPredicateSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ParallelAndPredicateSvc.class);
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private FhirContext myContext;
+
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+
+	@Autowired
+	private SearchBuilderFactory<JpaPid> mySearchBuilderFactory;
+
+	@Autowired
+	private HapiTransactionService myTxService;
+
+	@Autowired(required = false)
+	private SearchParamStatisticsSvc mySearchParamStatisticsSvc;
+
+	private ThreadPoolTaskExecutor myExecutor;
+
+	/**
+	 * Resolves the given parameters in parallel. Parameters which match more than
+	 * {@link JpaStorageSettings#getParallelAndPredicateMaximumPidsPerClause()} resources are not resolved.
+	 * If search parameter statistics are enabled, they are used to skip parameters which are known to
+	 * be unselective, and to start the most selective ones first.
+	 *
+	 * @param theParams     The search parameters. This map is not modified.
+	 * @param theParamNames The names of the parameters within <code>theParams</code> which may be resolved
+	 * @return The resolved parameters and the intersection of their matches, or <code>null</code> if none of
+	 * the parameters could be resolved
+	 */
+	@Nullable
+	public ResolvedAndPredicates resolve(
+			String theResourceType,
+			SearchParameterMap theParams,
+			Collection<String> theParamNames,
+			String theSearchUuid,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		StopWatch sw = new StopWatch();
+		int maxPids = myStorageSettings.getParallelAndPredicateMaximumPidsPerClause();
+
+		List<String> candidateParamNames =
+				orderBySelectivity(theResourceType, theParams, theParamNames, maxPids, theRequestPartitionId);
+		if (candidateParamNames.isEmpty()) {
+			return null;
+		}
+
+		CompletionService<ClauseResult> completionService = new ExecutorCompletionService<>(getExecutor());
+		List<Future<ClauseResult>> futures = new ArrayList<>();
+		AtomicBoolean abandoned = new AtomicBoolean();
+		for (String nextParamName : candidateParamNames) {
+			List<List<IQueryParameterType>> andOrParams = theParams.get(nextParamName);
+			RequestDetails requestDetails = newClauseRequestDetails(theRequestDetails, theRequestPartitionId);
+			futures.add(completionService.submit(() -> resolveClause(
+					theResourceType,
+					nextParamName,
+					andOrParams,
+					maxPids,
+					theSearchUuid,
+					requestDetails,
+					theRequestPartitionId,
+					abandoned)));
+		}
+
+		List<ClauseResult> resolved = new ArrayList<>();
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				ClauseResult next = completionService.take().get();
+				if (next.myPids == null) {
+					continue;
+				}
+				resolved.add(next);
+				if (next.myPids.length == 0) {
+					// Nothing can match, so there's no point waiting for the other clauses
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2501) + "Interrupted while resolving search parameters", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2502) + e.getCause(), e.getCause());
+		} finally {
+			/*
+			 * Clauses which are still running stop at their next row. We don't interrupt them,
+			 * since interrupting a thread in the middle of a JDBC call can leave its pooled
+			 * connection unusable.
+			 */
+			abandoned.set(true);
+			futures.forEach(t -> t.cancel(false));
+		}
+
+		if (resolved.isEmpty()) {
+			ourLog.debug("No parameters of {} could be resolved in parallel in {}", theParamNames, sw);
+			return null;
+		}
+
+		// Intersect starting with the smallest set, so that each step is as cheap as possible
+		resolved.sort(Comparator.comparingInt(t -> t.myPids.length));
+		Set<String> paramNames = new HashSet<>();
+		long[] pids = null;
+		for (ClauseResult next : resolved) {
+			paramNames.add(next.myParamName);
+			pids = pids == null ? next.myPids : intersect(pids, next.myPids);
+		}
+
+		ourLog.debug("Resolved parameters {} in parallel to {} resource(s) in {}", paramNames, pids.length, sw);
+		return new ResolvedAndPredicates(paramNames, pids);
+	}
+
+	/**
+	 * If search parameter statistics are available, drops parameters which are known to match
+	 * too many resources, and orders the rest so that the cheapest ones are started first.
+	 */
+	private List<String> orderBySelectivity(
+			String theResourceType,
+			SearchParameterMap theParams,
+			Collection<String> theParamNames,
+			int theMaxPids,
+			RequestPartitionId theRequestPartitionId) {
+		List<String> retVal = new ArrayList<>(theParamNames);
+		if (mySearchParamStatisticsSvc == null || !mySearchParamStatisticsSvc.isWarm()) {
+			return retVal;
+		}
+
+		Map<String, Long> estimates = new HashMap<>();
+		for (String next : theParamNames) {
+			Long estimate = mySearchParamStatisticsSvc.estimateMatchCount(
+					theResourceType, next, theParams.get(next), theRequestPartitionId);
+			if (estimate != null && estimate > theMaxPids) {
+				retVal.remove(next);
+			} else {
+				estimates.put(next, estimate != null ? estimate : Long.MAX_VALUE);
+			}
+		}
+		retVal.sort(Comparator.comparing(estimates::get));
+		return retVal;
+	}
+
+	private ClauseResult resolveClause(
+			String theResourceType,
+			String theParamName,
+			List<List<IQueryParameterType>> theAndOrParams,
+			int theMaxPids,
+			String theSearchUuid,
+			@Nullable RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId,
+			AtomicBoolean theAbandoned) {
+		return myTxService
+				.withRequest(theRequestDetails)
+				.withRequestPartitionId(theRequestPartitionId)
+				.readOnly()
+				.execute(() -> {
+					Class<? extends IBaseResource> resourceTypeClass =
+							myContext.getResourceDefinition(theResourceType).getImplementingClass();
+					ISearchBuilder<JpaPid> sb = mySearchBuilderFactory.newSearchBuilder(
+							myDaoRegistry.getResourceDao(theResourceType), theResourceType, resourceTypeClass);
+					sb.setMaxResultsToFetch(theMaxPids + 1);
+
+					SearchParameterMap params = new SearchParameterMap();
+					params.put(theParamName, theAndOrParams);
+
+					long[] pids = new long[Math.min(theMaxPids + 1, 1000)];
+					int count = 0;
+					SearchRuntimeDetails searchRuntimeDetails =
+							new SearchRuntimeDetails(theRequestDetails, theSearchUuid);
+					try (IResultIterator<JpaPid> iter =
+							sb.createQuery(params, searchRuntimeDetails, theRequestDetails, theRequestPartitionId)) {
+						while (iter.hasNext()) {
+							if (count == theMaxPids || theAbandoned.get()) {
+								// Not selective enough (or no longer needed), leave it in the SQL query
+								return new ClauseResult(theParamName, null);
+							}
+							if (count == pids.length) {
+								pids = Arrays.copyOf(pids, Math.min(pids.length * 2, theMaxPids + 1));
+							}
+							pids[count++] = iter.next().getId();
+						}
+					} catch (IOException e) {
+						throw new InternalErrorException(Msg.code(2503) + e, e);
+					}
+
+					long[] retVal = Arrays.copyOf(pids, count);
+					Arrays.sort(retVal);
+					return new ClauseResult(theParamName, retVal);
+				});
+	}
+
+	/**
+	 * Each clause is resolved on its own thread, so it gets its own request details instead of
+	 * sharing the caller's, which are not thread safe. Only the fields used to run the query are
+	 * copied.
+	 */
+	@Nullable
+	private static RequestDetails newClauseRequestDetails(
+			@Nullable RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId) {
+		if (theRequestDetails == null) {
+			return null;
+		}
+		SystemRequestDetails retVal = new SystemRequestDetails(theRequestDetails.getInterceptorBroadcaster());
+		retVal.setRequestPartitionId(theRequestPartitionId);
+		retVal.setTenantId(theRequestDetails.getTenantId());
+		retVal.setRequestId(theRequestDetails.getRequestId());
+		return retVal;
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			int threadCount = myStorageSettings.getParallelAndPredicateThreadCount();
+			myExecutor = ThreadPoolUtil.newThreadPool(threadCount, threadCount, "search-and-predicate-", 0);
+		}
+		return myExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+
+	/**
+	 * Intersects two sorted arrays of distinct PIDs. If one array is much smaller than the other,
+	 * its values are binary searched in the larger one instead of merging both.
+	 */
+	@VisibleForTesting
+	static long[] intersect(long[] theA, long[] theB) {
+		long[] small = theA.length <= theB.length ? theA : theB;
+		long[] large = small == theA ? theB : theA;
+		long[] retVal = new long[small.length];
+		int count = 0;
+
+		if (small.length * 8L < large.length) {
+			int from = 0;
+			for (long next : small) {
+				int idx = Arrays.binarySearch(large, from, large.length, next);
+				if (idx >= 0) {
+					retVal[count++] = next;
+					from = idx + 1;
+				} else {
+					from = -idx - 1;
+				}
+				if (from == large.length) {
+					break;
+				}
+			}
+		} else {
+			int i = 0;
+			int j = 0;
+			while (i < small.length && j < large.length) {
+				if (small[i] < large[j]) {
+					i++;
+				} else if (small[i] > large[j]) {
+					j++;
+				} else {
+					retVal[count++] = small[i];
+					i++;
+					j++;
+				}
+			}
+		}
+
+		return count == retVal.length ? retVal : Arrays.copyOf(retVal, count);
+	}
+
+	private static class ClauseResult {
+		private final String myParamName;
+		private final long[] myPids;
+
+		private ClauseResult(String theParamName, @Nullable long[] thePids) {
+			myParamName = theParamName;
+			myPids = thePids;
+		}
+	}
+
+	/**
+	 * The parameters which were resolved, and the sorted intersection of the PIDs they matched
+	 */
+	public static class ResolvedAndPredicates {
+		private final Set<String> myParamNames;
+		private final long[] myPids;
+
+		public ResolvedAndPredicates(@Nonnull Set<String> theParamNames, @Nonnull long[] thePids) {
+			myParamNames = theParamNames;
+			myPids = thePids;
+		}
+
+		@Nonnull
+		public Set<String> getParamNames() {
+			return myParamNames;
+		}
+
+		@Nonnull
+		public long[] getPids() {
+			return myPids;
+		}
+	}
+}
@@ -55,12 +55,14 @@ import ca.uhn.fhir.jpa.model.search.SearchBuilderLoadIncludesParameters;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.search.SearchConstants;
+import ca.uhn.fhir.jpa.search.SearchParamStatisticsSvc;
 import ca.uhn.fhir.jpa.search.builder.models.ResolvedSearchQueryExecutor;
 import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryExecutor;
 import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.search.lastn.IElasticsearchSvc;
+import ca.uhn.fhir.jpa.searchparam.KeysetPosition;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.searchparam.util.Dstu3DistanceHelper;
 import ca.uhn.fhir.jpa.searchparam.util.JpaParamUtil;
@@ -90,6 +92,7 @@ import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.util.IoUtil;
 import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.util.StringUtil;
 import ca.uhn.fhir.util.UrlUtil;
@@ -108,6 +111,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.dialect.PostgreSQLDialect;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
@@ -120,6 +124,8 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -155,6 +161,13 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	public static final String RESOURCE_VERSION_ALIAS = "resource_version";
 	private static final Logger ourLog = LoggerFactory.getLogger(SearchBuilder.class);
 	private static final JpaPid NO_MORE = JpaPid.fromId(-1L);
+	private static final Set<String> PARALLEL_AND_PREDICATE_EXCLUDED_PARAMS = Set.of(
+			IAnyResource.SP_RES_ID,
+			Constants.PARAM_FILTER,
+			Constants.PARAM_CONTENT,
+			Constants.PARAM_TEXT,
+			"near",
+			"near-distance");
 	private static final String MY_TARGET_RESOURCE_PID = "myTargetResourcePid";
 	private static final String MY_SOURCE_RESOURCE_PID = "mySourceResourcePid";
 	private static final String MY_TARGET_RESOURCE_TYPE = "myTargetResourceType";
@@ -195,6 +208,15 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	@Autowired(required = false)
 	private IElasticsearchSvc myIElasticsearchSvc;
 
+	@Autowired(required = false)
+	private ParallelAndPredicateSvc myParallelAndPredicateSvc;
+
+	@Autowired(required = false)
+	private SearchParamStatisticsSvc mySearchParamStatisticsSvc;
+
+	private boolean myParallelAndPredicatesResolved;
+	private List<Long> myParallelAndPredicatePids;
+
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
 
@@ -267,6 +289,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				.filter(t -> !t.equals(IAnyResource.SP_RES_ID))
 				.filter(t -> !t.equals(Constants.PARAM_TAG))
 				.collect(Collectors.toList());
+		sortParamNamesBySelectivity(paramNames);
 		if (myParams.containsKey(IAnyResource.SP_RES_ID)) {
 			paramNames.add(IAnyResource.SP_RES_ID);
 		}
@@ -293,6 +316,27 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * If search parameter statistics are available for every parameter, orders the parameters so that
+	 * the most selective ones come first and drive the query. Nothing is reordered until the statistics
+	 * have been loaded from the database.
+	 */
+	private void sortParamNamesBySelectivity(List<String> theParamNames) {
+		if (mySearchParamStatisticsSvc == null || !mySearchParamStatisticsSvc.isWarm() || theParamNames.size() < 2) {
+			return;
+		}
+		Map<String, Long> estimates = new HashMap<>();
+		for (String next : theParamNames) {
+			Long estimate = mySearchParamStatisticsSvc.estimateMatchCount(
+					myResourceName, next, myParams.get(next), myRequestPartitionId);
+			if (estimate == null) {
+				return;
+			}
+			estimates.put(next, estimate);
+		}
+		theParamNames.sort(Comparator.comparing(estimates::get));
+	}
+
 	/**
 	 * A search is a candidate for Composite Unique SP if unique indexes are enabled, there is no EverythingMode, and the
 	 * parameters all have no modifiers.
@@ -329,6 +373,53 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * On Postgres, the estimate is taken from the planner's row estimate for the count
+	 * query, so the matching rows are never scanned. Searches which use the fulltext index
+	 * get the count from the index. Other databases, and searches which need more than one
+	 * SQL query, get no estimate.
+	 */
+	@Nullable
+	@Override
+	public Long createEstimatedCountQuery(
+			SearchParameterMap theParams,
+			String theSearchUuid,
+			RequestDetails theRequest,
+			@Nonnull RequestPartitionId theRequestPartitionId) {
+
+		assert theRequestPartitionId != null;
+		assert TransactionSynchronizationManager.isActualTransactionActive();
+
+		init(theParams, theSearchUuid, theRequestPartitionId);
+
+		if (checkUseHibernateSearch()) {
+			return myFulltextSearchSvc.count(myResourceName, theParams.clone());
+		}
+
+		if (!(myDialectProvider.getDialect() instanceof PostgreSQLDialect)) {
+			return null;
+		}
+
+		List<ISearchQueryExecutor> queries = createQuery(theParams.clone(), null, null, null, true, theRequest, null);
+		if (queries.isEmpty()) {
+			return 0L;
+		}
+
+		ISearchQueryExecutor query = queries.get(0);
+		try {
+			if (queries.size() == 1 && query instanceof SearchQueryExecutor) {
+				Long estimate = ((SearchQueryExecutor) query).estimateRowCountUsingExplain();
+				if (estimate != null) {
+					ourLog.debug("Planner estimates {} rows for {} search", estimate, myResourceName);
+				}
+				return estimate;
+			}
+			return null;
+		} finally {
+			queries.forEach(IoUtil::closeQuietly);
+		}
+	}
+
 	/**
 	 * @param thePidSet May be null
 	 */
@@ -362,6 +453,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		myParams = theParams.clone();
 		mySearchUuid = theSearchUuid;
 		myRequestPartitionId = theRequestPartitionId;
+		myParallelAndPredicatesResolved = false;
+		myParallelAndPredicatePids = null;
 	}
 
 	private List<ISearchQueryExecutor> createQuery(
@@ -446,14 +539,99 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 										theParams, t, theOffset, sort, theCountOnlyFlag, theRequest, queries));
 			}
 		} else {
-			// do everything in the database.
-			createChunkedQuery(
-					theParams, sort, theOffset, theMaximumResults, theCountOnlyFlag, theRequest, null, queries);
+			List<Long> parallelAndPredicatePids =
+					resolveParallelAndPredicates(theParams, sort, theOffset, theCountOnlyFlag, theRequest);
+			if (parallelAndPredicatePids == null) {
+				// do everything in the database.
+				createChunkedQuery(
+						theParams, sort, theOffset, theMaximumResults, theCountOnlyFlag, theRequest, null, queries);
+			} else if (!parallelAndPredicatePids.isEmpty()) {
+				// Finish the query in the database for the rest of the search parameters, sorting, partitioning, etc.
+				new QueryChunker<Long>()
+						.chunk(
+								parallelAndPredicatePids,
+								t -> createChunkedQuery(
+										theParams,
+										sort,
+										theOffset,
+										theMaximumResults,
+										theCountOnlyFlag,
+										theRequest,
+										t,
+										queries));
+			}
 		}
 
 		return queries;
 	}
 
+	/**
+	 * If parallel AND predicates are enabled and the search has several parameters which can be
+	 * resolved independently, resolves them in parallel and removes them from the parameter map.
+	 *
+	 * @return The intersection of the PIDs matched by the resolved parameters (empty if nothing can
+	 * match), or <code>null</code> if the search should be performed entirely in the database
+	 */
+	@Nullable
+	private List<Long> resolveParallelAndPredicates(
+			SearchParameterMap theParams,
+			SortSpec theSort,
+			Integer theOffset,
+			boolean theCountOnlyFlag,
+			RequestDetails theRequest) {
+		if (myParallelAndPredicatesResolved) {
+			// The QueryIterator may create the query more than once, the parameters are only resolved once
+			return myParallelAndPredicatePids;
+		}
+		myParallelAndPredicatesResolved = true;
+
+		if (myParallelAndPredicateSvc == null
+				|| !myStorageSettings.isParallelAndPredicatesEnabled()
+				|| myParams.getEverythingMode() != null
+				|| myParams.isLastN()
+				|| myParams.getSearchContainedMode() != SearchContainedModeEnum.FALSE
+				|| !mySearchParamRegistry
+						.getActiveComboSearchParams(myResourceName, myParams.keySet())
+						.isEmpty()) {
+			return null;
+		}
+
+		List<String> paramNames = theParams.keySet().stream()
+				.filter(t -> !PARALLEL_AND_PREDICATE_EXCLUDED_PARAMS.contains(t))
+				.filter(t -> !theParams.get(t).isEmpty())
+				.collect(Collectors.toList());
+		if (paramNames.size() < 2) {
+			return null;
+		}
+
+		ParallelAndPredicateSvc.ResolvedAndPredicates resolved = myParallelAndPredicateSvc.resolve(
+				myResourceName, theParams, paramNames, mySearchUuid, theRequest, myRequestPartitionId);
+		if (resolved == null) {
+			return null;
+		}
+
+		/*
+		 * If the PIDs don't fit into a single chunk, the query is split into several queries, which is
+		 * only safe when the results don't need to be sorted, offset or counted across all of them.
+		 */
+		long[] pids = resolved.getPids();
+		if (pids.length > getMaximumPageSize() && (theSort != null || theOffset != null || theCountOnlyFlag)) {
+			ourLog.debug("Parallel AND predicates matched too many resources ({}), using a single query", pids.length);
+			return null;
+		}
+
+		for (String next : resolved.getParamNames()) {
+			theParams.remove(next);
+			myParams.remove(next);
+		}
+
+		myParallelAndPredicatePids = new ArrayList<>(pids.length);
+		for (long next : pids) {
+			myParallelAndPredicatePids.add(next);
+		}
+		return myParallelAndPredicatePids;
+	}
+
 	/**
 	 * Check to see if query should use Hibernate Search, and error if the query can't continue.
 	 *
@@ -693,6 +871,22 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			sqlBuilder.addPredicate(lastUpdatedPredicates);
 		}
 
+		// Keyset pagination: seek past the last row of the previous page
+		KeysetPosition keysetPosition = myParams.getKeysetPosition();
+		if (keysetPosition != null) {
+			boolean ascending = sort == null || sort.getOrder() != SortOrderEnum.DESC;
+			sqlBuilder.addPredicate(sqlBuilder.createKeysetPredicate(keysetPosition, ascending));
+		}
+
+		// The position of the last row of a keyset page also needs its RES_UPDATED
+		boolean selectLastUpdated = myParams.isKeysetPaging()
+				&& !theCountOnlyFlag
+				&& sort != null
+				&& Constants.PARAM_LASTUPDATED.equals(sort.getParamName());
+		if (selectLastUpdated) {
+			sqlBuilder.addLastUpdatedColumn();
+		}
+
 		/*
 		 * Exclude the pids already in the previous iterator. This is an optimization, as opposed
 		 * to something needed to guarantee correct results.
@@ -742,6 +936,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		if (!generatedSql.isMatchNothing()) {
 			SearchQueryExecutor executor =
 					mySqlBuilderFactory.newSearchQueryExecutor(generatedSql, myMaxResultsToFetch);
+			executor.setSelectsLastUpdated(selectLastUpdated);
 			theSearchQueryExecutors.add(executor);
 		}
 	}
@@ -1306,16 +1501,28 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		HashSet<JpaPid> original = new HashSet<>(matches);
 		ArrayList<Include> includes = new ArrayList<>(currentIncludes);
 
+		// Resource links are indexed by resource ID, so each ID only needs to be queried once
+		// no matter how many versions of it are reached
+		Set<Long> visitedPids = new HashSet<>(JpaPid.toLongList(matches));
+
 		int roundCounts = 0;
+		int newPidCount = 0;
+		List<String> roundTrace = new ArrayList<>();
 		StopWatch w = new StopWatch();
 
 		boolean addedSomeThisRound;
+		boolean includeBudgetMet = false;
 		do {
 			roundCounts++;
 
-			HashSet<JpaPid> pidsToInclude = new HashSet<>();
+			IncludeRound round = new IncludeRound(original, allAdded, newPidCount);
+			int frontierSize = nextRoundMatches.size();
 
-			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
+			// The reference paths for all includes in this round are loaded together after this loop
+			List<String> pathQueries = new ArrayList<>();
+			Map<String, Object> pathQueryParams = new HashMap<>();
+
+			for (Iterator<Include> iter = includes.iterator(); iter.hasNext() && !includeBudgetMet; ) {
 				Include nextInclude = iter.next();
 				if (nextInclude.isRecurse() == false) {
 					iter.remove();
@@ -1398,6 +1605,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 							q.setParameter("desired_target_resource_types", desiredResourceTypes);
 						}
 						List<?> results = q.getResultList();
+						round.addQuery();
 						for (Object nextRow : results) {
 							if (nextRow == null) {
 								// This can happen if there are outgoing references which are canonical or point to
@@ -1415,9 +1623,14 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 							if (resourceLink != null) {
 								JpaPid pid =
 										JpaPid.fromIdAndVersionAndResourceType(resourceLink, version, resourceType);
-								pidsToInclude.add(pid);
+								round.add(pid);
 							}
 						}
+
+						if (round.isBudgetMet(maxCount)) {
+							includeBudgetMet = true;
+							break;
+						}
 					}
 				} else {
 					List<String> paths;
@@ -1451,92 +1664,41 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 					Set<String> targetResourceTypes = computeTargetResourceTypes(nextInclude, param);
 
 					for (String nextPath : paths) {
-						String findPidFieldSqlColumn = findPidFieldName.equals(MY_SOURCE_RESOURCE_PID)
-								? "src_resource_id"
-								: "target_resource_id";
-						String fieldsToLoad = "r." + findPidFieldSqlColumn + " AS " + RESOURCE_ID_ALIAS;
-						if (findVersionFieldName != null) {
-							fieldsToLoad += ", r.target_resource_version AS " + RESOURCE_VERSION_ALIAS;
-						}
-
-						// Query for includes lookup has 2 cases
-						// Case 1: Where target_resource_id is available in hfj_res_link table for local references
-						// Case 2: Where target_resource_id is null in hfj_res_link table and referred by a canonical
-						// url in target_resource_url
-
-						// Case 1:
-						Map<String, Object> localReferenceQueryParams = new HashMap<>();
-
-						String searchPidFieldSqlColumn = searchPidFieldName.equals(MY_TARGET_RESOURCE_PID)
-								? "target_resource_id"
-								: "src_resource_id";
-						StringBuilder localReferenceQuery =
-								new StringBuilder("SELECT " + fieldsToLoad + " FROM hfj_res_link r "
-										+ " WHERE r.src_path = :src_path AND "
-										+ " r.target_resource_id IS NOT NULL AND "
-										+ " r."
-										+ searchPidFieldSqlColumn + " IN (:target_pids) ");
-						localReferenceQueryParams.put("src_path", nextPath);
-						// we loop over target_pids later.
-						if (targetResourceTypes != null) {
-							if (targetResourceTypes.size() == 1) {
-								localReferenceQuery.append(" AND r.target_resource_type = :target_resource_type ");
-								localReferenceQueryParams.put(
-										"target_resource_type",
-										targetResourceTypes.iterator().next());
-							} else {
-								localReferenceQuery.append(" AND r.target_resource_type in (:target_resource_types) ");
-								localReferenceQueryParams.put("target_resource_types", targetResourceTypes);
-							}
-						}
-
-						// Case 2:
-						Pair<String, Map<String, Object>> canonicalQuery = buildCanonicalUrlQuery(
-								findVersionFieldName, searchPidFieldSqlColumn, targetResourceTypes);
-
-						// @formatter:on
-
-						String sql = localReferenceQuery + " UNION " + canonicalQuery.getLeft();
-
-						List<Collection<JpaPid>> partitions = partition(nextRoundMatches, getMaximumPageSize());
-						for (Collection<JpaPid> nextPartition : partitions) {
-							Query q = entityManager.createNativeQuery(sql, Tuple.class);
-							q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
-							localReferenceQueryParams.forEach(q::setParameter);
-							canonicalQuery.getRight().forEach(q::setParameter);
-
-							if (maxCount != null) {
-								q.setMaxResults(maxCount);
-							}
-							@SuppressWarnings("unchecked")
-							List<Tuple> results = q.getResultList();
-							for (Tuple result : results) {
-								if (result != null) {
-									Long resourceId =
-											NumberUtils.createLong(String.valueOf(result.get(RESOURCE_ID_ALIAS)));
-									Long resourceVersion = null;
-									if (findVersionFieldName != null && result.get(RESOURCE_VERSION_ALIAS) != null) {
-										resourceVersion = NumberUtils.createLong(
-												String.valueOf(result.get(RESOURCE_VERSION_ALIAS)));
-									}
-									pidsToInclude.add(JpaPid.fromIdAndVersion(resourceId, resourceVersion));
-								}
-							}
-						}
+						addIncludePathQueries(
+								nextPath,
+								targetResourceTypes,
+								searchPidFieldName,
+								findPidFieldName,
+								findVersionFieldName,
+								pathQueries,
+								pathQueryParams);
 					}
 				}
 			}
 
+			if (!includeBudgetMet && !pathQueries.isEmpty()) {
+				includeBudgetMet = loadIncludePaths(
+						entityManager,
+						pathQueries,
+						pathQueryParams,
+						nextRoundMatches,
+						findVersionFieldName,
+						maxCount,
+						round);
+			}
+
 			nextRoundMatches.clear();
-			for (JpaPid next : pidsToInclude) {
-				if (!original.contains(next) && !allAdded.contains(next)) {
+			for (JpaPid next : round.getPids()) {
+				if (visitedPids.add(next.getId())) {
 					nextRoundMatches.add(next);
 				}
 			}
 
-			addedSomeThisRound = allAdded.addAll(pidsToInclude);
+			addedSomeThisRound = allAdded.addAll(round.getPids());
+			newPidCount += round.getNewPidCount();
+			roundTrace.add(round.describe(roundCounts, frontierSize));
 
-			if (maxCount != null && allAdded.size() >= maxCount) {
+			if (includeBudgetMet || (maxCount != null && allAdded.size() >= maxCount)) {
 				break;
 			}
 
@@ -1544,13 +1706,28 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		allAdded.removeAll(original);
 
+		String includeType = reverseMode ? "_revincludes" : "_includes";
 		ourLog.info(
 				"Loaded {} {} in {} rounds and {} ms for search {}",
 				allAdded.size(),
-				reverseMode ? "_revincludes" : "_includes",
+				includeType,
 				roundCounts,
 				w.getMillisAndRestart(),
 				searchIdOrDescription);
+		ourLog.debug("Rounds for {} in search {}: {}", includeType, searchIdOrDescription, roundTrace);
+
+		// Interceptor broadcast: JPA_PERFTRACE_INFO
+		if (CompositeInterceptorBroadcaster.hasHooks(Pointcut.JPA_PERFTRACE_INFO, myInterceptorBroadcaster, request)) {
+			StorageProcessingMessage msg = new StorageProcessingMessage()
+					.setMessage("Loaded " + allAdded.size() + " " + includeType + " in " + roundCounts + " rounds: "
+							+ String.join("; ", roundTrace));
+			HookParams params = new HookParams()
+					.add(RequestDetails.class, request)
+					.addIfMatchesType(ServletRequestDetails.class, request)
+					.add(StorageProcessingMessage.class, msg);
+			CompositeInterceptorBroadcaster.doCallHooks(
+					myInterceptorBroadcaster, request, Pointcut.JPA_PERFTRACE_INFO, params);
+		}
 
 		if (CompositeInterceptorBroadcaster.hasHooks(
 				Pointcut.JPA_PERFTRACE_RAW_SQL, myInterceptorBroadcaster, request)) {
@@ -1601,6 +1778,113 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				myInterceptorBroadcaster, request, Pointcut.JPA_PERFTRACE_RAW_SQL, params);
 	}
 
+	/**
+	 * Adds the queries for a single include path (one for local references, and one for
+	 * canonical references) to the list of queries for the current round. Parameter names
+	 * are suffixed so that all of the queries can be combined into a single statement.
+	 */
+	private void addIncludePathQueries(
+			String thePath,
+			@Nullable Set<String> theTargetResourceTypes,
+			String theSearchPidFieldName,
+			String theFindPidFieldName,
+			@Nullable String theFindVersionFieldName,
+			List<String> theQueries,
+			Map<String, Object> theQueryParams) {
+		String suffix = "_" + theQueries.size();
+
+		String findPidFieldSqlColumn =
+				theFindPidFieldName.equals(MY_SOURCE_RESOURCE_PID) ? "src_resource_id" : "target_resource_id";
+		String fieldsToLoad = "r." + findPidFieldSqlColumn + " AS " + RESOURCE_ID_ALIAS;
+		if (theFindVersionFieldName != null) {
+			fieldsToLoad += ", r.target_resource_version AS " + RESOURCE_VERSION_ALIAS;
+		}
+
+		// Query for includes lookup has 2 cases
+		// Case 1: Where target_resource_id is available in hfj_res_link table for local references
+		// Case 2: Where target_resource_id is null in hfj_res_link table and referred by a canonical
+		// url in target_resource_url
+
+		// Case 1:
+		String searchPidFieldSqlColumn =
+				theSearchPidFieldName.equals(MY_TARGET_RESOURCE_PID) ? "target_resource_id" : "src_resource_id";
+		StringBuilder localReferenceQuery = new StringBuilder("SELECT " + fieldsToLoad + " FROM hfj_res_link r "
+				+ " WHERE r.src_path = :src_path" + suffix + " AND "
+				+ " r.target_resource_id IS NOT NULL AND "
+				+ " r."
+				+ searchPidFieldSqlColumn + " IN (:target_pids) ");
+		theQueryParams.put("src_path" + suffix, thePath);
+		// we loop over target_pids later.
+		if (theTargetResourceTypes != null) {
+			if (theTargetResourceTypes.size() == 1) {
+				localReferenceQuery.append(" AND r.target_resource_type = :target_resource_type" + suffix + " ");
+				theQueryParams.put(
+						"target_resource_type" + suffix,
+						theTargetResourceTypes.iterator().next());
+			} else {
+				localReferenceQuery.append(" AND r.target_resource_type in (:target_resource_types" + suffix + ") ");
+				theQueryParams.put("target_resource_types" + suffix, theTargetResourceTypes);
+			}
+		}
+
+		// Case 2:
+		Pair<String, Map<String, Object>> canonicalQuery = buildCanonicalUrlQuery(
+				theFindVersionFieldName, searchPidFieldSqlColumn, theTargetResourceTypes, suffix);
+
+		theQueries.add(localReferenceQuery.toString());
+		theQueries.add(canonicalQuery.getLeft());
+		theQueryParams.putAll(canonicalQuery.getRight());
+	}
+
+	/**
+	 * Runs the queries for all include paths in a round as a single UNION statement per
+	 * partition of source PIDs
+	 *
+	 * @return Returns <code>true</code> if the maximum number of includes has been reached
+	 */
+	private boolean loadIncludePaths(
+			EntityManager theEntityManager,
+			List<String> theQueries,
+			Map<String, Object> theQueryParams,
+			List<JpaPid> theSourcePids,
+			@Nullable String theFindVersionFieldName,
+			@Nullable Integer theMaxCount,
+			IncludeRound theRound) {
+		String sql = String.join(" UNION ", theQueries);
+
+		// Each query repeats the source PID list, so shrink the partitions as queries are added in
+		// order to keep the number of bind variables per statement the same as for a single path
+		int partitionSize = Math.max(1, Math.min(getMaximumPageSize(), (2 * getMaximumPageSize()) / theQueries.size()));
+
+		for (Collection<JpaPid> nextPartition : partition(theSourcePids, partitionSize)) {
+			Query q = theEntityManager.createNativeQuery(sql, Tuple.class);
+			q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
+			theQueryParams.forEach(q::setParameter);
+
+			if (theMaxCount != null) {
+				q.setMaxResults(theMaxCount);
+			}
+			@SuppressWarnings("unchecked")
+			List<Tuple> results = q.getResultList();
+			theRound.addQuery();
+			for (Tuple result : results) {
+				if (result != null) {
+					Long resourceId = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_ID_ALIAS)));
+					Long resourceVersion = null;
+					if (theFindVersionFieldName != null && result.get(RESOURCE_VERSION_ALIAS) != null) {
+						resourceVersion = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_VERSION_ALIAS)));
+					}
+					theRound.add(JpaPid.fromIdAndVersion(resourceId, resourceVersion));
+				}
+			}
+
+			if (theRound.isBudgetMet(theMaxCount)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Nullable
 	private static Set<String> computeTargetResourceTypes(Include nextInclude, RuntimeSearchParam param) {
 		String targetResourceType = defaultString(nextInclude.getParamTargetType(), null);
@@ -1619,7 +1903,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 	@Nonnull
 	private Pair<String, Map<String, Object>> buildCanonicalUrlQuery(
-			String theVersionFieldName, String thePidFieldSqlColumn, Set<String> theTargetResourceTypes) {
+			String theVersionFieldName,
+			String thePidFieldSqlColumn,
+			Set<String> theTargetResourceTypes,
+			String theParamSuffix) {
 		String fieldsToLoadFromSpidxUriTable = "rUri.res_id";
 		if (theVersionFieldName != null) {
 			// canonical-uri references aren't versioned, but we need to match the column count for the UNION
@@ -1643,15 +1930,17 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				"SELECT " + fieldsToLoadFromSpidxUriTable + " FROM hfj_res_link r " + " JOIN hfj_spidx_uri rUri ON ( ");
 		// join on hash_identity and sp_uri - indexed in IDX_SP_URI_HASH_IDENTITY_V2
 		if (theTargetResourceTypes.size() == 1) {
-			canonicalUrlQuery.append("   rUri.hash_identity = :uri_identity_hash ");
+			canonicalUrlQuery.append("   rUri.hash_identity = :uri_identity_hash" + theParamSuffix + " ");
 			canonicalUriQueryParams.put(
-					"uri_identity_hash", identityHashesForTypes.iterator().next());
+					"uri_identity_hash" + theParamSuffix,
+					identityHashesForTypes.iterator().next());
 		} else {
-			canonicalUrlQuery.append("   rUri.hash_identity in (:uri_identity_hashes) ");
-			canonicalUriQueryParams.put("uri_identity_hashes", identityHashesForTypes);
+			canonicalUrlQuery.append("   rUri.hash_identity in (:uri_identity_hashes" + theParamSuffix + ") ");
+			canonicalUriQueryParams.put("uri_identity_hashes" + theParamSuffix, identityHashesForTypes);
 		}
 
-		canonicalUrlQuery.append("  AND r.target_resource_url = rUri.sp_uri  )" + " WHERE r.src_path = :src_path AND "
+		canonicalUrlQuery.append("  AND r.target_resource_url = rUri.sp_uri  )" + " WHERE r.src_path = :src_path"
+				+ theParamSuffix + " AND "
 				+ " r.target_resource_id IS NULL AND "
 				+ " r."
 				+ thePidFieldSqlColumn + " IN (:target_pids) ");
@@ -1831,6 +2120,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		return myResourceType;
 	}
 
+	@Override
 	public String getResourceName() {
 		return myResourceName;
 	}
@@ -1926,6 +2216,14 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		 * Will not be null if fetched using getNext()
 		 */
 		private JpaPid myNext;
+		/**
+		 * The last updated time of {@link #myNext}, if the query selects it
+		 */
+		private Date myNextLastUpdated;
+		/**
+		 * The last updated time of the result most recently returned by {@link #next()}
+		 */
+		private Date myLastUpdatedOfLastResult;
 		/**
 		 * The current query result iterator running sql and supplying PIDs
 		 * @see #myQueryList
@@ -2024,6 +2322,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 							JpaPid next = JpaPid.fromId(nextLong);
 							if (myPidSet.add(next)) {
 								myNext = next;
+								myNextLastUpdated = myResultsIterator.getLastUpdatedOfLastResult();
 								myNonSkipCount++;
 								break;
 							} else {
@@ -2154,10 +2453,18 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			fetchNext();
 			JpaPid retVal = myNext;
 			myNext = null;
+			myLastUpdatedOfLastResult = myNextLastUpdated;
+			myNextLastUpdated = null;
 			Validate.isTrue(!NO_MORE.equals(retVal), "No more elements");
 			return retVal;
 		}
 
+		@Nullable
+		@Override
+		public Date getLastUpdatedOfLastResult() {
+			return myLastUpdatedOfLastResult;
+		}
+
 		@Override
 		public int getSkippedCount() {
 			return mySkipCount;
@@ -2197,4 +2504,55 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	public static void setMaxPageSize50ForTest(boolean theIsTest) {
 		myUseMaxPageSize50ForTest = theIsTest;
 	}
+
+	/**
+	 * Collects the PIDs found by a single round of include loading, along with some
+	 * statistics about the round for tracing
+	 */
+	private static class IncludeRound {
+		private final Set<JpaPid> myOriginal;
+		private final Set<JpaPid> myAllAdded;
+		private final int myPreviousNewPidCount;
+		private final Set<JpaPid> myPids = new HashSet<>();
+		private int myNewPidCount;
+		private int myQueryCount;
+		private int myRowCount;
+
+		IncludeRound(Set<JpaPid> theOriginal, Set<JpaPid> theAllAdded, int thePreviousNewPidCount) {
+			myOriginal = theOriginal;
+			myAllAdded = theAllAdded;
+			myPreviousNewPidCount = thePreviousNewPidCount;
+		}
+
+		void add(JpaPid thePid) {
+			myRowCount++;
+			if (myPids.add(thePid) && !myOriginal.contains(thePid) && !myAllAdded.contains(thePid)) {
+				myNewPidCount++;
+			}
+		}
+
+		void addQuery() {
+			myQueryCount++;
+		}
+
+		Set<JpaPid> getPids() {
+			return myPids;
+		}
+
+		int getNewPidCount() {
+			return myNewPidCount;
+		}
+
+		/**
+		 * Have enough new PIDs been found across all rounds so far to satisfy the maximum count
+		 */
+		boolean isBudgetMet(@Nullable Integer theMaxCount) {
+			return theMaxCount != null && myPreviousNewPidCount + myNewPidCount >= theMaxCount;
+		}
+
+		String describe(int theRoundNumber, int theFrontierSize) {
+			return "round " + theRoundNumber + " queried " + theFrontierSize + " PIDs with " + myQueryCount
+					+ " queries and found " + myRowCount + " rows (" + myNewPidCount + " new)";
+		}
+	}
 }
@@ -44,6 +44,7 @@ import ca.uhn.fhir.jpa.search.builder.predicate.StringPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.TagPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.TokenPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.UriPredicateBuilder;
+import ca.uhn.fhir.jpa.searchparam.KeysetPosition;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ParamPrefixEnum;
@@ -74,6 +75,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -477,23 +479,29 @@ public class SearchQueryBuilder {
 		getOrCreateFirstPredicateBuilder();
 
 		mySelect.validate();
-		String sql = mySelect.toString();
+		String template = mySelect.toString();
 
+		// Replace the bind variable placeholders in a single pass over the rendered statement
+		StringBuilder sqlBuilder = new StringBuilder(template.length());
 		List<Object> bindVariables = new ArrayList<>();
+		int position = 0;
 		while (true) {
 
-			int idx = sql.indexOf(myBindVariableSubstitutionBase);
+			int idx = template.indexOf(myBindVariableSubstitutionBase, position);
 			if (idx == -1) {
 				break;
 			}
 
-			int endIdx = sql.indexOf("'", idx + myBindVariableSubstitutionBase.length());
-			String substitutionIndexString = sql.substring(idx + myBindVariableSubstitutionBase.length(), endIdx);
+			int endIdx = template.indexOf("'", idx + myBindVariableSubstitutionBase.length());
+			String substitutionIndexString = template.substring(idx + myBindVariableSubstitutionBase.length(), endIdx);
 			int substitutionIndex = Integer.parseInt(substitutionIndexString);
 			bindVariables.add(myBindVariableValues.get(substitutionIndex));
 
-			sql = sql.substring(0, idx - 1) + "?" + sql.substring(endIdx + 1);
+			sqlBuilder.append(template, position, idx - 1).append('?');
+			position = endIdx + 1;
 		}
+		sqlBuilder.append(template, position, template.length());
+		String sql = sqlBuilder.toString();
 
 		Integer maxResultsToFetch = theMaxResultsToFetch;
 		Integer offset = theOffset;
@@ -746,6 +754,40 @@ public class SearchQueryBuilder {
 		return ComboCondition.and(conditions.toArray(new Condition[0]));
 	}
 
+	/**
+	 * Adds the RES_UPDATED column of the resource table to the selected columns, directly after
+	 * the resource ID. Keyset pagination needs it for the position of the last row of a page. This
+	 * must be called before any other columns are selected.
+	 */
+	public void addLastUpdatedColumn() {
+		getOrCreateFirstPredicateBuilder();
+		mySelect.addColumns(getOrCreateResourceTablePredicateBuilder(false).getLastUpdatedColumn());
+	}
+
+	/**
+	 * Creates the seek predicate used for keyset pagination, restricting results to rows which
+	 * sort strictly after the given position. The search must be sorted by <code>_pid</code>,
+	 * or by <code>_lastUpdated</code> followed by <code>_pid</code>, in the given direction.
+	 */
+	public Condition createKeysetPredicate(KeysetPosition thePosition, boolean theAscending) {
+		ParamPrefixEnum comparator = theAscending ? GREATERTHAN : LESSTHAN;
+		DbColumn resourceIdColumn = getOrCreateFirstPredicateBuilder().getResourceIdColumn();
+		Condition afterResourceId =
+				createConditionForValueWithComparator(comparator, resourceIdColumn, thePosition.getResourcePid());
+
+		Date lastUpdated = thePosition.getLastUpdated();
+		if (lastUpdated == null) {
+			return afterResourceId;
+		}
+
+		DbColumn lastUpdatedColumn =
+				getOrCreateResourceTablePredicateBuilder(false).getLastUpdatedColumn();
+		Condition afterLastUpdated = createConditionForValueWithComparator(comparator, lastUpdatedColumn, lastUpdated);
+		Condition sameLastUpdated = ComboCondition.and(
+				BinaryCondition.equalTo(lastUpdatedColumn, generatePlaceholder(lastUpdated)), afterResourceId);
+		return ComboCondition.or(afterLastUpdated, sameLastUpdated);
+	}
+
 	private boolean isNotEqualsComparator(DateRangeParam theDateRange) {
 		if (theDateRange != null) {
 			DateParam lb = theDateRange.getLowerBound();
@@ -25,6 +25,7 @@ import ca.uhn.fhir.jpa.search.builder.ISearchQueryExecutor;
 import ca.uhn.fhir.jpa.util.ScrollableResultsIterator;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.IoUtil;
+import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.FlushModeType;
 import jakarta.persistence.PersistenceContext;
@@ -37,8 +38,16 @@ import org.hibernate.ScrollableResults;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class SearchQueryExecutor implements ISearchQueryExecutor {
 
@@ -46,6 +55,7 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 	private static final SearchQueryExecutor NO_VALUE_EXECUTOR = new SearchQueryExecutor();
 	private static final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
 	private static final Logger ourLog = LoggerFactory.getLogger(SearchQueryExecutor.class);
+	private static final Pattern EXPLAIN_ROWS_PATTERN = Pattern.compile("rows=(\\d+)");
 	private final GeneratedSql myGeneratedSql;
 
 	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
@@ -54,6 +64,9 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 	private boolean myQueryInitialized;
 	private ScrollableResultsIterator<Object> myResultSet;
 	private Long myNext;
+	private boolean mySelectsLastUpdated;
+	private Date myNextLastUpdated;
+	private Date myLastUpdated;
 
 	/**
 	 * Constructor
@@ -74,6 +87,21 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 		myNext = NO_MORE;
 	}
 
+	/**
+	 * Indicates that the query selects RES_UPDATED as its second column
+	 *
+	 * @see SearchQueryBuilder#addLastUpdatedColumn()
+	 */
+	public void setSelectsLastUpdated(boolean theSelectsLastUpdated) {
+		mySelectsLastUpdated = theSelectsLastUpdated;
+	}
+
+	@Nullable
+	@Override
+	public Date getLastUpdatedOfLastResult() {
+		return myLastUpdated;
+	}
+
 	@Override
 	public void close() {
 		IoUtil.closeQuietly(myResultSet);
@@ -91,6 +119,7 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 		Validate.isTrue(hasNext(), "Can not call next() right now, no data remains");
 		Long next = myNext;
 		myNext = null;
+		myLastUpdated = myNextLastUpdated;
 		return next;
 	}
 
@@ -151,6 +180,9 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 						next = (Number) nextRow;
 					} else {
 						next = (Number) ((Object[]) nextRow)[0];
+						if (mySelectsLastUpdated) {
+							myNextLastUpdated = toDate(((Object[]) nextRow)[1]);
+						}
 					}
 					myNext = next.longValue();
 				}
@@ -163,6 +195,79 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 		}
 	}
 
+	/**
+	 * Depending on the dialect and the JDBC driver, native queries may return timestamps as
+	 * legacy or <code>java.time</code> types
+	 */
+	@Nullable
+	private static Date toDate(@Nullable Object theValue) {
+		if (theValue == null || theValue instanceof Date) {
+			return (Date) theValue;
+		}
+		if (theValue instanceof Instant) {
+			return Date.from((Instant) theValue);
+		}
+		if (theValue instanceof OffsetDateTime) {
+			return Date.from(((OffsetDateTime) theValue).toInstant());
+		}
+		if (theValue instanceof LocalDateTime) {
+			return Timestamp.valueOf((LocalDateTime) theValue);
+		}
+		throw new InternalErrorException(Msg.code(2530) + "Unexpected timestamp type: " + theValue.getClass());
+	}
+
+	/**
+	 * Asks the database planner how many rows the query would produce, without executing
+	 * it. This uses the Postgres <code>EXPLAIN</code> syntax, so it must only be called
+	 * against a Postgres database.
+	 *
+	 * @return The planner's estimate, or <code>null</code> if the plan could not be interpreted
+	 */
+	@Nullable
+	public Long estimateRowCountUsingExplain() {
+		if (myGeneratedSql == null) {
+			return 0L;
+		}
+		HapiTransactionService.requireTransaction();
+
+		String sql = "EXPLAIN " + myGeneratedSql.getSql();
+		Object[] args = myGeneratedSql.getBindVariables().toArray(EMPTY_OBJECT_ARRAY);
+		Query nativeQuery = myEntityManager.createNativeQuery(sql);
+		for (int i = 1; i <= args.length; i++) {
+			nativeQuery.setParameter(i, args[i - 1]);
+		}
+		nativeQuery.setFlushMode(FlushModeType.COMMIT);
+
+		ourLog.trace("About to execute SQL: {}. Parameters: {}", sql, Arrays.toString(args));
+
+		@SuppressWarnings("unchecked")
+		List<Object> planLines = nativeQuery.getResultList();
+		return parseExplainRowEstimate(planLines);
+	}
+
+	/**
+	 * Extracts the estimated row count from a Postgres text query plan. Count queries are
+	 * planned as an aggregate (which always produces one row) over the actual search, so in
+	 * that case the estimate for the node below the aggregate is used.
+	 */
+	@Nullable
+	static Long parseExplainRowEstimate(List<?> thePlanLines) {
+		boolean first = true;
+		for (Object nextLine : thePlanLines) {
+			String line = String.valueOf(nextLine).trim();
+			Matcher matcher = EXPLAIN_ROWS_PATTERN.matcher(line);
+			if (!matcher.find()) {
+				continue;
+			}
+			if (first && line.contains("Aggregate")) {
+				first = false;
+				continue;
+			}
+			return Long.parseLong(matcher.group(1));
+		}
+		return null;
+	}
+
 	public static SearchQueryExecutor emptyExecutor() {
 		return NO_VALUE_EXECUTOR;
 	}
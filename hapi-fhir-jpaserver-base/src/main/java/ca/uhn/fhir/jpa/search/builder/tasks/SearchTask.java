@@ -36,11 +36,12 @@ import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.search.SearchTotalEstimateSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.QueryParameterUtils;
-import ca.uhn.fhir.jpa.util.SearchParameterMapCalculator;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.IPagingProvider;
@@ -55,6 +56,7 @@ import co.elastic.apm.api.ElasticApm;
 import co.elastic.apm.api.Span;
 import co.elastic.apm.api.Transaction;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -68,8 +70,10 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantCount;
+import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantEstimatedCount;
 import static ca.uhn.fhir.jpa.util.SearchParameterMapCalculator.isWantOnlyCount;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
@@ -121,6 +125,7 @@ public class SearchTask implements Callable<Void> {
 	private boolean myAdditionalPrefetchThresholdsRemaining;
 	private List<JpaPid> myPreviouslyAddedResourcePids;
 	private Integer myMaxResultsToFetch;
+	private SearchTotalEstimateSvc mySearchTotalEstimateSvc;
 
 	/**
 	 * Constructor
@@ -163,6 +168,14 @@ public class SearchTask implements Callable<Void> {
 		myParentTransaction = ElasticApm.currentTransaction();
 	}
 
+	/**
+	 * Sets the service used to cache <code>_total=estimated</code> totals. If this
+	 * is not set, totals are estimated for every search.
+	 */
+	public void setSearchTotalEstimateSvc(SearchTotalEstimateSvc theSearchTotalEstimateSvc) {
+		mySearchTotalEstimateSvc = theSearchTotalEstimateSvc;
+	}
+
 	protected RequestPartitionId getRequestPartitionId() {
 		return myRequestPartitionId;
 	}
@@ -555,15 +568,25 @@ public class SearchTask implements Callable<Void> {
 		 * before doing anything else.
 		 */
 		boolean myParamWantOnlyCount = isWantOnlyCount(myParams);
-		boolean myParamOrDefaultWantCount = nonNull(myParams.getSearchTotalMode())
-				? isWantCount(myParams)
-				: SearchParameterMapCalculator.isWantCount(myStorageSettings.getDefaultTotalMode());
+		SearchTotalModeEnum totalMode = nonNull(myParams.getSearchTotalMode())
+				? myParams.getSearchTotalMode()
+				: myStorageSettings.getDefaultTotalMode();
+		boolean myParamOrDefaultWantCount = isWantCount(totalMode);
+		boolean myParamOrDefaultWantEstimatedCount = isWantEstimatedCount(totalMode);
 
+		/*
+		 * For _total=estimated we don't count anything up front. The estimate is stored
+		 * separately from the total and only reported in Bundle.total (see
+		 * PersistedJpaBundleProvider#getEstimatedTotal()), since storing it as the total
+		 * would cut paging short if it is too low.
+		 */
 		if (myParamWantOnlyCount || myParamOrDefaultWantCount) {
-			doCountOnlyQuery(myParamWantOnlyCount);
+			doCountOnlyQuery(myParamWantOnlyCount, myParamWantOnlyCount && myParamOrDefaultWantEstimatedCount);
 			if (myParamWantOnlyCount) {
 				return;
 			}
+		} else if (myParamOrDefaultWantEstimatedCount && mySearch.getEstimatedTotal() == null) {
+			doEstimateTotal();
 		}
 
 		ourLog.trace("Done count");
@@ -694,8 +717,11 @@ public class SearchTask implements Callable<Void> {
 	/**
 	 * Does the query but only for the count.
 	 * @param theParamWantOnlyCount - if count query is wanted only
+	 * @param theEstimate - if an estimate may be used instead of an exact count. This is only
+	 *                    the case when only the count is wanted, since the count is otherwise
+	 *                    used for paging.
 	 */
-	private void doCountOnlyQuery(boolean theParamWantOnlyCount) {
+	private void doCountOnlyQuery(boolean theParamWantOnlyCount, boolean theEstimate) {
 		ourLog.trace("Performing count");
 		@SuppressWarnings("rawtypes")
 		ISearchBuilder sb = newSearchBuilder();
@@ -709,7 +735,10 @@ public class SearchTask implements Callable<Void> {
 		 * we will have to clone those parameters here so that
 		 * the "correct" params are used in createQuery below
 		 */
-		Long count = sb.createCountQuery(myParams.clone(), mySearch.getUuid(), myRequest, myRequestPartitionId);
+		Long estimate = theEstimate ? estimateTotal(sb) : null;
+		Long count = estimate != null
+				? estimate
+				: sb.createCountQuery(myParams.clone(), mySearch.getUuid(), myRequest, myRequestPartitionId);
 
 		ourLog.trace("Got count {}", count);
 
@@ -724,4 +753,38 @@ public class SearchTask implements Callable<Void> {
 					doSaveSearch();
 				});
 	}
+
+	/**
+	 * Computes the estimated total for a search using <code>_total=estimated</code> and stores it
+	 * with the search, so that it is computed once rather than for every page which is requested
+	 */
+	private void doEstimateTotal() {
+		@SuppressWarnings("rawtypes")
+		ISearchBuilder sb = newSearchBuilder();
+		Long estimate = estimateTotal(sb);
+		ourLog.trace("Got estimated total {}", estimate);
+		if (estimate == null) {
+			return;
+		}
+
+		myTxService
+				.withRequest(myRequest)
+				.withRequestPartitionId(myRequestPartitionId)
+				.execute(() -> {
+					mySearch.setEstimatedTotal((int) Math.min(estimate, Integer.MAX_VALUE));
+					doSaveSearch();
+				});
+	}
+
+	/**
+	 * @return The estimated number of matching resources, or <code>null</code> if it can't be estimated cheaply
+	 */
+	@Nullable
+	private Long estimateTotal(ISearchBuilder<?> theSearchBuilder) {
+		Supplier<Long> estimator = () -> theSearchBuilder.createEstimatedCountQuery(
+				myParams.clone(), mySearch.getUuid(), myRequest, myRequestPartitionId);
+		return mySearchTotalEstimateSvc != null
+				? mySearchTotalEstimateSvc.estimateTotal(myResourceType, myParams, myRequestPartitionId, estimator)
+				: estimator.get();
+	}
 }
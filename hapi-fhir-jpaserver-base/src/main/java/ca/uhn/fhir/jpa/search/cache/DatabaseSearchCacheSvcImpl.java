@@ -30,6 +30,7 @@ import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService.IExecutionBuilder;
 import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
 import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
 import ca.uhn.fhir.system.HapiSystemProperties;
 import com.google.common.annotations.VisibleForTesting;
@@ -168,6 +169,10 @@ public class DatabaseSearchCacheSvcImpl implements ISearchCacheSvc {
 		for (Search nextCandidateSearch : candidates) {
 			// We should only reuse our search if it was created within the permitted window
 			// Date.after() is unreliable.  Instant.isAfter() always works.
+			if (nextCandidateSearch.getSearchType() == SearchTypeEnum.KEYSET) {
+				// Keyset searches don't store any results, so there is nothing to reuse
+				continue;
+			}
 			if (queryString.equals(nextCandidateSearch.getSearchQueryString())
 					&& nextCandidateSearch.getCreated().toInstant().isAfter(theCreatedAfter)) {
 				return Optional.of(nextCandidateSearch);
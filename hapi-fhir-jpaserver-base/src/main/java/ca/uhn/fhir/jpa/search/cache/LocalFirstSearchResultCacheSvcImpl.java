@@ -0,0 +1,299 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier {@link ISearchResultCacheSvc} which keeps the result PIDs of searches that were
+ * executed on this node in a bounded local memory cache, in front of a delegate (normally
+ * {@link DatabaseSearchResultCacheSvcImpl}) which remains the source of truth.
+ * <p>
+ * Results are always written through to the delegate so that other nodes in a cluster (and the
+ * stale search cleanup) see exactly the same rows as before. Reads are served from memory whenever
+ * the requested range has been stored by this node, so paging through a search on the node which
+ * executed it does not need to query the HFJ_SEARCH_RESULT table.
+ * </p>
+ * <p>
+ * PIDs are held as compact primitive {@literal long} arrays keyed by the search UUID. Memory is
+ * bounded by {@link JpaStorageSettings#getSearchResultLocalCacheMaximumSearches()} and
+ * {@link JpaStorageSettings#getSearchResultLocalCacheMaximumPidsPerSearch()}.
+ * </p>
+ */
+public class LocalFirstSearchResultCacheSvcImpl implements ISearchResultCacheSvc {
+	private static final Logger ourLog = LoggerFactory.getLogger(LocalFirstSearchResultCacheSvcImpl.class);
+
+	private final ISearchResultCacheSvc myDelegate;
+	private final JpaStorageSettings myStorageSettings;
+	private final LongAdder myHitCount = new LongAdder();
+	private final LongAdder myMissCount = new LongAdder();
+	private volatile Cache<String, CachedPids> myCache;
+
+	public LocalFirstSearchResultCacheSvcImpl(
+			@Nonnull ISearchResultCacheSvc theDelegate, @Nonnull JpaStorageSettings theStorageSettings) {
+		Validate.notNull(theDelegate, "theDelegate must not be null");
+		Validate.notNull(theStorageSettings, "theStorageSettings must not be null");
+		myDelegate = theDelegate;
+		myStorageSettings = theStorageSettings;
+	}
+
+	@Nullable
+	@Override
+	public List<JpaPid> fetchResultPids(
+			Search theSearch,
+			int theFrom,
+			int theTo,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		CachedPids cached = getCachedPids(theSearch);
+		if (cached != null) {
+			int to = theTo;
+			if (theSearch.getStatus() == SearchStatusEnum.FINISHED) {
+				// The last page of a finished search normally asks for more PIDs than there are
+				to = Math.min(theTo, theSearch.getNumFound());
+			}
+			List<JpaPid> retVal = cached.range(theFrom, to);
+			if (retVal != null) {
+				myHitCount.increment();
+				ourLog.trace(
+						"Local search result cache hit for search {} range {}-{}", theSearch.getUuid(), theFrom, theTo);
+				return retVal;
+			}
+		}
+
+		myMissCount.increment();
+		return myDelegate.fetchResultPids(theSearch, theFrom, theTo, theRequestDetails, theRequestPartitionId);
+	}
+
+	@Nullable
+	@Override
+	public List<JpaPid> fetchAllResultPids(
+			Search theSearch, RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId) {
+		/*
+		 * This is only used when a search is being continued, and the complete set of
+		 * stored PIDs can only be known by the delegate (another node may have stored
+		 * some of them), so we always go to the source of truth here.
+		 */
+		return myDelegate.fetchAllResultPids(theSearch, theRequestDetails, theRequestPartitionId);
+	}
+
+	@Override
+	public void storeResults(
+			Search theSearch,
+			List<JpaPid> thePreviouslyStoredResourcePids,
+			List<JpaPid> theNewResourcePids,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		myDelegate.storeResults(
+				theSearch,
+				thePreviouslyStoredResourcePids,
+				theNewResourcePids,
+				theRequestDetails,
+				theRequestPartitionId);
+
+		Cache<String, CachedPids> cache = getCache();
+		if (cache == null || theSearch.getUuid() == null) {
+			return;
+		}
+
+		String uuid = theSearch.getUuid();
+		int previousCount = thePreviouslyStoredResourcePids.size();
+		long[] newPids = toLongArray(theNewResourcePids);
+
+		/*
+		 * Don't populate the cache until the rows have actually been committed, since otherwise
+		 * a rollback could leave us serving PIDs that don't exist in the database.
+		 */
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					appendToCache(cache, uuid, previousCount, newPids);
+				}
+			});
+		} else {
+			appendToCache(cache, uuid, previousCount, newPids);
+		}
+	}
+
+	private void appendToCache(
+			Cache<String, CachedPids> theCache, String theUuid, int thePreviousCount, long[] theNewPids) {
+		int maxPids = myStorageSettings.getSearchResultLocalCacheMaximumPidsPerSearch();
+
+		if (thePreviousCount == 0) {
+			if (theNewPids.length > maxPids) {
+				theCache.invalidate(theUuid);
+				return;
+			}
+			theCache.put(theUuid, new CachedPids(theNewPids));
+			return;
+		}
+
+		CachedPids existing = theCache.getIfPresent(theUuid);
+		if (existing == null) {
+			// Earlier results were stored elsewhere (or evicted), so we can't hold a contiguous copy
+			return;
+		}
+
+		if (!existing.append(thePreviousCount, theNewPids, maxPids)) {
+			theCache.invalidate(theUuid);
+		}
+	}
+
+	@Nullable
+	private CachedPids getCachedPids(Search theSearch) {
+		Cache<String, CachedPids> cache = getCache();
+		if (cache == null || theSearch.getUuid() == null) {
+			return null;
+		}
+		return cache.getIfPresent(theSearch.getUuid());
+	}
+
+	@Nullable
+	private Cache<String, CachedPids> getCache() {
+		int maximumSearches = myStorageSettings.getSearchResultLocalCacheMaximumSearches();
+		if (maximumSearches <= 0) {
+			return null;
+		}
+		Cache<String, CachedPids> retVal = myCache;
+		if (retVal == null) {
+			synchronized (this) {
+				retVal = myCache;
+				if (retVal == null) {
+					retVal = CacheFactory.build(myStorageSettings.getExpireSearchResultsAfterMillis(), maximumSearches);
+					myCache = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the number of page fetches which were served from the local cache
+	 */
+	public long getHitCount() {
+		return myHitCount.sum();
+	}
+
+	/**
+	 * Returns the number of page fetches which had to be passed to the delegate
+	 */
+	public long getMissCount() {
+		return myMissCount.sum();
+	}
+
+	/**
+	 * Returns the approximate number of searches currently held in the local cache
+	 */
+	public long getEstimatedSize() {
+		Cache<String, CachedPids> cache = getCache();
+		return cache != null ? cache.estimatedSize() : 0;
+	}
+
+	@VisibleForTesting
+	public synchronized void invalidateCaches() {
+		if (myCache != null) {
+			myCache.invalidateAll();
+		}
+		myHitCount.reset();
+		myMissCount.reset();
+	}
+
+	private static long[] toLongArray(List<JpaPid> thePids) {
+		long[] retVal = new long[thePids.size()];
+		for (int i = 0; i < retVal.length; i++) {
+			retVal[i] = thePids.get(i).getId();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Append-only store of the PIDs for a single search
+	 */
+	private static class CachedPids {
+
+		private long[] myPids;
+		private int mySize;
+
+		CachedPids(long[] thePids) {
+			myPids = thePids;
+			mySize = thePids.length;
+		}
+
+		/**
+		 * @return {@literal false} if the new PIDs could not be appended because they don't
+		 * directly follow the PIDs we already hold, or because the size limit was exceeded
+		 */
+		synchronized boolean append(int thePreviousCount, long[] theNewPids, int theMaximumSize) {
+			if (thePreviousCount != mySize) {
+				return false;
+			}
+			int newSize = mySize + theNewPids.length;
+			if (newSize > theMaximumSize) {
+				return false;
+			}
+			if (newSize > myPids.length) {
+				myPids = Arrays.copyOf(myPids, Math.min(theMaximumSize, Math.max(newSize, myPids.length * 2)));
+			}
+			System.arraycopy(theNewPids, 0, myPids, mySize, theNewPids.length);
+			mySize = newSize;
+			return true;
+		}
+
+		/**
+		 * @return The requested range, or {@literal null} if we don't hold all of it
+		 */
+		@Nullable
+		synchronized List<JpaPid> range(int theFrom, int theTo) {
+			if (theFrom < 0 || theTo < theFrom || theTo > mySize) {
+				return null;
+			}
+			if (theFrom == theTo) {
+				return Collections.emptyList();
+			}
+			List<JpaPid> retVal = new ArrayList<>(theTo - theFrom);
+			for (int i = theFrom; i < theTo; i++) {
+				retVal.add(JpaPid.fromId(myPids[i]));
+			}
+			return retVal;
+		}
+	}
+}
@@ -0,0 +1,321 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.reindex;
+
+import ca.uhn.fhir.context.ComboSearchParamType;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.api.dao.ReindexParameters;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexPendingDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexPendingEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.sched.HapiJob;
+import ca.uhn.fhir.jpa.model.sched.IHasScheduledJobs;
+import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
+import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.util.StopWatch;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceContextType;
+import org.apache.commons.lang3.time.DateUtils;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DeferredIndexingSvcImpl implements IDeferredIndexingSvc, IHasScheduledJobs {
+
+	public static final int PASS_CHUNK_SIZE = 100;
+	public static final int MAX_CHUNKS_PER_PASS = 50;
+	private static final long AWAIT_POLL_INTERVAL_MILLIS = 50;
+	private static final Logger ourLog = LoggerFactory.getLogger(DeferredIndexingSvcImpl.class);
+
+	private final JpaStorageSettings myStorageSettings;
+	private final ISearchParamRegistry mySearchParamRegistry;
+	private final IResourceIndexPendingDao myResourceIndexPendingDao;
+	private final IHapiTransactionService myTransactionService;
+	private final DaoRegistry myDaoRegistry;
+
+	/**
+	 * Resource types with pending work that searches are currently waiting on,
+	 * so that they can be notified as soon as a pass completes
+	 */
+	private final Map<String, Object> myAwaitMonitors = new ConcurrentHashMap<>();
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+
+	/**
+	 * Constructor
+	 */
+	public DeferredIndexingSvcImpl(
+			JpaStorageSettings theStorageSettings,
+			ISearchParamRegistry theSearchParamRegistry,
+			IResourceIndexPendingDao theResourceIndexPendingDao,
+			IHapiTransactionService theTransactionService,
+			DaoRegistry theDaoRegistry) {
+		myStorageSettings = theStorageSettings;
+		mySearchParamRegistry = theSearchParamRegistry;
+		myResourceIndexPendingDao = theResourceIndexPendingDao;
+		myTransactionService = theTransactionService;
+		myDaoRegistry = theDaoRegistry;
+	}
+
+	@VisibleForTesting
+	void setEntityManagerForUnitTest(EntityManager theEntityManager) {
+		myEntityManager = theEntityManager;
+	}
+
+	@Override
+	public boolean isDeferred(String theResourceType) {
+		if (!myStorageSettings.getDeferredIndexingResourceTypes().contains(theResourceType)) {
+			return false;
+		}
+
+		/*
+		 * Unique combo params are enforced by their index rows, so resources with
+		 * active unique combos must be indexed in the writing transaction
+		 */
+		return mySearchParamRegistry
+				.getActiveComboSearchParams(theResourceType, ComboSearchParamType.UNIQUE)
+				.isEmpty();
+	}
+
+	@Override
+	public void enqueue(ResourceTable theEntity) {
+		Long resourceId = theEntity.getId();
+		long version = theEntity.getVersion();
+
+		/*
+		 * A row only exists if an earlier version is still waiting, so a brand new
+		 * resource can skip straight to the insert
+		 */
+		if (version > 1 && myResourceIndexPendingDao.updateVersion(resourceId, version) > 0) {
+			return;
+		}
+
+		ResourceIndexPendingEntity pending = new ResourceIndexPendingEntity();
+		pending.setResourceId(resourceId);
+		pending.setResourceType(theEntity.getResourceType());
+		pending.setResourceVersion(version);
+		pending.setCreated(new Date());
+		pending.setFailureCount(0);
+		myEntityManager.persist(pending);
+	}
+
+	@Override
+	public int runDeferredIndexingPass() {
+		if (myStorageSettings.isSchedulingDisabled()) {
+			return 0;
+		}
+
+		int retVal = 0;
+		for (int i = 0; i < MAX_CHUNKS_PER_PASS; i++) {
+			List<ResourceIndexPendingEntity> chunk = myTransactionService
+					.withSystemRequest()
+					.withRequestPartitionId(RequestPartitionId.allPartitions())
+					.readOnly()
+					.execute(() -> myResourceIndexPendingDao
+							.findOldest(ResourceIndexPendingEntity.MAX_FAILURES, PageRequest.of(0, PASS_CHUNK_SIZE))
+							.getContent());
+			if (chunk.isEmpty()) {
+				break;
+			}
+
+			int indexed = indexChunk(chunk);
+			retVal += indexed;
+			notifyWaiters(chunk);
+
+			/*
+			 * Rows that failed are still at the head of the queue, so leave their
+			 * retry until the next pass rather than spending it straight away
+			 */
+			if (chunk.size() < PASS_CHUNK_SIZE || indexed < chunk.size()) {
+				break;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Each resource is indexed in its own transaction so that one failure doesn't
+	 * roll back the rest of the chunk
+	 *
+	 * @return The number of rows that were successfully processed
+	 */
+	private int indexChunk(List<ResourceIndexPendingEntity> theChunk) {
+		StopWatch sw = new StopWatch();
+		ReindexParameters parameters = new ReindexParameters();
+
+		int retVal = 0;
+		for (ResourceIndexPendingEntity next : theChunk) {
+			try {
+				indexResource(next, parameters);
+				retVal++;
+			} catch (Exception e) {
+				recordFailure(next, e);
+			}
+		}
+
+		ourLog.debug("Indexed {} of {} deferred resources in {}", retVal, theChunk.size(), sw);
+		return retVal;
+	}
+
+	private void indexResource(ResourceIndexPendingEntity thePending, ReindexParameters theParameters) {
+		RequestDetails requestDetails = new SystemRequestDetails();
+		TransactionDetails transactionDetails = new TransactionDetails();
+
+		myTransactionService
+				.withRequest(requestDetails)
+				.withTransactionDetails(transactionDetails)
+				.withRequestPartitionId(RequestPartitionId.allPartitions())
+				.execute(() -> {
+					ResourceTable entity = myEntityManager.find(ResourceTable.class, thePending.getResourceId());
+					if (entity == null) {
+						// The resource has been expunged since it was queued
+						myResourceIndexPendingDao.deleteIfIndexed(thePending.getResourceId(), Long.MAX_VALUE);
+						return;
+					}
+
+					IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(thePending.getResourceType());
+					dao.reindex(JpaPid.fromId(entity.getId()), theParameters, requestDetails, transactionDetails);
+
+					// A newer version written while we were indexing stays queued
+					myResourceIndexPendingDao.deleteIfIndexed(entity.getId(), entity.getVersion());
+				});
+	}
+
+	private void recordFailure(ResourceIndexPendingEntity thePending, Exception theException) {
+		int failureCount = thePending.getFailureCount() + 1;
+		if (failureCount >= ResourceIndexPendingEntity.MAX_FAILURES) {
+			ourLog.error(
+					"Giving up on deferred indexing of {}/{} after {} attempts until it is next updated",
+					thePending.getResourceType(),
+					thePending.getResourceId(),
+					failureCount,
+					theException);
+		} else {
+			ourLog.warn(
+					"Failed to index deferred resource {}/{} (attempt {}): {}",
+					thePending.getResourceType(),
+					thePending.getResourceId(),
+					failureCount,
+					theException.toString());
+		}
+
+		try {
+			myTransactionService
+					.withSystemRequest()
+					.withRequestPartitionId(RequestPartitionId.allPartitions())
+					.execute(() -> myResourceIndexPendingDao.incrementFailureCount(thePending.getResourceId()));
+		} catch (Exception e) {
+			ourLog.warn(
+					"Failed to record deferred indexing failure for {}: {}", thePending.getResourceId(), e.toString());
+		}
+	}
+
+	private void notifyWaiters(List<ResourceIndexPendingEntity> theChunk) {
+		for (ResourceIndexPendingEntity next : theChunk) {
+			Object monitor = myAwaitMonitors.get(next.getResourceType());
+			if (monitor != null) {
+				synchronized (monitor) {
+					monitor.notifyAll();
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean awaitIndexing(String theResourceType) {
+		if (!myStorageSettings.getDeferredIndexingResourceTypes().contains(theResourceType)) {
+			return true;
+		}
+		long maxWait = myStorageSettings.getDeferredIndexingSearchMaxWaitMillis();
+		if (maxWait <= 0) {
+			return false;
+		}
+		if (countPending(theResourceType) == 0) {
+			return true;
+		}
+
+		StopWatch sw = new StopWatch();
+		Object monitor = myAwaitMonitors.computeIfAbsent(theResourceType, t -> new Object());
+		while (sw.getMillis() < maxWait) {
+			long remaining = maxWait - sw.getMillis();
+			synchronized (monitor) {
+				try {
+					// The indexing job may be running on another node, so poll as well as waiting for a notification
+					monitor.wait(Math.max(1, Math.min(remaining, AWAIT_POLL_INTERVAL_MILLIS)));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			if (countPending(theResourceType) == 0) {
+				return true;
+			}
+		}
+
+		ourLog.debug("Timed out after {}ms waiting for deferred indexing of {}", sw.getMillis(), theResourceType);
+		return false;
+	}
+
+	private long countPending(String theResourceType) {
+		return myTransactionService
+				.withSystemRequest()
+				.withRequestPartitionId(RequestPartitionId.allPartitions())
+				.readOnly()
+				.execute(() -> myResourceIndexPendingDao.countForResourceType(
+						theResourceType, ResourceIndexPendingEntity.MAX_FAILURES));
+	}
+
+	@Override
+	public void scheduleJobs(ISchedulerService theSchedulerService) {
+		ScheduledJobDefinition jobDetail = new ScheduledJobDefinition();
+		jobDetail.setId(getClass().getName());
+		jobDetail.setJobClass(Job.class);
+		theSchedulerService.scheduleClusteredJob(DateUtils.MILLIS_PER_SECOND, jobDetail);
+	}
+
+	public static class Job implements HapiJob {
+		@Autowired
+		private IDeferredIndexingSvc myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			myTarget.runDeferredIndexingPass();
+		}
+	}
+}
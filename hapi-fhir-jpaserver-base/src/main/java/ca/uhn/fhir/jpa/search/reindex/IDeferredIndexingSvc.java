@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.reindex;
+
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+
+/**
+ * Maintains search indexes for resource types that are configured for deferred indexing
+ * (see {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setDeferredIndexingResourceTypes(java.util.Set)}).
+ * Writes to these types store the resource body and record the resource in a durable queue, and the
+ * queue is drained by a scheduled job which extracts and stores the search indexes.
+ *
+ * @since 7.2.0
+ */
+public interface IDeferredIndexingSvc {
+
+	/**
+	 * Should index extraction be deferred for resources of the given type
+	 */
+	boolean isDeferred(String theResourceType);
+
+	/**
+	 * Records that the current version of the given resource needs to be indexed. This must be
+	 * called in the same transaction that writes the resource.
+	 */
+	void enqueue(ResourceTable theEntity);
+
+	/**
+	 * Indexes queued resources until the queue is empty or the maximum pass size is reached
+	 *
+	 * @return Returns the number of resources that were indexed
+	 */
+	int runDeferredIndexingPass();
+
+	/**
+	 * Blocks until no resources of the given type are waiting to be indexed, or until the maximum wait
+	 * configured in {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setDeferredIndexingSearchMaxWaitMillis(long)}
+	 * has elapsed. Returns immediately if the type is not deferred or if the maximum wait is {@literal 0}.
+	 *
+	 * @return Returns <code>true</code> if no resources of the given type are waiting to be indexed, or
+	 * <code>false</code> if the wait timed out or waiting is disabled
+	 */
+	boolean awaitIndexing(String theResourceType);
+}
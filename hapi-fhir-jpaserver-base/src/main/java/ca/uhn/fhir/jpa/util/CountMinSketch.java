@@ -0,0 +1,118 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import org.apache.commons.lang3.Validate;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe count-min sketch over 64-bit hash values, used to estimate how many times a
+ * given value has been seen in a fixed amount of memory. Estimates are never lower than the
+ * true count (as long as counts never go negative), and may be higher because of collisions.
+ * <p>
+ * The values added are expected to already be well distributed hashes (e.g. the index hash
+ * columns), so each row of the sketch only re-mixes the value with a different seed.
+ * </p>
+ */
+public class CountMinSketch {
+
+	private static final long[] SEEDS = {
+		0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L, 0xFF51AFD7ED558CCDL
+	};
+
+	private final int myDepth;
+	private final int myWidthMask;
+	private final AtomicLongArray myCounts;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theDepth The number of rows (between 1 and 5). More rows reduce the chance of a bad estimate.
+	 * @param theWidth The number of counters per row, rounded up to a power of 2. More counters reduce the size of
+	 *                 overestimates.
+	 */
+	public CountMinSketch(int theDepth, int theWidth) {
+		Validate.isTrue(theDepth > 0 && theDepth <= SEEDS.length, "theDepth must be between 1 and " + SEEDS.length);
+		Validate.isTrue(theWidth > 0, "theWidth must be greater than 0");
+		int width = Integer.highestOneBit(theWidth);
+		if (width < theWidth) {
+			width <<= 1;
+		}
+		myDepth = theDepth;
+		myWidthMask = width - 1;
+		myCounts = new AtomicLongArray(theDepth * width);
+	}
+
+	/**
+	 * Adds the given delta (which may be negative) to the count for the given value
+	 */
+	public void add(long theValue, long theDelta) {
+		for (int i = 0; i < myDepth; i++) {
+			myCounts.addAndGet(index(i, theValue), theDelta);
+		}
+	}
+
+	/**
+	 * Returns the estimated count for the given value
+	 */
+	public long estimate(long theValue) {
+		long retVal = Long.MAX_VALUE;
+		for (int i = 0; i < myDepth; i++) {
+			retVal = Math.min(retVal, myCounts.get(index(i, theValue)));
+		}
+		return Math.max(retVal, 0);
+	}
+
+	/**
+	 * Serializes the sketch so that it can be stored and later restored with {@link #fromBytes(byte[])}
+	 */
+	public byte[] toBytes() {
+		int length = myCounts.length();
+		ByteBuffer retVal = ByteBuffer.allocate(2 * Integer.BYTES + length * Long.BYTES);
+		retVal.putInt(myDepth);
+		retVal.putInt(myWidthMask + 1);
+		for (int i = 0; i < length; i++) {
+			retVal.putLong(myCounts.get(i));
+		}
+		return retVal.array();
+	}
+
+	/**
+	 * Restores a sketch serialized with {@link #toBytes()}
+	 */
+	public static CountMinSketch fromBytes(byte[] theBytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(theBytes);
+		CountMinSketch retVal = new CountMinSketch(buffer.getInt(), buffer.getInt());
+		int length = retVal.myCounts.length();
+		Validate.isTrue(buffer.remaining() == length * Long.BYTES, "Invalid sketch length");
+		for (int i = 0; i < length; i++) {
+			retVal.myCounts.set(i, buffer.getLong());
+		}
+		return retVal;
+	}
+
+	private int index(int theRow, long theValue) {
+		long hash = (theValue ^ SEEDS[theRow]) * 0xBF58476D1CE4E5B9L;
+		hash ^= hash >>> 31;
+		return theRow * (myWidthMask + 1) + (int) (hash & myWidthMask);
+	}
+}
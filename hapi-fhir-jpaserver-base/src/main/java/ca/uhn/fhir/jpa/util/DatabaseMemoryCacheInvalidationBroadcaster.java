@@ -0,0 +1,334 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IMemoryCacheInvalidationDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.model.entity.MemoryCacheInvalidationEntity;
+import ca.uhn.fhir.jpa.model.sched.HapiJob;
+import ca.uhn.fhir.jpa.model.sched.IHasScheduledJobs;
+import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
+import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
+import ca.uhn.fhir.util.JsonUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.time.DateUtils;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Propagation;
+
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shares {@link MemoryCacheService} invalidations between nodes through the
+ * <code>HFJ_CACHE_INVALIDATION</code> table. Each invalidation is written as a row, and every
+ * node polls for rows written by the other nodes since its previous poll. This is enabled using
+ * {@link JpaStorageSettings#setMemoryCacheInvalidationPollingEnabled(boolean)}.
+ * <p>
+ * Invalidations made on this node are collected in memory and written as a single row once per
+ * poll interval, so that writes don't each pay for an extra insert.
+ * </p>
+ * <p>
+ * Rows are timestamped using the clock of the node that wrote them, and each poll looks back
+ * over a short overlap window so that rows committed late or written by a node with a slightly
+ * different clock are not missed.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class DatabaseMemoryCacheInvalidationBroadcaster
+		implements IMemoryCacheInvalidationBroadcaster, IHasScheduledJobs {
+
+	public static final long POLL_INTERVAL_MILLIS = 5 * DateUtils.MILLIS_PER_SECOND;
+	public static final long POLL_OVERLAP_MILLIS = 30 * DateUtils.MILLIS_PER_SECOND;
+	public static final long RETENTION_MILLIS = DateUtils.MILLIS_PER_HOUR;
+	private static final int POLL_PAGE_SIZE = 1000;
+	/**
+	 * Beyond this many pending keys the affected caches are invalidated as a whole
+	 */
+	private static final int MAX_PENDING_KEYS = 10000;
+	private static final Logger ourLog = LoggerFactory.getLogger(DatabaseMemoryCacheInvalidationBroadcaster.class);
+
+	private final JpaStorageSettings myStorageSettings;
+	private final MemoryCacheService myMemoryCacheService;
+	private final IMemoryCacheInvalidationDao myMemoryCacheInvalidationDao;
+	private final IHapiTransactionService myTransactionService;
+
+	/**
+	 * Rows already applied that are still inside the overlap window, so that they are only applied once
+	 */
+	private Set<Long> myRecentlyAppliedIds = new HashSet<>();
+
+	/**
+	 * Guards {@link #myPendingInvalidations} separately from this object, so that writers
+	 * aren't held up by a poll
+	 */
+	private final Object myPendingLock = new Object();
+
+	/**
+	 * Invalidations made on this node that have not been written yet
+	 */
+	private PendingInvalidations myPendingInvalidations;
+
+	private long myLastPollStarted = System.currentTimeMillis();
+	private boolean myRegistered;
+
+	/**
+	 * Constructor
+	 */
+	public DatabaseMemoryCacheInvalidationBroadcaster(
+			JpaStorageSettings theStorageSettings,
+			MemoryCacheService theMemoryCacheService,
+			IMemoryCacheInvalidationDao theMemoryCacheInvalidationDao,
+			IHapiTransactionService theTransactionService) {
+		myStorageSettings = theStorageSettings;
+		myMemoryCacheService = theMemoryCacheService;
+		myMemoryCacheInvalidationDao = theMemoryCacheInvalidationDao;
+		myTransactionService = theTransactionService;
+	}
+
+	@PostConstruct
+	public synchronized void start() {
+		if (myStorageSettings.isMemoryCacheInvalidationPollingEnabled() && !myRegistered) {
+			myMemoryCacheService.registerInvalidationBroadcaster(this);
+			myRegistered = true;
+		}
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		flushPendingInvalidations();
+		if (myRegistered) {
+			myMemoryCacheService.unregisterInvalidationBroadcaster(this);
+			myRegistered = false;
+		}
+	}
+
+	@Override
+	public void broadcast(MemoryCacheInvalidationMessage theMessage) {
+		synchronized (myPendingLock) {
+			if (myPendingInvalidations == null) {
+				myPendingInvalidations = new PendingInvalidations(theMessage.getSentTimestamp());
+			}
+			myPendingInvalidations.addAll(theMessage.getEntries());
+		}
+	}
+
+	/**
+	 * Writes the invalidations made on this node since the previous flush as a single row
+	 */
+	public void flushPendingInvalidations() {
+		PendingInvalidations pending;
+		synchronized (myPendingLock) {
+			pending = myPendingInvalidations;
+			myPendingInvalidations = null;
+		}
+		if (pending == null) {
+			return;
+		}
+
+		MemoryCacheInvalidationMessage message = pending.toMessage(myMemoryCacheService.getNodeId());
+		MemoryCacheInvalidationEntity entity = new MemoryCacheInvalidationEntity();
+		entity.setNodeId(message.getSourceNodeId());
+		entity.setCreated(new Date());
+		entity.setMessageText(JsonUtil.serialize(message, false));
+
+		try {
+			myTransactionService
+					.withSystemRequest()
+					.withRequestPartitionId(RequestPartitionId.allPartitions())
+					.withPropagation(Propagation.REQUIRES_NEW)
+					.execute(() -> myMemoryCacheInvalidationDao.save(entity));
+		} catch (Exception e) {
+			// Keep them for the next flush rather than losing them
+			ourLog.warn("Failed to write {}: {}", message, e.toString());
+			broadcast(message);
+		}
+	}
+
+	/**
+	 * Applies the invalidations written by other nodes since the previous poll
+	 *
+	 * @return The number of invalidation messages applied
+	 */
+	public synchronized int pollForInvalidations() {
+		if (!myRegistered) {
+			return 0;
+		}
+
+		long pollStarted = System.currentTimeMillis();
+		Date cutoff = new Date(myLastPollStarted - POLL_OVERLAP_MILLIS);
+		Date nextCutoff = new Date(pollStarted - POLL_OVERLAP_MILLIS);
+		Set<Long> appliedIds = new HashSet<>();
+		int retVal = 0;
+
+		long afterId = Long.MIN_VALUE;
+		List<MemoryCacheInvalidationEntity> rows;
+		do {
+			long pageAfterId = afterId;
+			rows = myTransactionService
+					.withSystemRequest()
+					.withRequestPartitionId(RequestPartitionId.allPartitions())
+					.readOnly()
+					.execute(() -> myMemoryCacheInvalidationDao
+							.findFromOtherNodesCreatedAfter(
+									cutoff,
+									myMemoryCacheService.getNodeId(),
+									pageAfterId,
+									PageRequest.of(0, POLL_PAGE_SIZE))
+							.getContent());
+
+			for (MemoryCacheInvalidationEntity next : rows) {
+				afterId = next.getId();
+
+				// Rows older than the next poll's cutoff won't be seen again
+				if (next.getCreated().after(nextCutoff)) {
+					appliedIds.add(next.getId());
+				}
+				if (myRecentlyAppliedIds.contains(next.getId())) {
+					continue;
+				}
+				MemoryCacheInvalidationMessage message =
+						JsonUtil.deserialize(next.getMessageText(), MemoryCacheInvalidationMessage.class);
+				myMemoryCacheService.handleRemoteInvalidation(message);
+				retVal++;
+			}
+		} while (rows.size() >= POLL_PAGE_SIZE);
+
+		myRecentlyAppliedIds = appliedIds;
+		myLastPollStarted = pollStarted;
+		if (retVal > 0) {
+			ourLog.debug("Applied {} cache invalidations from other nodes", retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Removes rows that are old enough that every node will already have polled for them
+	 */
+	public void purgeExpiredInvalidations() {
+		if (!myStorageSettings.isMemoryCacheInvalidationPollingEnabled()) {
+			return;
+		}
+
+		Date cutoff = new Date(System.currentTimeMillis() - RETENTION_MILLIS);
+		int deleted = myTransactionService
+				.withSystemRequest()
+				.withRequestPartitionId(RequestPartitionId.allPartitions())
+				.execute(() -> myMemoryCacheInvalidationDao.deleteCreatedBefore(cutoff));
+		ourLog.debug("Purged {} expired cache invalidations", deleted);
+	}
+
+	@Override
+	public void scheduleJobs(ISchedulerService theSchedulerService) {
+		ScheduledJobDefinition pollJobDetail = new ScheduledJobDefinition();
+		pollJobDetail.setId(getClass().getName());
+		pollJobDetail.setJobClass(PollJob.class);
+		theSchedulerService.scheduleLocalJob(POLL_INTERVAL_MILLIS, pollJobDetail);
+
+		ScheduledJobDefinition purgeJobDetail = new ScheduledJobDefinition();
+		purgeJobDetail.setId(getClass().getName() + "_purge");
+		purgeJobDetail.setJobClass(PurgeJob.class);
+		theSchedulerService.scheduleClusteredJob(10 * DateUtils.MILLIS_PER_MINUTE, purgeJobDetail);
+	}
+
+	/**
+	 * Invalidations made on this node since the previous flush, with repeated keys merged
+	 */
+	private static class PendingInvalidations {
+
+		private final long myFirstSentTimestamp;
+		private final Set<MemoryCacheService.CacheEnum> myWholeCaches =
+				EnumSet.noneOf(MemoryCacheService.CacheEnum.class);
+		private final Map<MemoryCacheService.CacheEnum, Set<String>> myKeys =
+				new EnumMap<>(MemoryCacheService.CacheEnum.class);
+		private int myKeyCount;
+
+		PendingInvalidations(long theFirstSentTimestamp) {
+			myFirstSentTimestamp = theFirstSentTimestamp;
+		}
+
+		void addAll(List<MemoryCacheInvalidationMessage.Entry> theEntries) {
+			for (MemoryCacheInvalidationMessage.Entry next : theEntries) {
+				MemoryCacheService.CacheEnum cache = next.getCache();
+				if (myWholeCaches.contains(cache)) {
+					continue;
+				}
+				if (next.getKey() == null || myKeyCount >= MAX_PENDING_KEYS) {
+					myWholeCaches.add(cache);
+					Set<String> removed = myKeys.remove(cache);
+					if (removed != null) {
+						myKeyCount -= removed.size();
+					}
+					continue;
+				}
+				if (myKeys.computeIfAbsent(cache, t -> new LinkedHashSet<>()).add(next.getKey())) {
+					myKeyCount++;
+				}
+			}
+		}
+
+		MemoryCacheInvalidationMessage toMessage(String theNodeId) {
+			MemoryCacheInvalidationMessage retVal = new MemoryCacheInvalidationMessage(theNodeId, myFirstSentTimestamp);
+			for (MemoryCacheService.CacheEnum next : myWholeCaches) {
+				retVal.addEntry(next, null);
+			}
+			for (Map.Entry<MemoryCacheService.CacheEnum, Set<String>> nextEntry : myKeys.entrySet()) {
+				for (String nextKey : nextEntry.getValue()) {
+					retVal.addEntry(nextEntry.getKey(), nextKey);
+				}
+			}
+			return retVal;
+		}
+	}
+
+	public static class PollJob implements HapiJob {
+		@Autowired
+		private DatabaseMemoryCacheInvalidationBroadcaster myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			myTarget.flushPendingInvalidations();
+			myTarget.pollForInvalidations();
+		}
+	}
+
+	public static class PurgeJob implements HapiJob {
+		@Autowired
+		private DatabaseMemoryCacheInvalidationBroadcaster myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			myTarget.purgeExpiredInvalidations();
+		}
+	}
+}
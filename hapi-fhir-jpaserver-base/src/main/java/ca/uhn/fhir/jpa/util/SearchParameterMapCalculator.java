@@ -35,6 +35,10 @@ public class SearchParameterMapCalculator {
 		return SearchTotalModeEnum.ACCURATE.equals(theSearchTotalModeEnum);
 	}
 
+	public static boolean isWantEstimatedCount(SearchTotalModeEnum theSearchTotalModeEnum) {
+		return SearchTotalModeEnum.ESTIMATED.equals(theSearchTotalModeEnum);
+	}
+
 	public static boolean isWantOnlyCount(SearchParameterMap myParams) {
 		return SummaryEnum.COUNT.equals(myParams.getSummaryMode()) | INTEGER_0.equals(myParams.getCount());
 	}
@@ -0,0 +1,162 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.data.IResourceCompressionDictionaryDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.model.entity.ResourceCompressionDictionaryEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.hl7.fhir.r4.model.Observation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ResourceCompressionDictionarySvcTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@Mock
+	private IResourceCompressionDictionaryDao myResourceCompressionDictionaryDao;
+	@Mock
+	private IResourceHistoryTableDao myResourceHistoryTableDao;
+
+	private ResourceCompressionDictionarySvc mySvc;
+
+	@BeforeEach
+	public void before() {
+		mySvc = new ResourceCompressionDictionarySvc(myResourceCompressionDictionaryDao, myResourceHistoryTableDao);
+	}
+
+	@Test
+	public void testCompressWithoutDictionary() {
+		when(myResourceCompressionDictionaryDao.findNewestForResourceType(any(), eq("Observation"))).thenReturn(new SliceImpl<>(List.of()));
+		String json = encodeObservation(1);
+
+		byte[] compressed = mySvc.compress("Observation", json);
+
+		assertEquals(json, mySvc.decompress(compressed));
+		assertTrue(mySvc.isCompressedWithCurrentDictionary("Observation", compressed));
+	}
+
+	@Test
+	public void testTrainDictionaryAndCompress() {
+		when(myResourceCompressionDictionaryDao.findNewestForResourceType(any(), eq("Observation"))).thenReturn(new SliceImpl<>(List.of()));
+		String json = encodeObservation(999);
+		byte[] compressedWithoutDictionary = mySvc.compress("Observation", json);
+
+		List<ResourceHistoryTable> samples = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			ResourceHistoryTable sample = new ResourceHistoryTable();
+			sample.setEncoding(ResourceEncodingEnum.JSON);
+			sample.setResourceTextVc(encodeObservation(i));
+			samples.add(sample);
+		}
+		when(myResourceHistoryTableDao.findNewestForResourceType(any(), eq("Observation"))).thenReturn(new SliceImpl<>(samples));
+		when(myResourceCompressionDictionaryDao.save(any())).thenAnswer(t -> {
+			ResourceCompressionDictionaryEntity entity = t.getArgument(0, ResourceCompressionDictionaryEntity.class);
+			entity.setId(123L);
+			return entity;
+		});
+
+		ResourceCompressionDictionaryEntity dictionary = mySvc.trainDictionary("Observation", 100);
+		assertEquals(1, dictionary.getVersion());
+		assertEquals(20, dictionary.getSampleCount());
+		assertTrue(dictionary.getDictionary().length > 0);
+		assertTrue(dictionary.getDictionary().length <= ResourceCompressionDictionarySvc.MAX_DICTIONARY_SIZE);
+
+		byte[] compressed = mySvc.compress("Observation", json);
+		assertTrue(compressed.length < compressedWithoutDictionary.length, "Expected " + compressed.length + " < " + compressedWithoutDictionary.length);
+		assertTrue(mySvc.isCompressedWithCurrentDictionary("Observation", compressed));
+		assertFalse(mySvc.isCompressedWithCurrentDictionary("Observation", compressedWithoutDictionary));
+
+		// A node which hasn't seen the dictionary yet loads it by its ID
+		ResourceCompressionDictionarySvc otherSvc = new ResourceCompressionDictionarySvc(myResourceCompressionDictionaryDao, myResourceHistoryTableDao);
+		when(myResourceCompressionDictionaryDao.findById(eq(123L))).thenReturn(Optional.of(dictionary));
+		assertEquals(json, otherSvc.decompress(compressed));
+		assertEquals(json, otherSvc.decompress(compressedWithoutDictionary));
+	}
+
+	@Test
+	public void testTrainDictionaryIsOnlyUsedAfterCommit() {
+		when(myResourceCompressionDictionaryDao.findNewestForResourceType(any(), eq("Observation"))).thenReturn(new SliceImpl<>(List.of()));
+		String json = encodeObservation(999);
+		assertTrue(mySvc.isCompressedWithCurrentDictionary("Observation", mySvc.compress("Observation", json)));
+
+		ResourceHistoryTable sample = new ResourceHistoryTable();
+		sample.setEncoding(ResourceEncodingEnum.JSON);
+		sample.setResourceTextVc(encodeObservation(1));
+		when(myResourceHistoryTableDao.findNewestForResourceType(any(), eq("Observation"))).thenReturn(new SliceImpl<>(List.of(sample)));
+		when(myResourceCompressionDictionaryDao.save(any())).thenAnswer(t -> {
+			ResourceCompressionDictionaryEntity entity = t.getArgument(0, ResourceCompressionDictionaryEntity.class);
+			entity.setId(123L);
+			return entity;
+		});
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			mySvc.trainDictionary("Observation", 100);
+
+			// Not committed yet, so writes keep using no dictionary
+			byte[] compressed = mySvc.compress("Observation", json);
+			assertEquals(json, mySvc.decompress(compressed));
+			assertTrue(mySvc.isCompressedWithCurrentDictionary("Observation", compressed));
+
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+			assertFalse(mySvc.isCompressedWithCurrentDictionary("Observation", compressed));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	public void testTrainDictionaryWithNoSamples() {
+		when(myResourceHistoryTableDao.findNewestForResourceType(any(), eq("Observation"))).thenReturn(new SliceImpl<>(List.of()));
+
+		assertThrows(InvalidRequestException.class, () -> mySvc.trainDictionary("Observation", 100));
+	}
+
+	@Test
+	public void testBuildDictionaryPutsMostValuableFragmentsLast() {
+		List<String> samples = List.of(
+			"{\"resourceType\":\"Observation\",\"status\":\"final\",\"code\":\"a\"}",
+			"{\"resourceType\":\"Observation\",\"status\":\"final\",\"code\":\"b\"}");
+
+		String dictionary = new String(ResourceCompressionDictionarySvc.buildDictionary(samples, 1000), StandardCharsets.UTF_8);
+
+		assertTrue(dictionary.endsWith("\"resourceType\":"), dictionary);
+		assertTrue(dictionary.contains("\"Observation\""), dictionary);
+		assertFalse(dictionary.contains("\"a\""), dictionary);
+	}
+
+	private static String encodeObservation(int theIndex) {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getMeta().addProfile("http://hl7.org/fhir/StructureDefinition/vitalsigns");
+		obs.getCategoryFirstRep().addCoding().setSystem("http://terminology.hl7.org/CodeSystem/observation-category").setCode("vital-signs").setDisplay("Vital Signs");
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("8310-5").setDisplay("Body temperature");
+		obs.getSubject().setReference("Patient/" + theIndex);
+		obs.getValueQuantity().setValue(new BigDecimal("36." + theIndex)).setUnit("Cel").setSystem("http://unitsofmeasure.org").setCode("Cel");
+		return ourCtx.newJsonParser().encodeResourceToString(obs);
+	}
+}
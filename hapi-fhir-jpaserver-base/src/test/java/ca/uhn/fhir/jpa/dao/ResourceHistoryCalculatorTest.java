@@ -14,6 +14,7 @@ import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
@@ -133,7 +134,7 @@ class ResourceHistoryCalculatorTest {
 		resourceHistoryTable.setResourceTextVc(RESOURCE_TEXT_VC);
 
 		final boolean isChanged =
-			getCalculator(theIsOracle).conditionallyAlterHistoryEntity(resourceTable, resourceHistoryTable, theResourceText);
+			getCalculator(theIsOracle).conditionallyAlterHistoryEntity(resourceTable, resourceHistoryTable, theResourceText, ResourceEncodingEnum.JSONC);
 
 		if (theIsOracle) {
 			assertFalse(isChanged);
@@ -148,6 +149,43 @@ class ResourceHistoryCalculatorTest {
 		}
 	}
 
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	void calculateResourceHistoryState_binaryJsonAlwaysStoredAsBinary(boolean theIsOracle) {
+		final IBaseResource patient = getPatientR4();
+
+		final ResourceHistoryState result = getCalculator(theIsOracle).calculateResourceHistoryState(patient, ResourceEncodingEnum.JSONB, EXCLUDED_ELEMENTS_1);
+
+		assertNull(result.getResourceText());
+		assertEquals(ResourceEncodingEnum.JSONB, result.getEncoding());
+		final String expectedJson = CONTEXT.newJsonParser().setDontEncodeElements(EXCLUDED_ELEMENTS_1).encodeResourceToString(patient);
+		assertEquals(expectedJson, BaseHapiFhirDao.decodeResource(result.getResourceBinary(), ResourceEncodingEnum.JSONB));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	void conditionallyAlterHistoryEntity_convertsToBinaryJson(boolean theIsOracle) {
+		final ResourceTable resourceTable = new ResourceTable();
+		resourceTable.setId(123L);
+
+		final String resourceText = "{\"resourceType\":\"Patient\",\"active\":true}";
+		final ResourceHistoryTable resourceHistoryTable = new ResourceHistoryTable();
+		resourceHistoryTable.setVersion(1);
+		resourceHistoryTable.setEncoding(ResourceEncodingEnum.JSON);
+		resourceHistoryTable.setResourceTextVc(resourceText);
+
+		final ResourceHistoryCalculator calculator = getCalculator(theIsOracle);
+		assertTrue(calculator.conditionallyAlterHistoryEntity(resourceTable, resourceHistoryTable, resourceText, ResourceEncodingEnum.JSONB));
+
+		assertNull(resourceHistoryTable.getResourceTextVc());
+		assertEquals(ResourceEncodingEnum.JSONB, resourceHistoryTable.getEncoding());
+		assertEquals(resourceText, BaseHapiFhirDao.decodeResource(resourceHistoryTable.getResourceBinary(), ResourceEncodingEnum.JSONB));
+		assertNull(resourceHistoryTable.getResource());
+
+		// Already converted
+		assertFalse(calculator.conditionallyAlterHistoryEntity(resourceTable, resourceHistoryTable, resourceText, ResourceEncodingEnum.JSONB));
+	}
+
 	private static Stream<Arguments> encodeResourceArguments() {
 		return Stream.of(
 			Arguments.of(FhirContext.forDstu3Cached(), ResourceEncodingEnum.JSONC, EXCLUDED_ELEMENTS_1),
@@ -245,6 +283,45 @@ class ResourceHistoryCalculatorTest {
 		}
 	}
 
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	void isResourceHistoryChanged_usesContentHashWhenPresent(boolean theIsOracle) {
+		final ResourceHistoryCalculator calculator = getCalculator(theIsOracle);
+		final Patient patient = getPatientR4();
+		final ResourceHistoryState state = calculator.calculateResourceHistoryState(patient, ResourceEncodingEnum.JSONB, EXCLUDED_ELEMENTS_1);
+
+		// The stored contents don't match, so only the hash can make this unchanged
+		final ResourceHistoryTable resourceHistoryTable = new ResourceHistoryTable();
+		resourceHistoryTable.setEncoding(ResourceEncodingEnum.JSON);
+		resourceHistoryTable.setResourceTextVc(ENCODED_RESOURCE_2);
+		resourceHistoryTable.setContentHash(state.getContentHash());
+		assertFalse(calculator.isResourceHistoryChanged(resourceHistoryTable, state));
+
+		patient.setActive(true);
+		final ResourceHistoryState changedState = calculator.calculateResourceHistoryState(patient, ResourceEncodingEnum.JSONB, EXCLUDED_ELEMENTS_1);
+		assertTrue(calculator.isResourceHistoryChanged(resourceHistoryTable, changedState));
+
+		// Versions stored before the hash was added are compared by content
+		resourceHistoryTable.setContentHash(null);
+		resourceHistoryTable.setEncoding(ResourceEncodingEnum.JSONB);
+		resourceHistoryTable.setResourceBinary(state.getResourceBinary());
+		assertFalse(calculator.isResourceHistoryChanged(resourceHistoryTable, state));
+		assertTrue(calculator.isResourceHistoryChanged(resourceHistoryTable, changedState));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	void calculateResourceHistoryState_contentHashIndependentOfEncoding(boolean theIsOracle) {
+		final ResourceHistoryCalculator calculator = getCalculator(theIsOracle);
+		final Patient patient = getPatientR4();
+
+		final ResourceHistoryState json = calculator.calculateResourceHistoryState(patient, ResourceEncodingEnum.JSON, EXCLUDED_ELEMENTS_1);
+		final ResourceHistoryState jsonb = calculator.calculateResourceHistoryState(patient, ResourceEncodingEnum.JSONB, EXCLUDED_ELEMENTS_1);
+
+		assertEquals(32, json.getContentHash().length());
+		assertEquals(json.getContentHash(), jsonb.getContentHash());
+	}
+
 	private static Stream<Arguments> populateEncodedResourceArguments() {
 		return Stream.of(
 			Arguments.of(true, ResourceEncodingEnum.JSONC, ENCODED_RESOURCE_1),
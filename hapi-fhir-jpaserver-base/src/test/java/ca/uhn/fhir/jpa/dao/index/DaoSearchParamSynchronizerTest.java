@@ -6,6 +6,7 @@ import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamNumber;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.util.AddRemoveCount;
+import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,6 +18,7 @@ import java.math.BigDecimal;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -44,6 +46,9 @@ public class DaoSearchParamSynchronizerTest {
 	@Mock
 	private EntityManager entityManager;
 
+	@Mock
+	private Session session;
+
 	private ResourceIndexedSearchParams existingParams;
 
 	@BeforeEach
@@ -61,6 +66,7 @@ public class DaoSearchParamSynchronizerTest {
 		EXISTING_SEARCH_PARAM_NUMBER.setResource(resourceTable);
 		THE_SEARCH_PARAM_NUMBER.setResource(resourceTable);
 
+		when(entityManager.unwrap(Session.class)).thenReturn(session);
 		subject.setEntityManager(entityManager);
 	}
 
@@ -72,6 +78,35 @@ public class DaoSearchParamSynchronizerTest {
 		assertEquals(1, addRemoveCount.getAddCount());
 
 		verify(entityManager, never()).remove(any(BaseResourceIndex.class));
-		verify(entityManager, times(1)).merge(THE_SEARCH_PARAM_NUMBER);
+		verify(entityManager, times(1)).persist(THE_SEARCH_PARAM_NUMBER);
+		verify(entityManager, never()).merge(any());
+		verify(session, times(1)).setReadOnly(THE_SEARCH_PARAM_NUMBER, true);
+	}
+
+	@Test
+	void synchronizeSearchParamsNumberReusesPersistedRow() {
+		final ResourceTable resourceTable = new ResourceTable();
+		resourceTable.setId(1L);
+		ResourceIndexedSearchParamNumber existing = new ResourceIndexedSearchParamNumber(new PartitionSettings(), "Patient", GRITTSCORE, BigDecimal.valueOf(10));
+		existing.setResource(resourceTable);
+		existing.setId(99L);
+		ResourceIndexedSearchParamNumber updated = new ResourceIndexedSearchParamNumber(new PartitionSettings(), "Patient", GRITTSCORE, BigDecimal.valueOf(15));
+		updated.setResource(resourceTable);
+		when(theEntity.getParamsNumber()).thenReturn(List.of(updated));
+		when(existingEntity.getParamsNumber()).thenReturn(List.of(existing));
+		when(entityManager.contains(existing)).thenReturn(true);
+
+		final AddRemoveCount addRemoveCount = subject.synchronizeSearchParamsToDatabase(
+			ResourceIndexedSearchParams.withLists(theEntity), theEntity, ResourceIndexedSearchParams.withLists(existingEntity));
+
+		assertEquals(0, addRemoveCount.getRemoveCount());
+		assertEquals(1, addRemoveCount.getAddCount());
+		assertEquals(BigDecimal.valueOf(15), existing.getValue());
+
+		// The reused row must be writable so that its new value gets flushed
+		verify(session, times(1)).setReadOnly(existing, false);
+		verify(session, never()).setReadOnly(any(), eq(true));
+		verify(entityManager, times(1)).merge(existing);
+		verify(entityManager, never()).persist(any());
 	}
 }
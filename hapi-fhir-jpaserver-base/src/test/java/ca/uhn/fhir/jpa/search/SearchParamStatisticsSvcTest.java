@@ -0,0 +1,200 @@
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.ISearchParamStatisticsDao;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.SearchParamStatisticsEntity;
+import ca.uhn.fhir.jpa.util.CountMinSketch;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.param.TokenParam;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SearchParamStatisticsSvcTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final PartitionSettings myPartitionSettings = new PartitionSettings();
+	private final EntityManager myEntityManager = mock(EntityManager.class);
+	private final ISearchParamStatisticsDao myStatisticsDao = mock(ISearchParamStatisticsDao.class);
+	private SearchParamStatisticsSvc mySvc;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings.setSearchParameterStatisticsEnabled(true);
+		mySvc = new SearchParamStatisticsSvc(
+				myStorageSettings, myPartitionSettings, new NonTransactionalHapiTransactionService(), myStatisticsDao);
+		mySvc.setEntityManagerForUnitTest(myEntityManager);
+
+		// By default the index tables are empty
+		doReturn(mock(TypedQuery.class, RETURNS_SELF)).when(myEntityManager).createQuery(anyString(), any(Class.class));
+	}
+
+	@Test
+	public void testEstimateMatchCount() {
+		mySvc.rebuildStatistics();
+
+		List<ResourceIndexedSearchParamToken> added = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			added.add(newToken("http://foo", i < 90 ? "common" : "rare" + i));
+		}
+		mySvc.recordChanges(added, Collections.emptyList());
+
+		assertTrue(estimate("identifier", "http://foo", "common") >= 90);
+		assertTrue(estimate("identifier", null, "common") >= 90);
+		assertTrue(estimate("identifier", "http://foo", "rare95") < 10);
+		assertTrue(estimate("identifier", "http://foo", "unknown") < 10);
+		assertNull(estimate("name", null, "common"));
+
+		mySvc.recordChanges(Collections.emptyList(), added.subList(0, 50));
+		assertEquals(1, mySvc.getStatistics("Patient").size());
+		assertEquals(50L, mySvc.getStatistics("Patient").get(0).getRowCount());
+		assertEquals(0, mySvc.getStatistics("Observation").size());
+	}
+
+	@Test
+	public void testNoEstimatesUntilRefreshed() {
+		mySvc.recordChanges(List.of(newToken("http://foo", "bar")), Collections.emptyList());
+
+		assertFalse(mySvc.isWarm());
+		assertNull(estimate("identifier", "http://foo", "bar"));
+
+		mySvc.rebuildStatistics();
+		mySvc.recordChanges(List.of(newToken("http://foo", "bar")), Collections.emptyList());
+
+		assertTrue(mySvc.isWarm());
+		assertEquals(1L, estimate("identifier", "http://foo", "bar"));
+	}
+
+	@Test
+	public void testRefreshLoadsFromDatabase() {
+		List<ResourceIndexedSearchParamToken> sample = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			sample.add(newToken("http://foo", i < 9 ? "common" : "rare"));
+		}
+		TypedQuery<Object[]> countQuery = mock(TypedQuery.class, RETURNS_SELF);
+		Object[] countRow = new Object[] {null, "Patient", "identifier", 1000L};
+		when(countQuery.getResultList()).thenReturn(Collections.singletonList(countRow));
+		doReturn(countQuery)
+				.when(myEntityManager)
+				.createQuery(contains(ResourceIndexedSearchParamToken.class.getSimpleName()), eq(Object[].class));
+		TypedQuery<ResourceIndexedSearchParamToken> sampleQuery = mock(TypedQuery.class, RETURNS_SELF);
+		when(sampleQuery.getResultList()).thenReturn(sample);
+		doReturn(sampleQuery).when(myEntityManager).createQuery(anyString(), eq(ResourceIndexedSearchParamToken.class));
+
+		mySvc.rebuildStatistics();
+
+		assertEquals(1000L, mySvc.getStatistics("Patient").get(0).getRowCount());
+		assertTrue(estimate("identifier", "http://foo", "common") >= 900);
+		assertTrue(estimate("identifier", "http://foo", "rare") < 900);
+
+		// The result is stored for the other nodes
+		verify(myStatisticsDao).deleteAllInBatch();
+		ArgumentCaptor<SearchParamStatisticsEntity> captor = ArgumentCaptor.forClass(SearchParamStatisticsEntity.class);
+		verify(myEntityManager).persist(captor.capture());
+		assertEquals("identifier", captor.getValue().getParamName());
+		assertEquals(1000L, captor.getValue().getRowCount());
+		assertTrue(captor.getValue().getValueSketch().length > 0);
+	}
+
+	@Test
+	public void testRefreshLoadsStoredStatistics() {
+		CountMinSketch sketch = new CountMinSketch(3, 1024);
+		sketch.add(newToken("http://foo", "common").getHashSystemAndValue(), 900);
+		SearchParamStatisticsEntity stored = new SearchParamStatisticsEntity();
+		stored.setHashIdentity(BaseResourceIndexedSearchParam.calculateHashIdentity(
+				myPartitionSettings, RequestPartitionId.defaultPartition(), "Patient", "identifier"));
+		stored.setResourceType("Patient");
+		stored.setParamName("identifier");
+		stored.setRowCount(1000L);
+		stored.setValueSketch(sketch.toBytes());
+		Date updated = new Date();
+		when(myStatisticsDao.findLastUpdated()).thenReturn(updated);
+		when(myStatisticsDao.findAll()).thenReturn(List.of(stored));
+
+		mySvc.refreshStatistics();
+
+		assertTrue(mySvc.isWarm());
+		assertEquals(1000L, mySvc.getStatistics("Patient").get(0).getRowCount());
+		assertEquals(900L, estimate("identifier", "http://foo", "common"));
+
+		// Statistics which have already been loaded aren't loaded again, so local changes are kept
+		mySvc.recordChanges(List.of(newToken("http://foo", "common")), Collections.emptyList());
+		mySvc.refreshStatistics();
+		verify(myStatisticsDao, times(1)).findAll();
+		assertEquals(1001L, mySvc.getStatistics("Patient").get(0).getRowCount());
+	}
+
+	@Test
+	public void testChangesCommittedDuringRefreshAreKept() {
+		SearchParamStatisticsEntity stored = new SearchParamStatisticsEntity();
+		stored.setHashIdentity(BaseResourceIndexedSearchParam.calculateHashIdentity(
+				myPartitionSettings, RequestPartitionId.defaultPartition(), "Patient", "identifier"));
+		stored.setResourceType("Patient");
+		stored.setParamName("identifier");
+		stored.setRowCount(1000L);
+		when(myStatisticsDao.findLastUpdated()).thenReturn(new Date());
+		when(myStatisticsDao.findAll()).thenAnswer(t -> {
+			// Another transaction commits while the stored statistics are being read
+			mySvc.recordChanges(List.of(newToken("http://foo", "common")), Collections.emptyList());
+			return List.of(stored);
+		});
+
+		mySvc.refreshStatistics();
+
+		assertEquals(1001L, mySvc.getStatistics("Patient").get(0).getRowCount());
+	}
+
+	@Test
+	public void testNothingStoredYet() {
+		mySvc.refreshStatistics();
+
+		assertFalse(mySvc.isWarm());
+		verify(myStatisticsDao, times(0)).findAll();
+	}
+
+	@Test
+	public void testDisabled() {
+		myStorageSettings.setSearchParameterStatisticsEnabled(false);
+		mySvc.recordChanges(List.of(newToken("http://foo", "bar")), Collections.emptyList());
+
+		assertEquals(0, mySvc.getStatistics(null).size());
+		assertNull(estimate("identifier", "http://foo", "bar"));
+	}
+
+	private Long estimate(String theParamName, String theSystem, String theValue) {
+		List<List<IQueryParameterType>> andOr = List.of(List.of(new TokenParam(theSystem, theValue)));
+		return mySvc.estimateMatchCount("Patient", theParamName, andOr, RequestPartitionId.allPartitions());
+	}
+
+	private ResourceIndexedSearchParamToken newToken(String theSystem, String theValue) {
+		return new ResourceIndexedSearchParamToken(myPartitionSettings, "Patient", "identifier", theSystem, theValue);
+	}
+
+}
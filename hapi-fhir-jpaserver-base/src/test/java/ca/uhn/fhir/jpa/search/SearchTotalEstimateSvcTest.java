@@ -0,0 +1,78 @@
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class SearchTotalEstimateSvcTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final AtomicLong myEstimatorCalls = new AtomicLong();
+	private SearchTotalEstimateSvc mySvc;
+
+	@BeforeEach
+	public void before() {
+		mySvc = new SearchTotalEstimateSvc(myStorageSettings, FhirContext.forR4Cached());
+	}
+
+	@Test
+	public void testEstimateIsCached() {
+		assertEquals(100L, estimate(createParams("male"), 100L));
+		assertEquals(100L, estimate(createParams("male"), 200L));
+		assertEquals(1, myEstimatorCalls.get());
+
+		// Paging, sorting and the total mode don't affect the number of matches
+		SearchParameterMap params = createParams("male");
+		params.setCount(10);
+		params.setOffset(20);
+		params.setSort(new SortSpec("birthdate"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		assertEquals(100L, estimate(params, 300L));
+		assertEquals(1, myEstimatorCalls.get());
+
+		assertEquals(400L, estimate(createParams("female"), 400L));
+		assertEquals(2, myEstimatorCalls.get());
+	}
+
+	@Test
+	public void testCacheKeyIncludesPartition() {
+		SearchParameterMap params = createParams("male");
+		assertNotEquals(
+			mySvc.createCacheKey("Patient", params, RequestPartitionId.fromPartitionId(1)),
+			mySvc.createCacheKey("Patient", params, RequestPartitionId.fromPartitionId(2)));
+		assertNotEquals(
+			mySvc.createCacheKey("Patient", params, null),
+			mySvc.createCacheKey("Observation", params, null));
+	}
+
+	@Test
+	public void testCacheDisabled() {
+		myStorageSettings.setSearchTotalEstimateCacheMillis(0);
+
+		assertEquals(100L, estimate(createParams("male"), 100L));
+		assertEquals(200L, estimate(createParams("male"), 200L));
+		assertEquals(2, myEstimatorCalls.get());
+	}
+
+	private Long estimate(SearchParameterMap theParams, long theEstimate) {
+		return mySvc.estimateTotal("Patient", theParams, RequestPartitionId.allPartitions(), () -> {
+			myEstimatorCalls.incrementAndGet();
+			return theEstimate;
+		});
+	}
+
+	private static SearchParameterMap createParams(String theGender) {
+		return SearchParameterMap.newSynchronous("gender", new TokenParam(theGender));
+	}
+}
@@ -0,0 +1,32 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class ParallelAndPredicateSvcTest {
+
+	@Test
+	public void testIntersectMerge() {
+		long[] a = {1, 3, 5, 7, 9};
+		long[] b = {2, 3, 4, 5, 10};
+		assertArrayEquals(new long[] {3, 5}, ParallelAndPredicateSvc.intersect(a, b));
+		assertArrayEquals(new long[] {3, 5}, ParallelAndPredicateSvc.intersect(b, a));
+	}
+
+	@Test
+	public void testIntersectSmallWithLarge() {
+		long[] small = {5, 500, 999, 5000};
+		long[] large = LongStream.range(0, 1000).toArray();
+		assertArrayEquals(new long[] {5, 500, 999}, ParallelAndPredicateSvc.intersect(small, large));
+		assertArrayEquals(new long[] {5, 500, 999}, ParallelAndPredicateSvc.intersect(large, small));
+	}
+
+	@Test
+	public void testIntersectEmpty() {
+		assertArrayEquals(new long[0], ParallelAndPredicateSvc.intersect(new long[0], new long[] {1, 2}));
+		assertArrayEquals(new long[0], ParallelAndPredicateSvc.intersect(new long[] {1, 2}, new long[] {3, 4}));
+	}
+}
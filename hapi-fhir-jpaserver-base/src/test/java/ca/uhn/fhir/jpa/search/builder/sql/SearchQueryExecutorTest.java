@@ -0,0 +1,34 @@
+package ca.uhn.fhir.jpa.search.builder.sql;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SearchQueryExecutorTest {
+
+	@Test
+	public void testParseExplainRowEstimate() {
+		List<String> plan = List.of(
+			"Aggregate  (cost=2914.20..2914.21 rows=1 width=8)",
+			"  ->  Bitmap Heap Scan on hfj_spidx_token t0  (cost=47.71..2908.42 rows=2312 width=8)",
+			"        Recheck Cond: (hash_sys_and_value = '-5173233826416404853'::bigint)",
+			"        ->  Bitmap Index Scan on idx_sp_token_hash_v  (cost=0.00..47.13 rows=2312 width=0)");
+		assertEquals(2312L, SearchQueryExecutor.parseExplainRowEstimate(plan));
+	}
+
+	@Test
+	public void testParseExplainRowEstimateWithoutAggregate() {
+		List<String> plan = List.of(
+			"Seq Scan on hfj_resource t0  (cost=0.00..22.70 rows=1270 width=8)",
+			"  Filter: ((res_type)::text = 'Patient'::text)");
+		assertEquals(1270L, SearchQueryExecutor.parseExplainRowEstimate(plan));
+	}
+
+	@Test
+	public void testParseExplainRowEstimateUnknownPlan() {
+		assertNull(SearchQueryExecutor.parseExplainRowEstimate(List.of("Result")));
+	}
+}
@@ -0,0 +1,112 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class LocalFirstSearchResultCacheSvcImplTest {
+
+	@Mock
+	private ISearchResultCacheSvc myDelegate;
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private LocalFirstSearchResultCacheSvcImpl mySvc;
+	private Search mySearch;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings.setSearchResultLocalCacheMaximumSearches(10);
+		myStorageSettings.setSearchResultLocalCacheMaximumPidsPerSearch(5);
+		mySvc = new LocalFirstSearchResultCacheSvcImpl(myDelegate, myStorageSettings);
+		mySearch = new Search();
+		mySearch.setUuid(UUID.randomUUID().toString());
+	}
+
+	@Test
+	public void testFetchStoredRangeIsServedLocally() {
+		mySvc.storeResults(mySearch, Collections.emptyList(), pids(1, 2, 3), null, null);
+		mySvc.storeResults(mySearch, pids(1, 2, 3), pids(4), null, null);
+
+		assertEquals(pids(2, 3, 4), mySvc.fetchResultPids(mySearch, 1, 4, null, null));
+		assertEquals(1, mySvc.getHitCount());
+		assertEquals(0, mySvc.getMissCount());
+		verify(myDelegate, never()).fetchResultPids(any(), anyInt(), anyInt(), any(), any());
+	}
+
+	@Test
+	public void testFetchBeyondStoredRangeGoesToDelegate() {
+		mySvc.storeResults(mySearch, Collections.emptyList(), pids(1, 2), null, null);
+		when(myDelegate.fetchResultPids(eq(mySearch), eq(0), eq(3), any(), any())).thenReturn(pids(1, 2));
+
+		assertEquals(pids(1, 2), mySvc.fetchResultPids(mySearch, 0, 3, null, null));
+		assertEquals(0, mySvc.getHitCount());
+		assertEquals(1, mySvc.getMissCount());
+	}
+
+	@Test
+	public void testFetchLastPartialPageOfFinishedSearchIsServedLocally() {
+		mySvc.storeResults(mySearch, Collections.emptyList(), pids(1, 2, 3), null, null);
+		mySearch.setStatus(SearchStatusEnum.FINISHED);
+		mySearch.setNumFound(3);
+
+		assertEquals(pids(3), mySvc.fetchResultPids(mySearch, 2, 4, null, null));
+		assertEquals(1, mySvc.getHitCount());
+		verify(myDelegate, never()).fetchResultPids(any(), anyInt(), anyInt(), any(), any());
+	}
+
+	@Test
+	public void testAppendNotContiguousIsNotCached() {
+		// The first block was stored by another node
+		mySvc.storeResults(mySearch, pids(1, 2), pids(3), null, null);
+		when(myDelegate.fetchResultPids(eq(mySearch), eq(2), eq(3), any(), any())).thenReturn(pids(3));
+
+		assertEquals(pids(3), mySvc.fetchResultPids(mySearch, 2, 3, null, null));
+		assertEquals(1, mySvc.getMissCount());
+	}
+
+	@Test
+	public void testSearchExceedingMaximumSizeIsEvicted() {
+		mySvc.storeResults(mySearch, Collections.emptyList(), pids(1, 2, 3), null, null);
+		mySvc.storeResults(mySearch, pids(1, 2, 3), pids(4, 5, 6), null, null);
+		when(myDelegate.fetchResultPids(eq(mySearch), eq(0), eq(2), any(), any())).thenReturn(pids(1, 2));
+
+		assertEquals(pids(1, 2), mySvc.fetchResultPids(mySearch, 0, 2, null, null));
+		assertEquals(1, mySvc.getMissCount());
+		assertEquals(0, mySvc.getEstimatedSize());
+	}
+
+	@Test
+	public void testDisabledPassesThrough() {
+		myStorageSettings.setSearchResultLocalCacheMaximumSearches(0);
+		mySvc = new LocalFirstSearchResultCacheSvcImpl(myDelegate, myStorageSettings);
+		mySvc.storeResults(mySearch, Collections.emptyList(), pids(1, 2), null, null);
+		when(myDelegate.fetchResultPids(eq(mySearch), eq(0), eq(2), any(), any())).thenReturn(pids(1, 2));
+
+		assertEquals(pids(1, 2), mySvc.fetchResultPids(mySearch, 0, 2, null, null));
+		verify(myDelegate).storeResults(eq(mySearch), any(), eq(pids(1, 2)), any(), any());
+	}
+
+	private static List<JpaPid> pids(long... theIds) {
+		return JpaPid.fromLongList(Arrays.stream(theIds).boxed().toList());
+	}
+}
@@ -0,0 +1,188 @@
+package ca.uhn.fhir.jpa.search.reindex;
+
+import ca.uhn.fhir.context.ComboSearchParamType;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexPendingDao;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexPendingEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DeferredIndexingSvcImplTest {
+
+	@Mock
+	private ISearchParamRegistry mySearchParamRegistry;
+	@Mock
+	private IResourceIndexPendingDao myResourceIndexPendingDao;
+	@Mock
+	private DaoRegistry myDaoRegistry;
+	@Mock
+	private IFhirResourceDao<?> myObservationDao;
+	@Mock
+	private EntityManager myEntityManager;
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private DeferredIndexingSvcImpl mySvc;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings.setDeferredIndexingResourceTypes(Set.of("Observation"));
+		mySvc = new DeferredIndexingSvcImpl(
+				myStorageSettings,
+				mySearchParamRegistry,
+				myResourceIndexPendingDao,
+				new NonTransactionalHapiTransactionService(),
+				myDaoRegistry);
+		mySvc.setEntityManagerForUnitTest(myEntityManager);
+	}
+
+	@Test
+	public void testIsDeferred() {
+		when(mySearchParamRegistry.getActiveComboSearchParams(eq("Observation"), eq(ComboSearchParamType.UNIQUE)))
+				.thenReturn(List.of());
+
+		assertTrue(mySvc.isDeferred("Observation"));
+		assertFalse(mySvc.isDeferred("Patient"));
+	}
+
+	@Test
+	public void testIsDeferred_UniqueComboParamPresent() {
+		when(mySearchParamRegistry.getActiveComboSearchParams(eq("Observation"), eq(ComboSearchParamType.UNIQUE)))
+				.thenReturn(List.of(mock(RuntimeSearchParam.class)));
+
+		assertFalse(mySvc.isDeferred("Observation"));
+	}
+
+	@Test
+	public void testEnqueue_NewResource() {
+		mySvc.enqueue(newEntity(1L, 1));
+
+		ArgumentCaptor<ResourceIndexPendingEntity> captor = ArgumentCaptor.forClass(ResourceIndexPendingEntity.class);
+		verify(myEntityManager).persist(captor.capture());
+		assertEquals(1L, captor.getValue().getResourceId());
+		assertEquals("Observation", captor.getValue().getResourceType());
+		assertEquals(1L, captor.getValue().getResourceVersion());
+		verify(myResourceIndexPendingDao, never()).updateVersion(anyLong(), anyLong());
+	}
+
+	@Test
+	public void testEnqueue_UpdateAlreadyQueued() {
+		when(myResourceIndexPendingDao.updateVersion(eq(1L), eq(3L))).thenReturn(1);
+
+		mySvc.enqueue(newEntity(1L, 3));
+
+		verify(myEntityManager, never()).persist(any());
+	}
+
+	@Test
+	public void testEnqueue_UpdateNotQueued() {
+		when(myResourceIndexPendingDao.updateVersion(eq(1L), eq(3L))).thenReturn(0);
+
+		mySvc.enqueue(newEntity(1L, 3));
+
+		verify(myEntityManager).persist(any(ResourceIndexPendingEntity.class));
+	}
+
+	@Test
+	public void testRunDeferredIndexingPass() {
+		when(myResourceIndexPendingDao.findOldest(eq(ResourceIndexPendingEntity.MAX_FAILURES), any()))
+				.thenReturn(new SliceImpl<>(List.of(newPending(1L, 2), newPending(2L, 1))));
+		when(myDaoRegistry.getResourceDao(eq("Observation"))).thenReturn((IFhirResourceDao) myObservationDao);
+		// Resource 1 was updated again after it was queued, resource 2 has been expunged
+		when(myEntityManager.find(eq(ResourceTable.class), eq(1L))).thenReturn(newEntity(1L, 3));
+		when(myEntityManager.find(eq(ResourceTable.class), eq(2L))).thenReturn(null);
+
+		assertEquals(2, mySvc.runDeferredIndexingPass());
+
+		verify(myObservationDao).reindex(eq(JpaPid.fromId(1L)), any(), any(), any());
+		verify(myResourceIndexPendingDao).deleteIfIndexed(eq(1L), eq(3L));
+		verify(myResourceIndexPendingDao).deleteIfIndexed(eq(2L), eq(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testRunDeferredIndexingPass_FailureDoesNotBlockChunk() {
+		when(myResourceIndexPendingDao.findOldest(eq(ResourceIndexPendingEntity.MAX_FAILURES), any()))
+				.thenReturn(new SliceImpl<>(List.of(newPending(1L, 1), newPending(2L, 1))));
+		when(myDaoRegistry.getResourceDao(eq("Observation"))).thenReturn((IFhirResourceDao) myObservationDao);
+		when(myEntityManager.find(eq(ResourceTable.class), eq(1L))).thenReturn(newEntity(1L, 1));
+		when(myEntityManager.find(eq(ResourceTable.class), eq(2L))).thenReturn(newEntity(2L, 1));
+		doThrow(new InternalErrorException("FAILED"))
+				.when(myObservationDao)
+				.reindex(eq(JpaPid.fromId(1L)), any(), any(), any());
+
+		assertEquals(1, mySvc.runDeferredIndexingPass());
+
+		verify(myResourceIndexPendingDao).incrementFailureCount(eq(1L));
+		verify(myResourceIndexPendingDao, never()).deleteIfIndexed(eq(1L), anyLong());
+		verify(myResourceIndexPendingDao).deleteIfIndexed(eq(2L), eq(1L));
+	}
+
+	@Test
+	public void testAwaitIndexing() {
+		assertTrue(mySvc.awaitIndexing("Patient"));
+
+		// Waiting is disabled by default
+		assertFalse(mySvc.awaitIndexing("Observation"));
+		verify(myResourceIndexPendingDao, never()).countForResourceType(any(), anyInt());
+
+		myStorageSettings.setDeferredIndexingSearchMaxWaitMillis(5000);
+		when(myResourceIndexPendingDao.countForResourceType(eq("Observation"), anyInt())).thenReturn(1L, 1L, 0L);
+		assertTrue(mySvc.awaitIndexing("Observation"));
+	}
+
+	@Test
+	public void testAwaitIndexing_Timeout() {
+		myStorageSettings.setDeferredIndexingSearchMaxWaitMillis(100);
+		when(myResourceIndexPendingDao.countForResourceType(eq("Observation"), anyInt())).thenReturn(1L);
+
+		assertFalse(mySvc.awaitIndexing("Observation"));
+	}
+
+	private static ResourceTable newEntity(Long theId, long theVersion) {
+		ResourceTable retVal = new ResourceTable();
+		retVal.setId(theId);
+		retVal.setResourceType("Observation");
+		retVal.setVersionForUnitTest(theVersion);
+		return retVal;
+	}
+
+	private static ResourceIndexPendingEntity newPending(Long theId, long theVersion) {
+		ResourceIndexPendingEntity retVal = new ResourceIndexPendingEntity();
+		retVal.setResourceId(theId);
+		retVal.setResourceType("Observation");
+		retVal.setResourceVersion(theVersion);
+		retVal.setCreated(new Date());
+		return retVal;
+	}
+}
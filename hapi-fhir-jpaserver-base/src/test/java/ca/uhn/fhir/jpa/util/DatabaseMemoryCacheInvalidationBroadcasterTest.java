@@ -0,0 +1,146 @@
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IMemoryCacheInvalidationDao;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.jpa.model.entity.MemoryCacheInvalidationEntity;
+import ca.uhn.fhir.util.JsonUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DatabaseMemoryCacheInvalidationBroadcasterTest {
+
+	@Mock
+	private IMemoryCacheInvalidationDao myDao;
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private MemoryCacheService mySendingCache;
+	private MemoryCacheService myReceivingCache;
+	private DatabaseMemoryCacheInvalidationBroadcaster mySendingSvc;
+	private DatabaseMemoryCacheInvalidationBroadcaster myReceivingSvc;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings.setMemoryCacheInvalidationPollingEnabled(true);
+		mySendingCache = new MemoryCacheService(myStorageSettings);
+		myReceivingCache = new MemoryCacheService(myStorageSettings);
+		mySendingSvc = new DatabaseMemoryCacheInvalidationBroadcaster(
+				myStorageSettings, mySendingCache, myDao, new NonTransactionalHapiTransactionService());
+		myReceivingSvc = new DatabaseMemoryCacheInvalidationBroadcaster(
+				myStorageSettings, myReceivingCache, myDao, new NonTransactionalHapiTransactionService());
+		mySendingSvc.start();
+		myReceivingSvc.start();
+	}
+
+	@Test
+	public void testInvalidationIsWrittenAndPolledByOtherNode() {
+		myReceivingCache.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|1", 1L);
+
+		mySendingCache.invalidate(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|1");
+		verify(myDao, never()).save(any());
+		mySendingSvc.flushPendingInvalidations();
+
+		ArgumentCaptor<MemoryCacheInvalidationEntity> captor =
+				ArgumentCaptor.forClass(MemoryCacheInvalidationEntity.class);
+		verify(myDao).save(captor.capture());
+		MemoryCacheInvalidationEntity row = captor.getValue();
+		assertEquals(mySendingCache.getNodeId(), row.getNodeId());
+		row.setId(1L);
+
+		when(myDao.findFromOtherNodesCreatedAfter(any(), eq(myReceivingCache.getNodeId()), anyLong(), any()))
+				.thenReturn(new SliceImpl<>(List.of(row)));
+
+		assertEquals(1, myReceivingSvc.pollForInvalidations());
+		assertNull(myReceivingCache.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|1"));
+		assertEquals(1, myReceivingCache.getInvalidationMetrics().getEntriesReceived());
+
+		// The row is still inside the overlap window, but should only be applied once
+		assertEquals(0, myReceivingSvc.pollForInvalidations());
+		assertEquals(1, myReceivingCache.getInvalidationMetrics().getMessagesReceived());
+	}
+
+	@Test
+	public void testInvalidationsAreWrittenOncePerFlush() {
+		mySendingCache.invalidate(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L);
+		mySendingCache.invalidate(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 2L);
+		mySendingCache.invalidate(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L);
+		mySendingSvc.flushPendingInvalidations();
+		mySendingSvc.flushPendingInvalidations();
+
+		ArgumentCaptor<MemoryCacheInvalidationEntity> captor =
+				ArgumentCaptor.forClass(MemoryCacheInvalidationEntity.class);
+		verify(myDao, times(1)).save(captor.capture());
+		MemoryCacheInvalidationMessage message =
+				JsonUtil.deserialize(captor.getValue().getMessageText(), MemoryCacheInvalidationMessage.class);
+		assertThat(
+				message.getEntries().stream().map(MemoryCacheInvalidationMessage.Entry::getKey).toList(),
+				contains("1", "2"));
+	}
+
+	@Test
+	public void testPollPagesThroughAllRows() {
+		myReceivingCache.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L, 1L);
+		myReceivingCache.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 2L, 1L);
+
+		List<MemoryCacheInvalidationEntity> firstPage = new ArrayList<>();
+		for (long i = 1; i <= 1000; i++) {
+			firstPage.add(newRow(i, "1"));
+		}
+		MemoryCacheInvalidationEntity lastRow = newRow(1001L, "2");
+		when(myDao.findFromOtherNodesCreatedAfter(any(), any(), eq(Long.MIN_VALUE), any()))
+				.thenReturn(new SliceImpl<>(firstPage));
+		when(myDao.findFromOtherNodesCreatedAfter(any(), any(), eq(1000L), any()))
+				.thenReturn(new SliceImpl<>(List.of(lastRow)));
+
+		assertEquals(1001, myReceivingSvc.pollForInvalidations());
+
+		// Rows beyond the first page are applied individually too
+		assertNull(myReceivingCache.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L));
+		assertNull(myReceivingCache.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 2L));
+		assertEquals(1001, myReceivingCache.getInvalidationMetrics().getEntriesReceived());
+	}
+
+	@Test
+	public void testPollingDisabled() {
+		myStorageSettings.setMemoryCacheInvalidationPollingEnabled(false);
+		myReceivingSvc.stop();
+		myReceivingSvc.start();
+
+		assertEquals(0, myReceivingSvc.pollForInvalidations());
+		verify(myDao, never()).findFromOtherNodesCreatedAfter(any(), any(), anyLong(), any());
+	}
+
+	private static MemoryCacheInvalidationEntity newRow(Long theId, String theInvalidatedVersionKey) {
+		MemoryCacheInvalidationMessage message = new MemoryCacheInvalidationMessage("other", System.currentTimeMillis())
+				.addEntry(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, theInvalidatedVersionKey);
+
+		MemoryCacheInvalidationEntity retVal = new MemoryCacheInvalidationEntity();
+		retVal.setId(theId);
+		retVal.setNodeId(message.getSourceNodeId());
+		retVal.setCreated(new Date());
+		retVal.setMessageText(JsonUtil.serialize(message, false));
+		return retVal;
+	}
+}
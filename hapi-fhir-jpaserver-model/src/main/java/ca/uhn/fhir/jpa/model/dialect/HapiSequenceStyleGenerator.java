@@ -50,6 +50,10 @@ import java.util.Properties;
 public class HapiSequenceStyleGenerator
 		implements PersistentIdentifierGenerator, BulkInsertionCapableIdentifierGenerator, ExportableProducer {
 	public static final String ID_MASSAGER_TYPE_KEY = "hapi_fhir.sequence_generator_massager";
+	/**
+	 * The number of values reserved by each call to the database sequence
+	 */
+	public static final int INCREMENT_SIZE = 50;
 	private final SequenceStyleGenerator myGen = new SequenceStyleGenerator();
 
 	@Autowired
@@ -74,12 +78,29 @@ public class HapiSequenceStyleGenerator
 			throws HibernateException {
 		Long retVal = myIdMassager != null ? myIdMassager.generate(myGeneratorName) : null;
 		if (retVal == null) {
-			Long next = (Long) myGen.generate(theSession, theObject);
+			Long next;
+			if (SequenceBlockReservation.isOpen()) {
+				next = SequenceBlockReservation.nextValue(
+						myGeneratorName, INCREMENT_SIZE, () -> nextSequenceValue(theSession));
+			} else {
+				next = (Long) myGen.generate(theSession, theObject);
+			}
 			retVal = myIdMassager.massage(myGeneratorName, next);
 		}
 		return retVal;
 	}
 
+	/**
+	 * Calls the database sequence directly, bypassing the optimizer which manages the shared block
+	 */
+	private long nextSequenceValue(SharedSessionContractImplementor theSession) {
+		return myGen.getDatabaseStructure()
+				.buildCallback(theSession)
+				.getNextValue()
+				.makeValue()
+				.longValue();
+	}
+
 	@Override
 	public void configure(Type theType, Properties theParams, ServiceRegistry theServiceRegistry)
 			throws MappingException {
@@ -96,7 +117,7 @@ public class HapiSequenceStyleGenerator
 		Properties props = new Properties(theParams);
 		props.put(OptimizableGenerator.OPT_PARAM, StandardOptimizerDescriptor.POOLED.getExternalName());
 		props.put(OptimizableGenerator.INITIAL_PARAM, "1");
-		props.put(OptimizableGenerator.INCREMENT_PARAM, "50");
+		props.put(OptimizableGenerator.INCREMENT_PARAM, Integer.toString(INCREMENT_SIZE));
 		props.put(GENERATOR_NAME, myGeneratorName);
 
 		myGen.configure(theType, props, theServiceRegistry);
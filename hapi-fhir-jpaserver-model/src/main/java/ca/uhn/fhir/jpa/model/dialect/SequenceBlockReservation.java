@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.dialect;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * While a reservation is open on the current thread, {@link HapiSequenceStyleGenerator} hands out
+ * IDs from contiguous blocks reserved for that thread instead of from the block shared by all
+ * threads on this node. Each block is reserved with a single call to the database sequence, exactly
+ * like the shared blocks, so IDs remain unique across threads and nodes.
+ * <p>
+ * This is intended for operations which create many entities on one thread, such as large
+ * transactions and bulk import. The entities created by the operation receive contiguous IDs, and
+ * the threads don't contend with each other for the shared block. Blocks stay with the thread
+ * after the reservation is closed and are used by the next reservation on that thread, so no
+ * IDs are wasted when reservations are short.
+ * </p>
+ * <p>
+ * Reservations can be nested, and must be closed on the thread that opened them:
+ * </p>
+ * <pre>
+ * try (SequenceBlockReservation reservation = SequenceBlockReservation.open()) {
+ *    // create resources
+ * }
+ * </pre>
+ */
+public final class SequenceBlockReservation implements AutoCloseable {
+
+	private static final ThreadLocal<int[]> ourOpenCount = ThreadLocal.withInitial(() -> new int[1]);
+	private static final ThreadLocal<Map<String, Block>> ourBlocks = ThreadLocal.withInitial(HashMap::new);
+
+	private final Thread myThread;
+	private boolean myClosed;
+
+	private SequenceBlockReservation() {
+		myThread = Thread.currentThread();
+	}
+
+	@Override
+	public void close() {
+		Validate.isTrue(Thread.currentThread() == myThread, "Reservation must be closed on the thread that opened it");
+		if (!myClosed) {
+			myClosed = true;
+			ourOpenCount.get()[0]--;
+		}
+	}
+
+	/**
+	 * Opens a reservation on the current thread
+	 */
+	public static SequenceBlockReservation open() {
+		ourOpenCount.get()[0]++;
+		return new SequenceBlockReservation();
+	}
+
+	/**
+	 * Is a reservation open on the current thread?
+	 */
+	public static boolean isOpen() {
+		return ourOpenCount.get()[0] > 0;
+	}
+
+	/**
+	 * Returns the next value from the current thread's block for the given generator
+	 *
+	 * @param theGeneratorName  The generator name
+	 * @param theBlockSize      The number of values reserved by each call to the sequence
+	 * @param theSequenceSupplier Calls the database sequence, which returns the highest value of the
+	 *                          next block (the sequence is "pooled", so it is incremented by the block
+	 *                          size on each call)
+	 */
+	static long nextValue(String theGeneratorName, int theBlockSize, LongSupplier theSequenceSupplier) {
+		Block block = ourBlocks.get().computeIfAbsent(theGeneratorName, t -> new Block());
+		if (block.myNext > block.myLast) {
+			/*
+			 * When the shared block is the first one taken from a new sequence, Hibernate's
+			 * pooled optimizer uses every value from the initial value up to the next value
+			 * it gets from the sequence. That range can cover the first few blocks, so they
+			 * are skipped here.
+			 */
+			long last;
+			do {
+				last = theSequenceSupplier.getAsLong();
+			} while (last <= 2L * theBlockSize + 1);
+			block.myLast = last;
+			block.myNext = last - theBlockSize + 1;
+		}
+		return block.myNext++;
+	}
+
+	/**
+	 * For unit tests only
+	 */
+	static void clearBlocksForUnitTest() {
+		ourBlocks.remove();
+	}
+
+	private static class Block {
+		private long myNext = 1;
+		private long myLast = 0;
+	}
+}
@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.hibernate.Length;
+
+import java.util.Date;
+
+/**
+ * An invalidation of the in-memory caches made on one node, stored so that the other nodes
+ * can poll for it. Rows are only kept for a short time.
+ *
+ * @since 7.2.0
+ */
+@Entity
+@Table(
+		name = "HFJ_CACHE_INVALIDATION",
+		indexes = {@Index(name = "IDX_CACHEINVAL_CREATED", columnList = "CREATED_TIME")})
+public class MemoryCacheInvalidationEntity {
+
+	public static final int NODE_ID_LENGTH = 40;
+
+	@SequenceGenerator(name = "SEQ_CACHE_INVALIDATION", sequenceName = "SEQ_CACHE_INVALIDATION")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_CACHE_INVALIDATION")
+	@Id
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "NODE_ID", length = NODE_ID_LENGTH, nullable = false, updatable = false)
+	private String myNodeId;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CREATED_TIME", nullable = false, updatable = false)
+	private Date myCreated;
+
+	@Column(name = "MESSAGE_TEXT", length = Length.LONG32, nullable = false, updatable = false)
+	private String myMessageText;
+
+	public Long getId() {
+		return myId;
+	}
+
+	public void setId(Long theId) {
+		myId = theId;
+	}
+
+	public String getNodeId() {
+		return myNodeId;
+	}
+
+	public void setNodeId(String theNodeId) {
+		myNodeId = theNodeId;
+	}
+
+	public Date getCreated() {
+		return myCreated;
+	}
+
+	public void setCreated(Date theCreated) {
+		myCreated = theCreated;
+	}
+
+	public String getMessageText() {
+		return myMessageText;
+	}
+
+	public void setMessageText(String theMessageText) {
+		myMessageText = theMessageText;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("id", myId)
+				.append("nodeId", myNodeId)
+				.append("created", myCreated)
+				.toString();
+	}
+}
@@ -0,0 +1,140 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.Date;
+
+/**
+ * A preset compression dictionary used to store resource bodies of a single resource type
+ * with the {@link ResourceEncodingEnum#JSOND} encoding. Dictionaries are never modified once
+ * created, since stored resource bodies reference the dictionary they were compressed with.
+ * Retraining creates a new row with the next version number for the resource type.
+ *
+ * @since 7.2.0
+ */
+@Entity()
+@Table(
+		name = "HFJ_RES_COMPRESS_DICT",
+		uniqueConstraints = {
+			@UniqueConstraint(
+					name = "IDX_RESCOMPDICT_TYPE_VER",
+					columnNames = {"RES_TYPE", "DICT_VERSION"})
+		})
+public class ResourceCompressionDictionaryEntity {
+
+	@SequenceGenerator(name = "SEQ_RES_COMPRESS_DICT", sequenceName = "SEQ_RES_COMPRESS_DICT")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_RES_COMPRESS_DICT")
+	@Id
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "RES_TYPE", length = ResourceTable.RESTYPE_LEN, nullable = false, updatable = false)
+	private String myResourceType;
+
+	@Column(name = "DICT_VERSION", nullable = false, updatable = false)
+	private int myVersion;
+
+	@Column(name = "DICT_DATA", length = Integer.MAX_VALUE - 1, nullable = false, updatable = false)
+	@Lob()
+	private byte[] myDictionary;
+
+	@Column(name = "SAMPLE_COUNT", nullable = false, updatable = false)
+	private int mySampleCount;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CREATED_TIME", nullable = false, updatable = false)
+	private Date myCreated;
+
+	public Long getId() {
+		return myId;
+	}
+
+	public void setId(Long theId) {
+		myId = theId;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public void setResourceType(String theResourceType) {
+		myResourceType = theResourceType;
+	}
+
+	public int getVersion() {
+		return myVersion;
+	}
+
+	public void setVersion(int theVersion) {
+		myVersion = theVersion;
+	}
+
+	public byte[] getDictionary() {
+		return myDictionary;
+	}
+
+	public void setDictionary(byte[] theDictionary) {
+		myDictionary = theDictionary;
+	}
+
+	/**
+	 * The number of stored resource bodies that this dictionary was trained from
+	 */
+	public int getSampleCount() {
+		return mySampleCount;
+	}
+
+	public void setSampleCount(int theSampleCount) {
+		mySampleCount = theSampleCount;
+	}
+
+	public Date getCreated() {
+		return myCreated;
+	}
+
+	public void setCreated(Date theCreated) {
+		myCreated = theCreated;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("id", myId)
+				.append("resourceType", myResourceType)
+				.append("version", myVersion)
+				.append("size", myDictionary != null ? myDictionary.length : null)
+				.append("sampleCount", mySampleCount)
+				.toString();
+	}
+}
@@ -40,6 +40,21 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Json encoded as a compact binary token stream with a per-resource dictionary of field names
+	 * and short string values. Resources in this encoding are always stored in
+	 * {@link ResourceHistoryTable#getResourceBinary()}, and are parsed without first being converted
+	 * back to JSON text.
+	 */
+	JSONB,
+
+	/**
+	 * Json compressed using a preset dictionary trained for the resource type. The dictionaries
+	 * are stored in {@link ResourceCompressionDictionaryEntity}, and each stored resource body
+	 * records the dictionary it was compressed with.
+	 */
+	JSOND,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
@@ -54,4 +69,15 @@ public enum ResourceEncodingEnum {
 	public IParser newParser(FhirContext theContext) {
 		return theContext.newJsonParser();
 	}
+
+	/**
+	 * Returns <code>true</code> if resource bodies in this encoding are stored in
+	 * {@link ResourceHistoryTable#getResourceBinary()} rather than in one of the text columns
+	 * or the legacy {@link ResourceHistoryTable#getResource()} large object column.
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isStoredInBinaryColumn() {
+		return this == JSONB || this == JSOND;
+	}
 }
@@ -54,6 +54,10 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 	// Don't reduce the visibility here, we reference this from Smile
 	@SuppressWarnings("WeakerAccess")
 	public static final int ENCODING_COL_LENGTH = 5;
+	/**
+	 * Length of a hex encoded 128 bit hash
+	 */
+	public static final int CONTENT_HASH_LENGTH = 32;
 
 	public static final String HFJ_RES_VER = "HFJ_RES_VER";
 	private static final long serialVersionUID = 1L;
@@ -93,11 +97,25 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 	@OptimisticLock(excluded = true)
 	private String myResourceTextVc;
 
+	@Column(name = "RES_TEXT_BIN", length = Length.LONG32, nullable = true)
+	@OptimisticLock(excluded = true)
+	private byte[] myResourceBinary;
+
 	@Column(name = "RES_ENCODING", nullable = false, length = ENCODING_COL_LENGTH)
 	@Enumerated(EnumType.STRING)
 	@OptimisticLock(excluded = true)
 	private ResourceEncodingEnum myEncoding;
 
+	/**
+	 * Hash of the encoded resource text, independent of the encoding used to store it.
+	 * This is used to detect updates which don't change anything without decoding the
+	 * stored text. Will be null for versions stored before this column was added, and
+	 * for deleted and externally stored versions.
+	 */
+	@Column(name = "RES_CONTENT_HASH", length = CONTENT_HASH_LENGTH, nullable = true)
+	@OptimisticLock(excluded = true)
+	private String myContentHash;
+
 	@OneToOne(
 			mappedBy = "myResourceHistoryTable",
 			cascade = {CascadeType.REMOVE})
@@ -153,6 +171,14 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 		myResourceTextVc = theResourceTextVc;
 	}
 
+	public String getContentHash() {
+		return myContentHash;
+	}
+
+	public void setContentHash(String theContentHash) {
+		myContentHash = theContentHash;
+	}
+
 	public ResourceHistoryProvenanceEntity getProvenance() {
 		return myProvenance;
 	}
@@ -210,6 +236,53 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 		myResource = theResource;
 	}
 
+	/**
+	 * Resource bodies in an encoding where {@link ResourceEncodingEnum#isStoredInBinaryColumn()}
+	 * is <code>true</code>. Unlike {@link #getResource()} this column is not a large object.
+	 *
+	 * @since 7.2.0
+	 */
+	public byte[] getResourceBinary() {
+		return myResourceBinary;
+	}
+
+	/**
+	 * @see #getResourceBinary()
+	 * @since 7.2.0
+	 */
+	public void setResourceBinary(byte[] theResourceBinary) {
+		myResourceBinary = theResourceBinary;
+	}
+
+	/**
+	 * Returns the stored binary resource body, which is {@link #getResourceBinary()} if the
+	 * encoding is stored there and {@link #getResource()} otherwise.
+	 *
+	 * @since 7.2.0
+	 */
+	public byte[] getStoredResourceBytes() {
+		if (myEncoding != null && myEncoding.isStoredInBinaryColumn()) {
+			return myResourceBinary;
+		}
+		return myResource;
+	}
+
+	/**
+	 * Stores a binary resource body in the column used for the current {@link #getEncoding() encoding},
+	 * and clears the other binary column. The encoding must be set before calling this method.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setStoredResourceBytes(byte[] theResourceBytes) {
+		if (myEncoding != null && myEncoding.isStoredInBinaryColumn()) {
+			myResourceBinary = theResourceBytes;
+			myResource = null;
+		} else {
+			myResource = theResourceBytes;
+			myResourceBinary = null;
+		}
+	}
+
 	@Override
 	public Long getResourceId() {
 		return myResourceId;
@@ -292,11 +365,11 @@ public class ResourceHistoryTable extends BaseHasResource implements Serializabl
 
 	/**
 	 * Returns <code>true</code> if there is a populated resource text (i.e.
-	 * either {@link #getResource()} or {@link #getResourceTextVc()} return a non null
-	 * value.
+	 * either {@link #getResource()}, {@link #getResourceBinary()} or {@link #getResourceTextVc()}
+	 * return a non null value.
 	 */
 	public boolean hasResource() {
-		return myResource != null || myResourceTextVc != null;
+		return myResource != null || myResourceBinary != null || myResourceTextVc != null;
 	}
 
 	/**
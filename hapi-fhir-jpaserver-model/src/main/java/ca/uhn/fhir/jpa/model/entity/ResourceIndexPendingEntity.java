@@ -0,0 +1,122 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.Date;
+
+/**
+ * Records that a resource was written with deferred indexing, and that its search indexes
+ * still need to be extracted and stored. There is at most one row per resource, holding the
+ * newest version that was written. Rows are removed once that version has been indexed.
+ * <p>
+ * Rows whose indexing has failed {@link #MAX_FAILURES} times are parked: they are no longer
+ * retried and no longer block searches until the resource is written again.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+@Entity
+@Table(
+		name = "HFJ_RES_IDX_PENDING",
+		indexes = {
+			@Index(name = "IDX_RESIDXPEND_TYPE", columnList = "RES_TYPE"),
+			@Index(name = "IDX_RESIDXPEND_CREATED", columnList = "CREATED_TIME")
+		})
+public class ResourceIndexPendingEntity {
+
+	public static final int MAX_FAILURES = 5;
+
+	@Id
+	@Column(name = "RES_ID", nullable = false, updatable = false)
+	private Long myResourceId;
+
+	@Column(name = "RES_TYPE", length = ResourceTable.RESTYPE_LEN, nullable = false, updatable = false)
+	private String myResourceType;
+
+	@Column(name = "RES_VER", nullable = false)
+	private long myResourceVersion;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CREATED_TIME", nullable = false)
+	private Date myCreated;
+
+	@Column(name = "FAILURE_COUNT", nullable = true)
+	private Integer myFailureCount;
+
+	public Long getResourceId() {
+		return myResourceId;
+	}
+
+	public void setResourceId(Long theResourceId) {
+		myResourceId = theResourceId;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public void setResourceType(String theResourceType) {
+		myResourceType = theResourceType;
+	}
+
+	public long getResourceVersion() {
+		return myResourceVersion;
+	}
+
+	public void setResourceVersion(long theResourceVersion) {
+		myResourceVersion = theResourceVersion;
+	}
+
+	public Date getCreated() {
+		return myCreated;
+	}
+
+	public void setCreated(Date theCreated) {
+		myCreated = theCreated;
+	}
+
+	public int getFailureCount() {
+		return myFailureCount != null ? myFailureCount : 0;
+	}
+
+	public void setFailureCount(int theFailureCount) {
+		myFailureCount = theFailureCount;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("resourceId", myResourceId)
+				.append("resourceType", myResourceType)
+				.append("resourceVersion", myResourceVersion)
+				.append("failureCount", myFailureCount)
+				.toString();
+	}
+}
@@ -0,0 +1,130 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.hibernate.Length;
+
+import java.util.Date;
+
+/**
+ * The most recently rebuilt statistics for the index rows of a single search parameter hash
+ * identity. The rows are rebuilt from the index tables by one node of the cluster, and every
+ * node loads them into memory.
+ *
+ * @since 7.2.0
+ */
+@Entity()
+@Table(name = "HFJ_SPIDX_STATS")
+public class SearchParamStatisticsEntity {
+
+	@Id
+	@Column(name = "HASH_IDENTITY")
+	private Long myHashIdentity;
+
+	@Column(name = "RES_TYPE", length = ResourceTable.RESTYPE_LEN, nullable = false)
+	private String myResourceType;
+
+	@Column(name = "SP_NAME", length = BaseResourceIndexedSearchParam.MAX_SP_NAME, nullable = false)
+	private String myParamName;
+
+	@Column(name = "ROW_COUNT", nullable = false)
+	private long myRowCount;
+
+	@Column(name = "VALUE_SKETCH", length = Length.LONG32, nullable = true)
+	private byte[] myValueSketch;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "UPDATED_TIME", nullable = false)
+	private Date myUpdated;
+
+	public Long getHashIdentity() {
+		return myHashIdentity;
+	}
+
+	public void setHashIdentity(Long theHashIdentity) {
+		myHashIdentity = theHashIdentity;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public void setResourceType(String theResourceType) {
+		myResourceType = theResourceType;
+	}
+
+	public String getParamName() {
+		return myParamName;
+	}
+
+	public void setParamName(String theParamName) {
+		myParamName = theParamName;
+	}
+
+	public long getRowCount() {
+		return myRowCount;
+	}
+
+	public void setRowCount(long theRowCount) {
+		myRowCount = theRowCount;
+	}
+
+	/**
+	 * The serialized count-min sketch of the value hashes, or <code>null</code> if the parameter
+	 * type doesn't have value frequencies
+	 */
+	public byte[] getValueSketch() {
+		return myValueSketch;
+	}
+
+	public void setValueSketch(byte[] theValueSketch) {
+		myValueSketch = theValueSketch;
+	}
+
+	/**
+	 * The time at which the statistics were rebuilt
+	 */
+	public Date getUpdated() {
+		return myUpdated;
+	}
+
+	public void setUpdated(Date theUpdated) {
+		myUpdated = theUpdated;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("hashIdentity", myHashIdentity)
+				.append("resourceType", myResourceType)
+				.append("paramName", myParamName)
+				.append("rowCount", myRowCount)
+				.append("updated", myUpdated)
+				.toString();
+	}
+}
@@ -100,6 +100,11 @@ public class StorageSettings {
 	private boolean myCrossPartitionSubscriptionEnabled = false;
 	private Integer myBundleBatchPoolSize = DEFAULT_BUNDLE_BATCH_POOL_SIZE;
 	private Integer myBundleBatchMaxPoolSize = DEFAULT_BUNDLE_BATCH_MAX_POOL_SIZE;
+	/**
+	 * @since 7.2.0
+	 */
+	private int myTransactionIndexingPoolSize = 0;
+
 	private boolean myEnableInMemorySubscriptionMatching = true;
 	private boolean myTriggerSubscriptionsForNonVersioningChanges;
 	private boolean myMassIngestionMode;
@@ -121,6 +126,12 @@ public class StorageSettings {
 	private Map<String, Set<String>> myTypeToAutoVersionReferenceAtPaths = Collections.emptyMap();
 	private boolean myRespectVersionsForSearchIncludes;
 	private boolean myIndexOnUpliftedRefchains = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private Set<String> myUpliftedRefchains = Collections.emptySet();
+
 	private boolean myIndexOnContainedResources = false;
 	private boolean myIndexOnContainedResourcesRecursively = false;
 	private boolean myAllowMdmExpansion = false;
@@ -270,6 +281,37 @@ public class StorageSettings {
 		this.myBundleBatchMaxPoolSize = theBundleBatchMaxPoolSize;
 	}
 
+	/**
+	 * If set to a value greater than zero (default is zero), the search indexes for resources
+	 * created by a FHIR transaction are extracted in parallel using a thread pool of the given
+	 * size before the resources are saved. Only resources which do not depend on the outcome of
+	 * other entries in the same transaction (i.e. resources without auto-versioned references)
+	 * are extracted in parallel, and references to other resources are still resolved and
+	 * saved one at a time within the single database transaction. This mainly helps with
+	 * large transaction bundles containing many unrelated resources.
+	 *
+	 * @since 7.2.0
+	 */
+	public int getTransactionIndexingPoolSize() {
+		return myTransactionIndexingPoolSize;
+	}
+
+	/**
+	 * If set to a value greater than zero (default is zero), the search indexes for resources
+	 * created by a FHIR transaction are extracted in parallel using a thread pool of the given
+	 * size before the resources are saved. Only resources which do not depend on the outcome of
+	 * other entries in the same transaction (i.e. resources without auto-versioned references)
+	 * are extracted in parallel, and references to other resources are still resolved and
+	 * saved one at a time within the single database transaction. This mainly helps with
+	 * large transaction bundles containing many unrelated resources.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setTransactionIndexingPoolSize(int theTransactionIndexingPoolSize) {
+		Validate.isTrue(theTransactionIndexingPoolSize >= 0, "Pool size must not be negative");
+		myTransactionIndexingPoolSize = theTransactionIndexingPoolSize;
+	}
+
 	/**
 	 * If set to <code>false</code> (default is true) the server will not use
 	 * in-memory subscription searching and instead use the database matcher for all subscription
@@ -1186,6 +1228,59 @@ public class StorageSettings {
 		myIndexOnUpliftedRefchains = theIndexOnUpliftedRefchains;
 	}
 
+	/**
+	 * Declares additional "Uplifted Refchains" without adding an extension to the reference
+	 * SearchParameter. Each entry has the form <code>[resourceType]:[referenceParam].[targetParam]</code>,
+	 * e.g. <code>Observation:subject.identifier</code>, and behaves exactly as if the
+	 * <code>Observation:subject</code> SearchParameter declared an uplifted refchain for the
+	 * <code>identifier</code> code. When a resource is stored, the target-side index values for the
+	 * chain are stored alongside the resource's own indexes, so a matching chained search such as
+	 * <code>Observation?subject.identifier=X</code> is resolved with a single index lookup instead of
+	 * a join through the resource link table.
+	 * <p>
+	 * This setting has no effect unless {@link #setIndexOnUpliftedRefchains(boolean)} is enabled. Like
+	 * uplifted refchains declared on the SearchParameter, the indexes reflect the target resource at
+	 * the time the source resource was written, and existing resources need to be reindexed after a
+	 * chain is added. Changes take effect the next time the search parameter registry is refreshed.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public Set<String> getUpliftedRefchains() {
+		return myUpliftedRefchains;
+	}
+
+	/**
+	 * Declares additional "Uplifted Refchains" without adding an extension to the reference
+	 * SearchParameter. Each entry has the form <code>[resourceType]:[referenceParam].[targetParam]</code>,
+	 * e.g. <code>Observation:subject.identifier</code>, and behaves exactly as if the
+	 * <code>Observation:subject</code> SearchParameter declared an uplifted refchain for the
+	 * <code>identifier</code> code. When a resource is stored, the target-side index values for the
+	 * chain are stored alongside the resource's own indexes, so a matching chained search such as
+	 * <code>Observation?subject.identifier=X</code> is resolved with a single index lookup instead of
+	 * a join through the resource link table.
+	 * <p>
+	 * This setting has no effect unless {@link #setIndexOnUpliftedRefchains(boolean)} is enabled. Like
+	 * uplifted refchains declared on the SearchParameter, the indexes reflect the target resource at
+	 * the time the source resource was written, and existing resources need to be reindexed after a
+	 * chain is added. Changes take effect the next time the search parameter registry is refreshed.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setUpliftedRefchains(Set<String> theUpliftedRefchains) {
+		Set<String> refchains = defaultIfNull(theUpliftedRefchains, Collections.emptySet());
+		for (String next : refchains) {
+			int colonIdx = next.indexOf(':');
+			int dotIdx = next.indexOf('.', colonIdx + 1);
+			Validate.isTrue(
+					colonIdx > 0 && dotIdx > colonIdx + 1 && dotIdx < next.length() - 1,
+					"Invalid uplifted refchain (expected [resourceType]:[referenceParam].[targetParam]): %s",
+					next);
+		}
+		myUpliftedRefchains = Collections.unmodifiableSet(new HashSet<>(refchains));
+	}
+
 	/**
 	 * Should indexing and searching on contained resources be enabled on this server.
 	 * This may have performance impacts, and should be enabled only if it is needed. Default is <code>false</code>.
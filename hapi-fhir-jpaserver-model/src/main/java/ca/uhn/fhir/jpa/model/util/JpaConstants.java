@@ -104,6 +104,14 @@ public class JpaConstants {
 	 * Operation name for the $get-resource-counts operation
 	 */
 	public static final String OPERATION_GET_RESOURCE_COUNTS = "$get-resource-counts";
+	/**
+	 * Operation name for the $search-param-stats operation
+	 */
+	public static final String OPERATION_SEARCH_PARAM_STATS = "$search-param-stats";
+	/**
+	 * Operation name for the $train-compression-dictionary operation
+	 */
+	public static final String OPERATION_TRAIN_COMPRESSION_DICTIONARY = "$train-compression-dictionary";
 	/**
 	 * Operation name for the $validate operation
 	 */
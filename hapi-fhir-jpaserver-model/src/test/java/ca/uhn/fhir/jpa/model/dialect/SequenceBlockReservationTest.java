@@ -0,0 +1,57 @@
+package ca.uhn.fhir.jpa.model.dialect;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SequenceBlockReservationTest {
+
+	@AfterEach
+	public void after() {
+		SequenceBlockReservation.clearBlocksForUnitTest();
+	}
+
+	@Test
+	public void testOpenAndClose() {
+		assertFalse(SequenceBlockReservation.isOpen());
+		try (SequenceBlockReservation outer = SequenceBlockReservation.open()) {
+			try (SequenceBlockReservation inner = SequenceBlockReservation.open()) {
+				assertTrue(SequenceBlockReservation.isOpen());
+			}
+			assertTrue(SequenceBlockReservation.isOpen());
+		}
+		assertFalse(SequenceBlockReservation.isOpen());
+	}
+
+	@Test
+	public void testValuesComeFromContiguousBlocks() {
+		AtomicLong sequence = new AtomicLong(1000);
+		LongSupplier supplier = () -> sequence.addAndGet(10);
+
+		// One call to the sequence for each block of 10
+		for (long i = 1001; i <= 1020; i++) {
+			assertEquals(i, SequenceBlockReservation.nextValue("SEQ_A", 10, supplier));
+		}
+		assertEquals(1020, sequence.get());
+
+		// Each generator has its own block
+		assertEquals(1021, SequenceBlockReservation.nextValue("SEQ_B", 10, supplier));
+		assertEquals(1031, SequenceBlockReservation.nextValue("SEQ_A", 10, () -> 1040));
+	}
+
+	@Test
+	public void testFirstBlocksOfNewSequenceAreSkipped() {
+		AtomicLong sequence = new AtomicLong(-49);
+		LongSupplier supplier = () -> sequence.addAndGet(50);
+
+		// 1, 51 and 101 may be claimed by the shared block
+		assertEquals(102, SequenceBlockReservation.nextValue("SEQ_A", 50, supplier));
+		assertEquals(151, sequence.get());
+	}
+}
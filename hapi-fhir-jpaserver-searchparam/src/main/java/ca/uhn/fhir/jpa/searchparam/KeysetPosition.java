@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * HAPI FHIR JPA - Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * The position of the last row returned by a keyset (seek) paginated search. A search which
+ * carries a position only returns rows which sort strictly after it, so the database can
+ * seek directly to the next page using an index instead of counting past an OFFSET.
+ * <p>
+ * The position is a tuple of the last resource PID (RES_ID, used as a tie-breaker) and,
+ * for searches sorted by <code>_lastUpdated</code>, the last RES_UPDATED value.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class KeysetPosition implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final char SEPARATOR = '_';
+
+	private final Long myLastUpdated;
+	private final long myResourcePid;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theLastUpdated The RES_UPDATED value of the last row, or <code>null</code> if the search is sorted by PID only
+	 * @param theResourcePid The RES_ID of the last row
+	 */
+	public KeysetPosition(@Nullable Date theLastUpdated, long theResourcePid) {
+		myLastUpdated = theLastUpdated != null ? theLastUpdated.getTime() : null;
+		myResourcePid = theResourcePid;
+	}
+
+	@Nullable
+	public Date getLastUpdated() {
+		return myLastUpdated != null ? new Date(myLastUpdated) : null;
+	}
+
+	public long getResourcePid() {
+		return myResourcePid;
+	}
+
+	/**
+	 * Encodes this position as an opaque page ID suitable for use in a paging link
+	 */
+	@Nonnull
+	public String toPageId() {
+		if (myLastUpdated == null) {
+			return Long.toString(myResourcePid);
+		}
+		return Long.toString(myLastUpdated) + SEPARATOR + myResourcePid;
+	}
+
+	/**
+	 * Parses a page ID created by {@link #toPageId()}
+	 *
+	 * @throws InvalidRequestException If the page ID is not valid
+	 */
+	@Nonnull
+	public static KeysetPosition fromPageId(@Nonnull String thePageId) {
+		Validate.notBlank(thePageId, "thePageId must not be blank");
+		try {
+			int idx = thePageId.indexOf(SEPARATOR);
+			if (idx == -1) {
+				return new KeysetPosition(null, Long.parseLong(thePageId));
+			}
+			long lastUpdated = Long.parseLong(thePageId.substring(0, idx));
+			long resourcePid = Long.parseLong(thePageId.substring(idx + 1));
+			return new KeysetPosition(new Date(lastUpdated), resourcePid);
+		} catch (NumberFormatException e) {
+			throw new InvalidRequestException(Msg.code(2499) + "Invalid page ID: " + thePageId);
+		}
+	}
+
+	@Override
+	public boolean equals(Object theO) {
+		if (this == theO) {
+			return true;
+		}
+		if (!(theO instanceof KeysetPosition)) {
+			return false;
+		}
+		KeysetPosition that = (KeysetPosition) theO;
+		return myResourcePid == that.myResourcePid && Objects.equals(myLastUpdated, that.myLastUpdated);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(myLastUpdated, myResourcePid);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("lastUpdated", myLastUpdated)
+				.append("resourcePid", myResourcePid)
+				.toString();
+	}
+}
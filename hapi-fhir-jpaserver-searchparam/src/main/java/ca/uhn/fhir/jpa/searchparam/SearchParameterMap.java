@@ -85,6 +85,8 @@ public class SearchParameterMap implements Serializable {
 	private Integer myLastNMax;
 	private boolean myDeleteExpunge;
 	private SearchContainedModeEnum mySearchContainedMode = SearchContainedModeEnum.FALSE;
+	private KeysetPosition myKeysetPosition;
+	private boolean myKeysetPaging;
 
 	/**
 	 * Constructor
@@ -123,6 +125,8 @@ public class SearchParameterMap implements Serializable {
 		map.setLoadSynchronousUpTo(getLoadSynchronousUpTo());
 		map.setOffset(getOffset());
 		map.setSearchContainedMode(getSearchContainedMode());
+		map.setKeysetPosition(getKeysetPosition());
+		map.setKeysetPaging(isKeysetPaging());
 
 		for (Map.Entry<String, List<List<IQueryParameterType>>> entry : mySearchParameterMap.entrySet()) {
 			List<List<IQueryParameterType>> andParams = entry.getValue();
@@ -784,6 +788,46 @@ public class SearchParameterMap implements Serializable {
 		}
 	}
 
+	/**
+	 * If set, only results which sort strictly after the given position are returned. This is
+	 * used for keyset (seek) pagination and is not part of the normalized query string.
+	 *
+	 * @since 7.2.0
+	 */
+	public KeysetPosition getKeysetPosition() {
+		return myKeysetPosition;
+	}
+
+	/**
+	 * If set, only results which sort strictly after the given position are returned. This is
+	 * used for keyset (seek) pagination and is not part of the normalized query string.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setKeysetPosition(KeysetPosition theKeysetPosition) {
+		myKeysetPosition = theKeysetPosition;
+	}
+
+	/**
+	 * If set, the search is one page of a keyset (seek) paginated search, and the query also
+	 * selects the values needed for the position of the last row of the page.
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isKeysetPaging() {
+		return myKeysetPaging;
+	}
+
+	/**
+	 * If set, the search is one page of a keyset (seek) paginated search, and the query also
+	 * selects the values needed for the position of the last row of the page.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setKeysetPaging(boolean theKeysetPaging) {
+		myKeysetPaging = theKeysetPaging;
+	}
+
 	/**
 	 * Returns true if {@link #getOffset()} and {@link #getCount()} both return a non null response
 	 *
@@ -74,10 +74,12 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -85,6 +87,8 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class SearchParamExtractorService {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorService.class);
+	private static final String XACT_USERDATA_KEY_PRE_EXTRACTED_SEARCH_INDEXES =
+			SearchParamExtractorService.class.getName() + "_PRE_EXTRACTED_SEARCH_INDEXES";
 
 	@Autowired
 	private ISearchParamExtractor mySearchParamExtractor;
@@ -148,14 +152,27 @@ public class SearchParamExtractorService {
 			TransactionDetails theTransactionDetails,
 			boolean theFailOnInvalidReference,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
+		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
+		PreExtractedSearchIndexes preExtracted = null;
+		if (theSearchParamFilter == ISearchParamExtractor.ALL_PARAMS) {
+			preExtracted = removePreExtractedSearchIndexes(theTransactionDetails, theResource);
+		}
+
 		// All search parameter types except Reference
-		ResourceIndexedSearchParams normalParams = ResourceIndexedSearchParams.withSets();
-		extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
+		ResourceIndexedSearchParams normalParams;
+		ISearchParamExtractor.SearchParamSet<PathAndRef> indexedReferences;
+		if (preExtracted != null && preExtracted.myIndexOnContainedResources == indexOnContainedResources) {
+			normalParams = preExtracted.myNormalParams;
+			indexedReferences = preExtracted.myIndexedReferences;
+			for (ISearchParamExtractor.SearchParamSet<?> next : preExtracted.mySetsWithWarnings) {
+				handleWarnings(theRequestDetails, myInterceptorBroadcaster, next);
+			}
+		} else {
+			normalParams = ResourceIndexedSearchParams.withSets();
+			extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
+			indexedReferences = mySearchParamExtractor.extractResourceLinks(theResource, indexOnContainedResources);
+		}
 		mergeParams(normalParams, theNewParams);
-
-		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
-		ISearchParamExtractor.SearchParamSet<PathAndRef> indexedReferences =
-				mySearchParamExtractor.extractResourceLinks(theResource, indexOnContainedResources);
 		SearchParamExtractorService.handleWarnings(theRequestDetails, myInterceptorBroadcaster, indexedReferences);
 
 		if (indexOnContainedResources) {
@@ -234,6 +251,93 @@ public class SearchParamExtractorService {
 		theNewParams.setUpdatedTime(theTransactionDetails.getTransactionDate());
 	}
 
+	/**
+	 * Resolves the outgoing references of a resource against the database exactly as
+	 * {@link #extractFromResource} would (i.e. enforcing referential integrity and
+	 * auto-creating placeholder targets where configured), but discards the resulting
+	 * links instead of populating them into index rows. This is used when the index rows
+	 * for a write are extracted later by the deferred indexing job, so that the write
+	 * itself still fails if it refers to a target which doesn't exist.
+	 *
+	 * @since 7.2.0
+	 */
+	public void validateResourceLinks(
+			RequestPartitionId theRequestPartitionId,
+			RequestDetails theRequestDetails,
+			ResourceTable theEntity,
+			IBaseResource theResource,
+			TransactionDetails theTransactionDetails) {
+		boolean hasLinks = theEntity.isHasLinks();
+		ISearchParamExtractor.SearchParamSet<PathAndRef> indexedReferences =
+				mySearchParamExtractor.extractResourceLinks(theResource, false);
+		extractResourceLinks(
+				theRequestPartitionId,
+				ResourceIndexedSearchParams.withSets(),
+				theEntity,
+				theResource,
+				theTransactionDetails,
+				true,
+				theRequestDetails,
+				indexedReferences);
+		theEntity.setHasLinks(hasLinks);
+	}
+
+	/**
+	 * Extracts the search indexes which only depend on the contents of the resource (i.e. all
+	 * types except for reference targets, which need to be resolved against the database) and
+	 * holds on to them until {@link #extractFromResource} is called for the same resource
+	 * instance within the given transaction. This method does not touch the database or the
+	 * request, so it can be called from a worker thread in order to index several resources
+	 * in parallel. The resource must not be modified between the two calls.
+	 * <p>
+	 * Note that the returned object must be registered on the main thread using
+	 * {@link #storePreExtractedSearchIndexes(TransactionDetails, IBaseResource, PreExtractedSearchIndexes)}
+	 * since {@link TransactionDetails} is not thread safe.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	@Nonnull
+	public PreExtractedSearchIndexes preExtractSearchIndexes(IBaseResource theResource) {
+		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
+		PreExtractedSearchIndexes retVal = new PreExtractedSearchIndexes(indexOnContainedResources);
+		extractSearchIndexParameters(retVal.myNormalParams, theResource, ISearchParamExtractor.ALL_PARAMS, t -> {
+			if (!t.getWarnings().isEmpty()) {
+				retVal.mySetsWithWarnings.add(t);
+			}
+		});
+		retVal.myIndexedReferences =
+				mySearchParamExtractor.extractResourceLinks(theResource, indexOnContainedResources);
+		return retVal;
+	}
+
+	/**
+	 * @see #preExtractSearchIndexes(IBaseResource)
+	 * @since 7.2.0
+	 */
+	public void storePreExtractedSearchIndexes(
+			TransactionDetails theTransactionDetails,
+			IBaseResource theResource,
+			PreExtractedSearchIndexes thePreExtractedSearchIndexes) {
+		IdentityHashMap<IBaseResource, PreExtractedSearchIndexes> map = theTransactionDetails.getOrCreateUserData(
+				XACT_USERDATA_KEY_PRE_EXTRACTED_SEARCH_INDEXES, IdentityHashMap::new);
+		map.put(theResource, thePreExtractedSearchIndexes);
+	}
+
+	@Nullable
+	private PreExtractedSearchIndexes removePreExtractedSearchIndexes(
+			@Nullable TransactionDetails theTransactionDetails, IBaseResource theResource) {
+		if (theTransactionDetails == null) {
+			return null;
+		}
+		IdentityHashMap<IBaseResource, PreExtractedSearchIndexes> map =
+				theTransactionDetails.getUserData(XACT_USERDATA_KEY_PRE_EXTRACTED_SEARCH_INDEXES);
+		if (map == null) {
+			return null;
+		}
+		return map.remove(theResource);
+	}
+
 	@Nonnull
 	private Map<String, Boolean> getReferenceSearchParamPresenceMap(
 			ResourceTable entity, ResourceIndexedSearchParams newParams) {
@@ -495,23 +599,35 @@ public class SearchParamExtractorService {
 			ResourceIndexedSearchParams theParams,
 			IBaseResource theResource,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
+		extractSearchIndexParameters(
+				theParams,
+				theResource,
+				theSearchParamFilter,
+				t -> handleWarnings(theRequestDetails, myInterceptorBroadcaster, t));
+	}
+
+	private void extractSearchIndexParameters(
+			ResourceIndexedSearchParams theParams,
+			IBaseResource theResource,
+			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter,
+			Consumer<ISearchParamExtractor.SearchParamSet<?>> theWarningHandler) {
 
 		// Strings
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString> strings =
 				extractSearchParamStrings(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, strings);
+		theWarningHandler.accept(strings);
 		theParams.myStringParams.addAll(strings);
 
 		// Numbers
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamNumber> numbers =
 				extractSearchParamNumber(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, numbers);
+		theWarningHandler.accept(numbers);
 		theParams.myNumberParams.addAll(numbers);
 
 		// Quantities
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantity> quantities =
 				extractSearchParamQuantity(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantities);
+		theWarningHandler.accept(quantities);
 		theParams.myQuantityParams.addAll(quantities);
 
 		if (myStorageSettings
@@ -522,20 +638,20 @@ public class SearchParamExtractorService {
 						.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_SUPPORTED)) {
 			ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantityNormalized> quantitiesNormalized =
 					extractSearchParamQuantityNormalized(theResource, theSearchParamFilter);
-			handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantitiesNormalized);
+			theWarningHandler.accept(quantitiesNormalized);
 			theParams.myQuantityNormalizedParams.addAll(quantitiesNormalized);
 		}
 
 		// Dates
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamDate> dates =
 				extractSearchParamDates(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, dates);
+		theWarningHandler.accept(dates);
 		theParams.myDateParams.addAll(dates);
 
 		// URIs
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamUri> uris =
 				extractSearchParamUri(theResource, theSearchParamFilter);
-		handleWarnings(theRequestDetails, myInterceptorBroadcaster, uris);
+		theWarningHandler.accept(uris);
 		theParams.myUriParams.addAll(uris);
 
 		// Tokens (can result in both Token and String, as we index the display name for
@@ -557,7 +673,7 @@ public class SearchParamExtractorService {
 		if (myContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
 			ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamComposite> composites =
 					extractSearchParamComposites(theResource, theSearchParamFilter);
-			handleWarnings(theRequestDetails, myInterceptorBroadcaster, composites);
+			theWarningHandler.accept(composites);
 			theParams.myCompositeParams.addAll(composites);
 		}
 
@@ -1173,6 +1289,22 @@ public class SearchParamExtractorService {
 		populateResourceTableForComboParams(theParams.myComboTokenNonUnique, theEntity);
 	}
 
+	/**
+	 * Search indexes extracted ahead of time by {@link #preExtractSearchIndexes(IBaseResource)}
+	 *
+	 * @since 7.2.0
+	 */
+	public static class PreExtractedSearchIndexes {
+		private final boolean myIndexOnContainedResources;
+		private final ResourceIndexedSearchParams myNormalParams = ResourceIndexedSearchParams.withSets();
+		private final List<ISearchParamExtractor.SearchParamSet<?>> mySetsWithWarnings = new ArrayList<>();
+		private ISearchParamExtractor.SearchParamSet<PathAndRef> myIndexedReferences;
+
+		private PreExtractedSearchIndexes(boolean theIndexOnContainedResources) {
+			myIndexOnContainedResources = theIndexOnContainedResources;
+		}
+	}
+
 	/**
 	 * This interface is used by {@link #extractSearchIndexParametersForTargetResources(RequestDetails, ResourceIndexedSearchParams, ResourceTable, Collection, IChainedSearchParameterExtractionStrategy, ISearchParamExtractor.SearchParamSet, boolean, boolean)}
 	 * in order to use that method for extracting chained search parameter indexes both
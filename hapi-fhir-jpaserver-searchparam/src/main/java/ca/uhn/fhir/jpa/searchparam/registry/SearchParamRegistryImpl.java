@@ -195,6 +195,7 @@ public class SearchParamRegistryImpl
 		long overriddenCount = overrideBuiltinSearchParamsWithActiveJpaSearchParams(searchParams, theJpaSearchParams);
 		ourLog.trace("Have overridden {} built-in search parameters", overriddenCount);
 		removeInactiveSearchParams(searchParams);
+		addUpliftedRefchainsFromStorageSettings(searchParams);
 
 		/*
 		 * The _language SearchParameter is a weird exception - It is actually just a normal
@@ -246,6 +247,39 @@ public class SearchParamRegistryImpl
 		return myBuiltInSearchParams;
 	}
 
+	/**
+	 * Applies the uplifted refchains declared in {@link StorageSettings#getUpliftedRefchains()}. The
+	 * reference search parameters are replaced with copies rather than modified, since the built-in
+	 * parameters are reused every time the registry is rebuilt.
+	 */
+	private void addUpliftedRefchainsFromStorageSettings(RuntimeSearchParamCache theSearchParams) {
+		for (String nextRefchain : myStorageSettings.getUpliftedRefchains()) {
+			int colonIdx = nextRefchain.indexOf(':');
+			int dotIdx = nextRefchain.indexOf('.', colonIdx + 1);
+			String resourceType = nextRefchain.substring(0, colonIdx);
+			String paramName = nextRefchain.substring(colonIdx + 1, dotIdx);
+			String code = nextRefchain.substring(dotIdx + 1);
+
+			RuntimeSearchParam existing = theSearchParams.get(resourceType, paramName);
+			if (existing == null || existing.getParamType() != RestSearchParameterTypeEnum.REFERENCE) {
+				ourLog.warn(
+						"Ignoring uplifted refchain {}: {} is not a reference search parameter on {}",
+						nextRefchain,
+						paramName,
+						resourceType);
+				continue;
+			}
+			if (existing.hasUpliftRefchain(code)) {
+				continue;
+			}
+
+			// The copy keeps all extensions and existing uplift refchains of the parameter
+			RuntimeSearchParam copy = new RuntimeSearchParam(existing);
+			copy.addUpliftRefchain(code, code);
+			theSearchParams.add(resourceType, paramName, copy);
+		}
+	}
+
 	private void removeInactiveSearchParams(RuntimeSearchParamCache theSearchParams) {
 		for (String resourceName : theSearchParams.getResourceNameKeys()) {
 			ResourceSearchParams resourceSearchParams = theSearchParams.getSearchParamMap(resourceName);
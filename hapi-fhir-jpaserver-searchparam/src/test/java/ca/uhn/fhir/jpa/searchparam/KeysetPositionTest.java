@@ -0,0 +1,42 @@
+package ca.uhn.fhir.jpa.searchparam;
+
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeysetPositionTest {
+
+	@Test
+	public void testPageIdRoundTripPidOnly() {
+		KeysetPosition position = new KeysetPosition(null, 123L);
+		assertEquals("123", position.toPageId());
+
+		KeysetPosition parsed = KeysetPosition.fromPageId(position.toPageId());
+		assertEquals(position, parsed);
+		assertNull(parsed.getLastUpdated());
+		assertEquals(123L, parsed.getResourcePid());
+	}
+
+	@Test
+	public void testPageIdRoundTripWithLastUpdated() {
+		KeysetPosition position = new KeysetPosition(new Date(1700000000000L), 45L);
+		assertEquals("1700000000000_45", position.toPageId());
+
+		KeysetPosition parsed = KeysetPosition.fromPageId(position.toPageId());
+		assertEquals(position, parsed);
+		assertEquals(1700000000000L, parsed.getLastUpdated().getTime());
+	}
+
+	@Test
+	public void testInvalidPageId() {
+		InvalidRequestException e =
+				assertThrows(InvalidRequestException.class, () -> KeysetPosition.fromPageId("abc_def"));
+		assertTrue(e.getMessage().contains("Invalid page ID: abc_def"), e.getMessage());
+	}
+}
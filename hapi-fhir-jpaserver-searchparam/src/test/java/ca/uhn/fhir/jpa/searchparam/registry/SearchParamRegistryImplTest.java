@@ -39,6 +39,7 @@ import org.testcontainers.shaded.com.google.common.collect.Sets;
 import jakarta.annotation.Nonnull;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -72,6 +73,8 @@ public class SearchParamRegistryImplTest {
 	SearchParamRegistryImpl mySearchParamRegistry;
 	@Autowired
 	private ResourceChangeListenerRegistryImpl myResourceChangeListenerRegistry;
+	@Autowired
+	private StorageSettings myStorageSettings;
 
 	@MockBean
 	private IResourceVersionSvc myResourceVersionSvc;
@@ -117,6 +120,7 @@ public class SearchParamRegistryImplTest {
 		myResourceChangeListenerRegistry.clearCachesForUnitTest();
 		// Empty out the searchparam registry
 		mySearchParamRegistry.resetForUnitTest();
+		myStorageSettings.setUpliftedRefchains(new StorageSettings().getUpliftedRefchains());
 	}
 
 	@Test
@@ -322,6 +326,33 @@ public class SearchParamRegistryImplTest {
 		assertEquals(Sets.newHashSet("name1", "name2"), canonicalSp.getUpliftRefchainCodes());
 	}
 
+	@Test
+	public void testUpliftRefchainsFromStorageSettings() {
+		RuntimeSearchParam builtInSp = mySearchParamRegistry.getActiveSearchParam("Observation", "subject");
+		assertFalse(builtInSp.hasUpliftRefchain("identifier"));
+
+		myStorageSettings.setUpliftedRefchains(Sets.newHashSet("Observation:subject.identifier", "Observation:subject.name", "Observation:code.foo", "Foo:subject.identifier"));
+		mySearchParamRegistry.forceRefresh();
+
+		RuntimeSearchParam sp = mySearchParamRegistry.getActiveSearchParam("Observation", "subject");
+		assertEquals(Sets.newHashSet("identifier", "name"), sp.getUpliftRefchainCodes());
+		assertEquals(builtInSp.getPath(), sp.getPath());
+		assertFalse(mySearchParamRegistry.getActiveSearchParam("Observation", "code").hasUpliftRefchains());
+		// The built-in search parameter is not modified
+		assertFalse(builtInSp.hasUpliftRefchain("identifier"));
+
+		myStorageSettings.setUpliftedRefchains(null);
+		mySearchParamRegistry.forceRefresh();
+		assertFalse(mySearchParamRegistry.getActiveSearchParam("Observation", "subject").hasUpliftRefchains());
+	}
+
+	@Test
+	public void testUpliftRefchainsFromStorageSettings_InvalidFormat() {
+		for (String next : List.of("Observation", "Observation:subject", "Observation:subject.", ":subject.identifier", "Observation:.identifier")) {
+			assertThrows(IllegalArgumentException.class, () -> myStorageSettings.setUpliftedRefchains(Set.of(next)), next);
+		}
+	}
+
 	private List<ResourceTable> resetDatabaseToOrigSearchParamsPlusNewOneWithStatus(Enumerations.PublicationStatus theStatus) {
 		// Add a new search parameter entity
 		List<ResourceTable> newEntities = new ArrayList(ourEntities);
@@ -16,6 +16,7 @@ import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import org.hibernate.Session;
@@ -77,6 +78,8 @@ public class TransactionProcessorTest {
 	private IResourceVersionSvc myResourceVersionSvc;
 	@MockBean
 	private SearchParamMatcher mySearchParamMatcher;
+	@MockBean
+	private SearchParamExtractorService mySearchParamExtractorService;
 	@MockBean(answer = Answers.RETURNS_DEEP_STUBS)
 	private SessionImpl mySession;
 	@MockBean
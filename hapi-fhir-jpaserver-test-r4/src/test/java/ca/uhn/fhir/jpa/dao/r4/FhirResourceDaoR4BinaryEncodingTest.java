@@ -0,0 +1,177 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.ReindexParameters;
+import ca.uhn.fhir.jpa.dao.ResourceCompressionDictionarySvc;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.ResourceCompressionDictionaryEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.HistorySearchDateRangeParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FhirResourceDaoR4BinaryEncodingTest extends BaseJpaR4Test {
+
+	@Autowired
+	private ResourceCompressionDictionarySvc myResourceCompressionDictionarySvc;
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setResourceEncoding(new JpaStorageSettings().getResourceEncoding());
+	}
+
+	@Test
+	public void testJsonbRoundTripAndHistory() {
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.JSONB);
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addName().setFamily("SIMPSON").addGiven("Homer");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		Long pid = id.getIdPartAsLong();
+
+		patient.setId(id);
+		patient.getNameFirstRep().setFamily("FLANDERS");
+		myPatientDao.update(patient, mySrd);
+
+		// Bodies are stored in the non-LOB binary column, not in RES_TEXT
+		runInTransaction(() -> {
+			for (long version = 1; version <= 2; version++) {
+				ResourceHistoryTable history =
+						myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(pid, version);
+				assertEquals(ResourceEncodingEnum.JSONB, history.getEncoding());
+				assertNotNull(history.getResourceBinary());
+				assertNull(history.getResource());
+				assertNull(history.getResourceTextVc());
+			}
+		});
+
+		// Read and VRead
+		assertEquals("FLANDERS", myPatientDao.read(id, mySrd).getNameFirstRep().getFamily());
+		assertEquals("SIMPSON", myPatientDao.read(id.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+
+		// Search (loads through the search view)
+		SearchParameterMap map = SearchParameterMap.newSynchronous("family", new StringParam("FLANDERS"));
+		List<IBaseResource> found = myPatientDao.search(map, mySrd).getAllResources();
+		assertEquals(1, found.size());
+		assertEquals("Homer", ((Patient) found.get(0)).getNameFirstRep().getGivenAsSingleString());
+
+		// History
+		IBundleProvider history = myPatientDao.history(
+				id, new HistorySearchDateRangeParam(new HashMap<>(), new DateRangeParam(), 0), mySrd);
+		List<IBaseResource> versions = history.getResources(0, 10);
+		assertEquals(2, versions.size());
+		assertEquals("FLANDERS", ((Patient) versions.get(0)).getNameFirstRep().getFamily());
+		assertEquals("SIMPSON", ((Patient) versions.get(1)).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testJsonbUpdateWithNoChangesIsDetected() {
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.JSONB);
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		patient.setId(id);
+		assertEquals("1", myPatientDao.update(patient, mySrd).getId().getVersionIdPart());
+	}
+
+	@Test
+	public void testJsondRoundTripRetrainAndReindex() {
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.JSOND);
+
+		// Written before any dictionary has been trained
+		List<IIdType> ids = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			ids.add(createObservation(i));
+		}
+		IIdType first = ids.get(0);
+		assertEquals("36.0", readValue(first));
+		runInTransaction(() -> {
+			ResourceHistoryTable history = findCurrentVersion(first);
+			assertEquals(ResourceEncodingEnum.JSOND, history.getEncoding());
+			assertNotNull(history.getResourceBinary());
+			assertNull(history.getResource());
+		});
+
+		ResourceCompressionDictionaryEntity dictionary =
+				myResourceCompressionDictionarySvc.trainDictionary("Observation", 100);
+		assertEquals(1, dictionary.getVersion());
+
+		// New writes use the new dictionary, existing bodies are untouched until reindexed
+		IIdType written = createObservation(99);
+		assertEquals("36.99", readValue(written));
+		runInTransaction(() -> {
+			assertTrue(isCompressedWithCurrentDictionary(written));
+			assertFalse(isCompressedWithCurrentDictionary(first));
+		});
+
+		ReindexParameters parameters = new ReindexParameters()
+				.setOptimizeStorage(ReindexParameters.OptimizeStorageModeEnum.CURRENT_VERSION)
+				.setReindexSearchParameters(ReindexParameters.ReindexSearchParametersEnum.NONE);
+		runInTransaction(() -> myObservationDao.reindex(
+				JpaPid.fromIdAndResourceType(first.getIdPartAsLong(), "Observation"),
+				parameters,
+				mySrd,
+				new TransactionDetails()));
+		runInTransaction(() -> assertTrue(isCompressedWithCurrentDictionary(first)));
+		assertEquals("36.0", readValue(first));
+
+		// Retraining leaves everything compressed with older dictionaries readable
+		assertEquals(2, myResourceCompressionDictionarySvc.trainDictionary("Observation", 100).getVersion());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals("36." + i, readValue(ids.get(i)));
+		}
+		assertEquals("36.99", readValue(written));
+		runInTransaction(() -> assertFalse(isCompressedWithCurrentDictionary(written)));
+	}
+
+	private IIdType createObservation(int theIndex) {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("8310-5").setDisplay("Body temperature");
+		obs.getValueQuantity()
+				.setValue(new BigDecimal("36." + theIndex))
+				.setSystem("http://unitsofmeasure.org")
+				.setCode("Cel");
+		return myObservationDao.create(obs, mySrd).getId().toUnqualifiedVersionless();
+	}
+
+	private String readValue(IIdType theId) {
+		return myObservationDao.read(theId, mySrd).getValueQuantity().getValue().toPlainString();
+	}
+
+	private ResourceHistoryTable findCurrentVersion(IIdType theId) {
+		return myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(theId.getIdPartAsLong(), 1);
+	}
+
+	private boolean isCompressedWithCurrentDictionary(IIdType theId) {
+		ResourceHistoryTable history = findCurrentVersion(theId);
+		return myResourceCompressionDictionarySvc.isCompressedWithCurrentDictionary(
+				"Observation", history.getResourceBinary());
+	}
+}
@@ -0,0 +1,93 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexPendingDao;
+import ca.uhn.fhir.jpa.search.reindex.IDeferredIndexingSvc;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FhirResourceDaoR4DeferredIndexingTest extends BaseJpaR4Test {
+
+	@Autowired
+	private IDeferredIndexingSvc myDeferredIndexingSvc;
+	@Autowired
+	private IResourceIndexPendingDao myResourceIndexPendingDao;
+
+	@BeforeEach
+	public void beforeEnableDeferredIndexing() {
+		myStorageSettings.setDeferredIndexingResourceTypes(Set.of("Observation"));
+		// The pass is a no-op while scheduling is disabled
+		myStorageSettings.setSchedulingDisabled(false);
+	}
+
+	@AfterEach
+	public void after() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setDeferredIndexingResourceTypes(defaults.getDeferredIndexingResourceTypes());
+		myStorageSettings.setAllowInlineMatchUrlReferences(defaults.isAllowInlineMatchUrlReferences());
+		myStorageSettings.setSchedulingDisabled(true);
+	}
+
+	@Test
+	public void testCreateThenDeferredIndexingPassThenSearch() {
+		IIdType patientId = createPatient(withActiveTrue());
+
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-5");
+		obs.getSubject().setReference(patientId.getValue());
+		IIdType obsId = myObservationDao.create(obs, mySrd).getId().toUnqualifiedVersionless();
+
+		// The body is readable straight away, but not yet searchable
+		assertEquals(obsId.getValue(), myObservationDao.read(obsId, mySrd).getIdElement().toUnqualifiedVersionless().getValue());
+		assertEquals(1, runInTransaction(() -> myResourceIndexPendingDao.count()));
+		SearchParameterMap byCode = SearchParameterMap.newSynchronous("code", new TokenParam("http://loinc.org", "1234-5"));
+		assertEquals(0, myObservationDao.search(byCode, mySrd).size());
+
+		assertEquals(1, myDeferredIndexingSvc.runDeferredIndexingPass());
+
+		assertEquals(0, runInTransaction(() -> myResourceIndexPendingDao.count()));
+		assertEquals(1, myObservationDao.search(byCode, mySrd).size());
+		SearchParameterMap bySubject = SearchParameterMap.newSynchronous("subject", new ReferenceParam(patientId.getValue()));
+		assertEquals(1, myObservationDao.search(bySubject, mySrd).size());
+	}
+
+	@Test
+	public void testCreateWithMissingReferenceTargetIsRejected() {
+		Observation obs = new Observation();
+		obs.getSubject().setReference("Patient/DOES-NOT-EXIST");
+
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> myObservationDao.create(obs, mySrd));
+		assertTrue(e.getMessage().contains("Resource Patient/DOES-NOT-EXIST not found"), e.getMessage());
+		assertEquals(0, runInTransaction(() -> myResourceIndexPendingDao.count()));
+	}
+
+	@Test
+	public void testCreateWithInlineMatchUrlIsResolvedBeforeStoring() {
+		myStorageSettings.setAllowInlineMatchUrlReferences(true);
+		IIdType patientId = createPatient(withIdentifier("http://ids", "A"));
+
+		Observation obs = new Observation();
+		obs.getSubject().setReference("Patient?identifier=http://ids|A");
+		IIdType obsId = myObservationDao.create(obs, mySrd).getId().toUnqualifiedVersionless();
+
+		Observation stored = myObservationDao.read(obsId, mySrd);
+		assertEquals(patientId.toUnqualifiedVersionless().getValue(), stored.getSubject().getReference());
+	}
+
+}
@@ -0,0 +1,145 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Enumerations.AdministrativeGender;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.countMatches;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FhirResourceDaoR4ParallelAndPredicateTest extends BaseJpaR4Test {
+
+	@BeforeEach
+	public void beforeCreatePatients() {
+		// Make sure each search actually runs, rather than reusing the results of the previous one
+		myStorageSettings.setReuseCachedSearchResultsForMillis(null);
+
+		for (int i = 0; i < 30; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily(i % 3 == 0 ? "SIMPSON" : "FLANDERS").addGiven("Given" + i);
+			patient.setGender(i % 2 == 0 ? AdministrativeGender.FEMALE : AdministrativeGender.MALE);
+			patient.getBirthDateElement().setValueAsString(LocalDate.of(1980, 1, 1).plusDays(i).toString());
+			patient.setActive(i % 5 != 0);
+			myPatientDao.create(patient, mySrd);
+		}
+	}
+
+	@AfterEach
+	public void after() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setParallelAndPredicatesEnabled(defaults.isParallelAndPredicatesEnabled());
+		myStorageSettings.setReuseCachedSearchResultsForMillis(defaults.getReuseCachedSearchResultsForMillis());
+	}
+
+	@Test
+	public void testParametersAreResolvedOutsideOfTheSearchQuery() {
+		Supplier<SearchParameterMap> map = () -> SearchParameterMap.newSynchronous()
+				.add(Patient.SP_FAMILY, new StringParam("SIMPSON"))
+				.add(Patient.SP_GENDER, new TokenParam("female"));
+
+		myStorageSettings.setParallelAndPredicatesEnabled(false);
+		myCaptureQueriesListener.clear();
+		List<Long> sequential = toPids(myPatientDao.search(map.get(), mySrd).getAllResources());
+		String sequentialSql = getSelectSqlForCurrentThread();
+
+		myStorageSettings.setParallelAndPredicatesEnabled(true);
+		myCaptureQueriesListener.clear();
+		List<Long> parallel = toPids(myPatientDao.search(map.get(), mySrd).getAllResources());
+		String parallelSql = getSelectSqlForCurrentThread();
+
+		assertEquals(5, sequential.size());
+		assertEquals(sequential, parallel);
+		assertTrue(countMatches(sequentialSql, "HFJ_SPIDX_STRING") > 0, sequentialSql);
+		assertEquals(0, countMatches(parallelSql, "HFJ_SPIDX_STRING"), parallelSql);
+		assertEquals(0, countMatches(parallelSql, "HFJ_SPIDX_TOKEN"), parallelSql);
+	}
+
+	@Test
+	public void testSameResultsWithSortAndCount() {
+		Supplier<SearchParameterMap> map = () -> {
+			SearchParameterMap retVal = SearchParameterMap.newSynchronous()
+					.add(Patient.SP_GENDER, new TokenParam("female"))
+					.add(Patient.SP_ACTIVE, new TokenParam("true"))
+					.add(Patient.SP_BIRTHDATE, new DateParam(ParamPrefixEnum.GREATERTHAN_OR_EQUALS, "1980-01-05"));
+			retVal.setSort(new SortSpec(Patient.SP_BIRTHDATE, SortOrderEnum.DESC));
+			retVal.setCount(4);
+			return retVal;
+		};
+
+		myStorageSettings.setParallelAndPredicatesEnabled(false);
+		List<Long> sequential = toPids(myPatientDao.search(map.get(), mySrd).getAllResources());
+		myStorageSettings.setParallelAndPredicatesEnabled(true);
+		List<Long> parallel = toPids(myPatientDao.search(map.get(), mySrd).getAllResources());
+
+		assertEquals(4, sequential.size());
+		assertEquals(sequential, parallel);
+	}
+
+	@Test
+	public void testSameResultsWithSortAndPaging() {
+		Supplier<SearchParameterMap> map = () -> {
+			SearchParameterMap retVal = new SearchParameterMap()
+					.add(Patient.SP_GENDER, new TokenParam("female"))
+					.add(Patient.SP_ACTIVE, new TokenParam("true"))
+					.add(Patient.SP_BIRTHDATE, new DateParam(ParamPrefixEnum.GREATERTHAN_OR_EQUALS, "1980-01-01"));
+			retVal.setSort(new SortSpec(Patient.SP_BIRTHDATE, SortOrderEnum.DESC));
+			retVal.setCount(5);
+			return retVal;
+		};
+
+		myStorageSettings.setParallelAndPredicatesEnabled(false);
+		List<List<Long>> sequential = searchAllPages(map.get(), 5);
+		myStorageSettings.setParallelAndPredicatesEnabled(true);
+		List<List<Long>> parallel = searchAllPages(map.get(), 5);
+
+		// Even days, excluding every fifth day: 12 patients
+		assertEquals(3, sequential.size(), sequential.toString());
+		assertEquals(12, sequential.stream().mapToInt(List::size).sum());
+		assertEquals(sequential, parallel);
+	}
+
+	private List<List<Long>> searchAllPages(SearchParameterMap theMap, int thePageSize) {
+		IBundleProvider provider = myPatientDao.search(theMap, mySrd);
+		List<List<Long>> retVal = new ArrayList<>();
+		for (int from = 0; ; from += thePageSize) {
+			List<Long> page = toPids(provider.getResources(from, from + thePageSize));
+			if (page.isEmpty()) {
+				break;
+			}
+			retVal.add(page);
+		}
+		return retVal;
+	}
+
+	private String getSelectSqlForCurrentThread() {
+		return myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+				.map(t -> t.getSql(true, false))
+				.collect(Collectors.joining("\n"));
+	}
+
+	private static List<Long> toPids(List<IBaseResource> theResources) {
+		return theResources.stream()
+				.map(t -> t.getIdElement().getIdPartAsLong())
+				.collect(Collectors.toList());
+	}
+}
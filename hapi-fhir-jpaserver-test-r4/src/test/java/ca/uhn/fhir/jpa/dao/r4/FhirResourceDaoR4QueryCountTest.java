@@ -166,6 +166,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 		myStorageSettings.setAutoCreatePlaceholderReferenceTargets(new JpaStorageSettings().isAutoCreatePlaceholderReferenceTargets());
 		myStorageSettings.setAutoVersionReferenceAtPaths(new JpaStorageSettings().getAutoVersionReferenceAtPaths());
 		myStorageSettings.setDeleteEnabled(new JpaStorageSettings().isDeleteEnabled());
+		myStorageSettings.setDetectUnchangedUpdatesBeforeIndexing(new JpaStorageSettings().isDetectUnchangedUpdatesBeforeIndexing());
 		myStorageSettings.setHistoryCountMode(JpaStorageSettings.DEFAULT_HISTORY_COUNT_MODE);
 		myStorageSettings.setIndexMissingFields(new JpaStorageSettings().getIndexMissingFields());
 		myStorageSettings.setInlineResourceTextBelowSize(new JpaStorageSettings().getInlineResourceTextBelowSize());
@@ -280,6 +281,52 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 		assertEquals(0, myCaptureQueriesListener.getDeleteQueriesForCurrentThread().size());
 	}
 
+	/**
+	 * With the check before indexing enabled, an update which doesn't change
+	 * anything never loads or extracts the search parameter indexes
+	 */
+	@Test
+	public void testUpdateWithNoChanges_DetectedBeforeIndexing() {
+		myStorageSettings.setDetectUnchangedUpdatesBeforeIndexing(true);
+		IIdType orgId = createOrganization(withName("MY ORG"));
+
+		IIdType id = runInTransaction(() -> {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue("2");
+			p.setManagingOrganization(new Reference(orgId));
+			return myPatientDao.create(p).getId().toUnqualified();
+		});
+
+		myCaptureQueriesListener.clear();
+		runInTransaction(() -> {
+			Patient p = new Patient();
+			p.setId(id.getIdPart());
+			p.addIdentifier().setSystem("urn:system").setValue("2");
+			p.setManagingOrganization(new Reference(orgId));
+			myPatientDao.update(p, mySrd);
+		});
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		List<String> selects = myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+			.map(t -> t.getSql(false, false).toUpperCase())
+			.collect(Collectors.toList());
+		assertTrue(selects.stream().noneMatch(t -> t.contains(" HFJ_SPIDX_") || t.contains(" HFJ_RES_LINK ")), selects::toString);
+		assertEquals(0, myCaptureQueriesListener.getUpdateQueriesForCurrentThread().size());
+		assertThat(myCaptureQueriesListener.getInsertQueriesForCurrentThread(), empty());
+		assertEquals(0, myCaptureQueriesListener.getDeleteQueriesForCurrentThread().size());
+
+		Patient updated = myPatientDao.read(id.toVersionless(), mySrd);
+		assertEquals("1", updated.getIdElement().getVersionIdPart());
+
+		// A real change is still detected and indexed
+		runInTransaction(() -> {
+			Patient p = new Patient();
+			p.setId(id.getIdPart());
+			p.addIdentifier().setSystem("urn:system").setValue("3");
+			p.setManagingOrganization(new Reference(orgId));
+			myPatientDao.update(p, mySrd);
+		});
+		assertEquals(1, myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_IDENTIFIER, new TokenParam("urn:system", "3")), mySrd).size());
+	}
 
 	/**
 	 * See the class javadoc before changing the counts in this test!
@@ -314,6 +361,37 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 		assertEquals(0, myCaptureQueriesListener.getDeleteQueriesForCurrentThread().size());
 	}
 
+	/**
+	 * When the client supplies the current version, the previous version
+	 * doesn't need to be loaded unless an interceptor wants it
+	 */
+	@Test
+	public void testUpdateWithChanges_VersionSupplied() {
+		IIdType id = runInTransaction(() -> {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue("2");
+			return myPatientDao.create(p).getId().toUnqualified();
+		});
+		assertEquals("1", id.getVersionIdPart());
+
+		myCaptureQueriesListener.clear();
+		runInTransaction(() -> {
+			Patient p = new Patient();
+			p.setId(id);
+			p.addIdentifier().setSystem("urn:system").setValue("3");
+			myPatientDao.update(p, mySrd);
+		});
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		List<String> selects = myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream()
+			.map(t -> t.getSql(false, false).toUpperCase())
+			.collect(Collectors.toList());
+		assertTrue(selects.stream().noneMatch(t -> t.contains(" HFJ_RES_VER ")), selects::toString);
+
+		Patient updated = myPatientDao.read(id.toVersionless(), mySrd);
+		assertEquals("2", updated.getIdElement().getVersionIdPart());
+		assertEquals("3", updated.getIdentifierFirstRep().getValue());
+	}
+
 	/**
 	 * See the class javadoc before changing the counts in this test!
 	 */
@@ -2427,6 +2505,42 @@ public class FhirResourceDaoR4QueryCountTest extends BaseResourceProviderR4Test
 
 	}
 
+	/**
+	 * See the class javadoc before changing the counts in this test!
+	 */
+	@Test
+	public void testTransactionWithConditionalCreate_MultipleParameterMatchUrls() {
+		Supplier<Bundle> bundleCreator = () -> {
+			BundleBuilder bb = new BundleBuilder(myFhirContext);
+			for (int i = 0; i < 10; i++) {
+				Patient pt = new Patient();
+				pt.setId(IdType.newRandomUuid());
+				pt.setActive(true);
+				pt.addIdentifier().setSystem("http://foo").setValue("ID" + i);
+				bb.addTransactionCreateEntry(pt).conditional("Patient?identifier=http://foo|ID" + i + "&active=true");
+			}
+			return (Bundle) bb.getBundle();
+		};
+
+		// Run once (creates all)
+
+		myCaptureQueriesListener.clear();
+		mySystemDao.transaction(mySrd, bundleCreator.get());
+		myCaptureQueriesListener.logSelectQueries();
+		assertEquals(1, myCaptureQueriesListener.countSelectQueries());
+		assertEquals(0, myCaptureQueriesListener.countDeleteQueries());
+
+		// Run a second time (all match URLs resolved by a single query, nothing created)
+
+		myCaptureQueriesListener.clear();
+		mySystemDao.transaction(mySrd, bundleCreator.get());
+		myCaptureQueriesListener.logSelectQueries();
+		assertEquals(1, myCaptureQueriesListener.countSelectQueries());
+		assertEquals(0, myCaptureQueriesListener.countDeleteQueries());
+
+		runInTransaction(() -> assertEquals(10, myResourceTableDao.count()));
+	}
+
 	/**
 	 * See the class javadoc before changing the counts in this test!
 	 */
@@ -1,6 +1,8 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
+import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.search.PersistedJpaSearchFirstPageBundleProvider;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
@@ -17,10 +19,12 @@ import org.hamcrest.collection.IsIterableContainingInAnyOrder;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.BodyStructure;
 import org.hl7.fhir.r4.model.CarePlan;
+import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.Enumerations;
 import org.hl7.fhir.r4.model.EpisodeOfCare;
 import org.hl7.fhir.r4.model.Organization;
 import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
 import org.hl7.fhir.r4.model.Procedure;
 import org.hl7.fhir.r4.model.Reference;
 import org.hl7.fhir.r4.model.SearchParameter;
@@ -31,6 +35,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 import java.sql.Date;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -38,6 +43,7 @@ import java.util.stream.IntStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -49,6 +55,7 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 	@AfterEach
 	public void afterEach() {
 		myStorageSettings.setMaximumIncludesToLoadPerPage(JpaStorageSettings.DEFAULT_MAXIMUM_INCLUDES_TO_LOAD_PER_PAGE);
+		myInterceptorRegistry.unregisterAllAnonymousInterceptors();
 	}
 
 	@Test
@@ -184,6 +191,59 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 	}
 
 
+	@Test
+	public void testIterateIncludesLoadAllPathsOfARoundInOneQuery() {
+		Organization parentOrg = new Organization();
+		parentOrg.setId("ORG-PARENT");
+		myOrganizationDao.update(parentOrg, mySrd);
+
+		Organization org = new Organization();
+		org.setId("ORG-CHILD");
+		org.getPartOf().setReference("Organization/ORG-PARENT");
+		myOrganizationDao.update(org, mySrd);
+
+		Practitioner practitioner = new Practitioner();
+		practitioner.setId("PRAC");
+		myPractitionerDao.update(practitioner, mySrd);
+
+		Patient patient = new Patient();
+		patient.setId("PAT");
+		patient.getManagingOrganization().setReference("Organization/ORG-CHILD");
+		myPatientDao.update(patient, mySrd);
+
+		Encounter encounter = new Encounter();
+		encounter.setId("ENC");
+		encounter.getSubject().setReference("Patient/PAT");
+		encounter.addParticipant().getIndividual().setReference("Practitioner/PRAC");
+		myEncounterDao.update(encounter, mySrd);
+
+		List<String> messages = new ArrayList<>();
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.JPA_PERFTRACE_INFO, (thePointcut, theArgs) -> {
+			messages.add(theArgs.get(StorageProcessingMessage.class).getMessage());
+		});
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.add("_id", new TokenParam("ENC"))
+			.addInclude(new Include("Encounter:subject").asRecursive())
+			.addInclude(new Include("Encounter:participant").asRecursive())
+			.addInclude(new Include("Patient:organization").asRecursive())
+			.addInclude(new Include("Organization:partof").asRecursive());
+		IBundleProvider outcome = myEncounterDao.search(map, mySrd);
+		List<String> ids = toUnqualifiedVersionlessIdValues(outcome);
+		assertThat(ids.toString(), ids, containsInAnyOrder(
+			"Encounter/ENC",
+			"Patient/PAT",
+			"Practitioner/PRAC",
+			"Organization/ORG-CHILD",
+			"Organization/ORG-PARENT"
+		));
+
+		String trace = messages.stream().filter(t -> t.startsWith("Loaded 4 _includes")).findFirst().orElseThrow();
+		assertThat(trace, containsString("round 1 queried 1 PIDs with 1 queries and found 2 rows (2 new)"));
+		assertThat(trace, containsString("round 2 queried 2 PIDs with 1 queries and found 1 rows (1 new)"));
+		assertThat(trace, containsString("round 3 queried 1 PIDs with 1 queries and found 1 rows (1 new)"));
+	}
+
 	@Test
 	public void testRevIncludesPaged_AsyncSearch() {
 		int eocCount = 10;
@@ -0,0 +1,123 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.util.HapiExtensions;
+import org.hl7.fhir.r4.model.BooleanType;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.SearchParameter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.countMatches;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FhirResourceDaoR4UpliftedRefchainSettingsTest extends BaseJpaR4Test {
+
+	@BeforeEach
+	public void beforeEnableUpliftedRefchains() {
+		myStorageSettings.setIndexOnUpliftedRefchains(true);
+	}
+
+	@AfterEach
+	public void after() {
+		StorageSettings defaults = new StorageSettings();
+		myStorageSettings.setIndexOnUpliftedRefchains(defaults.isIndexOnUpliftedRefchains());
+		myStorageSettings.setUpliftedRefchains(defaults.getUpliftedRefchains());
+		mySearchParamRegistry.forceRefresh();
+	}
+
+	@Test
+	public void testChainedSearchUsesConfiguredUpliftedRefchain() {
+		myStorageSettings.setUpliftedRefchains(Set.of("Encounter:subject.name"));
+		mySearchParamRegistry.forceRefresh();
+
+		createPatient("P1", "Homer");
+		createPatient("P2", "Marge");
+		createEncounter("E1", "Patient/P1");
+		createEncounter("E2", "Patient/P2");
+
+		assertEquals(List.of("Encounter/E1"), searchAndAssertUplifted(new ReferenceParam("name", "homer")));
+	}
+
+	@Test
+	public void testConfiguredUpliftedRefchainKeepsSearchParameterExtensions() {
+		createEncounterSubjectSearchParameterWithUpliftOnIdentifier();
+		myStorageSettings.setUpliftedRefchains(Set.of("Encounter:subject.name"));
+		mySearchParamRegistry.forceRefresh();
+
+		RuntimeSearchParam sp = mySearchParamRegistry.getActiveSearchParam("Encounter", "subject");
+		assertEquals(Set.of("identifier", "name"), sp.getUpliftRefchainCodes());
+		assertEquals(1, sp.getExtensions(HapiExtensions.EXTENSION_SEARCHPARAM_UPLIFT_REFCHAIN).size());
+		assertEquals(1, sp.getExtensions(HapiExtensions.EXT_SEARCHPARAM_TOKEN_SUPPRESS_TEXT_INDEXING).size());
+
+		Patient patient = new Patient();
+		patient.setId("P1");
+		patient.addIdentifier().setSystem("http://ids").setValue("123");
+		patient.addName().setFamily("Simpson").addGiven("Homer");
+		myPatientDao.update(patient, mySrd);
+		createPatient("P2", "Marge");
+		createEncounter("E1", "Patient/P1");
+		createEncounter("E2", "Patient/P2");
+
+		// Both the declared and the configured refchain are used
+		assertEquals(List.of("Encounter/E1"), searchAndAssertUplifted(new ReferenceParam("name", "homer")));
+		assertEquals(List.of("Encounter/E1"), searchAndAssertUplifted(new ReferenceParam("identifier", "http://ids|123")));
+	}
+
+	private List<String> searchAndAssertUplifted(ReferenceParam theParam) {
+		SearchParameterMap map = SearchParameterMap.newSynchronous("subject", theParam);
+		myCaptureQueriesListener.clear();
+		List<String> retVal = toUnqualifiedVersionlessIdValues(myEncounterDao.search(map, mySrd));
+
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		String querySql = myCaptureQueriesListener.getSelectQueriesForCurrentThread().get(0).getSql(true, false);
+		assertEquals(0, countMatches(querySql, "HFJ_RES_LINK"), querySql);
+		return retVal;
+	}
+
+	private void createEncounterSubjectSearchParameterWithUpliftOnIdentifier() {
+		RuntimeSearchParam subjectSp = mySearchParamRegistry.getActiveSearchParam("Encounter", "subject");
+		SearchParameter sp = new SearchParameter();
+		Extension upliftRefChain = sp.addExtension().setUrl(HapiExtensions.EXTENSION_SEARCHPARAM_UPLIFT_REFCHAIN);
+		upliftRefChain.addExtension(HapiExtensions.EXTENSION_SEARCHPARAM_UPLIFT_REFCHAIN_PARAM_CODE, new CodeType("identifier"));
+		sp.addExtension(HapiExtensions.EXT_SEARCHPARAM_TOKEN_SUPPRESS_TEXT_INDEXING, new BooleanType(true));
+
+		sp.setId(subjectSp.getId());
+		sp.setCode(subjectSp.getName());
+		sp.setName(subjectSp.getName());
+		sp.setUrl(subjectSp.getUri());
+		sp.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		sp.setType(Enumerations.SearchParamType.REFERENCE);
+		sp.setExpression(subjectSp.getPath());
+		subjectSp.getBase().forEach(sp::addBase);
+		subjectSp.getTargets().forEach(sp::addTarget);
+		mySearchParameterDao.create(sp, mySrd);
+	}
+
+	private void createPatient(String theId, String theGiven) {
+		Patient patient = new Patient();
+		patient.setId(theId);
+		patient.addName().setFamily("Simpson").addGiven(theGiven);
+		myPatientDao.update(patient, mySrd);
+	}
+
+	private void createEncounter(String theId, String theSubject) {
+		Encounter encounter = new Encounter();
+		encounter.setId(theId);
+		encounter.setSubject(new Reference(theSubject));
+		myEncounterDao.update(encounter, mySrd);
+	}
+}
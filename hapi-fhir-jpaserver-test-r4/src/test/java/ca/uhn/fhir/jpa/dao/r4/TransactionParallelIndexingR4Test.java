@@ -0,0 +1,89 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TransactionParallelIndexingR4Test extends BaseJpaR4SystemTest {
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setTransactionIndexingPoolSize(new JpaStorageSettings().getTransactionIndexingPoolSize());
+		myStorageSettings.setAutoVersionReferenceAtPaths(new JpaStorageSettings().getAutoVersionReferenceAtPaths());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 4})
+	public void testTransactionWithManyCreates(int thePoolSize) {
+		myStorageSettings.setTransactionIndexingPoolSize(thePoolSize);
+
+		Bundle response = mySystemDao.transaction(mySrd, createBundle(20));
+
+		assertEquals(21, response.getEntry().size());
+		assertEquals(20, myPatientDao.search(SearchParameterMap.newSynchronous(), mySrd).size());
+		assertEquals(1, myPatientDao.search(SearchParameterMap.newSynchronous("name", new StringParam("FAMILY7")), mySrd).size());
+		assertEquals(1, myPatientDao.search(SearchParameterMap.newSynchronous("identifier", new TokenParam("http://ids", "7")), mySrd).size());
+		assertEquals(10, myPatientDao.search(SearchParameterMap.newSynchronous("gender", new TokenParam("male")), mySrd).size());
+
+		String orgId = new IdType(response.getEntry().get(0).getResponse().getLocation()).toUnqualifiedVersionless().getValue();
+		assertEquals(20, myPatientDao.search(SearchParameterMap.newSynchronous("organization", new ReferenceParam(orgId)), mySrd).size());
+		assertEquals(20, myPatientDao.search(SearchParameterMap.newSynchronous("organization.name", new StringParam("ORG")), mySrd).size());
+	}
+
+	@Test
+	public void testTransactionWithUpdatesAndAutoVersionedReferences() {
+		myStorageSettings.setTransactionIndexingPoolSize(4);
+		myStorageSettings.setAutoVersionReferenceAtPaths("Patient.managingOrganization");
+
+		mySystemDao.transaction(mySrd, createBundle(10));
+
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < 5; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/P" + i);
+			patient.addName().setFamily("UPDATED" + i);
+			bundle.addEntry().setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl("Patient/P" + i);
+		}
+		mySystemDao.transaction(mySrd, bundle);
+
+		assertEquals(1, myPatientDao.search(SearchParameterMap.newSynchronous("name", new StringParam("UPDATED3")), mySrd).size());
+		assertEquals(0, myPatientDao.search(SearchParameterMap.newSynchronous("name", new StringParam("FAMILY3")), mySrd).size());
+		assertEquals(1, myPatientDao.search(SearchParameterMap.newSynchronous("name", new StringParam("FAMILY8")), mySrd).size());
+		assertEquals(5, myPatientDao.search(SearchParameterMap.newSynchronous("organization.name", new StringParam("ORG")), mySrd).size());
+	}
+
+	private static Bundle createBundle(int thePatientCount) {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+
+		Organization org = new Organization();
+		org.setId("urn:uuid:0b4a8e56-98a3-4a3e-8d6f-7a0a3a8c0c11");
+		org.setName("ORG");
+		bundle.addEntry().setResource(org).setFullUrl(org.getId()).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Organization");
+
+		for (int i = 0; i < thePatientCount; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/P" + i);
+			patient.addIdentifier().setSystem("http://ids").setValue(Integer.toString(i));
+			patient.addName().setFamily("FAMILY" + i);
+			patient.setGender(i % 2 == 0 ? Enumerations.AdministrativeGender.MALE : Enumerations.AdministrativeGender.FEMALE);
+			patient.getManagingOrganization().setReference(org.getId());
+			bundle.addEntry().setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl("Patient/P" + i);
+		}
+		return bundle;
+	}
+}
@@ -0,0 +1,173 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.search.KeysetPagingProvider;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceProviderR4KeysetPagingTest extends BaseResourceProviderR4Test {
+
+	@BeforeEach
+	public void beforeUseKeysetPaging() {
+		myStorageSettings.setKeysetPagingEnabled(true);
+		KeysetPagingProvider pagingProvider = new KeysetPagingProvider();
+		myAppCtx.getAutowireCapableBeanFactory().autowireBean(pagingProvider);
+		ourRestServer.setPagingProvider(pagingProvider);
+	}
+
+	@AfterEach
+	public void afterRestoreDefaults() {
+		JpaStorageSettings defaults = new JpaStorageSettings();
+		myStorageSettings.setKeysetPagingEnabled(defaults.isKeysetPagingEnabled());
+		myStorageSettings.setFetchSizeDefaultMaximum(defaults.getFetchSizeDefaultMaximum());
+		ourRestServer.setPagingProvider(ourPagingProvider);
+	}
+
+	@Test
+	public void testPageByLastUpdatedWhileUpdating() {
+		List<IIdType> ids = createPatients(12);
+
+		Bundle page = myClient.search()
+				.forResource(Patient.class)
+				.sort().ascending(Constants.PARAM_LASTUPDATED)
+				.count(5)
+				.returnBundle(Bundle.class)
+				.execute();
+
+		List<String> seen = new ArrayList<>();
+		List<Date> lastUpdated = new ArrayList<>();
+		int pageCount = 0;
+		int nextToUpdate = ids.size() - 1;
+		while (true) {
+			pageCount++;
+			for (Bundle.BundleEntryComponent entry : page.getEntry()) {
+				seen.add(entry.getResource().getIdElement().toUnqualifiedVersionless().getValue());
+				lastUpdated.add(entry.getResource().getMeta().getLastUpdated());
+			}
+			if (page.getLink(Bundle.LINK_NEXT) == null) {
+				break;
+			}
+			assertTrue(page.getLink(Bundle.LINK_NEXT).getUrl().contains(Constants.PARAM_PAGEID + "="));
+
+			// Rows which haven't been returned yet move to the end of the sort order, but
+			// must still be returned exactly once
+			updatePatient(ids.get(nextToUpdate--));
+
+			page = myClient.loadPage().next(page).execute();
+		}
+
+		assertEquals(3, pageCount);
+		assertEquals(ids.size(), seen.size(), seen.toString());
+		assertEquals(new HashSet<>(toValues(ids)), new HashSet<>(seen));
+		for (int i = 1; i < lastUpdated.size(); i++) {
+			assertFalse(lastUpdated.get(i).before(lastUpdated.get(i - 1)), lastUpdated.toString());
+		}
+	}
+
+	@Test
+	public void testPageByPidWhileUpdating() {
+		List<IIdType> ids = createPatients(12);
+
+		Bundle page = myClient.search()
+				.forResource(Patient.class)
+				.sort().ascending(Constants.PARAM_PID)
+				.count(5)
+				.returnBundle(Bundle.class)
+				.execute();
+
+		List<String> seen = new ArrayList<>();
+		int pageCount = 0;
+		while (true) {
+			pageCount++;
+			for (Bundle.BundleEntryComponent entry : page.getEntry()) {
+				seen.add(entry.getResource().getIdElement().toUnqualifiedVersionless().getValue());
+			}
+			if (page.getLink(Bundle.LINK_NEXT) == null) {
+				break;
+			}
+
+			// Updates don't move rows when sorting on the PID, whether or not they were already returned
+			updatePatient(ids.get(0));
+			updatePatient(ids.get(ids.size() - pageCount));
+
+			page = myClient.loadPage().next(page).execute();
+		}
+
+		assertEquals(3, pageCount);
+		assertEquals(toValues(ids), seen);
+	}
+
+	@Test
+	public void testNotUsedWhenTotalRequested() {
+		createPatients(6);
+
+		Bundle page = myClient.search()
+				.forResource(Patient.class)
+				.sort().ascending(Constants.PARAM_LASTUPDATED)
+				.count(5)
+				.totalMode(SearchTotalModeEnum.ACCURATE)
+				.returnBundle(Bundle.class)
+				.execute();
+
+		assertEquals(6, page.getTotal());
+		assertNotNull(page.getLink(Bundle.LINK_NEXT));
+		assertFalse(page.getLink(Bundle.LINK_NEXT).getUrl().contains(Constants.PARAM_PAGEID + "="));
+	}
+
+	@Test
+	public void testNotUsedWhenFetchSizeMaximumConfigured() {
+		myStorageSettings.setFetchSizeDefaultMaximum(100);
+		createPatients(6);
+
+		Bundle page = myClient.search()
+				.forResource(Patient.class)
+				.sort().ascending(Constants.PARAM_LASTUPDATED)
+				.count(5)
+				.returnBundle(Bundle.class)
+				.execute();
+
+		assertNotNull(page.getLink(Bundle.LINK_NEXT));
+		assertFalse(page.getLink(Bundle.LINK_NEXT).getUrl().contains(Constants.PARAM_PAGEID + "="));
+	}
+
+	private List<IIdType> createPatients(int theCount) {
+		List<IIdType> retVal = new ArrayList<>();
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("FAMILY" + i);
+			retVal.add(myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless());
+		}
+		return retVal;
+	}
+
+	private void updatePatient(IIdType theId) {
+		Patient patient = myPatientDao.read(theId, mySrd);
+		patient.setActive(!patient.getActive());
+		myPatientDao.update(patient, mySrd);
+	}
+
+	private static List<String> toValues(List<IIdType> theIds) {
+		List<String> retVal = new ArrayList<>();
+		for (IIdType next : theIds) {
+			retVal.add(next.getValue());
+		}
+		return retVal;
+	}
+}
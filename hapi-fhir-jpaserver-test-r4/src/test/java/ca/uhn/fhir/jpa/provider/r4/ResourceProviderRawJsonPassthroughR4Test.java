@@ -0,0 +1,176 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.IPreResourceShowDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.util.RawJsonResourceBody;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Narrative;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceProviderRawJsonPassthroughR4Test extends BaseResourceProviderR4Test {
+
+	private IIdType myPatientId;
+
+	@BeforeEach
+	public void beforeCreatePatient() {
+		Organization org = new Organization();
+		org.setName("ORG");
+		IIdType orgId = myOrganizationDao.create(org, mySrd).getId().toUnqualifiedVersionless();
+
+		Patient patient = new Patient();
+		patient.getText().setStatus(Narrative.NarrativeStatus.GENERATED).setDivAsString("<div>Hello</div>");
+		patient.addExtension("http://foo", new StringType("bar"));
+		patient.addIdentifier().setSystem("http://ids").setValue("123");
+		patient.addName().setFamily("Simpson").addGiven("Homer");
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+		patient.getManagingOrganization().setReference(orgId.getValue());
+		patient.getMeta().addTag("http://tags", "tag0", null);
+		patient.getMeta().setSource("http://source");
+		myPatientId = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		patient.setId(myPatientId);
+		patient.setActive(true);
+		myPatientDao.update(patient, mySrd);
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+		myStorageSettings.setRawJsonPassthroughEnabled(new JpaStorageSettings().isRawJsonPassthroughEnabled());
+		myServer.getRestfulServer().getInterceptorService().unregisterAllInterceptors();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"", "/_history/1", "/_history/2"})
+	public void testReadResponseMatchesParsedResponse(String theVersionSuffix) throws IOException {
+		String url = myServerBase + "/" + myPatientId.getValue() + theVersionSuffix + "?_format=json&_pretty=false";
+
+		String expected = fetch(url);
+
+		myStorageSettings.setRawJsonPassthroughEnabled(true);
+		String actual = fetch(url);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testReadWritesStoredJsonVerbatim() throws IOException {
+		// Stored with whitespace which a parse and re-encode would remove
+		replaceStoredJson("{\"resourceType\":\"Patient\",\"active\": true,\"name\":[{\"family\":\"Raw\"}]}");
+		String url = myServerBase + "/" + myPatientId.getValue() + "?_format=json&_pretty=false";
+
+		String parsed = fetch(url);
+		assertTrue(parsed.contains("\"active\":true,"), parsed);
+
+		myStorageSettings.setRawJsonPassthroughEnabled(true);
+		String passedThrough = fetch(url);
+		assertTrue(passedThrough.contains("\"active\": true,\"name\":[{\"family\":\"Raw\"}]}"), passedThrough);
+		assertTrue(passedThrough.contains("\"versionId\":\"2\""), passedThrough);
+		assertTrue(passedThrough.contains("\"source\":\"http://source\""), passedThrough);
+	}
+
+	@Test
+	public void testDaoReadIsAlwaysParsed() {
+		myStorageSettings.setRawJsonPassthroughEnabled(true);
+
+		SystemRequestDetails requestDetails = new SystemRequestDetails();
+		requestDetails.setRestOperationType(RestOperationTypeEnum.READ);
+		requestDetails.setResourceName("Patient");
+		requestDetails.setId(myPatientId);
+
+		Patient patient = myPatientDao.read(myPatientId, requestDetails);
+		assertNull(RawJsonResourceBody.fromResource(patient));
+		assertEquals("Simpson", patient.getNameFirstRep().getFamily());
+
+		// Only reads for a REST response get the stored body attached instead
+		patient = myPatientDao.readForRestResponse(myPatientId, requestDetails);
+		assertNotNull(RawJsonResourceBody.fromResource(patient));
+		assertEquals("2", patient.getIdElement().getVersionIdPart());
+		assertEquals("2", patient.getMeta().getVersionId());
+		assertEquals("http://source", patient.getMeta().getSource());
+		assertFalse(patient.hasName());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"_format=xml", "_format=json&_pretty=true", "_format=json&_elements=name", "_format=json&_summary=true"})
+	public void testReadFallsBackToParsedResponse(String theParams) throws IOException {
+		String url = myServerBase + "/" + myPatientId.getValue() + "?" + theParams;
+
+		String expected = fetch(url);
+
+		myStorageSettings.setRawJsonPassthroughEnabled(true);
+		String actual = fetch(url);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testReadWithPreShowInterceptor() throws IOException {
+		myStorageSettings.setRawJsonPassthroughEnabled(true);
+
+		List<IBaseResource> shown = new ArrayList<>();
+		myServer.getRestfulServer().getInterceptorService().registerAnonymousInterceptor(Pointcut.STORAGE_PRESHOW_RESOURCES, (thePointcut, theArgs) -> {
+			IPreResourceShowDetails details = theArgs.get(IPreResourceShowDetails.class);
+			for (IBaseResource next : details) {
+				shown.add(next);
+			}
+		});
+
+		String response = fetch(myServerBase + "/" + myPatientId.getValue() + "?_format=json&_pretty=false");
+
+		assertEquals(1, shown.size());
+		assertTrue(((Patient) shown.get(0)).hasName());
+		assertNull(RawJsonResourceBody.fromResource(shown.get(0)));
+		Patient patient = myFhirContext.newJsonParser().parseResource(Patient.class, response);
+		assertEquals("Simpson", patient.getNameFirstRep().getFamily());
+	}
+
+	private void replaceStoredJson(String theJson) {
+		runInTransaction(() -> {
+			ResourceHistoryTable history =
+					myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(myPatientId.getIdPartAsLong(), 2);
+			history.setEncoding(ResourceEncodingEnum.JSON);
+			history.setResource(null);
+			history.setResourceBinary(null);
+			history.setResourceTextVc(theJson);
+			myResourceHistoryTableDao.save(history);
+		});
+	}
+
+	private String fetch(String theUrl) throws IOException {
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(theUrl))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			return IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+		}
+	}
+}
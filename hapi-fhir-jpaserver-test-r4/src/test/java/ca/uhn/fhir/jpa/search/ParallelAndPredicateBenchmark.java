@@ -0,0 +1,109 @@
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.config.TestR4Config;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.r4.model.Enumerations.AdministrativeGender;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing searches with several AND-ed parameters when the parameters are
+ * resolved in a single SQL query, and when they are resolved in parallel and intersected.
+ * The benchmark starts the same in-memory test server as the R4 JPA tests.
+ * This is not run as part of the build. To run it, execute the {@link #main(String[])}
+ * method from the IDE, or compile the test classes and run
+ * <code>org.openjdk.jmh.Main ParallelAndPredicateBenchmark</code> with the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelAndPredicateBenchmark {
+
+	@Param({"false", "true"})
+	public boolean myParallel;
+
+	@Param({"2000"})
+	public int myPatientCount;
+
+	private AnnotationConfigApplicationContext myAppCtx;
+	private IFhirResourceDao<Patient> myPatientDao;
+
+	@Setup
+	public void setup() {
+		myAppCtx = new AnnotationConfigApplicationContext(TestR4Config.class);
+		myAppCtx.getBean(JpaStorageSettings.class).setParallelAndPredicatesEnabled(myParallel);
+		myPatientDao = myAppCtx.getBean(DaoRegistry.class).getResourceDao(Patient.class);
+
+		for (int i = 0; i < myPatientCount; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("FAMILY" + (i % 50)).addGiven("Given" + i);
+			patient.setGender(i % 2 == 0 ? AdministrativeGender.FEMALE : AdministrativeGender.MALE);
+			patient.getBirthDateElement().setValueAsString(LocalDate.of(1950, 1, 1).plusDays(i).toString());
+			patient.setActive(i % 5 != 0);
+			myPatientDao.create(patient, new SystemRequestDetails());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		myAppCtx.close();
+	}
+
+	@Benchmark
+	public int searchUnsorted() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+				.add(Patient.SP_FAMILY, new StringParam("FAMILY7"))
+				.add(Patient.SP_GENDER, new TokenParam("male"))
+				.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		return myPatientDao.search(map, new SystemRequestDetails()).size();
+	}
+
+	@Benchmark
+	public int searchSortedWithCount() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+				.add(Patient.SP_FAMILY, new StringParam("FAMILY7"))
+				.add(Patient.SP_GENDER, new TokenParam("male"))
+				.add(Patient.SP_BIRTHDATE, new DateParam(ParamPrefixEnum.GREATERTHAN_OR_EQUALS, "1951-01-01"));
+		map.setSort(new SortSpec(Patient.SP_BIRTHDATE, SortOrderEnum.DESC));
+		map.setCount(10);
+		return myPatientDao.search(map, new SystemRequestDetails()).size();
+	}
+
+	public static void main(String[] theArgs) throws RunnerException {
+		new Runner(new OptionsBuilder()
+						.include(ParallelAndPredicateBenchmark.class.getSimpleName())
+						.build())
+				.run();
+	}
+}
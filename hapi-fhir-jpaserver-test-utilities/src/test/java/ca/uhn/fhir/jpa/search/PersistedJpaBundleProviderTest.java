@@ -3,6 +3,7 @@ package ca.uhn.fhir.jpa.search;
 import ca.uhn.fhir.jpa.api.dao.IDao;
 import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
 import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.method.ResponsePage;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,6 +11,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verifyNoInteractions;
 
@@ -37,4 +40,24 @@ public class PersistedJpaBundleProviderTest {
 		verifyNoInteractions(myDao);
 		verifyNoInteractions(mySearchBuilderFactory);
 	}
+
+	@Test
+	public void estimatedTotalIsReadFromTheSearch() {
+		Search searchEntity = new Search();
+		searchEntity.setSearchType(SearchTypeEnum.SEARCH);
+		myPersistedJpaBundleProvider.setSearchEntity(searchEntity);
+		assertNull(myPersistedJpaBundleProvider.getEstimatedTotal());
+
+		searchEntity.setEstimatedTotal(100);
+		searchEntity.setNumFound(5);
+		assertEquals(100, myPersistedJpaBundleProvider.getEstimatedTotal());
+
+		// Never lower than what has already been found
+		searchEntity.setNumFound(150);
+		assertEquals(150, myPersistedJpaBundleProvider.getEstimatedTotal());
+
+		// Nothing is estimated on request
+		verifyNoInteractions(myDao);
+		verifyNoInteractions(mySearchBuilderFactory);
+	}
 }
@@ -3,6 +3,7 @@ package ca.uhn.fhir.jpa.util;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.model.entity.TagDefinition;
 import ca.uhn.fhir.jpa.model.entity.TagTypeEnum;
+import ca.uhn.fhir.jpa.subscription.channel.impl.LinkedBlockingChannelFactory;
 import ca.uhn.fhir.sl.cache.Cache;
 import ca.uhn.fhir.sl.cache.CacheFactory;
 import org.junit.jupiter.api.AfterEach;
@@ -24,9 +25,11 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -65,6 +68,53 @@ class MemoryCacheServiceTest {
 		assertThat(retVal, equalTo(tagDef));
 	}
 
+	@Test
+	public void testInvalidationIsBroadcastToOtherNodes() {
+		MemoryCacheService otherSvc = new MemoryCacheService(new JpaStorageSettings());
+		LinkedBlockingChannelFactory channelFactory = new LinkedBlockingChannelFactory((name, settings) -> name);
+		ChannelMemoryCacheInvalidationBroadcaster broadcaster =
+			new ChannelMemoryCacheInvalidationBroadcaster(channelFactory, mySvc);
+		ChannelMemoryCacheInvalidationBroadcaster otherBroadcaster =
+			new ChannelMemoryCacheInvalidationBroadcaster(channelFactory, otherSvc);
+		broadcaster.start();
+		otherBroadcaster.start();
+		try {
+			for (MemoryCacheService next : List.of(mySvc, otherSvc)) {
+				next.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|1", 1L);
+				next.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|2", 2L);
+				next.put(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L, 3L);
+			}
+
+			mySvc.invalidate(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|1");
+			mySvc.invalidate(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L);
+
+			await().until(() -> otherSvc.getInvalidationMetrics().getMessagesReceived() == 2);
+			assertThat(otherSvc.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|1"), nullValue());
+			assertThat(otherSvc.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|2"), equalTo(2L));
+			assertThat(otherSvc.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_CONDITIONAL_CREATE_VERSION, 1L), nullValue());
+
+			assertEquals(2, mySvc.getInvalidationMetrics().getMessagesSent());
+			assertEquals(0, mySvc.getInvalidationMetrics().getMessagesReceived());
+		} finally {
+			broadcaster.stop();
+			otherBroadcaster.stop();
+		}
+	}
+
+	@Test
+	public void testRemoteInvalidationWithUnserializableKeyClearsCache() {
+		MemoryCacheService.TagDefinitionCacheKey cacheKey = new MemoryCacheService.TagDefinitionCacheKey(
+			TagTypeEnum.TAG, "http://example.com", "t", null, null);
+		mySvc.put(MemoryCacheService.CacheEnum.TAG_DEFINITION, cacheKey, new TagDefinition());
+
+		MemoryCacheInvalidationMessage message = new MemoryCacheInvalidationMessage("other-node", System.currentTimeMillis());
+		message.addEntry(MemoryCacheService.CacheEnum.TAG_DEFINITION, null);
+		mySvc.handleRemoteInvalidation(message);
+
+		assertThat(mySvc.getIfPresent(MemoryCacheService.CacheEnum.TAG_DEFINITION, cacheKey), nullValue());
+		assertEquals(1, mySvc.getInvalidationMetrics().getEntriesReceived());
+	}
+
 	@Nested
 	public static class CaffeineAbuseTest {
 
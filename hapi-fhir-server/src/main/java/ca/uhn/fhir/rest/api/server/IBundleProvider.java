@@ -224,6 +224,19 @@ public interface IBundleProvider {
 	@Nullable
 	Integer size();
 
+	/**
+	 * Returns an approximate total number of results, which is reported in <code>Bundle.total</code>
+	 * if {@link #size()} returns {@literal null}. Unlike {@link #size()}, this value is never used
+	 * to decide how many results to return or whether there is a next page, so it may be too low.
+	 *
+	 * @return The estimated total, or {@literal null} (which is the default) if none is known
+	 * @since 7.2.0
+	 */
+	@Nullable
+	default Integer getEstimatedTotal() {
+		return null;
+	}
+
 	/**
 	 * This method returns <code>false</code> if the bundle provider knows that at least
 	 * one result exists.
@@ -36,4 +36,15 @@ public interface IRestfulServer<T extends RequestDetails> extends IRestfulServer
 	default boolean canStoreSearchResults() {
 		return getPagingProvider() != null && getPagingProvider().canStoreSearchResults();
 	}
+
+	/**
+	 * If this returns a value greater than zero, search result pages containing more than this
+	 * number of resources are fetched from the bundle provider and written to the client in
+	 * chunks of this size, instead of building the complete Bundle in memory first.
+	 *
+	 * @since 7.2.0
+	 */
+	default int getBundleStreamingChunkSize() {
+		return 0;
+	}
 }
@@ -145,6 +145,7 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 	private final List<IResourceProvider> myResourceProviders = new ArrayList<>();
 	private IInterceptorService myInterceptorService;
 	private BundleInclusionRule myBundleInclusionRule = BundleInclusionRule.BASED_ON_INCLUDES;
+	private int myBundleStreamingChunkSize = 0;
 	private boolean myDefaultPrettyPrint = false;
 	private EncodingEnum myDefaultResponseEncoding = EncodingEnum.JSON;
 	private ETagSupportEnum myETagSupport = DEFAULT_ETAG_SUPPORT;
@@ -602,6 +603,43 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 		myBundleInclusionRule = theBundleInclusionRule;
 	}
 
+	/**
+	 * If set to a value greater than zero (default is <code>0</code>), search and paging responses
+	 * containing more than this number of resources are streamed to the client: resources are fetched
+	 * from the {@link ca.uhn.fhir.rest.api.server.IBundleProvider} in chunks of this size and each chunk is encoded and written
+	 * before the next one is fetched. This bounds the number of resources held in memory per request.
+	 * <p>
+	 * Streaming is only used for JSON and XML responses where the total number of results is known,
+	 * and is skipped if any interceptor is registered against
+	 * {@link Pointcut#SERVER_OUTGOING_RESPONSE}, since that pointcut needs
+	 * the complete response Bundle.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	@Override
+	public int getBundleStreamingChunkSize() {
+		return myBundleStreamingChunkSize;
+	}
+
+	/**
+	 * If set to a value greater than zero (default is <code>0</code>), search and paging responses
+	 * containing more than this number of resources are streamed to the client: resources are fetched
+	 * from the {@link ca.uhn.fhir.rest.api.server.IBundleProvider} in chunks of this size and each chunk is encoded and written
+	 * before the next one is fetched. This bounds the number of resources held in memory per request.
+	 * <p>
+	 * Streaming is only used for JSON and XML responses where the total number of results is known,
+	 * and is skipped if any interceptor is registered against
+	 * {@link Pointcut#SERVER_OUTGOING_RESPONSE}, since that pointcut needs
+	 * the complete response Bundle.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setBundleStreamingChunkSize(int theBundleStreamingChunkSize) {
+		myBundleStreamingChunkSize = theBundleStreamingChunkSize;
+	}
+
 	/**
 	 * Returns the default encoding to return (XML/JSON) if an incoming request does not specify a preference (either
 	 * with the <code>_format</code> URL parameter, or with an <code>Accept</code> header
@@ -1198,10 +1236,12 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 			resourceMethod.invokeServer(this, requestDetails);
 
 			// Invoke interceptors
-			HookParams hookParams = new HookParams();
-			hookParams.add(RequestDetails.class, requestDetails);
-			hookParams.add(ServletRequestDetails.class, requestDetails);
-			myInterceptorService.callHooks(Pointcut.SERVER_PROCESSING_COMPLETED_NORMALLY, hookParams);
+			if (myInterceptorService.hasHooks(Pointcut.SERVER_PROCESSING_COMPLETED_NORMALLY)) {
+				HookParams hookParams = new HookParams();
+				hookParams.add(RequestDetails.class, requestDetails);
+				hookParams.add(ServletRequestDetails.class, requestDetails);
+				myInterceptorService.callHooks(Pointcut.SERVER_PROCESSING_COMPLETED_NORMALLY, hookParams);
+			}
 
 		} catch (NotModifiedException | AuthenticationException e) {
 
@@ -1288,10 +1328,12 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 
 		} finally {
 
-			HookParams params = new HookParams();
-			params.add(RequestDetails.class, requestDetails);
-			params.addIfMatchesType(ServletRequestDetails.class, requestDetails);
-			myInterceptorService.callHooks(Pointcut.SERVER_PROCESSING_COMPLETED, params);
+			if (myInterceptorService.hasHooks(Pointcut.SERVER_PROCESSING_COMPLETED)) {
+				HookParams params = new HookParams();
+				params.add(RequestDetails.class, requestDetails);
+				params.addIfMatchesType(ServletRequestDetails.class, requestDetails);
+				myInterceptorService.callHooks(Pointcut.SERVER_PROCESSING_COMPLETED, params);
+			}
 		}
 	}
 
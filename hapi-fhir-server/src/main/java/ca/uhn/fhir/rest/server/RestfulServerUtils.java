@@ -45,8 +45,10 @@ import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.method.ElementsParameter;
+import ca.uhn.fhir.rest.server.method.StreamingResponseBundle;
 import ca.uhn.fhir.rest.server.method.SummaryEnumParameter;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.rest.server.util.RawJsonResourceBody;
 import ca.uhn.fhir.util.BinaryUtil;
 import ca.uhn.fhir.util.DateUtils;
 import ca.uhn.fhir.util.UrlUtil;
@@ -895,6 +897,57 @@ public class RestfulServerUtils {
 			IIdType theOperationResourceId,
 			IPrimitiveType<Date> theOperationResourceLastUpdated)
 			throws IOException {
+		return streamResponseAsResource(
+				theServer,
+				theResource,
+				null,
+				theSummaryMode,
+				theStatusCode,
+				theAddContentLocationHeader,
+				respondGzip,
+				theRequestDetails,
+				theOperationResourceId,
+				theOperationResourceLastUpdated);
+	}
+
+	/**
+	 * Writes a search response Bundle whose entries are fetched and encoded while
+	 * the response is being written
+	 *
+	 * @since 7.2.0
+	 */
+	public static Object streamResponseAsBundle(
+			IRestfulServerDefaults theServer,
+			StreamingResponseBundle theStreamingResponseBundle,
+			boolean theAddContentLocationHeader,
+			boolean respondGzip,
+			RequestDetails theRequestDetails)
+			throws IOException {
+		return streamResponseAsResource(
+				theServer,
+				theStreamingResponseBundle.getBundle(),
+				theStreamingResponseBundle,
+				determineSummaryMode(theRequestDetails),
+				Constants.STATUS_HTTP_200_OK,
+				theAddContentLocationHeader,
+				respondGzip,
+				theRequestDetails,
+				null,
+				null);
+	}
+
+	private static Object streamResponseAsResource(
+			IRestfulServerDefaults theServer,
+			IBaseResource theResource,
+			@Nullable StreamingResponseBundle theStreamingResponseBundle,
+			Set<SummaryEnum> theSummaryMode,
+			int theStatusCode,
+			boolean theAddContentLocationHeader,
+			boolean respondGzip,
+			RequestDetails theRequestDetails,
+			IIdType theOperationResourceId,
+			IPrimitiveType<Date> theOperationResourceLastUpdated)
+			throws IOException {
 		IRestfulResponse response = theRequestDetails.getResponse();
 
 		// Determine response encoding
@@ -939,6 +992,25 @@ public class RestfulServerUtils {
 			}
 		}
 
+		// If the resource body was passed through from storage without being parsed, either
+		// write it as-is or parse it now if the response needs the full model
+		RawJsonResourceBody rawJsonBody = RawJsonResourceBody.fromResource(theResource);
+		if (rawJsonBody != null) {
+			FhirContext context =
+					getContextForVersion(theServer.getFhirContext(), theResource.getStructureFhirVersionEnum());
+			if (!canWriteRawJsonBody(
+					theServer,
+					context,
+					theResource,
+					rawJsonBody,
+					responseEncoding,
+					theSummaryMode,
+					theRequestDetails)) {
+				rawJsonBody.materialize(context, theResource);
+				rawJsonBody = null;
+			}
+		}
+
 		// Binary handling
 		String contentType;
 		if (theResource instanceof IBaseBinary) {
@@ -1052,12 +1124,53 @@ public class RestfulServerUtils {
 		} else {
 			FhirVersionEnum forVersion = theResource.getStructureFhirVersionEnum();
 			IParser parser = getNewParser(theServer.getFhirContext(), forVersion, theRequestDetails);
-			parser.encodeResourceToWriter(theResource, writer);
+			if (theStreamingResponseBundle != null) {
+				theStreamingResponseBundle.encode(parser, writer);
+			} else if (rawJsonBody != null) {
+				rawJsonBody.writeSpliced(parser.encodeResourceToString(theResource), writer);
+			} else {
+				parser.encodeResourceToWriter(theResource, writer);
+			}
 		}
 
 		return response.commitResponse(writer);
 	}
 
+	/**
+	 * A raw JSON body can only be written as-is if the response is compact JSON containing
+	 * every element of the resource, and nothing has modified the shell resource it is
+	 * attached to
+	 */
+	private static boolean canWriteRawJsonBody(
+			IRestfulServerDefaults theServer,
+			FhirContext theContext,
+			IBaseResource theResource,
+			RawJsonResourceBody theRawJsonBody,
+			@Nullable ResponseEncoding theResponseEncoding,
+			Set<SummaryEnum> theSummaryMode,
+			RequestDetails theRequestDetails) {
+		EncodingEnum encoding = theResponseEncoding != null
+				? theResponseEncoding.getEncoding()
+				: theServer.getDefaultResponseEncoding();
+		if (encoding != EncodingEnum.JSON) {
+			return false;
+		}
+		if (prettyPrintResponse(theServer, theRequestDetails)) {
+			return false;
+		}
+		if (!theSummaryMode.equals(Collections.singleton(SummaryEnum.FALSE))) {
+			return false;
+		}
+		if (ElementsParameter.getElementsValueOrNull(theRequestDetails, false) != null
+				|| ElementsParameter.getElementsValueOrNull(theRequestDetails, true) != null) {
+			return false;
+		}
+		if (theContext.getNarrativeGenerator() != null) {
+			return false;
+		}
+		return theRawJsonBody.isShellUnmodified(theContext, theResource);
+	}
+
 	private static String getBinaryContentTypeOrDefault(IBaseBinary theBinary) {
 		String contentType;
 		if (isNotBlank(theBinary.getContentType())) {
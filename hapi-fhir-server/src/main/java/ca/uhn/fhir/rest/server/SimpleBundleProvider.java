@@ -38,6 +38,7 @@ public class SimpleBundleProvider implements IBundleProvider {
 	private final String myUuid;
 	private Integer myPreferredPageSize;
 	private Integer mySize;
+	private Integer myEstimatedTotal;
 	private IPrimitiveType<Date> myPublished = InstantDt.withCurrentTime();
 	private Integer myCurrentPageOffset;
 	private Integer myCurrentPageSize;
@@ -197,6 +198,21 @@ public class SimpleBundleProvider implements IBundleProvider {
 		return mySize;
 	}
 
+	/**
+	 * Sets the value to be returned by {@link #getEstimatedTotal()}. Default is <code>null</code>.
+	 *
+	 * @since 7.2.0
+	 */
+	public SimpleBundleProvider setEstimatedTotal(Integer theEstimatedTotal) {
+		myEstimatedTotal = theEstimatedTotal;
+		return this;
+	}
+
+	@Override
+	public Integer getEstimatedTotal() {
+		return myEstimatedTotal;
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this).append("mySize", mySize).toString();
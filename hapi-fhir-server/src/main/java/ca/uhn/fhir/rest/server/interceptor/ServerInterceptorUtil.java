@@ -54,7 +54,9 @@ public class ServerInterceptorUtil {
 		// Interceptor call: STORAGE_PRESHOW_RESOURCE
 		// This can be used to remove results from the search result details before
 		// the user has a chance to know that they were in the results
-		if (retVal.size() > 0) {
+		if (retVal.size() > 0
+				&& CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PRESHOW_RESOURCES, theInterceptorBroadcaster, theRequest)) {
 			SimplePreResourceShowDetails accessDetails = new SimplePreResourceShowDetails(retVal);
 			HookParams params = new HookParams()
 					.add(IPreResourceShowDetails.class, accessDetails)
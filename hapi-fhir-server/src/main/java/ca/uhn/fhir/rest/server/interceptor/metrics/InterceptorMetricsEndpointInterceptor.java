@@ -0,0 +1,109 @@
+/*-
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.rest.server.interceptor.metrics;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.interceptor.executor.InterceptorMetricsCollector;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.util.JsonUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Serves the metrics gathered by an {@link InterceptorMetricsCollector} as JSON, at
+ * <code>GET [base]/$interceptor-metrics</code> by default. The response lists each
+ * pointcut and interceptor type with its invocation count and latency percentiles, with
+ * the hooks which have taken the most time in total first.
+ * <p>
+ * The collector must also be set as the metrics sink of the server's interceptor service,
+ * e.g.:
+ * </p>
+ * <pre>
+ * InterceptorMetricsCollector collector = new InterceptorMetricsCollector();
+ * restfulServer.getInterceptorService().setMetricsSink(collector);
+ * restfulServer.registerInterceptor(new InterceptorMetricsEndpointInterceptor(collector));
+ * </pre>
+ * <p>
+ * Note that this endpoint is served before any security interceptors (such as the
+ * AuthorizationInterceptor) are invoked, since those are called after the handler is
+ * selected. It should only be registered on servers where the names of the registered
+ * interceptors can be disclosed, or where the path is protected by other means.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+@Interceptor
+public class InterceptorMetricsEndpointInterceptor {
+
+	public static final String DEFAULT_PATH = "$interceptor-metrics";
+
+	private final InterceptorMetricsCollector myCollector;
+	private String myPath = DEFAULT_PATH;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theCollector The collector to serve the metrics of
+	 */
+	public InterceptorMetricsEndpointInterceptor(@Nonnull InterceptorMetricsCollector theCollector) {
+		Validate.notNull(theCollector, "theCollector must not be null");
+		myCollector = theCollector;
+	}
+
+	public String getPath() {
+		return myPath;
+	}
+
+	/**
+	 * Sets the path (relative to the server base) to serve the metrics at. Defaults to
+	 * {@link #DEFAULT_PATH}.
+	 */
+	public void setPath(@Nonnull String thePath) {
+		Validate.notBlank(thePath, "thePath must not be blank");
+		myPath = thePath;
+	}
+
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLER_SELECTED)
+	public boolean serveMetrics(ServletRequestDetails theRequestDetails, HttpServletResponse theResponse)
+			throws IOException {
+		if (theRequestDetails.getRequestType() != RequestTypeEnum.GET
+				|| !myPath.equals(theRequestDetails.getRequestPath())) {
+			return true;
+		}
+
+		String response = JsonUtil.serialize(myCollector.getMetrics());
+
+		theResponse.setStatus(Constants.STATUS_HTTP_200_OK);
+		theResponse.setContentType(Constants.CT_JSON);
+		theResponse.setCharacterEncoding(Constants.CHARSET_NAME_UTF8);
+		try (Writer writer = theResponse.getWriter()) {
+			writer.write(response);
+		}
+		return false;
+	}
+}
@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.rest.server.interceptor.metrics;
+
+import ca.uhn.fhir.interceptor.api.IInterceptorMetricsSink;
+import ca.uhn.fhir.interceptor.api.IPointcut;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.Validate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link IInterceptorMetricsSink} which records each hook invocation in a Micrometer
+ * {@link Timer} named {@value #METER_NAME}, tagged with the <code>pointcut</code>, the
+ * <code>interceptor</code> type and the <code>outcome</code> (<code>success</code> or
+ * <code>failure</code>). Percentiles and histograms can be enabled for these timers using
+ * a Micrometer <code>MeterFilter</code> on the registry.
+ * <p>
+ * This requires <code>io.micrometer:micrometer-core</code> on the classpath, which is an
+ * optional dependency of this module.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class MicrometerInterceptorMetricsSink implements IInterceptorMetricsSink {
+
+	public static final String METER_NAME = "hapi.fhir.interceptor.hook";
+
+	private final MeterRegistry myMeterRegistry;
+	private final Map<IPointcut, Map<Class<?>, Timer[]>> myTimers = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param theMeterRegistry The registry to register the timers with
+	 */
+	public MicrometerInterceptorMetricsSink(@Nonnull MeterRegistry theMeterRegistry) {
+		Validate.notNull(theMeterRegistry, "theMeterRegistry must not be null");
+		myMeterRegistry = theMeterRegistry;
+	}
+
+	@Override
+	public void hookInvoked(IPointcut thePointcut, Object theInterceptor, long theElapsedNanos, boolean theSuccessful) {
+		Map<Class<?>, Timer[]> pointcutTimers = myTimers.get(thePointcut);
+		if (pointcutTimers == null) {
+			pointcutTimers = myTimers.computeIfAbsent(thePointcut, t -> new ConcurrentHashMap<>());
+		}
+
+		Class<?> interceptorType = theInterceptor.getClass();
+		Timer[] timers = pointcutTimers.get(interceptorType);
+		if (timers == null) {
+			timers = pointcutTimers.computeIfAbsent(interceptorType, t -> createTimers(thePointcut, t));
+		}
+
+		timers[theSuccessful ? 0 : 1].record(theElapsedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private Timer[] createTimers(IPointcut thePointcut, Class<?> theInterceptorType) {
+		return new Timer[] {
+			createTimer(thePointcut, theInterceptorType, "success"),
+			createTimer(thePointcut, theInterceptorType, "failure")
+		};
+	}
+
+	private Timer createTimer(IPointcut thePointcut, Class<?> theInterceptorType, String theOutcome) {
+		return Timer.builder(METER_NAME)
+				.description("Time spent in interceptor hook methods")
+				.tag("pointcut", thePointcut.name())
+				.tag("interceptor", theInterceptorType.getName())
+				.tag("outcome", theOutcome)
+				.register(myMeterRegistry);
+	}
+}
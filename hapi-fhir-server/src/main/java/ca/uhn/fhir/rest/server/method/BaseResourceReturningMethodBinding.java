@@ -141,6 +141,15 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 	}
 
 	public IBaseResource doInvokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) {
+		return (IBaseResource) doInvokeServer(theServer, theRequest, false);
+	}
+
+	/**
+	 * @param theAllowStreaming If <code>true</code>, a {@link StreamingResponseBundle} may be returned
+	 *                          instead of a Bundle resource
+	 * @return Returns either a resource, a {@link StreamingResponseBundle}, or <code>null</code>
+	 */
+	protected Object doInvokeServer(IRestfulServer<?> theServer, RequestDetails theRequest, boolean theAllowStreaming) {
 		Object[] params = createMethodParams(theRequest);
 
 		Object resultObj = invokeServer(theServer, theRequest, params);
@@ -198,6 +207,13 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 							count,
 							responseBundleType,
 							linkSelf);
+					if (theAllowStreaming) {
+						StreamingResponseBundle streamingResponseBundle =
+								myResponseBundleBuilder.buildStreamingResponseBundle(responseBundleRequest);
+						if (streamingResponseBundle != null) {
+							return streamingResponseBundle;
+						}
+					}
 					responseObject = myResponseBundleBuilder.buildResponseBundle(responseBundleRequest);
 				}
 				break;
@@ -272,7 +288,17 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest)
 			throws BaseServerResponseException, IOException {
-		IBaseResource response = doInvokeServer(theServer, theRequest);
+		Object responseObject = doInvokeServer(theServer, theRequest, true);
+		if (responseObject instanceof StreamingResponseBundle) {
+			return RestfulServerUtils.streamResponseAsBundle(
+					theServer,
+					(StreamingResponseBundle) responseObject,
+					isAddContentLocationHeader(),
+					theRequest.isRespondGzip(),
+					theRequest);
+		}
+
+		IBaseResource response = (IBaseResource) responseObject;
 		/*
 		When we write directly to an HttpServletResponse, the invocation returns null. However, we still want to invoke
 		the SERVER_OUTGOING_RESPONSE pointcut.
@@ -22,6 +22,7 @@ package ca.uhn.fhir.rest.server.method;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.valueset.BundleTypeEnum;
@@ -78,13 +79,27 @@ public class PageMethodBinding extends BaseResourceReturningMethodBinding {
 	}
 
 	@Override
-	public IBaseResource doInvokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) {
-		return handlePagingRequest(
+	protected Object doInvokeServer(IRestfulServer<?> theServer, RequestDetails theRequest, boolean theAllowStreaming) {
+		ResponseBundleRequest responseBundleRequest = buildResponseBundleRequest(
 				theServer, theRequest, theRequest.getParameters().get(Constants.PARAM_PAGINGACTION)[0]);
+		if (theAllowStreaming) {
+			StreamingResponseBundle streamingResponseBundle =
+					myResponseBundleBuilder.buildStreamingResponseBundle(responseBundleRequest);
+			if (streamingResponseBundle != null) {
+				return streamingResponseBundle;
+			}
+		}
+		return myResponseBundleBuilder.buildResponseBundle(responseBundleRequest);
 	}
 
 	private IBaseResource handlePagingRequest(
 			IRestfulServer<?> theServer, RequestDetails theRequest, String thePagingAction) {
+		return myResponseBundleBuilder.buildResponseBundle(
+				buildResponseBundleRequest(theServer, theRequest, thePagingAction));
+	}
+
+	private ResponseBundleRequest buildResponseBundleRequest(
+			IRestfulServer<?> theServer, RequestDetails theRequest, String thePagingAction) {
 		IPagingProvider pagingProvider = theServer.getPagingProvider();
 		if (pagingProvider == null) {
 			throw new InvalidRequestException(Msg.code(416) + "This server does not support paging");
@@ -94,9 +109,7 @@ public class PageMethodBinding extends BaseResourceReturningMethodBinding {
 		populateRequestDetailsForInterceptor(theRequest, ReflectionUtil.EMPTY_OBJECT_ARRAY);
 		callPreHandledHooks(theRequest);
 
-		ResponseBundleRequest responseBundleRequest =
-				buildResponseBundleRequest(theServer, theRequest, thePagingAction, pagingProvider);
-		return myResponseBundleBuilder.buildResponseBundle(responseBundleRequest);
+		return buildResponseBundleRequest(theServer, theRequest, thePagingAction, pagingProvider);
 	}
 
 	private ResponseBundleRequest buildResponseBundleRequest(
@@ -167,15 +180,17 @@ public class PageMethodBinding extends BaseResourceReturningMethodBinding {
 	}
 
 	static void callPreHandledHooks(RequestDetails theRequest) {
+		IInterceptorBroadcaster interceptorBroadcaster = theRequest.getInterceptorBroadcaster();
+		if (interceptorBroadcaster == null
+				|| !interceptorBroadcaster.hasHooks(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)) {
+			return;
+		}
+
 		HookParams preHandledParams = new HookParams();
 		preHandledParams.add(RestOperationTypeEnum.class, theRequest.getRestOperationType());
 		preHandledParams.add(RequestDetails.class, theRequest);
 		preHandledParams.addIfMatchesType(ServletRequestDetails.class, theRequest);
-		if (theRequest.getInterceptorBroadcaster() != null) {
-			theRequest
-					.getInterceptorBroadcaster()
-					.callHooks(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED, preHandledParams);
-		}
+		interceptorBroadcaster.callHooks(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED, preHandledParams);
 	}
 
 	private void validateHaveBundleProvider(String thePagingAction, IBundleProvider theBundleProvider) {
@@ -20,7 +20,10 @@
 package ca.uhn.fhir.rest.server.method;
 
 import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.rest.api.BundleLinks;
+import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.api.IVersionSpecificBundleFactory;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
@@ -29,6 +32,7 @@ import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.IPagingProvider;
 import ca.uhn.fhir.rest.server.RestfulServerUtils;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseOperationOutcome;
@@ -64,6 +68,76 @@ public class ResponseBundleBuilder {
 		return buildBundle(theResponseBundleRequest, responsePage, links);
 	}
 
+	/**
+	 * Builds a response which is streamed to the client in chunks (see
+	 * {@link IRestfulServer#getBundleStreamingChunkSize()}), or returns <code>null</code> if the
+	 * request can't be streamed and {@link #buildResponseBundle(ResponseBundleRequest)} should be used instead.
+	 */
+	@Nullable
+	StreamingResponseBundle buildStreamingResponseBundle(ResponseBundleRequest theResponseBundleRequest) {
+		final IRestfulServer<?> server = theResponseBundleRequest.server;
+		final IBundleProvider bundleProvider = theResponseBundleRequest.bundleProvider;
+		final RequestDetails requestDetails = theResponseBundleRequest.requestDetails;
+
+		int chunkSize = server.getBundleStreamingChunkSize();
+		if (chunkSize <= 0) {
+			return null;
+		}
+
+		/*
+		 * Links are written before any entries, so we can only stream when they can be
+		 * determined without fetching the page, i.e. for saved searches where the total
+		 * is already known
+		 */
+		if (theResponseBundleRequest.requestedPage.offset != null
+				|| !server.canStoreSearchResults()
+				|| bundleProvider.getCurrentPageId() != null
+				|| bundleProvider.getCurrentPageOffset() != null) {
+			return null;
+		}
+		Integer size = bundleProvider.size();
+		if (size == null) {
+			return null;
+		}
+
+		EncodingEnum encoding = RestfulServerUtils.determineResponseEncodingWithDefault(requestDetails)
+				.getEncoding();
+		if (encoding != EncodingEnum.JSON && encoding != EncodingEnum.XML) {
+			return null;
+		}
+
+		// Interceptors on this pointcut expect to see (and possibly replace) the complete Bundle
+		IInterceptorBroadcaster interceptorBroadcaster = requestDetails.getInterceptorBroadcaster();
+		if (interceptorBroadcaster != null && interceptorBroadcaster.hasHooks(Pointcut.SERVER_OUTGOING_RESPONSE)) {
+			return null;
+		}
+
+		int pageSize = pagingCalculatePageSize(theResponseBundleRequest.requestedPage, server.getPagingProvider());
+		int numToReturn = Math.min(pageSize, size - theResponseBundleRequest.offset);
+		if (numToReturn <= chunkSize) {
+			return null;
+		}
+
+		String searchId = pagingBuildSearchId(theResponseBundleRequest, numToReturn, size);
+		ResponsePage responsePage = new ResponsePage.ResponsePageBuilder()
+				.setSearchId(searchId)
+				.setPageSize(pageSize)
+				.setNumToReturn(numToReturn)
+				.setBundleProvider(bundleProvider)
+				.setResources(new ArrayList<>())
+				.build();
+		BundleLinks links = buildLinks(theResponseBundleRequest, responsePage);
+		IBaseBundle bundle = buildBundle(theResponseBundleRequest, responsePage, links);
+
+		return new StreamingResponseBundle(
+				theResponseBundleRequest,
+				bundle,
+				links.serverBase,
+				theResponseBundleRequest.offset,
+				theResponseBundleRequest.offset + numToReturn,
+				chunkSize);
+	}
+
 	private static IBaseBundle buildBundle(
 			ResponseBundleRequest theResponseBundleRequest, ResponsePage pageResponse, BundleLinks links) {
 		final IRestfulServer<?> server = theResponseBundleRequest.server;
@@ -71,8 +145,11 @@ public class ResponseBundleBuilder {
 				server.getFhirContext().newBundleFactory();
 		final IBundleProvider bundleProvider = theResponseBundleRequest.bundleProvider;
 
-		bundleFactory.addRootPropertiesToBundle(
-				bundleProvider.getUuid(), links, bundleProvider.size(), bundleProvider.getPublished());
+		Integer total = bundleProvider.size();
+		if (total == null) {
+			total = bundleProvider.getEstimatedTotal();
+		}
+		bundleFactory.addRootPropertiesToBundle(bundleProvider.getUuid(), links, total, bundleProvider.getPublished());
 		bundleFactory.addResourcesToBundle(
 				new ArrayList<>(pageResponse.getResourceList()),
 				theResponseBundleRequest.bundleType,
@@ -212,7 +289,7 @@ public class ResponseBundleBuilder {
 		return retval;
 	}
 
-	private static void validateIds(List<IBaseResource> theResourceList) {
+	static void validateIds(List<IBaseResource> theResourceList) {
 		/*
 		 * Make sure all returned resources have an ID (if not, this is a bug
 		 * in the user server code)
@@ -228,7 +305,7 @@ public class ResponseBundleBuilder {
 		}
 	}
 
-	private static void removeNulls(List<IBaseResource> resourceList) {
+	static void removeNulls(List<IBaseResource> resourceList) {
 		/*
 		 * Remove any null entries in the list - This generally shouldn't happen but can if
 		 * data has been manually purged from the JPA database
@@ -0,0 +1,329 @@
+/*-
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.rest.server.method;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.IVersionSpecificBundleFactory;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.bundle.SearchBundleEntryParts;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A search response Bundle whose entries are fetched from the bundle provider and encoded
+ * one chunk at a time while the response is being written, so that only a single chunk of
+ * resources is held in memory at once.
+ * <p>
+ * The Bundle returned by {@link #getBundle()} contains the root properties and links of the
+ * response but no entries. When encoding, it is serialized with the response parser and the
+ * entries (which are serialized separately with the same parser, so that <code>_summary</code>
+ * and <code>_elements</code> are applied in exactly the same way) are spliced in where
+ * <code>Bundle.entry</code> belongs.
+ * </p>
+ *
+ * @see ca.uhn.fhir.rest.api.server.IRestfulServer#getBundleStreamingChunkSize()
+ * @since 7.2.0
+ */
+public class StreamingResponseBundle {
+
+	private final ResponseBundleRequest myResponseBundleRequest;
+	private final IBaseBundle myBundle;
+	private final String myServerBase;
+	private final int myFromIndex;
+	private final int myToIndex;
+	private final int myChunkSize;
+
+	StreamingResponseBundle(
+			ResponseBundleRequest theResponseBundleRequest,
+			IBaseBundle theBundle,
+			String theServerBase,
+			int theFromIndex,
+			int theToIndex,
+			int theChunkSize) {
+		myResponseBundleRequest = theResponseBundleRequest;
+		myBundle = theBundle;
+		myServerBase = theServerBase;
+		myFromIndex = theFromIndex;
+		myToIndex = theToIndex;
+		myChunkSize = theChunkSize;
+	}
+
+	/**
+	 * Returns the response Bundle, without any entries
+	 */
+	public IBaseBundle getBundle() {
+		return myBundle;
+	}
+
+	/**
+	 * Fetches the entries for this response and writes the complete Bundle to the given writer
+	 *
+	 * @param theParser The parser to use, which must be a JSON or XML parser and should already be
+	 *                  configured for the request
+	 */
+	public void encode(IParser theParser, Writer theWriter) throws IOException {
+		EntrySplicer splicer;
+		if (theParser.getEncoding() == EncodingEnum.JSON) {
+			splicer = new JsonEntrySplicer();
+		} else if (theParser.getEncoding() == EncodingEnum.XML) {
+			splicer = new XmlEntrySplicer();
+		} else {
+			throw new InternalErrorException(
+					Msg.code(2504) + "Can not stream a Bundle using encoding " + theParser.getEncoding());
+		}
+
+		String encodedBundle = theParser.encodeResourceToString(myBundle);
+		int entryInsertionIndex = splicer.findEntryInsertionIndex(encodedBundle);
+		int headEnd = entryInsertionIndex;
+		while (headEnd > 0 && Character.isWhitespace(encodedBundle.charAt(headEnd - 1))) {
+			headEnd--;
+		}
+		theWriter.write(encodedBundle, 0, headEnd);
+
+		FhirContext context = myResponseBundleRequest.server.getFhirContext();
+		Set<String> writtenResourceIds = new HashSet<>();
+		Map<String, IBase> deferredIncludes = new LinkedHashMap<>();
+		for (int from = myFromIndex; from < myToIndex; from += myChunkSize) {
+			int to = Math.min(from + myChunkSize, myToIndex);
+			boolean lastChunk = to >= myToIndex;
+
+			List<IBaseResource> resources =
+					new ArrayList<>(myResponseBundleRequest.bundleProvider.getResources(from, to));
+			ResponseBundleBuilder.removeNulls(resources);
+			ResponseBundleBuilder.validateIds(resources);
+
+			IBaseBundle chunk = buildChunk(context, resources);
+			List<IBase> entries = selectEntries(context, chunk, writtenResourceIds, deferredIncludes, lastChunk);
+			splicer.writeEntries(theParser, theWriter, newBundleWithEntries(context, entries));
+		}
+		if (!deferredIncludes.isEmpty()) {
+			splicer.writeEntries(
+					theParser, theWriter, newBundleWithEntries(context, new ArrayList<>(deferredIncludes.values())));
+		}
+
+		splicer.finish(theWriter);
+		theWriter.write(encodedBundle, headEnd, encodedBundle.length() - headEnd);
+	}
+
+	private IBaseBundle buildChunk(FhirContext theContext, List<IBaseResource> theResources) {
+		IVersionSpecificBundleFactory bundleFactory = theContext.newBundleFactory();
+		bundleFactory.addResourcesToBundle(
+				theResources,
+				myResponseBundleRequest.bundleType,
+				myServerBase,
+				myResponseBundleRequest.server.getBundleInclusionRule(),
+				myResponseBundleRequest.includes);
+		return (IBaseBundle) bundleFactory.getResourceBundle();
+	}
+
+	/**
+	 * Entries within a single chunk are already de-duplicated by the bundle factory, but a resource
+	 * can be included by more than one chunk, and can be included by one chunk and then matched by a
+	 * later one. Includes are therefore only written once, and includes which could still show up as
+	 * a match later on are held back until the last chunk.
+	 */
+	private List<IBase> selectEntries(
+			FhirContext theContext,
+			IBaseBundle theChunk,
+			Set<String> theWrittenResourceIds,
+			Map<String, IBase> theDeferredIncludes,
+			boolean theLastChunk) {
+		List<IBase> entries = getEntryChild(theContext, theChunk).getAccessor().getValues(theChunk);
+		List<SearchBundleEntryParts> entryParts = BundleUtil.getSearchBundleEntryParts(theContext, theChunk);
+		String searchedResourceType = myResponseBundleRequest.requestDetails.getResourceName();
+
+		List<IBase> retVal = new ArrayList<>(entries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			IBase entry = entries.get(i);
+			SearchBundleEntryParts parts = entryParts.get(i);
+			String resourceId = toResourceId(theContext, parts);
+			if (resourceId == null) {
+				retVal.add(entry);
+				continue;
+			}
+
+			if (parts.getSearchMode() == BundleEntrySearchModeEnum.INCLUDE) {
+				if (theWrittenResourceIds.contains(resourceId) || theDeferredIncludes.containsKey(resourceId)) {
+					continue;
+				}
+				String resourceType =
+						parts.getResource() != null ? theContext.getResourceType(parts.getResource()) : null;
+				if (!theLastChunk && (searchedResourceType == null || searchedResourceType.equals(resourceType))) {
+					theDeferredIncludes.put(resourceId, entry);
+					continue;
+				}
+			} else {
+				theDeferredIncludes.remove(resourceId);
+			}
+
+			if (theWrittenResourceIds.add(resourceId)) {
+				retVal.add(entry);
+			}
+		}
+		return retVal;
+	}
+
+	private static String toResourceId(FhirContext theContext, SearchBundleEntryParts theParts) {
+		IBaseResource resource = theParts.getResource();
+		if (resource != null) {
+			IIdType id = resource.getIdElement();
+			if (id != null && id.hasIdPart()) {
+				return theContext.getResourceType(resource) + "/" + id.getIdPart();
+			}
+		}
+		return theParts.getFullUrl();
+	}
+
+	private static IBaseBundle newBundleWithEntries(FhirContext theContext, Collection<IBase> theEntries) {
+		RuntimeResourceDefinition bundleDefinition = theContext.getResourceDefinition("Bundle");
+		IBaseBundle retVal = (IBaseBundle) bundleDefinition.newInstance();
+		BaseRuntimeChildDefinition entryChild = bundleDefinition.getChildByName("entry");
+		for (IBase next : theEntries) {
+			entryChild.getMutator().addValue(retVal, next);
+		}
+		return retVal;
+	}
+
+	private static BaseRuntimeChildDefinition getEntryChild(FhirContext theContext, IBaseBundle theBundle) {
+		return theContext.getResourceDefinition(theBundle).getChildByName("entry");
+	}
+
+	/**
+	 * Knows where entries belong in an encoded Bundle, and how to extract the encoded
+	 * entries from a Bundle containing nothing else
+	 */
+	private abstract static class EntrySplicer {
+
+		private boolean myWroteEntries;
+
+		/**
+		 * Returns the index within the encoded Bundle (which has no entries) at which the
+		 * entries should be written
+		 */
+		abstract int findEntryInsertionIndex(String theEncodedBundle);
+
+		void writeEntries(IParser theParser, Writer theWriter, IBaseBundle theEntriesBundle) throws IOException {
+			if (theEntriesBundle.isEmpty()) {
+				return;
+			}
+			String encoded = theParser.encodeResourceToString(theEntriesBundle);
+			myWroteEntries |= writeEntries(encoded, theWriter, myWroteEntries);
+		}
+
+		/**
+		 * @return Returns <code>true</code> if anything was written
+		 */
+		abstract boolean writeEntries(String theEncodedEntriesBundle, Writer theWriter, boolean theFirst)
+				throws IOException;
+
+		void finish(Writer theWriter) throws IOException {
+			if (myWroteEntries) {
+				writeEntriesEnd(theWriter);
+			}
+		}
+
+		abstract void writeEntriesEnd(Writer theWriter) throws IOException;
+	}
+
+	private static class JsonEntrySplicer extends EntrySplicer {
+
+		@Override
+		int findEntryInsertionIndex(String theEncodedBundle) {
+			return theEncodedBundle.lastIndexOf('}');
+		}
+
+		@Override
+		boolean writeEntries(String theEncodedEntriesBundle, Writer theWriter, boolean theWroteEntries)
+				throws IOException {
+			// The entries Bundle only has a resourceType and the entry array, so the first
+			// occurrence of the key is the one we want
+			int keyIndex = theEncodedEntriesBundle.indexOf("\"entry\"");
+			if (keyIndex == -1) {
+				// Entries are excluded by _elements
+				return false;
+			}
+			int arrayStart = theEncodedEntriesBundle.indexOf('[', keyIndex);
+			int arrayEnd = theEncodedEntriesBundle.lastIndexOf(']');
+
+			if (theWroteEntries) {
+				theWriter.write(',');
+			} else {
+				int separatorStart = theEncodedEntriesBundle.lastIndexOf(',', keyIndex);
+				theWriter.write(theEncodedEntriesBundle, separatorStart, arrayStart + 1 - separatorStart);
+			}
+			theWriter.write(theEncodedEntriesBundle, arrayStart + 1, arrayEnd - arrayStart - 1);
+			return true;
+		}
+
+		@Override
+		void writeEntriesEnd(Writer theWriter) throws IOException {
+			theWriter.write(']');
+		}
+	}
+
+	private static class XmlEntrySplicer extends EntrySplicer {
+
+		@Override
+		int findEntryInsertionIndex(String theEncodedBundle) {
+			return theEncodedBundle.lastIndexOf("</");
+		}
+
+		@Override
+		boolean writeEntries(String theEncodedEntriesBundle, Writer theWriter, boolean theWroteEntries)
+				throws IOException {
+			int rootEnd = theEncodedEntriesBundle.indexOf('>') + 1;
+			int closingTagStart = theEncodedEntriesBundle.lastIndexOf("</");
+			if (closingTagStart < rootEnd) {
+				// Entries are excluded by _elements, so the root element is empty
+				return false;
+			}
+			int contentEnd = closingTagStart;
+			while (contentEnd > rootEnd && Character.isWhitespace(theEncodedEntriesBundle.charAt(contentEnd - 1))) {
+				contentEnd--;
+			}
+			theWriter.write(theEncodedEntriesBundle, rootEnd, contentEnd - rootEnd);
+			return contentEnd > rootEnd;
+		}
+
+		@Override
+		void writeEntriesEnd(Writer theWriter) throws IOException {
+			// nothing needed
+		}
+	}
+}
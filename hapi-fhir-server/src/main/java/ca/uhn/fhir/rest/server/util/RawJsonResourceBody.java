@@ -0,0 +1,189 @@
+/*-
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.rest.server.util;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.parser.LenientErrorHandler;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Holds the already encoded JSON body of a resource, so that a server can write it to the
+ * response without parsing it into a model object and encoding it again.
+ * <p>
+ * The body is attached (as user data) to a "shell" resource which only has its ID and
+ * <code>Resource.meta</code> populated. When the response is written, the shell is encoded
+ * normally and the remaining elements are copied verbatim from the stored body. If the
+ * response needs the full object model (e.g. because a <code>_summary</code> or
+ * <code>_elements</code> parameter was supplied, or pretty printing or a non-JSON encoding
+ * was requested) the body is parsed into the shell with {@link #materialize(FhirContext, IBaseResource)}
+ * instead.
+ * </p>
+ * <p>
+ * Only bodies in HAPI's compact JSON encoding which do not contain an <code>id</code> or
+ * <code>meta</code> element are accepted, since the shell provides those.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class RawJsonResourceBody {
+
+	private static final String USER_DATA_KEY = RawJsonResourceBody.class.getName();
+	private static final LenientErrorHandler LENIENT_ERROR_HANDLER = new LenientErrorHandler(false).disableAllErrors();
+
+	private final String myJson;
+	private final int myBodyStart;
+
+	private RawJsonResourceBody(String theJson, int theBodyStart) {
+		myJson = theJson;
+		myBodyStart = theBodyStart;
+	}
+
+	/**
+	 * Returns the full JSON body
+	 */
+	public String getJson() {
+		return myJson;
+	}
+
+	/**
+	 * Attaches this body to the given shell resource
+	 */
+	public void attachTo(IBaseResource theShell) {
+		theShell.setUserData(USER_DATA_KEY, this);
+	}
+
+	/**
+	 * Writes the given encoding of the shell resource, followed by the elements of
+	 * the raw body. The shell must have been encoded as compact JSON.
+	 */
+	public void writeSpliced(String theEncodedShell, Writer theWriter) throws IOException {
+		int shellEnd = theEncodedShell.lastIndexOf('}');
+		Validate.isTrue(shellEnd > 0, "Invalid encoded shell resource");
+
+		theWriter.write(theEncodedShell, 0, shellEnd);
+		theWriter.write(myJson, myBodyStart, myJson.length() - myBodyStart);
+	}
+
+	/**
+	 * Parses the raw body and adds its elements to the shell resource, so that the shell
+	 * becomes a complete model object. Any element which has been populated on the shell
+	 * since it was created (including the ID and <code>Resource.meta</code>) is kept as is.
+	 * The body is detached from the shell afterward.
+	 */
+	public void materialize(FhirContext theContext, IBaseResource theShell) {
+		IParser parser = theContext.newJsonParser().setParserErrorHandler(LENIENT_ERROR_HANDLER);
+		IBaseResource parsed = parser.parseResource(theShell.getClass(), myJson);
+
+		RuntimeResourceDefinition def = theContext.getResourceDefinition(theShell);
+		for (BaseRuntimeChildDefinition nextChild : def.getChildren()) {
+			if (hasValues(nextChild, theShell)) {
+				continue;
+			}
+			for (IBase nextValue : nextChild.getAccessor().getValues(parsed)) {
+				nextChild.getMutator().addValue(theShell, nextValue);
+			}
+		}
+
+		theShell.setUserData(USER_DATA_KEY, null);
+	}
+
+	/**
+	 * Returns <code>true</code> if nothing other than the ID and <code>Resource.meta</code>
+	 * has been populated on the given shell resource, meaning that the raw body can be
+	 * written as-is after it
+	 */
+	public boolean isShellUnmodified(FhirContext theContext, IBaseResource theShell) {
+		RuntimeResourceDefinition def = theContext.getResourceDefinition(theShell);
+		for (BaseRuntimeChildDefinition nextChild : def.getChildren()) {
+			String name = nextChild.getElementName();
+			if ("id".equals(name) || "meta".equals(name)) {
+				continue;
+			}
+			if (hasValues(nextChild, theShell)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean hasValues(BaseRuntimeChildDefinition theChild, IBaseResource theResource) {
+		List<IBase> values = theChild.getAccessor().getValues(theResource);
+		for (IBase next : values) {
+			if (next != null && !next.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the raw body attached to the given resource, or <code>null</code> if the
+	 * resource is a fully populated model object
+	 */
+	@Nullable
+	public static RawJsonResourceBody fromResource(@Nullable IBaseResource theResource) {
+		if (theResource == null) {
+			return null;
+		}
+		return (RawJsonResourceBody) theResource.getUserData(USER_DATA_KEY);
+	}
+
+	/**
+	 * Creates a raw body from the given JSON if it is eligible to be written directly after
+	 * an encoded shell resource
+	 *
+	 * @param theResourceType The resource type name, e.g. <code>Patient</code>
+	 * @param theJson         The resource JSON, in HAPI's compact encoding
+	 * @return The body, or <code>null</code> if the JSON starts with anything other than the
+	 * resource type or it contains an <code>id</code> or <code>meta</code> element
+	 */
+	@Nullable
+	public static RawJsonResourceBody createIfEligible(@Nonnull String theResourceType, @Nullable String theJson) {
+		if (theJson == null) {
+			return null;
+		}
+		String prefix = "{\"resourceType\":\"" + theResourceType + "\"";
+		if (!theJson.startsWith(prefix) || theJson.length() == prefix.length()) {
+			return null;
+		}
+
+		char next = theJson.charAt(prefix.length());
+		if (next == '}') {
+			return new RawJsonResourceBody(theJson, prefix.length());
+		}
+		if (next != ','
+				|| theJson.startsWith(",\"id\"", prefix.length())
+				|| theJson.startsWith(",\"meta\"", prefix.length())) {
+			return null;
+		}
+		return new RawJsonResourceBody(theJson, prefix.length());
+	}
+}
@@ -0,0 +1,37 @@
+package ca.uhn.fhir.rest.server.interceptor.metrics;
+
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MicrometerInterceptorMetricsSinkTest {
+
+	@Test
+	public void testRecordInvocations() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		MicrometerInterceptorMetricsSink sink = new MicrometerInterceptorMetricsSink(registry);
+
+		sink.hookInvoked(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED, "interceptor", 1000, true);
+		sink.hookInvoked(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED, "interceptor", 3000, true);
+		sink.hookInvoked(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED, "interceptor", 7000, false);
+
+		Timer success = registry.get(MicrometerInterceptorMetricsSink.METER_NAME)
+			.tag("pointcut", "SERVER_INCOMING_REQUEST_PRE_HANDLED")
+			.tag("interceptor", String.class.getName())
+			.tag("outcome", "success")
+			.timer();
+		assertEquals(2, success.count());
+		assertEquals(4000, success.totalTime(TimeUnit.NANOSECONDS));
+
+		Timer failure = registry.get(MicrometerInterceptorMetricsSink.METER_NAME)
+			.tag("outcome", "failure")
+			.timer();
+		assertEquals(1, failure.count());
+		assertEquals(7000, failure.max(TimeUnit.NANOSECONDS));
+	}
+}
@@ -37,5 +37,15 @@ public enum ColumnTypeEnum {
 	 * <code>@Column(length=Integer.MAX_VALUE)</code>
 	 */
 	TEXT,
-	BIG_DECIMAL;
+	BIG_DECIMAL,
+
+	/**
+	 * Unlimited length binary, with a column definition containing the annotation:
+	 * <code>@Column(length=Integer.MAX_VALUE)</code> (and no <code>@Lob</code>). Unlike
+	 * {@link #BLOB} this is stored inline on databases which distinguish the two
+	 * (e.g. <code>bytea</code> instead of a large object on Postgres).
+	 *
+	 * @since 7.2.0
+	 */
+	BINARY;
 }
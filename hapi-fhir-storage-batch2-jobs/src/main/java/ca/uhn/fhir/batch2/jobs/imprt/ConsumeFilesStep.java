@@ -33,6 +33,7 @@ import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
+import ca.uhn.fhir.jpa.model.dialect.SequenceBlockReservation;
 import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
@@ -139,22 +140,16 @@ public class ConsumeFilesStep implements ILastJobStepWorker<BulkImportJobParamet
 			ids.put(id, next);
 		}
 
-		List<IIdType> idsList = new ArrayList<>(ids.keySet());
-		List<IResourcePersistentId> resolvedIds = myIdHelperService.resolveResourcePersistentIdsWithCache(
-				theRequestDetails.getRequestPartitionId(), idsList, true);
-		for (IResourcePersistentId next : resolvedIds) {
-			IIdType resId = next.getAssociatedResourceId();
-			theTransactionDetails.addResolvedResourceId(resId, next);
-			ids.remove(resId);
-		}
-		for (IIdType next : ids.keySet()) {
-			theTransactionDetails.addResolvedResourceId(next, null);
-		}
+		List<IResourcePersistentId> resolvedIds = myIdHelperService.preResolveResourcePersistentIds(
+				theRequestDetails.getRequestPartitionId(), ids.keySet(), true, theTransactionDetails);
 
 		mySystemDao.preFetchResources(resolvedIds, true);
 
-		for (IBaseResource next : theResources) {
-			updateResource(theRequestDetails, theTransactionDetails, next);
+		// New resources get IDs from blocks reserved for this thread
+		try (SequenceBlockReservation reservation = SequenceBlockReservation.open()) {
+			for (IBaseResource next : theResources) {
+				updateResource(theRequestDetails, theTransactionDetails, next);
+			}
 		}
 
 		return null;
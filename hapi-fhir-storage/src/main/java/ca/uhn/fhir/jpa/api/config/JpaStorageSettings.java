@@ -111,6 +111,26 @@ public class JpaStorageSettings extends StorageSettings {
 
 	private static final boolean DEFAULT_PREVENT_INVALIDATING_CONDITIONAL_MATCH_CRITERIA = false;
 	private static final long DEFAULT_REST_DELETE_BY_URL_RESOURCE_ID_THRESHOLD = 10000;
+	/**
+	 * Default value for {@link #setSearchResultLocalCacheMaximumSearches(int)}
+	 */
+	public static final int DEFAULT_SEARCH_RESULT_LOCAL_CACHE_MAXIMUM_SEARCHES = 0;
+	/**
+	 * Default value for {@link #setSearchResultLocalCacheMaximumPidsPerSearch(int)}
+	 */
+	public static final int DEFAULT_SEARCH_RESULT_LOCAL_CACHE_MAXIMUM_PIDS_PER_SEARCH = 10000;
+	/**
+	 * Default value for {@link #setParallelAndPredicateMaximumPidsPerClause(int)}
+	 */
+	public static final int DEFAULT_PARALLEL_AND_PREDICATE_MAXIMUM_PIDS_PER_CLAUSE = 5000;
+	/**
+	 * Default value for {@link #setParallelAndPredicateThreadCount(int)}
+	 */
+	public static final int DEFAULT_PARALLEL_AND_PREDICATE_THREAD_COUNT = 4;
+	/**
+	 * Default value for {@link #setSearchTotalEstimateCacheMillis(long)}
+	 */
+	public static final long DEFAULT_SEARCH_TOTAL_ESTIMATE_CACHE_MILLIS = DateUtils.MILLIS_PER_MINUTE;
 
 	/**
 	 * Do not change default of {@code 0}!
@@ -352,6 +372,77 @@ public class JpaStorageSettings extends StorageSettings {
 	 */
 	private long myRestDeleteByUrlResourceIdThreshold = DEFAULT_REST_DELETE_BY_URL_RESOURCE_ID_THRESHOLD;
 
+	/**
+	 * @since 7.2.0
+	 */
+	private int mySearchResultLocalCacheMaximumSearches = DEFAULT_SEARCH_RESULT_LOCAL_CACHE_MAXIMUM_SEARCHES;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private int mySearchResultLocalCacheMaximumPidsPerSearch =
+			DEFAULT_SEARCH_RESULT_LOCAL_CACHE_MAXIMUM_PIDS_PER_SEARCH;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean myKeysetPagingEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean myParallelAndPredicatesEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private int myParallelAndPredicateMaximumPidsPerClause = DEFAULT_PARALLEL_AND_PREDICATE_MAXIMUM_PIDS_PER_CLAUSE;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private int myParallelAndPredicateThreadCount = DEFAULT_PARALLEL_AND_PREDICATE_THREAD_COUNT;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean mySearchParameterStatisticsEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean myRawJsonPassthroughEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private long mySearchTotalEstimateCacheMillis = DEFAULT_SEARCH_TOTAL_ESTIMATE_CACHE_MILLIS;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private Set<String> myDeferredIndexingResourceTypes = Collections.emptySet();
+
+	/**
+	 * @since 7.2.0
+	 */
+	private long myDeferredIndexingSearchMaxWaitMillis = 0;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private int myMemoryCacheExpireAfterWriteInMinutes = 1;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean myMemoryCacheInvalidationPollingEnabled = false;
+
+	/**
+	 * @since 7.2.0
+	 */
+	private boolean myDetectUnchangedUpdatesBeforeIndexing = false;
+
 	/**
 	 * Constructor
 	 */
@@ -984,10 +1075,32 @@ public class JpaStorageSettings extends StorageSettings {
 		myExpungeThreadCount = Math.max(myExpungeThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * Specifies the encoding used to store resource bodies. The default is {@link ResourceEncodingEnum#JSONC}.
+	 * <p>
+	 * Note that except on Oracle, {@link ResourceEncodingEnum#JSON} and {@link ResourceEncodingEnum#JSONC}
+	 * are both stored as inline JSON text. {@link ResourceEncodingEnum#JSONB} and {@link ResourceEncodingEnum#JSOND}
+	 * are always stored as binaries in a column which is not a large object (e.g. <code>bytea</code> on Postgres),
+	 * and existing rows can be converted to them by running a <code>$reindex</code> with <code>optimizeStorage</code>
+	 * enabled. {@link ResourceEncodingEnum#JSOND} uses per-resource-type
+	 * dictionaries, which are trained using the <code>$train-compression-dictionary</code> operation.
+	 * </p>
+	 */
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Specifies the encoding used to store resource bodies. The default is {@link ResourceEncodingEnum#JSONC}.
+	 * <p>
+	 * Note that except on Oracle, {@link ResourceEncodingEnum#JSON} and {@link ResourceEncodingEnum#JSONC}
+	 * are both stored as inline JSON text. {@link ResourceEncodingEnum#JSONB} and {@link ResourceEncodingEnum#JSOND}
+	 * are always stored as binaries in a column which is not a large object (e.g. <code>bytea</code> on Postgres),
+	 * and existing rows can be converted to them by running a <code>$reindex</code> with <code>optimizeStorage</code>
+	 * enabled. {@link ResourceEncodingEnum#JSOND} uses per-resource-type
+	 * dictionaries, which are trained using the <code>$train-compression-dictionary</code> operation.
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
 		myResourceEncoding = theResourceEncoding;
 	}
@@ -2443,6 +2556,502 @@ public class JpaStorageSettings extends StorageSettings {
 		myRestDeleteByUrlResourceIdThreshold = theRestDeleteByUrlResourceIdThreshold;
 	}
 
+	/**
+	 * If set to a value greater than {@literal 0}, search result PIDs stored by this node are also kept in a
+	 * node-local memory cache which is consulted before the HFJ_SEARCH_RESULT table when paging
+	 * through a search. This value is the maximum number of searches held in that cache. Default is
+	 * {@value #DEFAULT_SEARCH_RESULT_LOCAL_CACHE_MAXIMUM_SEARCHES}, meaning that the local cache is disabled.
+	 *
+	 * @since 7.2.0
+	 */
+	public int getSearchResultLocalCacheMaximumSearches() {
+		return mySearchResultLocalCacheMaximumSearches;
+	}
+
+	/**
+	 * If set to a value greater than {@literal 0}, search result PIDs stored by this node are also kept in a
+	 * node-local memory cache which is consulted before the HFJ_SEARCH_RESULT table when paging
+	 * through a search. This value is the maximum number of searches held in that cache. Default is
+	 * {@value #DEFAULT_SEARCH_RESULT_LOCAL_CACHE_MAXIMUM_SEARCHES}, meaning that the local cache is disabled.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchResultLocalCacheMaximumSearches(int theSearchResultLocalCacheMaximumSearches) {
+		Validate.isTrue(
+				theSearchResultLocalCacheMaximumSearches >= 0,
+				"theSearchResultLocalCacheMaximumSearches must not be negative");
+		mySearchResultLocalCacheMaximumSearches = theSearchResultLocalCacheMaximumSearches;
+	}
+
+	/**
+	 * Searches with more than this number of stored result PIDs are evicted from the node-local
+	 * search result cache (see {@link #setSearchResultLocalCacheMaximumSearches(int)}) and are served from the
+	 * database only. Together with the maximum number of searches, this bounds the memory used by the
+	 * cache to roughly {@code maxSearches * maxPidsPerSearch * 8} bytes. Default is
+	 * {@value #DEFAULT_SEARCH_RESULT_LOCAL_CACHE_MAXIMUM_PIDS_PER_SEARCH}.
+	 *
+	 * @since 7.2.0
+	 */
+	public int getSearchResultLocalCacheMaximumPidsPerSearch() {
+		return mySearchResultLocalCacheMaximumPidsPerSearch;
+	}
+
+	/**
+	 * Searches with more than this number of stored result PIDs are evicted from the node-local
+	 * search result cache (see {@link #setSearchResultLocalCacheMaximumSearches(int)}) and are served from the
+	 * database only. Together with the maximum number of searches, this bounds the memory used by the
+	 * cache to roughly {@code maxSearches * maxPidsPerSearch * 8} bytes. Default is
+	 * {@value #DEFAULT_SEARCH_RESULT_LOCAL_CACHE_MAXIMUM_PIDS_PER_SEARCH}.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchResultLocalCacheMaximumPidsPerSearch(int theSearchResultLocalCacheMaximumPidsPerSearch) {
+		Validate.isTrue(
+				theSearchResultLocalCacheMaximumPidsPerSearch > 0,
+				"theSearchResultLocalCacheMaximumPidsPerSearch must be greater than 0");
+		mySearchResultLocalCacheMaximumPidsPerSearch = theSearchResultLocalCacheMaximumPidsPerSearch;
+	}
+
+	/**
+	 * If enabled (default is {@literal false}), searches which are unsorted or sorted only by
+	 * <code>_lastUpdated</code> or <code>_pid</code> are paged using keyset (seek) pagination instead of
+	 * storing their results in the HFJ_SEARCH_RESULT table. Each page link encodes the position of the
+	 * last returned row, and the next page is fetched with a seek predicate on that position, so deep
+	 * pages cost the same as the first page.
+	 * <p>
+	 * Keyset pages are forward-only and do not report a total, so searches which request a total (or
+	 * inherit one from {@link #getDefaultTotalMode()}) are paged as before, as are all searches when
+	 * {@link #getFetchSizeDefaultMaximum()} is set. This setting only has an effect if the server uses a
+	 * {@literal KeysetPagingProvider} as its paging provider.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isKeysetPagingEnabled() {
+		return myKeysetPagingEnabled;
+	}
+
+	/**
+	 * If enabled (default is {@literal false}), searches which are unsorted or sorted only by
+	 * <code>_lastUpdated</code> or <code>_pid</code> are paged using keyset (seek) pagination instead of
+	 * storing their results in the HFJ_SEARCH_RESULT table. Each page link encodes the position of the
+	 * last returned row, and the next page is fetched with a seek predicate on that position, so deep
+	 * pages cost the same as the first page.
+	 * <p>
+	 * Keyset pages are forward-only and do not report a total, so searches which request a total (or
+	 * inherit one from {@link #getDefaultTotalMode()}) are paged as before, as are all searches when
+	 * {@link #getFetchSizeDefaultMaximum()} is set. This setting only has an effect if the server uses a
+	 * {@literal KeysetPagingProvider} as its paging provider.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setKeysetPagingEnabled(boolean theKeysetPagingEnabled) {
+		myKeysetPagingEnabled = theKeysetPagingEnabled;
+	}
+
+	/**
+	 * If enabled (default is {@literal false}), searches with more than one AND-ed search parameter first
+	 * resolve each parameter independently as a separate index query, in parallel, and intersect the resulting
+	 * resource PIDs in memory. The intersection is then used to restrict the final SQL query (which still applies
+	 * sorting, <code>_lastUpdated</code> and partitioning), so the database does not need to plan a single large
+	 * statement joining all of the index tables.
+	 * <p>
+	 * This works best for selective parameters. Any parameter matching more than
+	 * {@link #getParallelAndPredicateMaximumPidsPerClause()} resources is left in the SQL query instead.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isParallelAndPredicatesEnabled() {
+		return myParallelAndPredicatesEnabled;
+	}
+
+	/**
+	 * If enabled (default is {@literal false}), searches with more than one AND-ed search parameter first
+	 * resolve each parameter independently as a separate index query, in parallel, and intersect the resulting
+	 * resource PIDs in memory. The intersection is then used to restrict the final SQL query (which still applies
+	 * sorting, <code>_lastUpdated</code> and partitioning), so the database does not need to plan a single large
+	 * statement joining all of the index tables.
+	 * <p>
+	 * This works best for selective parameters. Any parameter matching more than
+	 * {@link #getParallelAndPredicateMaximumPidsPerClause()} resources is left in the SQL query instead.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setParallelAndPredicatesEnabled(boolean theParallelAndPredicatesEnabled) {
+		myParallelAndPredicatesEnabled = theParallelAndPredicatesEnabled;
+	}
+
+	/**
+	 * When {@link #isParallelAndPredicatesEnabled() parallel AND predicates} are enabled, a search parameter which
+	 * matches more than this number of resources is not resolved in parallel and is instead left in the
+	 * single SQL query. Default is {@value #DEFAULT_PARALLEL_AND_PREDICATE_MAXIMUM_PIDS_PER_CLAUSE}.
+	 *
+	 * @since 7.2.0
+	 */
+	public int getParallelAndPredicateMaximumPidsPerClause() {
+		return myParallelAndPredicateMaximumPidsPerClause;
+	}
+
+	/**
+	 * When {@link #isParallelAndPredicatesEnabled() parallel AND predicates} are enabled, a search parameter which
+	 * matches more than this number of resources is not resolved in parallel and is instead left in the
+	 * single SQL query. Default is {@value #DEFAULT_PARALLEL_AND_PREDICATE_MAXIMUM_PIDS_PER_CLAUSE}.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setParallelAndPredicateMaximumPidsPerClause(int theParallelAndPredicateMaximumPidsPerClause) {
+		Validate.isTrue(
+				theParallelAndPredicateMaximumPidsPerClause > 0,
+				"theParallelAndPredicateMaximumPidsPerClause must be greater than 0");
+		myParallelAndPredicateMaximumPidsPerClause = theParallelAndPredicateMaximumPidsPerClause;
+	}
+
+	/**
+	 * The maximum number of threads used to resolve search parameters when
+	 * {@link #isParallelAndPredicatesEnabled() parallel AND predicates} are enabled. Each thread uses its own
+	 * database connection while it is running. Default is {@value #DEFAULT_PARALLEL_AND_PREDICATE_THREAD_COUNT}.
+	 *
+	 * @since 7.2.0
+	 */
+	public int getParallelAndPredicateThreadCount() {
+		return myParallelAndPredicateThreadCount;
+	}
+
+	/**
+	 * The maximum number of threads used to resolve search parameters when
+	 * {@link #isParallelAndPredicatesEnabled() parallel AND predicates} are enabled. Each thread uses its own
+	 * database connection while it is running. Default is {@value #DEFAULT_PARALLEL_AND_PREDICATE_THREAD_COUNT}.
+	 *
+	 * @since 7.2.0
+	 */
+	public void setParallelAndPredicateThreadCount(int theParallelAndPredicateThreadCount) {
+		Validate.isTrue(
+				theParallelAndPredicateThreadCount > 0, "theParallelAndPredicateThreadCount must be greater than 0");
+		myParallelAndPredicateThreadCount = theParallelAndPredicateThreadCount;
+	}
+
+	/**
+	 * If enabled (default is {@literal false}), the server keeps approximate statistics about the number of
+	 * search parameter index rows per resource type and parameter (and, for token, string and URI parameters,
+	 * per value), and uses them when planning searches: the most selective parameters are used to drive the
+	 * SQL query, and unselective parameters are not resolved separately when
+	 * {@link #isParallelAndPredicatesEnabled() parallel AND predicates} are enabled.
+	 * <p>
+	 * Statistics are held in memory on each node. They are rebuilt from the index tables hourly by a single
+	 * node of the cluster and stored in the database, every node loads the stored statistics shortly after each
+	 * rebuild, and they are updated in between as resources are written on each node. Searches are planned
+	 * without them until the first rebuild has been loaded. They can be inspected with the
+	 * <code>$search-param-stats</code> operation.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isSearchParameterStatisticsEnabled() {
+		return mySearchParameterStatisticsEnabled;
+	}
+
+	/**
+	 * If enabled (default is {@literal false}), the server keeps approximate statistics about the number of
+	 * search parameter index rows per resource type and parameter (and, for token, string and URI parameters,
+	 * per value), and uses them when planning searches: the most selective parameters are used to drive the
+	 * SQL query, and unselective parameters are not resolved separately when
+	 * {@link #isParallelAndPredicatesEnabled() parallel AND predicates} are enabled.
+	 * <p>
+	 * Statistics are held in memory on each node. They are rebuilt from the index tables hourly by a single
+	 * node of the cluster and stored in the database, every node loads the stored statistics shortly after each
+	 * rebuild, and they are updated in between as resources are written on each node. Searches are planned
+	 * without them until the first rebuild has been loaded. They can be inspected with the
+	 * <code>$search-param-stats</code> operation.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchParameterStatisticsEnabled(boolean theSearchParameterStatisticsEnabled) {
+		mySearchParameterStatisticsEnabled = theSearchParameterStatisticsEnabled;
+	}
+
+	/**
+	 * If enabled (default is {@literal false}), plain <code>read</code> and <code>vread</code> operations
+	 * invoked through the REST server do not parse the stored resource body. Instead, the stored JSON is
+	 * written directly to the response after the resource ID and <code>Resource.meta</code>, which avoids
+	 * parsing and re-encoding the resource on every read.
+	 * <p>
+	 * The server automatically falls back to parsing the resource when the response needs the full object
+	 * model, e.g. if the client requests XML, pretty printing, <code>_summary</code> or <code>_elements</code>,
+	 * or if any interceptors are registered against {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PREACCESS_RESOURCES},
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PRESHOW_RESOURCES} or
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#SERVER_OUTGOING_RESPONSE}. Note that when the stored body
+	 * is passed through, the server's parser options (e.g. reference version stripping) are not
+	 * reapplied to it.
+	 * </p>
+	 * <p>
+	 * Only the read method of the JPA resource providers is affected, through
+	 * {@link ca.uhn.fhir.jpa.api.dao.IFhirResourceDao#readForRestResponse(org.hl7.fhir.instance.model.api.IIdType, ca.uhn.fhir.rest.api.server.RequestDetails)}.
+	 * Resources returned by the other DAO read methods are always fully parsed.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isRawJsonPassthroughEnabled() {
+		return myRawJsonPassthroughEnabled;
+	}
+
+	/**
+	 * If enabled (default is {@literal false}), plain <code>read</code> and <code>vread</code> operations
+	 * invoked through the REST server do not parse the stored resource body. Instead, the stored JSON is
+	 * written directly to the response after the resource ID and <code>Resource.meta</code>, which avoids
+	 * parsing and re-encoding the resource on every read.
+	 * <p>
+	 * The server automatically falls back to parsing the resource when the response needs the full object
+	 * model, e.g. if the client requests XML, pretty printing, <code>_summary</code> or <code>_elements</code>,
+	 * or if any interceptors are registered against {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PREACCESS_RESOURCES},
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#STORAGE_PRESHOW_RESOURCES} or
+	 * {@link ca.uhn.fhir.interceptor.api.Pointcut#SERVER_OUTGOING_RESPONSE}. Note that when the stored body
+	 * is passed through, the server's parser options (e.g. reference version stripping) are not
+	 * reapplied to it.
+	 * </p>
+	 * <p>
+	 * Only the read method of the JPA resource providers is affected, through
+	 * {@link ca.uhn.fhir.jpa.api.dao.IFhirResourceDao#readForRestResponse(org.hl7.fhir.instance.model.api.IIdType, ca.uhn.fhir.rest.api.server.RequestDetails)}.
+	 * Resources returned by the other DAO read methods are always fully parsed.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setRawJsonPassthroughEnabled(boolean theRawJsonPassthroughEnabled) {
+		myRawJsonPassthroughEnabled = theRawJsonPassthroughEnabled;
+	}
+
+	/**
+	 * Searches using <code>_total=estimated</code> (or any search when the {@link #setDefaultTotalMode(SearchTotalModeEnum) default total mode}
+	 * is {@link SearchTotalModeEnum#ESTIMATED}) report an approximate total. On Postgres this is the query planner's
+	 * row estimate, and on other databases it is an exact count. Either way, the total is cached per normalized
+	 * search URL (and partition) for the number of milliseconds given by this setting, so that repeated searches
+	 * do not estimate or count again. Paging through the results of a search never estimates again, whether or
+	 * not this cache is enabled, since the estimate is stored with the search when it starts.
+	 * <p>
+	 * Default is {@link #DEFAULT_SEARCH_TOTAL_ESTIMATE_CACHE_MILLIS} (one minute). Set to {@literal 0} to disable the cache.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public long getSearchTotalEstimateCacheMillis() {
+		return mySearchTotalEstimateCacheMillis;
+	}
+
+	/**
+	 * Searches using <code>_total=estimated</code> (or any search when the {@link #setDefaultTotalMode(SearchTotalModeEnum) default total mode}
+	 * is {@link SearchTotalModeEnum#ESTIMATED}) report an approximate total. On Postgres this is the query planner's
+	 * row estimate, and on other databases it is an exact count. Either way, the total is cached per normalized
+	 * search URL (and partition) for the number of milliseconds given by this setting, so that repeated searches
+	 * do not estimate or count again. Paging through the results of a search never estimates again, whether or
+	 * not this cache is enabled, since the estimate is stored with the search when it starts.
+	 * <p>
+	 * Default is {@link #DEFAULT_SEARCH_TOTAL_ESTIMATE_CACHE_MILLIS} (one minute). Set to {@literal 0} to disable the cache.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setSearchTotalEstimateCacheMillis(long theSearchTotalEstimateCacheMillis) {
+		Validate.isTrue(
+				theSearchTotalEstimateCacheMillis >= 0, "theSearchTotalEstimateCacheMillis must not be negative");
+		mySearchTotalEstimateCacheMillis = theSearchTotalEstimateCacheMillis;
+	}
+
+	/**
+	 * Resource types listed here are written with deferred indexing. When a resource of one of these
+	 * types is created or updated, the resource body is committed immediately but search index
+	 * extraction is recorded in a durable queue and performed afterwards by a background job, so
+	 * the write does not pay for indexing. Reads by ID see the new version immediately, but searches
+	 * may not reflect it until the queue has been drained (see
+	 * {@link #setDeferredIndexingSearchMaxWaitMillis(long)}).
+	 * <p>
+	 * Conditional creates and updates, deletes, and resource types with active unique combo
+	 * search parameters are always indexed synchronously. References are still resolved and
+	 * checked for referential integrity as part of the write, only the index rows are deferred.
+	 * </p>
+	 * <p>
+	 * Default is empty (all resource types are indexed synchronously).
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public Set<String> getDeferredIndexingResourceTypes() {
+		return myDeferredIndexingResourceTypes;
+	}
+
+	/**
+	 * Resource types listed here are written with deferred indexing. When a resource of one of these
+	 * types is created or updated, the resource body is committed immediately but search index
+	 * extraction is recorded in a durable queue and performed afterwards by a background job, so
+	 * the write does not pay for indexing. Reads by ID see the new version immediately, but searches
+	 * may not reflect it until the queue has been drained (see
+	 * {@link #setDeferredIndexingSearchMaxWaitMillis(long)}).
+	 * <p>
+	 * Conditional creates and updates, deletes, and resource types with active unique combo
+	 * search parameters are always indexed synchronously. References are still resolved and
+	 * checked for referential integrity as part of the write, only the index rows are deferred.
+	 * A resource that repeatedly fails to be indexed is logged and left in the queue without
+	 * being retried until it is written again.
+	 * </p>
+	 * <p>
+	 * Default is empty (all resource types are indexed synchronously).
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setDeferredIndexingResourceTypes(Set<String> theDeferredIndexingResourceTypes) {
+		Validate.notNull(theDeferredIndexingResourceTypes, "theDeferredIndexingResourceTypes must not be null");
+		myDeferredIndexingResourceTypes = theDeferredIndexingResourceTypes;
+	}
+
+	/**
+	 * The maximum amount of time, in milliseconds, that a search against a resource type listed in
+	 * {@link #setDeferredIndexingResourceTypes(Set)} will wait for pending deferred indexing of that
+	 * type to complete before it is executed. If the wait times out the search proceeds against
+	 * the indexes that are currently available.
+	 * <p>
+	 * Default is {@literal 0}, meaning that searches never wait.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public long getDeferredIndexingSearchMaxWaitMillis() {
+		return myDeferredIndexingSearchMaxWaitMillis;
+	}
+
+	/**
+	 * The maximum amount of time, in milliseconds, that a search against a resource type listed in
+	 * {@link #setDeferredIndexingResourceTypes(Set)} will wait for pending deferred indexing of that
+	 * type to complete before it is executed. If the wait times out the search proceeds against
+	 * the indexes that are currently available.
+	 * <p>
+	 * Default is {@literal 0}, meaning that searches never wait.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setDeferredIndexingSearchMaxWaitMillis(long theDeferredIndexingSearchMaxWaitMillis) {
+		Validate.isTrue(
+				theDeferredIndexingSearchMaxWaitMillis >= 0,
+				"theDeferredIndexingSearchMaxWaitMillis must not be negative");
+		myDeferredIndexingSearchMaxWaitMillis = theDeferredIndexingSearchMaxWaitMillis;
+	}
+
+	/**
+	 * The time, in minutes, after which entries in the general purpose in-memory caches (resource ID
+	 * lookups, tag definitions, etc.) expire. These caches are local to each node, so this should
+	 * only be raised above the default when cache invalidations are being shared between nodes
+	 * (see {@link #setMemoryCacheInvalidationPollingEnabled(boolean)}).
+	 * <p>
+	 * Default is {@literal 1}. This setting does not apply to the terminology translation caches,
+	 * or to the match URL and history count caches, which are not invalidated when resources change
+	 * and so always expire after 1 minute. It is ignored in
+	 * {@link #setMassIngestionMode(boolean) mass ingestion mode}.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public int getMemoryCacheExpireAfterWriteInMinutes() {
+		return myMemoryCacheExpireAfterWriteInMinutes;
+	}
+
+	/**
+	 * The time, in minutes, after which entries in the general purpose in-memory caches (resource ID
+	 * lookups, tag definitions, etc.) expire. These caches are local to each node, so this should
+	 * only be raised above the default when cache invalidations are being shared between nodes
+	 * (see {@link #setMemoryCacheInvalidationPollingEnabled(boolean)}).
+	 * <p>
+	 * Default is {@literal 1}. This setting does not apply to the terminology translation caches,
+	 * or to the match URL and history count caches, which are not invalidated when resources change
+	 * and so always expire after 1 minute. It is ignored in
+	 * {@link #setMassIngestionMode(boolean) mass ingestion mode}.
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setMemoryCacheExpireAfterWriteInMinutes(int theMemoryCacheExpireAfterWriteInMinutes) {
+		Validate.isTrue(
+				theMemoryCacheExpireAfterWriteInMinutes > 0,
+				"theMemoryCacheExpireAfterWriteInMinutes must be positive");
+		myMemoryCacheExpireAfterWriteInMinutes = theMemoryCacheExpireAfterWriteInMinutes;
+	}
+
+	/**
+	 * If enabled, invalidations of the in-memory caches are written to the database, and every
+	 * node polls the database for invalidations made by other nodes. This can be used on its own,
+	 * or as a fallback alongside a channel based broadcaster for invalidations that could not be
+	 * delivered.
+	 * <p>
+	 * Default is {@literal false}
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isMemoryCacheInvalidationPollingEnabled() {
+		return myMemoryCacheInvalidationPollingEnabled;
+	}
+
+	/**
+	 * If enabled, invalidations of the in-memory caches are written to the database, and every
+	 * node polls the database for invalidations made by other nodes. This can be used on its own,
+	 * or as a fallback alongside a channel based broadcaster for invalidations that could not be
+	 * delivered.
+	 * <p>
+	 * Default is {@literal false}
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setMemoryCacheInvalidationPollingEnabled(boolean theMemoryCacheInvalidationPollingEnabled) {
+		myMemoryCacheInvalidationPollingEnabled = theMemoryCacheInvalidationPollingEnabled;
+	}
+
+	/**
+	 * If enabled (and {@link #setSuppressUpdatesWithNoChange(boolean) suppression of updates with no change}
+	 * is also enabled), updates to existing resources are checked for changes before the search parameter
+	 * indexes are extracted from the new resource body. If the new body has the same hash as the current
+	 * version and the tags have not changed, the update is treated as a no-op without extracting or
+	 * comparing any indexes.
+	 * <p>
+	 * This saves most of the work done for updates which don't change anything, but costs an
+	 * additional encoding of the resource for updates which do. It is therefore only worth enabling
+	 * when a significant share of updates are expected to be no-ops.
+	 * </p>
+	 * <p>
+	 * Default is {@literal false}
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public boolean isDetectUnchangedUpdatesBeforeIndexing() {
+		return myDetectUnchangedUpdatesBeforeIndexing;
+	}
+
+	/**
+	 * If enabled (and {@link #setSuppressUpdatesWithNoChange(boolean) suppression of updates with no change}
+	 * is also enabled), updates to existing resources are checked for changes before the search parameter
+	 * indexes are extracted from the new resource body. If the new body has the same hash as the current
+	 * version and the tags have not changed, the update is treated as a no-op without extracting or
+	 * comparing any indexes.
+	 * <p>
+	 * This saves most of the work done for updates which don't change anything, but costs an
+	 * additional encoding of the resource for updates which do. It is therefore only worth enabling
+	 * when a significant share of updates are expected to be no-ops.
+	 * </p>
+	 * <p>
+	 * Default is {@literal false}
+	 * </p>
+	 *
+	 * @since 7.2.0
+	 */
+	public void setDetectUnchangedUpdatesBeforeIndexing(boolean theDetectUnchangedUpdatesBeforeIndexing) {
+		myDetectUnchangedUpdatesBeforeIndexing = theDetectUnchangedUpdatesBeforeIndexing;
+	}
+
 	public enum StoreMetaSourceInformationEnum {
 		NONE(false, false),
 		SOURCE_URI(true, false),
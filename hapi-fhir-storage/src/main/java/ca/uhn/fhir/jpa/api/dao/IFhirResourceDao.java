@@ -289,6 +289,23 @@ public interface IFhirResourceDao<T extends IBaseResource> extends IDao {
 	 */
 	T read(IIdType theId, RequestDetails theRequestDetails, boolean theDeletedOk);
 
+	/**
+	 * Reads a resource in order to write it directly to the response of a REST read or vread.
+	 * If raw JSON passthrough is enabled (see
+	 * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setRawJsonPassthroughEnabled(boolean)}),
+	 * the returned resource may be a shell with only its ID and metadata populated and the stored
+	 * JSON attached as a {@link ca.uhn.fhir.rest.server.util.RawJsonResourceBody}, which only the
+	 * REST server knows how to encode. Anything else should use {@link #read(IIdType, RequestDetails)}.
+	 *
+	 * @param theRequestDetails The request details including permissions and partitioning information
+	 * @throws ResourceNotFoundException If the ID is not known to the server
+	 * @throws ResourceGoneException     If the resource has been deleted
+	 * @since 7.2.0
+	 */
+	default T readForRestResponse(IIdType theId, RequestDetails theRequestDetails) {
+		return read(theId, theRequestDetails);
+	}
+
 	/**
 	 * Read an entity from the database, and return it. Note that here we're talking about whatever the
 	 * native database representation is, not the parsed {@link IBaseResource} instance.
@@ -25,6 +25,7 @@ import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.model.PersistentIdToForcedIdMap;
 import ca.uhn.fhir.jpa.model.cross.IResourceLookup;
 import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
@@ -32,7 +33,10 @@ import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -56,6 +60,39 @@ public interface IIdHelperService<T extends IResourcePersistentId> {
 	List<T> resolveResourcePersistentIdsWithCache(
 			@Nonnull RequestPartitionId theRequestPartitionId, List<IIdType> theIds, boolean theOnlyForcedIds);
 
+	/**
+	 * Resolves a batch of resource IDs (resource type + id) up front, and records the outcome in the
+	 * transaction details, including the IDs which don't exist yet. Creating or updating these
+	 * resources later in the same transaction then doesn't need to look up each ID individually.
+	 *
+	 * @param theOnlyForcedIds If <code>true</code>, resources which are not existing forced IDs will not be resolved
+	 * @return The persistent IDs of the resources which already exist
+	 */
+	@Nonnull
+	default List<T> preResolveResourcePersistentIds(
+			@Nonnull RequestPartitionId theRequestPartitionId,
+			Collection<IIdType> theIds,
+			boolean theOnlyForcedIds,
+			TransactionDetails theTransactionDetails) {
+		List<IIdType> ids = new ArrayList<>(theIds);
+		List<T> retVal = resolveResourcePersistentIdsWithCache(theRequestPartitionId, ids, theOnlyForcedIds);
+
+		Set<String> foundIds = new HashSet<>();
+		for (T next : retVal) {
+			IIdType resourceId = next.getAssociatedResourceId();
+			theTransactionDetails.addResolvedResourceId(resourceId, next);
+			foundIds.add(resourceId.toUnqualifiedVersionless().getValue());
+		}
+		for (IIdType next : ids) {
+			IIdType resourceId = next.toUnqualifiedVersionless();
+			if (!foundIds.contains(resourceId.getValue())) {
+				theTransactionDetails.addResolvedResourceId(resourceId, null);
+			}
+		}
+
+		return retVal;
+	}
+
 	/**
 	 * Given a resource type and ID, determines the internal persistent ID for the resource.
 	 *
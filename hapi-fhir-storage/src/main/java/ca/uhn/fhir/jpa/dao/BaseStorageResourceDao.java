@@ -20,6 +20,7 @@
 package ca.uhn.fhir.jpa.dao;
 
 import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.dao.IJpaDao;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
@@ -44,6 +45,7 @@ import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
+import ca.uhn.fhir.rest.server.util.CompositeInterceptorBroadcaster;
 import jakarta.annotation.Nonnull;
 import org.hl7.fhir.instance.model.api.IBaseParameters;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -240,6 +242,8 @@ public abstract class BaseStorageResourceDao<T extends IBaseResource> extends Ba
 		IBaseResource oldResource;
 		if (getStorageSettings().isMassIngestionMode()) {
 			oldResource = null;
+		} else if (isPreviousResourceNotNeeded(theRequest, theResourceId, theEntity)) {
+			oldResource = null;
 		} else {
 			oldResource = getStorageResourceParser().toResource(theEntity, false);
 		}
@@ -295,6 +299,23 @@ public abstract class BaseStorageResourceDao<T extends IBaseResource> extends Ba
 				theTransactionDetails);
 	}
 
+	/**
+	 * When the client has supplied the version being updated (e.g. in an <code>If-Match</code> header) it
+	 * has already been checked against the current version, and the index changes are calculated from the
+	 * stored index rows. In that case the previous resource body only needs to be loaded and parsed if an
+	 * interceptor will be passed the previous resource.
+	 */
+	private boolean isPreviousResourceNotNeeded(
+			RequestDetails theRequest, IIdType theResourceId, IBasePersistedResource theEntity) {
+		if (!theResourceId.hasVersionIdPart() || theEntity.isDeleted()) {
+			return false;
+		}
+		return !CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PRESTORAGE_RESOURCE_UPDATED, getInterceptorBroadcaster(), theRequest)
+				&& !CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.STORAGE_PRECOMMIT_RESOURCE_UPDATED, getInterceptorBroadcaster(), theRequest);
+	}
+
 	public static void validateResourceType(IBasePersistedResource theEntity, String theResourceName) {
 		if (!theResourceName.equals(theEntity.getResourceType())) {
 			throw new ResourceNotFoundException(Msg.code(935) + "Resource with ID "
@@ -42,10 +42,12 @@ import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictUtil;
 import ca.uhn.fhir.jpa.model.cross.IBasePersistedResource;
+import ca.uhn.fhir.jpa.model.dialect.SequenceBlockReservation;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
@@ -86,6 +88,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.dstu3.model.Bundle;
@@ -101,7 +104,9 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ExecutorConfigurationSupport;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionCallback;
@@ -109,6 +114,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -123,6 +129,8 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -174,6 +182,11 @@ public abstract class BaseTransactionProcessor {
 
 	private TaskExecutor myExecutor;
 
+	private AsyncTaskExecutor myIndexingExecutor;
+
+	@Autowired
+	private SearchParamExtractorService mySearchParamExtractorService;
+
 	@Autowired
 	private IResourceVersionSvc myResourceVersionSvc;
 
@@ -201,6 +214,22 @@ public abstract class BaseTransactionProcessor {
 		return myExecutor;
 	}
 
+	private synchronized AsyncTaskExecutor getIndexingTaskExecutor() {
+		if (myIndexingExecutor == null) {
+			int poolSize = myStorageSettings.getTransactionIndexingPoolSize();
+			myIndexingExecutor = myThreadPoolFactory.newThreadPool(poolSize, poolSize, "transaction-indexing-");
+		}
+		return myIndexingExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void shutDownIndexingTaskExecutor() {
+		if (myIndexingExecutor instanceof ExecutorConfigurationSupport) {
+			((ExecutorConfigurationSupport) myIndexingExecutor).shutdown();
+		}
+		myIndexingExecutor = null;
+	}
+
 	public <BUNDLE extends IBaseBundle> BUNDLE transaction(
 			RequestDetails theRequestDetails, BUNDLE theRequest, boolean theNestedMode) {
 		String actionName = "Transaction";
@@ -684,17 +713,25 @@ public abstract class BaseTransactionProcessor {
 			final IdSubstitutionMap idSubstitutions = new IdSubstitutionMap();
 			final Map<IIdType, DaoMethodOutcome> idToPersistedOutcome = new HashMap<>();
 
-			EntriesToProcessMap retVal = doTransactionWriteOperations(
-					theRequestDetails,
-					theActionName,
-					theTransactionDetails,
-					allIds,
-					idSubstitutions,
-					idToPersistedOutcome,
-					theResponse,
-					theOriginalRequestOrder,
-					theEntries,
-					theTransactionStopWatch);
+			/*
+			 * Resources created by the transaction get IDs from blocks reserved for
+			 * this thread, so they are contiguous and we don't contend with other
+			 * threads for IDs
+			 */
+			EntriesToProcessMap retVal;
+			try (SequenceBlockReservation reservation = SequenceBlockReservation.open()) {
+				retVal = doTransactionWriteOperations(
+						theRequestDetails,
+						theActionName,
+						theTransactionDetails,
+						allIds,
+						idSubstitutions,
+						idToPersistedOutcome,
+						theResponse,
+						theOriginalRequestOrder,
+						theEntries,
+						theTransactionStopWatch);
+			}
 
 			theTransactionStopWatch.startTask("Commit writes to database");
 			return retVal;
@@ -1572,16 +1609,9 @@ public abstract class BaseTransactionProcessor {
 		FhirTerser terser = myContext.newTerser();
 		theTransactionStopWatch.startTask("Index " + theIdToPersistedOutcome.size() + " resources");
 		IdentityHashMap<DaoMethodOutcome, Set<IBaseReference>> deferredIndexesForAutoVersioning = null;
-		int i = 0;
+		List<DaoMethodOutcome> outcomesToIndexNow = new ArrayList<>();
 		for (DaoMethodOutcome nextOutcome : theIdToPersistedOutcome.values()) {
 
-			if (i++ % 250 == 0) {
-				ourLog.debug(
-						"Have indexed {} entities out of {} in transaction",
-						i,
-						theIdToPersistedOutcome.values().size());
-			}
-
 			if (nextOutcome.isNop()) {
 				continue;
 			}
@@ -1595,6 +1625,61 @@ public abstract class BaseTransactionProcessor {
 					BaseStorageDao.extractReferencesToAutoVersion(myContext, myStorageSettings, nextResource);
 			if (referencesToAutoVersion.isEmpty()) {
 				// no references to autoversion - we can do the resolve and save now
+				outcomesToIndexNow.add(nextOutcome);
+			} else {
+				// we have autoversioned things to defer until later
+				if (deferredIndexesForAutoVersioning == null) {
+					deferredIndexesForAutoVersioning = new IdentityHashMap<>();
+				}
+				deferredIndexesForAutoVersioning.put(nextOutcome, referencesToAutoVersion);
+			}
+		}
+
+		if (myStorageSettings.getTransactionIndexingPoolSize() > 0 && outcomesToIndexNow.size() > 1) {
+
+			/*
+			 * Resolve the references in all of the resources first, so that nothing
+			 * changes in them while their indexes are extracted in parallel
+			 */
+			theTransactionStopWatch.startTask("Resolve references in " + outcomesToIndexNow.size() + " resources");
+			for (DaoMethodOutcome nextOutcome : outcomesToIndexNow) {
+				resolveReferences(
+						theTransactionDetails,
+						theIdSubstitutions,
+						theIdToPersistedOutcome,
+						terser,
+						nextOutcome.getResource(),
+						Collections.emptySet());
+			}
+
+			theTransactionStopWatch.startTask("Extract indexes for " + outcomesToIndexNow.size() + " resources");
+			preExtractSearchIndexes(theTransactionDetails, outcomesToIndexNow, nonUpdatedEntities, updatedEntities);
+
+			theTransactionStopWatch.startTask("Save " + outcomesToIndexNow.size() + " resources");
+			int i = 0;
+			for (DaoMethodOutcome nextOutcome : outcomesToIndexNow) {
+				if (i++ % 250 == 0) {
+					ourLog.debug("Have indexed {} entities out of {} in transaction", i, outcomesToIndexNow.size());
+				}
+				saveAndIndexResource(
+						theRequest,
+						theTransactionDetails,
+						theIdSubstitutions,
+						entriesToProcess,
+						nonUpdatedEntities,
+						updatedEntities,
+						nextOutcome,
+						nextOutcome.getResource(),
+						Collections.emptySet());
+			}
+
+		} else {
+
+			int i = 0;
+			for (DaoMethodOutcome nextOutcome : outcomesToIndexNow) {
+				if (i++ % 250 == 0) {
+					ourLog.debug("Have indexed {} entities out of {} in transaction", i, outcomesToIndexNow.size());
+				}
 				resolveReferencesThenSaveAndIndexResource(
 						theRequest,
 						theTransactionDetails,
@@ -1605,14 +1690,8 @@ public abstract class BaseTransactionProcessor {
 						updatedEntities,
 						terser,
 						nextOutcome,
-						nextResource,
-						referencesToAutoVersion); // this is empty
-			} else {
-				// we have autoversioned things to defer until later
-				if (deferredIndexesForAutoVersioning == null) {
-					deferredIndexesForAutoVersioning = new IdentityHashMap<>();
-				}
-				deferredIndexesForAutoVersioning.put(nextOutcome, referencesToAutoVersion);
+						nextOutcome.getResource(),
+						Collections.emptySet());
 			}
 		}
 
@@ -1640,6 +1719,46 @@ public abstract class BaseTransactionProcessor {
 		}
 	}
 
+	/**
+	 * Extracts the search indexes for newly created resources using the transaction indexing
+	 * thread pool. Resources which are updated are skipped, since the update fires
+	 * interceptor hooks which are allowed to modify the resource before it is indexed.
+	 * If extraction fails for a resource, it is simply extracted again (and the failure
+	 * reported) when the resource is saved.
+	 */
+	private void preExtractSearchIndexes(
+			TransactionDetails theTransactionDetails,
+			List<DaoMethodOutcome> theOutcomes,
+			Set<IIdType> theNonUpdatedEntities,
+			Set<IBasePersistedResource> theUpdatedEntities) {
+		List<IBaseResource> resources = new ArrayList<>();
+		List<Future<SearchParamExtractorService.PreExtractedSearchIndexes>> futures = new ArrayList<>();
+		for (DaoMethodOutcome nextOutcome : theOutcomes) {
+			if (theUpdatedEntities.contains(nextOutcome.getEntity())
+					|| theNonUpdatedEntities.contains(nextOutcome.getId())) {
+				continue;
+			}
+			IBaseResource nextResource = nextOutcome.getResource();
+			resources.add(nextResource);
+			futures.add(getIndexingTaskExecutor()
+					.submit(() -> mySearchParamExtractorService.preExtractSearchIndexes(nextResource)));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				mySearchParamExtractorService.storePreExtractedSearchIndexes(
+						theTransactionDetails, resources.get(i), futures.get(i).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(Msg.code(2505) + e.getMessage(), e);
+			} catch (ExecutionException e) {
+				ourLog.debug(
+						"Failed to extract indexes in parallel: {}",
+						e.getCause().toString());
+			}
+		}
+	}
+
 	private void resolveReferencesThenSaveAndIndexResource(
 			RequestDetails theRequest,
 			TransactionDetails theTransactionDetails,
@@ -1652,6 +1771,32 @@ public abstract class BaseTransactionProcessor {
 			DaoMethodOutcome theDaoMethodOutcome,
 			IBaseResource theResource,
 			Set<IBaseReference> theReferencesToAutoVersion) {
+		resolveReferences(
+				theTransactionDetails,
+				theIdSubstitutions,
+				theIdToPersistedOutcome,
+				terser,
+				theResource,
+				theReferencesToAutoVersion);
+		saveAndIndexResource(
+				theRequest,
+				theTransactionDetails,
+				theIdSubstitutions,
+				entriesToProcess,
+				nonUpdatedEntities,
+				updatedEntities,
+				theDaoMethodOutcome,
+				theResource,
+				theReferencesToAutoVersion);
+	}
+
+	private void resolveReferences(
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome,
+			FhirTerser terser,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		// References
 		List<ResourceReferenceInfo> allRefs = terser.getAllResourceReferences(theResource);
 		for (ResourceReferenceInfo nextRef : allRefs) {
@@ -1759,7 +1904,18 @@ public abstract class BaseTransactionProcessor {
 				}
 			}
 		}
+	}
 
+	private void saveAndIndexResource(
+			RequestDetails theRequest,
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			EntriesToProcessMap entriesToProcess,
+			Set<IIdType> nonUpdatedEntities,
+			Set<IBasePersistedResource> updatedEntities,
+			DaoMethodOutcome theDaoMethodOutcome,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		IPrimitiveType<Date> deletedInstantOrNull = ResourceMetadataKeyEnum.DELETED_AT.get(theResource);
 		Date deletedTimestampOrNull = deletedInstantOrNull != null ? deletedInstantOrNull.getValue() : null;
 
@@ -0,0 +1,336 @@
+/*
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes compact JSON resource bodies as a tagged binary token stream, and decodes that
+ * stream straight back into a Jackson tree without producing intermediate JSON text.
+ * <p>
+ * Field names are written once per record and referenced by index afterwards, as are short
+ * string values (codes, systems, references) which tend to repeat within a resource. Numbers are
+ * kept as their original text so that FHIR decimal precision is preserved exactly.
+ * </p>
+ * <p>
+ * The dictionary is built per record rather than from the model definitions so that stored rows
+ * can always be decoded regardless of which FHIR structures version wrote them.
+ * </p>
+ */
+public class BinaryJsonUtil {
+
+	static final byte FORMAT_VERSION = 1;
+
+	private static final byte TAG_START_OBJECT = 1;
+	private static final byte TAG_END_OBJECT = 2;
+	private static final byte TAG_START_ARRAY = 3;
+	private static final byte TAG_END_ARRAY = 4;
+	private static final byte TAG_TRUE = 5;
+	private static final byte TAG_FALSE = 6;
+	private static final byte TAG_NULL = 7;
+	private static final byte TAG_FIELD = 8;
+	private static final byte TAG_FIELD_REF = 9;
+	private static final byte TAG_STRING = 10;
+	private static final byte TAG_STRING_SHARED = 11;
+	private static final byte TAG_STRING_REF = 12;
+	private static final byte TAG_NUMBER = 13;
+
+	/**
+	 * String values up to this length are added to the per-record dictionary
+	 */
+	private static final int MAX_SHARED_STRING_LENGTH = 64;
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final JsonNodeFactory NODE_FACTORY = new JsonNodeFactory(true);
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().setNodeFactory(NODE_FACTORY);
+
+	/**
+	 * Non instantiable
+	 */
+	private BinaryJsonUtil() {
+		super();
+	}
+
+	public static byte[] encode(String theJson) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(theJson.length() / 2 + 16);
+		os.write(FORMAT_VERSION);
+
+		Map<String, Integer> fieldNames = new HashMap<>();
+		Map<String, Integer> sharedStrings = new HashMap<>();
+		try (JsonParser parser = JSON_FACTORY.createParser(theJson)) {
+			for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+				switch (token) {
+					case START_OBJECT:
+						os.write(TAG_START_OBJECT);
+						break;
+					case END_OBJECT:
+						os.write(TAG_END_OBJECT);
+						break;
+					case START_ARRAY:
+						os.write(TAG_START_ARRAY);
+						break;
+					case END_ARRAY:
+						os.write(TAG_END_ARRAY);
+						break;
+					case FIELD_NAME:
+						writeShared(os, parser.getCurrentName(), fieldNames, TAG_FIELD, TAG_FIELD_REF);
+						break;
+					case VALUE_STRING:
+						String value = parser.getText();
+						if (value.length() <= MAX_SHARED_STRING_LENGTH) {
+							writeShared(os, value, sharedStrings, TAG_STRING_SHARED, TAG_STRING_REF);
+						} else {
+							os.write(TAG_STRING);
+							writeText(os, value);
+						}
+						break;
+					case VALUE_NUMBER_INT:
+					case VALUE_NUMBER_FLOAT:
+						os.write(TAG_NUMBER);
+						writeText(os, parser.getText());
+						break;
+					case VALUE_TRUE:
+						os.write(TAG_TRUE);
+						break;
+					case VALUE_FALSE:
+						os.write(TAG_FALSE);
+						break;
+					case VALUE_NULL:
+						os.write(TAG_NULL);
+						break;
+					default:
+						throw new DataFormatException(Msg.code(2506) + "Unexpected JSON token: " + token);
+				}
+			}
+		} catch (IOException e) {
+			throw new DataFormatException(Msg.code(2507) + "Failed to encode contents", e);
+		}
+
+		return os.toByteArray();
+	}
+
+	/**
+	 * Decodes the given contents into a Jackson tree. Decimal numbers are created as exact
+	 * {@link BigDecimal} nodes, matching the tree produced by the JSON parser.
+	 */
+	public static ObjectNode decodeToTree(byte[] theContents) {
+		Reader reader = new Reader(theContents);
+		byte tag = reader.nextByte();
+		if (tag != TAG_START_OBJECT) {
+			throw reader.invalid("Expected an object at root");
+		}
+		return reader.readObject();
+	}
+
+	public static String decodeToString(byte[] theContents) {
+		try {
+			return OBJECT_MAPPER.writeValueAsString(decodeToTree(theContents));
+		} catch (JsonProcessingException e) {
+			throw new DataFormatException(Msg.code(2524) + "Failed to decode contents", e);
+		}
+	}
+
+	private static void writeShared(
+			ByteArrayOutputStream theOutputStream,
+			String theValue,
+			Map<String, Integer> theDictionary,
+			byte theNewTag,
+			byte theRefTag) {
+		Integer index = theDictionary.get(theValue);
+		if (index != null) {
+			theOutputStream.write(theRefTag);
+			writeVarInt(theOutputStream, index);
+		} else {
+			theDictionary.put(theValue, theDictionary.size());
+			theOutputStream.write(theNewTag);
+			writeText(theOutputStream, theValue);
+		}
+	}
+
+	private static void writeText(ByteArrayOutputStream theOutputStream, String theValue) {
+		byte[] bytes = theValue.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(theOutputStream, bytes.length);
+		theOutputStream.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream theOutputStream, int theValue) {
+		int value = theValue;
+		while ((value & ~0x7F) != 0) {
+			theOutputStream.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		theOutputStream.write(value);
+	}
+
+	private static class Reader {
+
+		private final byte[] myContents;
+		private final List<String> myFieldNames = new ArrayList<>();
+		private final List<String> mySharedStrings = new ArrayList<>();
+		private int myPosition;
+
+		private Reader(byte[] theContents) {
+			myContents = theContents;
+			if (theContents.length == 0 || theContents[0] != FORMAT_VERSION) {
+				throw new DataFormatException(Msg.code(2508) + "Unsupported binary JSON format version");
+			}
+			myPosition = 1;
+		}
+
+		private ObjectNode readObject() {
+			ObjectNode retVal = NODE_FACTORY.objectNode();
+			while (true) {
+				byte tag = nextByte();
+				String fieldName;
+				switch (tag) {
+					case TAG_END_OBJECT:
+						return retVal;
+					case TAG_FIELD:
+						fieldName = readText();
+						myFieldNames.add(fieldName);
+						break;
+					case TAG_FIELD_REF:
+						fieldName = lookup(myFieldNames);
+						break;
+					default:
+						throw invalid("Expected a field name");
+				}
+				retVal.set(fieldName, readValue(nextByte()));
+			}
+		}
+
+		private ArrayNode readArray() {
+			ArrayNode retVal = NODE_FACTORY.arrayNode();
+			for (byte tag = nextByte(); tag != TAG_END_ARRAY; tag = nextByte()) {
+				retVal.add(readValue(tag));
+			}
+			return retVal;
+		}
+
+		private JsonNode readValue(byte theTag) {
+			switch (theTag) {
+				case TAG_START_OBJECT:
+					return readObject();
+				case TAG_START_ARRAY:
+					return readArray();
+				case TAG_STRING:
+					return NODE_FACTORY.textNode(readText());
+				case TAG_STRING_SHARED:
+					String value = readText();
+					mySharedStrings.add(value);
+					return NODE_FACTORY.textNode(value);
+				case TAG_STRING_REF:
+					return NODE_FACTORY.textNode(lookup(mySharedStrings));
+				case TAG_NUMBER:
+					return toNumberNode(readText());
+				case TAG_TRUE:
+					return NODE_FACTORY.booleanNode(true);
+				case TAG_FALSE:
+					return NODE_FACTORY.booleanNode(false);
+				case TAG_NULL:
+					return NODE_FACTORY.nullNode();
+				default:
+					throw invalid("Unexpected tag " + theTag);
+			}
+		}
+
+		private String lookup(List<String> theDictionary) {
+			int index = readVarInt();
+			if (index < 0 || index >= theDictionary.size()) {
+				throw invalid("Dictionary reference out of range");
+			}
+			return theDictionary.get(index);
+		}
+
+		private String readText() {
+			int length = readVarInt();
+			if (length < 0) {
+				throw invalid("Negative length");
+			}
+			if (length > myContents.length - myPosition) {
+				throw invalid("Truncated contents");
+			}
+			String retVal = new String(myContents, myPosition, length, StandardCharsets.UTF_8);
+			myPosition += length;
+			return retVal;
+		}
+
+		private int readVarInt() {
+			int retVal = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				byte next = nextByte();
+				retVal |= (next & 0x7F) << shift;
+				if ((next & 0x80) == 0) {
+					return retVal;
+				}
+			}
+			throw invalid("Malformed length");
+		}
+
+		private byte nextByte() {
+			if (myPosition >= myContents.length) {
+				throw invalid("Truncated contents");
+			}
+			return myContents[myPosition++];
+		}
+
+		private DataFormatException invalid(String theMessage) {
+			return new DataFormatException(
+					Msg.code(2509) + "Invalid binary JSON contents at offset " + myPosition + ": " + theMessage);
+		}
+
+		private static JsonNode toNumberNode(String theText) {
+			for (int i = 0; i < theText.length(); i++) {
+				char next = theText.charAt(i);
+				if (next == '.' || next == 'e' || next == 'E') {
+					return NODE_FACTORY.numberNode(new BigDecimal(theText));
+				}
+			}
+			BigInteger value = new BigInteger(theText);
+			if (value.bitLength() < 32) {
+				return NODE_FACTORY.numberNode(value.intValue());
+			}
+			if (value.bitLength() < 64) {
+				return NODE_FACTORY.numberNode(value.longValue());
+			}
+			return NODE_FACTORY.numberNode(value);
+		}
+	}
+}
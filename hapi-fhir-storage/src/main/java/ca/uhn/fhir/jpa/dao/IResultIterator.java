@@ -20,9 +20,11 @@
 package ca.uhn.fhir.jpa.dao;
 
 import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
+import jakarta.annotation.Nullable;
 
 import java.io.Closeable;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Iterator;
 
 public interface IResultIterator<T extends IResourcePersistentId> extends Iterator<T>, Closeable {
@@ -32,4 +34,16 @@ public interface IResultIterator<T extends IResourcePersistentId> extends Iterat
 	int getNonSkippedCount();
 
 	Collection<T> getNextResultBatch(long theBatchSize);
+
+	/**
+	 * Returns the last updated time of the resource most recently returned by {@link #next()}, if
+	 * the search query selected it along with the resource ID (keyset paginated searches sorted by
+	 * <code>_lastUpdated</code> do), or <code>null</code> otherwise.
+	 *
+	 * @since 7.2.0
+	 */
+	@Nullable
+	default Date getLastUpdatedOfLastResult() {
+		return null;
+	}
 }
@@ -30,6 +30,7 @@ import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import com.google.common.collect.Streams;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import jakarta.persistence.EntityManager;
 import org.apache.commons.io.IOUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -75,6 +76,31 @@ public interface ISearchBuilder<T extends IResourcePersistentId<?>> {
 			RequestDetails theRequest,
 			RequestPartitionId theRequestPartitionId);
 
+	/**
+	 * Returns an estimate of the number of resources matching the given parameters, for use
+	 * with <code>_total=estimated</code>. Implementations should use database statistics
+	 * instead of counting the matching rows.
+	 *
+	 * @return The estimate, or <code>null</code> (which is the default) if no estimate can be
+	 * made without counting the matching rows
+	 * @since 7.2.0
+	 */
+	@Nullable
+	default Long createEstimatedCountQuery(
+			SearchParameterMap theParams,
+			String theSearchUuid,
+			RequestDetails theRequest,
+			RequestPartitionId theRequestPartitionId) {
+		return null;
+	}
+
+	/**
+	 * Returns the name of the resource type being searched for
+	 *
+	 * @since 7.2.0
+	 */
+	String getResourceName();
+
 	void setMaxResultsToFetch(Integer theMaxResultsToFetch);
 
 	void loadResourcesByPid(
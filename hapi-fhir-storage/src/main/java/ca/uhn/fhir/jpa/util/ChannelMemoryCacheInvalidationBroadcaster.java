@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+/**
+ * Broadcasts {@link MemoryCacheService} invalidations over a channel created by an
+ * {@link IChannelFactory}. Every node sends to and receives from the same channel, so the
+ * channel must deliver each message to every node (ie. it must behave as a topic rather
+ * than as a work queue). The in-memory
+ * {@link ca.uhn.fhir.jpa.subscription.channel.impl.LinkedBlockingChannelFactory} is only
+ * useful for testing.
+ * <p>
+ * Messages sent while a node is unreachable are not replayed, so this can be combined with
+ * database polling as a fallback (see
+ * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setMemoryCacheInvalidationPollingEnabled(boolean)}).
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class ChannelMemoryCacheInvalidationBroadcaster
+		implements IMemoryCacheInvalidationBroadcaster, MessageHandler {
+
+	public static final String CHANNEL_NAME = "memory-cache-invalidation";
+
+	private final IChannelFactory myChannelFactory;
+	private final MemoryCacheService myMemoryCacheService;
+	private IChannelProducer myProducer;
+	private IChannelReceiver myReceiver;
+
+	/**
+	 * Constructor
+	 */
+	public ChannelMemoryCacheInvalidationBroadcaster(
+			IChannelFactory theChannelFactory, MemoryCacheService theMemoryCacheService) {
+		myChannelFactory = theChannelFactory;
+		myMemoryCacheService = theMemoryCacheService;
+	}
+
+	@PostConstruct
+	public void start() {
+		myProducer = myChannelFactory.getOrCreateProducer(
+				CHANNEL_NAME, MemoryCacheInvalidationJsonMessage.class, new ChannelProducerSettings());
+		myReceiver = myChannelFactory.getOrCreateReceiver(
+				CHANNEL_NAME,
+				MemoryCacheInvalidationJsonMessage.class,
+				new ChannelConsumerSettings().setConcurrentConsumers(1));
+		myReceiver.subscribe(this);
+		myMemoryCacheService.registerInvalidationBroadcaster(this);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myMemoryCacheService.unregisterInvalidationBroadcaster(this);
+		if (myReceiver != null) {
+			myReceiver.unsubscribe(this);
+		}
+	}
+
+	@Override
+	public void broadcast(MemoryCacheInvalidationMessage theMessage) {
+		myProducer.send(new MemoryCacheInvalidationJsonMessage(theMessage));
+	}
+
+	@Override
+	public void handleMessage(@Nonnull Message<?> theMessage) throws MessagingException {
+		if (theMessage instanceof MemoryCacheInvalidationJsonMessage) {
+			MemoryCacheInvalidationMessage payload = ((MemoryCacheInvalidationJsonMessage) theMessage).getPayload();
+			myMemoryCacheService.handleRemoteInvalidation(payload);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+/**
+ * Shares invalidations of the {@link MemoryCacheService} caches with the other nodes in a
+ * cluster. Broadcasters register themselves using
+ * {@link MemoryCacheService#registerInvalidationBroadcaster(IMemoryCacheInvalidationBroadcaster)},
+ * and pass invalidations received from other nodes to
+ * {@link MemoryCacheService#handleRemoteInvalidation(MemoryCacheInvalidationMessage)}.
+ * <p>
+ * Invalidations are idempotent, so a broadcaster may deliver the same message more than once.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public interface IMemoryCacheInvalidationBroadcaster {
+
+	/**
+	 * Sends an invalidation made on this node to all other nodes. This is called after the
+	 * transaction that made the invalidation has committed.
+	 */
+	void broadcast(MemoryCacheInvalidationMessage theMessage);
+}
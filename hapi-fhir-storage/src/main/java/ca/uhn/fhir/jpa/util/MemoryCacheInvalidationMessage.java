@@ -0,0 +1,150 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.model.api.IModelJson;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of {@link MemoryCacheService} invalidations made on one node, to be applied on all
+ * other nodes.
+ *
+ * @since 7.2.0
+ */
+public class MemoryCacheInvalidationMessage implements IModelJson {
+
+	@JsonProperty("sourceNodeId")
+	private String mySourceNodeId;
+
+	@JsonProperty("sentTimestamp")
+	private long mySentTimestamp;
+
+	@JsonProperty("entries")
+	private List<Entry> myEntries;
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationMessage() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationMessage(String theSourceNodeId, long theSentTimestamp) {
+		mySourceNodeId = theSourceNodeId;
+		mySentTimestamp = theSentTimestamp;
+	}
+
+	public String getSourceNodeId() {
+		return mySourceNodeId;
+	}
+
+	public void setSourceNodeId(String theSourceNodeId) {
+		mySourceNodeId = theSourceNodeId;
+	}
+
+	public long getSentTimestamp() {
+		return mySentTimestamp;
+	}
+
+	public void setSentTimestamp(long theSentTimestamp) {
+		mySentTimestamp = theSentTimestamp;
+	}
+
+	public List<Entry> getEntries() {
+		if (myEntries == null) {
+			myEntries = new ArrayList<>();
+		}
+		return myEntries;
+	}
+
+	public void setEntries(List<Entry> theEntries) {
+		myEntries = theEntries;
+	}
+
+	public MemoryCacheInvalidationMessage addEntry(MemoryCacheService.CacheEnum theCache, @Nullable String theKey) {
+		getEntries().add(new Entry(theCache, theKey));
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("sourceNodeId", mySourceNodeId)
+				.append("sentTimestamp", mySentTimestamp)
+				.append("entries", getEntries().size())
+				.toString();
+	}
+
+	public static class Entry implements IModelJson {
+
+		@JsonProperty("cache")
+		private MemoryCacheService.CacheEnum myCache;
+
+		@JsonProperty("key")
+		private String myKey;
+
+		/**
+		 * Constructor
+		 */
+		public Entry() {
+			super();
+		}
+
+		/**
+		 * Constructor
+		 *
+		 * @param theCache The cache to invalidate
+		 * @param theKey   The key to invalidate, or <code>null</code> to invalidate the whole cache
+		 */
+		public Entry(MemoryCacheService.CacheEnum theCache, @Nullable String theKey) {
+			myCache = theCache;
+			myKey = theKey;
+		}
+
+		public MemoryCacheService.CacheEnum getCache() {
+			return myCache;
+		}
+
+		public void setCache(MemoryCacheService.CacheEnum theCache) {
+			myCache = theCache;
+		}
+
+		/**
+		 * @return The key to invalidate, or <code>null</code> if the whole cache should be invalidated
+		 */
+		@Nullable
+		public String getKey() {
+			return myKey;
+		}
+
+		public void setKey(String theKey) {
+			myKey = theKey;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the invalidations that {@link MemoryCacheService} has sent to and
+ * received from other nodes.
+ * <p>
+ * Staleness is the time between an invalidation being sent by the node that made it and
+ * being applied on this node, ie. the longest time that this node could have served a
+ * stale cache entry.
+ * </p>
+ *
+ * @since 7.2.0
+ */
+public class MemoryCacheInvalidationMetrics {
+
+	private final LongAdder myMessagesSent = new LongAdder();
+	private final LongAdder myEntriesSent = new LongAdder();
+	private final LongAdder myBroadcastFailures = new LongAdder();
+	private final LongAdder myMessagesReceived = new LongAdder();
+	private final LongAdder myEntriesReceived = new LongAdder();
+	private final LongAdder myTotalStalenessMillis = new LongAdder();
+	private final LongAccumulator myMaxStalenessMillis = new LongAccumulator(Math::max, 0);
+
+	void recordSent(int theEntryCount) {
+		myMessagesSent.increment();
+		myEntriesSent.add(theEntryCount);
+	}
+
+	void recordBroadcastFailure() {
+		myBroadcastFailures.increment();
+	}
+
+	void recordReceived(int theEntryCount, long theStalenessMillis) {
+		long staleness = Math.max(0, theStalenessMillis);
+		myMessagesReceived.increment();
+		myEntriesReceived.add(theEntryCount);
+		myTotalStalenessMillis.add(staleness);
+		myMaxStalenessMillis.accumulate(staleness);
+	}
+
+	/**
+	 * @return The number of invalidation messages broadcast by this node
+	 */
+	public long getMessagesSent() {
+		return myMessagesSent.sum();
+	}
+
+	/**
+	 * @return The number of cache entries (or whole caches) invalidated in messages broadcast by this node
+	 */
+	public long getEntriesSent() {
+		return myEntriesSent.sum();
+	}
+
+	/**
+	 * @return The number of times a broadcaster failed to send an invalidation message
+	 */
+	public long getBroadcastFailures() {
+		return myBroadcastFailures.sum();
+	}
+
+	/**
+	 * @return The number of invalidation messages from other nodes applied on this node
+	 */
+	public long getMessagesReceived() {
+		return myMessagesReceived.sum();
+	}
+
+	/**
+	 * @return The number of cache entries (or whole caches) invalidated on this node by other nodes
+	 */
+	public long getEntriesReceived() {
+		return myEntriesReceived.sum();
+	}
+
+	public long getMaxStalenessMillis() {
+		return myMaxStalenessMillis.get();
+	}
+
+	public long getAverageStalenessMillis() {
+		long received = getMessagesReceived();
+		if (received == 0) {
+			return 0;
+		}
+		return myTotalStalenessMillis.sum() / received;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("messagesSent", getMessagesSent())
+				.append("entriesSent", getEntriesSent())
+				.append("broadcastFailures", getBroadcastFailures())
+				.append("messagesReceived", getMessagesReceived())
+				.append("entriesReceived", getEntriesReceived())
+				.append("avgStalenessMillis", getAverageStalenessMillis())
+				.append("maxStalenessMillis", getMaxStalenessMillis())
+				.toString();
+	}
+}
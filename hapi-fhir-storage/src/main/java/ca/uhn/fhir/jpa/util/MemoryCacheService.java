@@ -27,12 +27,19 @@ import ca.uhn.fhir.sl.cache.CacheFactory;
 import jakarta.annotation.Nonnull;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Collection;
 import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
@@ -44,12 +51,22 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
  * <p>
  * The API is super simplistic, and caches are all 1-minute, max 10000 entries for starters. We could definitely add nuance to this,
  * which will be much easier now that this is being centralized. Some logging/monitoring would be good too.
+ * <p>
+ * The caches are local to each node. Invalidations made through this service can be shared with
+ * the other nodes in a cluster by registering one or more {@link IMemoryCacheInvalidationBroadcaster}s.
+ * </p>
  */
 // TODO: JA2 extract an interface for this class and use it everywhere
 public class MemoryCacheService {
 
+	private static final Logger ourLog = LoggerFactory.getLogger(MemoryCacheService.class);
+
 	private final JpaStorageSettings myStorageSettings;
 	private final EnumMap<CacheEnum, Cache<?, ?>> myCaches = new EnumMap<>(CacheEnum.class);
+	private final String myNodeId = UUID.randomUUID().toString();
+	private final List<IMemoryCacheInvalidationBroadcaster> myInvalidationBroadcasters =
+			new CopyOnWriteArrayList<>();
+	private final MemoryCacheInvalidationMetrics myInvalidationMetrics = new MemoryCacheInvalidationMetrics();
 
 	public MemoryCacheService(JpaStorageSettings theStorageSettings) {
 		myStorageSettings = theStorageSettings;
@@ -79,6 +96,10 @@ public class MemoryCacheService {
 				case RESOURCE_CONDITIONAL_CREATE_VERSION:
 				default:
 					timeoutSeconds = SECONDS.convert(1, MINUTES);
+					if (next.isInvalidatedOnChange()) {
+						timeoutSeconds =
+								SECONDS.convert(myStorageSettings.getMemoryCacheExpireAfterWriteInMinutes(), MINUTES);
+					}
 					maximumSize = 10000;
 					if (myStorageSettings.isMassIngestionMode()) {
 						timeoutSeconds = SECONDS.convert(50, MINUTES);
@@ -171,8 +192,44 @@ public class MemoryCacheService {
 		return (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
 	}
 
+	/**
+	 * Removes a single entry from the cache on this node, and broadcasts the invalidation
+	 * to the other nodes
+	 */
+	public <K> void invalidate(CacheEnum theCache, K theKey) {
+		assert theCache.getKeyType().isAssignableFrom(theKey.getClass());
+		getCache(theCache).invalidate(theKey);
+		broadcast(toInvalidationMessage(Map.of(theCache, Set.of(theKey))));
+	}
+
+	/**
+	 * This method registers a transaction synchronization that removes an entry from the cache
+	 * if and when the current database transaction successfully commits. All of the invalidations
+	 * made in a single transaction are broadcast to the other nodes as one message.
+	 */
+	public <K> void invalidateAfterCommit(CacheEnum theCache, K theKey) {
+		assert theCache.getKeyType().isAssignableFrom(theKey.getClass());
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			PendingInvalidations pending =
+					(PendingInvalidations) TransactionSynchronizationManager.getResource(this);
+			if (pending == null) {
+				pending = new PendingInvalidations();
+				TransactionSynchronizationManager.bindResource(this, pending);
+				TransactionSynchronizationManager.registerSynchronization(pending);
+			}
+			pending.add(theCache, theKey);
+		} else {
+			invalidate(theCache, theKey);
+		}
+	}
+
 	public void invalidateAllCaches() {
 		myCaches.values().forEach(Cache::invalidateAll);
+		MemoryCacheInvalidationMessage message = newInvalidationMessage();
+		for (CacheEnum next : CacheEnum.values()) {
+			message.addEntry(next, null);
+		}
+		broadcast(message);
 	}
 
 	private <K, T> Cache<K, T> getCache(CacheEnum theCache) {
@@ -184,9 +241,101 @@ public class MemoryCacheService {
 	}
 
 	public void invalidateCaches(CacheEnum... theCaches) {
+		MemoryCacheInvalidationMessage message = newInvalidationMessage();
 		for (CacheEnum next : theCaches) {
 			getCache(next).invalidateAll();
+			message.addEntry(next, null);
 		}
+		broadcast(message);
+	}
+
+	/**
+	 * Applies invalidations that were made on another node. These are not broadcast again,
+	 * and messages that originated on this node are ignored.
+	 */
+	public void handleRemoteInvalidation(MemoryCacheInvalidationMessage theMessage) {
+		if (myNodeId.equals(theMessage.getSourceNodeId())) {
+			return;
+		}
+
+		for (MemoryCacheInvalidationMessage.Entry next : theMessage.getEntries()) {
+			Cache<Object, Object> cache = getCache(next.getCache());
+			if (next.getKey() == null) {
+				cache.invalidateAll();
+			} else {
+				cache.invalidate(parseKey(next.getCache(), next.getKey()));
+			}
+		}
+
+		long staleness = System.currentTimeMillis() - theMessage.getSentTimestamp();
+		myInvalidationMetrics.recordReceived(theMessage.getEntries().size(), staleness);
+		ourLog.trace("Applied {} from node {}", theMessage, theMessage.getSourceNodeId());
+	}
+
+	public void registerInvalidationBroadcaster(IMemoryCacheInvalidationBroadcaster theBroadcaster) {
+		myInvalidationBroadcasters.add(theBroadcaster);
+	}
+
+	public void unregisterInvalidationBroadcaster(IMemoryCacheInvalidationBroadcaster theBroadcaster) {
+		myInvalidationBroadcasters.remove(theBroadcaster);
+	}
+
+	/**
+	 * @return A randomly generated identifier for this node, used to recognize invalidations
+	 * that originated here
+	 */
+	public String getNodeId() {
+		return myNodeId;
+	}
+
+	public MemoryCacheInvalidationMetrics getInvalidationMetrics() {
+		return myInvalidationMetrics;
+	}
+
+	private MemoryCacheInvalidationMessage newInvalidationMessage() {
+		return new MemoryCacheInvalidationMessage(myNodeId, System.currentTimeMillis());
+	}
+
+	private MemoryCacheInvalidationMessage toInvalidationMessage(Map<CacheEnum, Set<Object>> theKeys) {
+		MemoryCacheInvalidationMessage retVal = newInvalidationMessage();
+		for (Map.Entry<CacheEnum, Set<Object>> nextEntry : theKeys.entrySet()) {
+			CacheEnum cache = nextEntry.getKey();
+			if (!cache.isKeySerializable()) {
+				// Keys of this type can't be sent to other nodes, so they clear the whole cache
+				retVal.addEntry(cache, null);
+				continue;
+			}
+			for (Object nextKey : nextEntry.getValue()) {
+				retVal.addEntry(cache, nextKey.toString());
+			}
+		}
+		return retVal;
+	}
+
+	private void broadcast(MemoryCacheInvalidationMessage theMessage) {
+		if (myInvalidationBroadcasters.isEmpty() || theMessage.getEntries().isEmpty()) {
+			return;
+		}
+		myInvalidationMetrics.recordSent(theMessage.getEntries().size());
+		for (IMemoryCacheInvalidationBroadcaster next : myInvalidationBroadcasters) {
+			try {
+				next.broadcast(theMessage);
+			} catch (Exception e) {
+				myInvalidationMetrics.recordBroadcastFailure();
+				ourLog.warn("Failed to broadcast cache invalidation {}: {}", theMessage, e.toString());
+			}
+		}
+	}
+
+	private static Object parseKey(CacheEnum theCache, String theKey) {
+		Class<?> keyType = theCache.getKeyType();
+		if (Long.class.equals(keyType)) {
+			return Long.parseLong(theKey);
+		}
+		if (Integer.class.equals(keyType)) {
+			return Integer.parseInt(theKey);
+		}
+		return theKey;
 	}
 
 	public enum CacheEnum {
@@ -210,6 +359,22 @@ public class MemoryCacheService {
 			return myKeyType;
 		}
 
+		/**
+		 * @return Are entries in this cache invalidated when the data they were loaded from changes.
+		 * Match URL results and history counts are not, so they can only be kept for a short time.
+		 */
+		public boolean isInvalidatedOnChange() {
+			return this != MATCH_URL && this != HISTORY_COUNT;
+		}
+
+		/**
+		 * @return Can keys for this cache be converted to a string and back, so that
+		 * individual entries can be invalidated on other nodes
+		 */
+		public boolean isKeySerializable() {
+			return String.class.equals(myKeyType) || Long.class.equals(myKeyType) || Integer.class.equals(myKeyType);
+		}
+
 		private final Class<?> myKeyType;
 
 		CacheEnum(Class<?> theKeyType) {
@@ -217,6 +382,31 @@ public class MemoryCacheService {
 		}
 	}
 
+	/**
+	 * Invalidations made during a single database transaction. They are applied locally and
+	 * broadcast together once the transaction commits.
+	 */
+	private class PendingInvalidations implements TransactionSynchronization {
+
+		private final Map<CacheEnum, Set<Object>> myKeys = new EnumMap<>(CacheEnum.class);
+
+		void add(CacheEnum theCache, Object theKey) {
+			myKeys.computeIfAbsent(theCache, t -> new LinkedHashSet<>()).add(theKey);
+		}
+
+		@Override
+		public void afterCompletion(int theStatus) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(MemoryCacheService.this);
+			if (theStatus != STATUS_COMMITTED) {
+				return;
+			}
+			for (Map.Entry<CacheEnum, Set<Object>> nextEntry : myKeys.entrySet()) {
+				getCache(nextEntry.getKey()).invalidateAll(nextEntry.getValue());
+			}
+			broadcast(toInvalidationMessage(myKeys));
+		}
+	}
+
 	public static class TagDefinitionCacheKey {
 
 		private final TagTypeEnum myType;
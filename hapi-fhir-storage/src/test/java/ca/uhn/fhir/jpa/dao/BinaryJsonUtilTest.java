@@ -0,0 +1,88 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IJsonLikeParser;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryJsonUtilTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@Test
+	public void testRoundTripToString() {
+		String json = "{\"resourceType\":\"Observation\",\"valueQuantity\":{\"value\":1.50,\"system\":\"http://unitsofmeasure.org\"},"
+			+ "\"component\":[{\"code\":{\"coding\":[{\"system\":\"http://unitsofmeasure.org\",\"code\":\"a\"}]}},"
+			+ "{\"code\":{\"coding\":[{\"system\":\"http://unitsofmeasure.org\",\"code\":\"a\"}]}}],"
+			+ "\"extension\":[{\"valueInteger\":-2147483649},{\"valueBoolean\":true},{\"valueString\":null}]}";
+
+		byte[] encoded = BinaryJsonUtil.encode(json);
+
+		assertEquals(json, BinaryJsonUtil.decodeToString(encoded));
+		assertTrue(encoded.length < json.getBytes(StandardCharsets.UTF_8).length);
+	}
+
+	@Test
+	public void testDecodeToTreePreservesDecimalPrecision() {
+		byte[] encoded = BinaryJsonUtil.encode("{\"value\":1.50,\"count\":3}");
+
+		ObjectNode tree = BinaryJsonUtil.decodeToTree(encoded);
+
+		assertEquals(new BigDecimal("1.50"), tree.get("value").decimalValue());
+		assertEquals("1.50", tree.get("value").asText());
+		assertTrue(tree.get("count").isInt());
+	}
+
+	@Test
+	public void testParseResourceFromTree() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson").addGiven("Homer").addGiven("Jay");
+		patient.addIdentifier().setSystem("http://foo").setValue("1");
+		patient.addIdentifier().setSystem("http://foo").setValue("2");
+		Observation obs = new Observation();
+		obs.setId("#obs");
+		obs.setValue(new Quantity().setValue(new BigDecimal("98.60")).setUnit("F"));
+		patient.getContained().add(obs);
+
+		IParser parser = ourCtx.newJsonParser();
+		String json = parser.encodeResourceToString(patient);
+
+		JacksonStructure structure = new JacksonStructure();
+		structure.setNativeObject(BinaryJsonUtil.decodeToTree(BinaryJsonUtil.encode(json)));
+		Patient parsed = ((IJsonLikeParser) ourCtx.newJsonParser()).parseResource(Patient.class, structure);
+
+		assertEquals(json, parser.encodeResourceToString(parsed));
+	}
+
+	@Test
+	public void testDecodeInvalid() {
+		byte[] encoded = BinaryJsonUtil.encode("{\"name\":\"value\"}");
+
+		assertThrows(DataFormatException.class, () -> BinaryJsonUtil.decodeToTree(Arrays.copyOf(encoded, encoded.length - 2)));
+		assertThrows(DataFormatException.class, () -> BinaryJsonUtil.decodeToTree(new byte[] {99, 1, 2}));
+	}
+
+	@Test
+	public void testDecodeNegativeLength() {
+		// Object start, then a field name whose length varint decodes to -1
+		byte[] contents = {BinaryJsonUtil.FORMAT_VERSION, 1, 8, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'a'};
+
+		DataFormatException e = assertThrows(DataFormatException.class, () -> BinaryJsonUtil.decodeToTree(contents));
+		assertTrue(e.getMessage().contains("Negative length"), e.getMessage());
+	}
+}
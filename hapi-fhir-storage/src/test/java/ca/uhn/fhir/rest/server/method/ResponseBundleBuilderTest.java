@@ -430,6 +430,28 @@ class ResponseBundleBuilderTest {
 		assertEquals(TEST_SERVER_BASE + "?_getpages=" + SEARCH_ID + "&_getpagesoffset=" + prevOffset + "&_count=" + ResponseBundleBuilderTest.DEFAULT_PAGE_SIZE + "&_bundletype=" + SEARCHSET.toCode(), nextLink.getUrl());
 	}
 
+	@Test
+	void testEstimatedTotalIsReportedButNotUsedForPaging() {
+		// setup
+		myLimit = LIMIT;
+		setCanStoreSearchResults(true);
+		SimpleBundleProvider bundleProvider = new SimpleBundleProvider(buildPatientList());
+		bundleProvider.setSize(null);
+		bundleProvider.setEstimatedTotal(2);
+		ResponseBundleRequest responseBundleRequest = buildResponseBundleRequest(bundleProvider, SEARCH_ID);
+
+		responseBundleRequest.requestDetails.setFhirServerBase(TEST_SERVER_BASE);
+		ResponseBundleBuilder svc = new ResponseBundleBuilder(true);
+
+		// run
+		Bundle bundle = (Bundle) svc.buildResponseBundle(responseBundleRequest);
+
+		// verify
+		verifyBundle(bundle, 2, LIMIT);
+		assertThat(bundle.getLink(), hasSize(2));
+		assertSelfLink(bundle);
+		assertNextLink(bundle, LIMIT);
+	}
 
 	private static void assertNextLinkOffset(Bundle theBundle, Integer theOffset, Integer theCount) {
 		Bundle.BundleLinkComponent nextLink = theBundle.getLink().get(1);
@@ -0,0 +1,80 @@
+package ca.uhn.fhir.interceptor.executor;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for calling interceptor hooks, with a number of interceptors registered
+ * for the pointcut being called. Any change to how hook methods are invoked should be
+ * measured with these first.
+ * These are not run as part of the build. To run them, execute the {@link #main(String[])}
+ * method from the IDE, or compile the test classes and run
+ * <code>org.openjdk.jmh.Main InterceptorServiceBenchmark</code> with the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterceptorServiceBenchmark {
+
+	@Param({"0", "1", "10"})
+	public int myInterceptorCount;
+
+	private InterceptorService myInterceptorService;
+	private HookParams myParams;
+
+	@Setup
+	public void setup() {
+		myInterceptorService = new InterceptorService();
+		for (int i = 0; i < myInterceptorCount; i++) {
+			myInterceptorService.registerInterceptor(new MyInterceptor());
+		}
+		myParams = new HookParams("A", "B");
+	}
+
+	@Benchmark
+	public boolean callHooks() {
+		return myInterceptorService.callHooks(Pointcut.TEST_RB, myParams);
+	}
+
+	@Benchmark
+	public boolean hasHooks() {
+		return myInterceptorService.hasHooks(Pointcut.TEST_RB);
+	}
+
+	public static class MyInterceptor {
+		private int myCount;
+
+		@Hook(Pointcut.TEST_RB)
+		public boolean testRb(String theString0, String theString1) {
+			myCount += theString0.length() + theString1.length();
+			return true;
+		}
+	}
+
+	public static void main(String[] theArgs) throws RunnerException {
+		new Runner(new OptionsBuilder()
+						.include(InterceptorServiceBenchmark.class.getSimpleName())
+						.build())
+				.run();
+	}
+}
@@ -0,0 +1,118 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.StringType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing the tree-based and the token-streaming JSON parsers, with and
+ * without lazy parsing of Bundle entries.
+ * These are not run as part of the build. To run them, execute the {@link #main(String[])}
+ * method from the IDE, or compile the test classes and run
+ * <code>org.openjdk.jmh.Main JsonParserBenchmark</code> with the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonParserBenchmark {
+
+	@Param({"false", "true"})
+	public boolean myStreaming;
+
+	@Param({"false", "true"})
+	public boolean myLazy;
+
+	private FhirContext myCtx;
+	private String mySmallResource;
+	private String myLargeBundle;
+
+	@Setup
+	public void setup() {
+		myCtx = FhirContext.forR4();
+		myCtx.getParserOptions().setStreamingJsonParsing(myStreaming);
+		myCtx.getParserOptions().setLazyBundleEntryParsing(myLazy);
+
+		IParser parser = myCtx.newJsonParser();
+		mySmallResource = parser.encodeResourceToString(createPatient(0));
+
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.COLLECTION);
+		for (int i = 0; i < 1000; i++) {
+			Patient patient = createPatient(i);
+			bundle.addEntry().setFullUrl("Patient/" + patient.getIdPart()).setResource(patient);
+
+			Observation observation = new Observation();
+			observation.setId("obs" + i);
+			observation.setStatus(Observation.ObservationStatus.FINAL);
+			observation.getCode().addCoding().setSystem("http://loinc.org").setCode("8867-4");
+			observation.setSubject(patient.getIdElement().toVersionless());
+			observation.setValue(new Quantity().setValue(60 + (i % 40)).setUnit("/min"));
+			bundle.addEntry().setFullUrl("Observation/" + observation.getIdPart()).setResource(observation);
+		}
+		myLargeBundle = parser.encodeResourceToString(bundle);
+	}
+
+	@Benchmark
+	public IBaseResource parseSmallResource() {
+		return myCtx.newJsonParser().parseResource(mySmallResource);
+	}
+
+	@Benchmark
+	public IBaseResource parseLargeBundle() {
+		return myCtx.newJsonParser().parseResource(myLargeBundle);
+	}
+
+	/**
+	 * Parses a large Bundle but only reads what is needed to decide where to send it, as a
+	 * router or a gateway would. None of the entries are accessed.
+	 */
+	@Benchmark
+	public String routeLargeBundle() {
+		Bundle bundle = myCtx.newJsonParser().parseResource(Bundle.class, myLargeBundle);
+		return bundle.getType().toCode() + "/" + bundle.getEntry().size();
+	}
+
+	private static Patient createPatient(int theIndex) {
+		Patient patient = new Patient();
+		patient.setId("pat" + theIndex);
+		patient.setActive(true);
+		patient.addIdentifier().setSystem("http://example.com/mrn").setValue("MRN" + theIndex);
+		patient.addName().setFamily("Family" + theIndex).addGiven("Given").addGiven("Middle");
+		patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+		patient.getBirthDateElement().setValueAsString("1980-01-01");
+		patient.getBirthDateElement().addExtension("http://example.com/birthTime", new StringType("10:15"));
+		patient.addAddress().addLine("123 Main St").setCity("Toronto").setCountry("CA");
+		return patient;
+	}
+
+	public static void main(String[] theArgs) throws RunnerException {
+		new Runner(new OptionsBuilder()
+						.include(JsonParserBenchmark.class.getSimpleName())
+						.build())
+				.run();
+	}
+}
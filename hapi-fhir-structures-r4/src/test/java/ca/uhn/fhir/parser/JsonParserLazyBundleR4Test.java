@@ -0,0 +1,250 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonParserLazyBundleR4Test {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private static final FhirContext ourLazyCtx = FhirContext.forR4();
+	private static final FhirContext ourLazyStreamingCtx = FhirContext.forR4();
+
+	static {
+		ourLazyCtx.getParserOptions().setLazyBundleEntryParsing(true);
+		ourLazyStreamingCtx.getParserOptions().setLazyBundleEntryParsing(true);
+		ourLazyStreamingCtx.getParserOptions().setStreamingJsonParsing(true);
+	}
+
+	private static final String BUNDLE = """
+		{
+		  "resourceType": "Bundle",
+		  "id": "bundle",
+		  "type": "collection",
+		  "entry": [ {
+		    "fullUrl": "http://example.com/fhir/Patient/pat",
+		    "resource": {
+		      "resourceType": "Patient",
+		      "id": "pat",
+		      "name": [ { "family": "Smith" } ]
+		    }
+		  }, {
+		    "fullUrl": "urn:uuid:0b9a4b7c-3c55-4a4b-9d3f-9a2f7d7e6d11",
+		    "resource": {
+		      "resourceType": "Observation",
+		      "contained": [ {
+		        "id": "p",
+		        "resourceType": "Patient",
+		        "name": [ { "family": "Contained" } ]
+		      } ],
+		      "status": "final",
+		      "subject": { "reference": "#p" }
+		    }
+		  } ]
+		}""";
+
+	@Test
+	public void testEntriesAreParsedOnFirstAccess() {
+		Bundle bundle = ourLazyCtx.newJsonParser().parseResource(Bundle.class, BUNDLE);
+
+		assertEquals("bundle", bundle.getIdElement().getIdPart());
+		assertEquals(Bundle.BundleType.COLLECTION, bundle.getType());
+		assertThat(bundle.getEntry(), instanceOf(DeferredElementList.class));
+		DeferredElementList<?> entries = (DeferredElementList<?>) bundle.getEntry();
+		assertEquals(2, entries.size());
+		assertFalse(entries.isParsed(0));
+		assertFalse(entries.isParsed(1));
+
+		Observation observation = (Observation) bundle.getEntry().get(1).getResource();
+		assertFalse(entries.isParsed(0));
+		assertTrue(entries.isParsed(1));
+		assertEquals("urn:uuid:0b9a4b7c-3c55-4a4b-9d3f-9a2f7d7e6d11", observation.getIdElement().getValue());
+		Patient contained = (Patient) observation.getSubject().getResource();
+		assertEquals("Contained", contained.getNameFirstRep().getFamily());
+
+		// The same instance is returned on each access
+		assertTrue(observation == bundle.getEntry().get(1).getResource());
+	}
+
+	@Test
+	public void testSameAsEagerParsing() {
+		Bundle eager = ourCtx.newJsonParser().parseResource(Bundle.class, BUNDLE);
+		Bundle lazy = ourLazyCtx.newJsonParser().parseResource(Bundle.class, BUNDLE);
+
+		assertEquals(
+				ourCtx.newJsonParser().encodeResourceToString(eager),
+				ourCtx.newJsonParser().encodeResourceToString(lazy));
+		for (int i = 0; i < eager.getEntry().size(); i++) {
+			assertEquals(
+					eager.getEntry().get(i).getResource().getIdElement().getValue(),
+					lazy.getEntry().get(i).getResource().getIdElement().getValue());
+		}
+		assertEquals(
+				"http://example.com/fhir/Patient/pat",
+				lazy.getEntry().get(0).getResource().getIdElement().getValue());
+	}
+
+	@Test
+	public void testSameAsEagerParsingWithStreaming() {
+		Bundle eager = ourCtx.newJsonParser().parseResource(Bundle.class, BUNDLE);
+		Bundle lazy = ourLazyStreamingCtx.newJsonParser().parseResource(Bundle.class, BUNDLE);
+
+		assertThat(lazy.getEntry(), instanceOf(DeferredElementList.class));
+		assertEquals(
+				ourCtx.newJsonParser().encodeResourceToString(eager),
+				ourCtx.newJsonParser().encodeResourceToString(lazy));
+	}
+
+	@Test
+	public void testEntryTextIsKeptExactly() {
+		String input = """
+			{
+			  "resourceType": "Bundle",
+			  "entry" : [
+			    { "resource": { "resourceType": "Patient", "id": "a",
+			      "name": [ { "family": "O'Brien \\"}\\" ] } ] } } ,
+			    {"resource":{"resourceType":"Patient","id":"b","name":[{"family":"Ünïcödé \\u00e9"}]}}
+			  ],
+			  "type": "collection"
+			}""";
+
+		Bundle eager = ourCtx.newJsonParser().parseResource(Bundle.class, input);
+		Bundle lazy = ourLazyCtx.newJsonParser().parseResource(Bundle.class, input);
+
+		assertEquals(Bundle.BundleType.COLLECTION, lazy.getType());
+		assertEquals("O'Brien \"}\" ]", ((Patient) lazy.getEntry().get(0).getResource()).getNameFirstRep().getFamily());
+		assertEquals("Ünïcödé é", ((Patient) lazy.getEntry().get(1).getResource()).getNameFirstRep().getFamily());
+		assertEquals(
+				ourCtx.newJsonParser().encodeResourceToString(eager),
+				ourCtx.newJsonParser().encodeResourceToString(lazy));
+	}
+
+	@Test
+	public void testSettingsInEffectWhenParsedAreUsed() {
+		String input = """
+			{
+			  "resourceType": "Bundle",
+			  "type": "collection",
+			  "entry": [ {
+			    "fullUrl": "http://example.com/fhir/Patient/pat",
+			    "resource": { "resourceType": "Patient", "id": "pat", "foo": "bar" }
+			  } ]
+			}""";
+
+		FhirContext ctx = FhirContext.forR4();
+		ctx.getParserOptions().setLazyBundleEntryParsing(true);
+		IParser parser = ctx.newJsonParser();
+		Bundle bundle = parser.parseResource(Bundle.class, input);
+
+		parser.setParserErrorHandler(new StrictErrorHandler());
+		parser.setOverrideResourceIdWithBundleEntryFullUrl(false);
+		ctx.getParserOptions().setOverrideResourceIdWithBundleEntryFullUrl(false);
+
+		IIdType id = bundle.getEntry().get(0).getResource().getIdElement();
+		assertEquals("http://example.com/fhir/Patient/pat", id.getValue());
+	}
+
+	@Test
+	public void testFullUrlOverrideDisabled() {
+		IParser parser = ourLazyCtx.newJsonParser().setOverrideResourceIdWithBundleEntryFullUrl(false);
+		Bundle bundle = parser.parseResource(Bundle.class, BUNDLE);
+
+		IIdType id = bundle.getEntry().get(0).getResource().getIdElement();
+		assertEquals("pat", id.getIdPart());
+		assertFalse(id.hasBaseUrl());
+	}
+
+	@Test
+	public void testNestedBundle() {
+		String input = """
+			{
+			  "resourceType": "Bundle",
+			  "type": "collection",
+			  "entry": [ {
+			    "resource": {
+			      "resourceType": "Bundle",
+			      "type": "searchset",
+			      "entry": [ {
+			        "resource": { "resourceType": "Patient", "id": "inner" }
+			      } ]
+			    }
+			  } ]
+			}""";
+
+		Bundle bundle = ourLazyCtx.newJsonParser().parseResource(Bundle.class, input);
+
+		Bundle inner = (Bundle) bundle.getEntryFirstRep().getResource();
+		assertEquals(Bundle.BundleType.SEARCHSET, inner.getType());
+		assertThat(inner.getEntry(), instanceOf(DeferredElementList.class));
+		assertEquals("inner", inner.getEntryFirstRep().getResource().getIdElement().getIdPart());
+	}
+
+	@Test
+	public void testModifyEntries() {
+		Bundle bundle = ourLazyCtx.newJsonParser().parseResource(Bundle.class, BUNDLE);
+
+		bundle.addEntry().setResource(new Patient().setActive(true));
+		bundle.getEntry().remove(0);
+
+		List<Bundle.BundleEntryComponent> entries = bundle.getEntry();
+		assertEquals(2, entries.size());
+		assertEquals("Observation", entries.get(0).getResource().fhirType());
+		String encoded = ourCtx.newJsonParser().encodeResourceToString(bundle);
+		assertThat(encoded, containsString("\"active\":true"));
+	}
+
+	@Test
+	public void testErrorIsReportedOnAccess() {
+		String input = """
+			{
+			  "resourceType": "Bundle",
+			  "type": "collection",
+			  "entry": [ {
+			    "resource": { "resourceType": "Patient", "foo": "bar" }
+			  } ]
+			}""";
+
+		IParser parser = ourLazyCtx.newJsonParser().setParserErrorHandler(new StrictErrorHandler());
+		Bundle bundle = parser.parseResource(Bundle.class, input);
+
+		assertEquals(1, bundle.getEntry().size());
+		DataFormatException e = assertThrows(DataFormatException.class, () -> bundle.getEntry().get(0));
+		assertThat(e.getMessage(), containsString("foo"));
+	}
+
+	@Test
+	public void testNonObjectEntryIsReportedOnAccess() {
+		String input = """
+			{ "resourceType": "Bundle", "type": "collection", "entry": [ "foo" ] }""";
+
+		IParser parser = ourLazyCtx.newJsonParser().setParserErrorHandler(new StrictErrorHandler());
+		Bundle bundle = parser.parseResource(Bundle.class, input);
+
+		assertEquals(1, bundle.getEntry().size());
+		assertThrows(DataFormatException.class, () -> bundle.getEntry().get(0));
+	}
+
+	@Test
+	public void testXmlParserUnaffected() {
+		Bundle eager = ourCtx.newJsonParser().parseResource(Bundle.class, BUNDLE);
+		String xml = ourCtx.newXmlParser().encodeResourceToString(eager);
+
+		Bundle bundle = ourLazyCtx.newXmlParser().parseResource(Bundle.class, xml);
+
+		assertFalse(bundle.getEntry() instanceof DeferredElementList);
+		assertEquals(2, bundle.getEntry().size());
+	}
+}
@@ -0,0 +1,185 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.ClasspathUtil;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonParserStreamingR4Test {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private static final FhirContext ourStreamingCtx = FhirContext.forR4();
+
+	static {
+		ourStreamingCtx.getParserOptions().setStreamingJsonParsing(true);
+	}
+
+	@Test
+	public void testPrimitiveExtensionsInEitherOrder() {
+		String input = """
+			{
+			  "resourceType": "Patient",
+			  "_birthDate": {
+			    "extension": [ { "url": "http://foo", "valueString": "before" } ]
+			  },
+			  "birthDate": "2020-01-01",
+			  "gender": "male",
+			  "_gender": {
+			    "id": "g1",
+			    "extension": [ { "url": "http://foo", "valueString": "after" } ]
+			  },
+			  "_active": {
+			    "extension": [ { "url": "http://foo", "valueString": "no value" } ]
+			  },
+			  "name": [ {
+			    "given": [ "A", null, "C" ],
+			    "_given": [ null, { "extension": [ { "url": "http://foo", "valueString": "B" } ] } ]
+			  } ]
+			}""";
+
+		Patient patient = assertParsesSameAsTree(Patient.class, input);
+
+		assertEquals("before", patient.getBirthDateElement().getExtensionString("http://foo"));
+		assertEquals("g1", patient.getGenderElement().getId());
+		assertEquals("after", patient.getGenderElement().getExtensionString("http://foo"));
+		assertFalse(patient.getActiveElement().hasValue());
+		assertEquals("no value", patient.getActiveElement().getExtensionString("http://foo"));
+		assertEquals(3, patient.getNameFirstRep().getGiven().size());
+		assertEquals("B", patient.getNameFirstRep().getGiven().get(1).getExtensionString("http://foo"));
+	}
+
+	@Test
+	public void testResourceTypeNotFirst() {
+		String input = """
+			{
+			  "id": "123",
+			  "name": [ { "family": "Smith" } ],
+			  "resourceType": "Patient",
+			  "active": true
+			}""";
+
+		Patient patient = assertParsesSameAsTree(Patient.class, input);
+
+		assertEquals("123", patient.getIdElement().getIdPart());
+		assertEquals("Smith", patient.getNameFirstRep().getFamily());
+		assertTrue(patient.getActive());
+	}
+
+	@Test
+	public void testContainedResources() {
+		String input = """
+			{
+			  "resourceType": "Observation",
+			  "contained": [ {
+			    "id": "pat",
+			    "resourceType": "Patient",
+			    "name": [ { "family": "Smith" } ]
+			  } ],
+			  "status": "final",
+			  "subject": { "reference": "#pat" }
+			}""";
+
+		assertParsesSameAsTree(input);
+	}
+
+	@ParameterizedTest
+	@ValueSource(
+			strings = {
+				"/bundle-with-two-patient-resources.json",
+				"/multi-thread-parsing-issue-bundle.json",
+				"/observation-decimal-element-with-leading-plus.json"
+			})
+	public void testParseResourceFiles(String theResource) {
+		String input = ClasspathUtil.loadResource(theResource);
+
+		assertParsesSameAsTree(input);
+	}
+
+	@Test
+	public void testBundleEntryFullUrlOverridesResourceId() {
+		String input = """
+			{
+			  "resourceType": "Bundle",
+			  "type": "collection",
+			  "entry": [ {
+			    "fullUrl": "http://example.com/Patient/1",
+			    "resource": { "resourceType": "Patient", "id": "2" }
+			  } ]
+			}""";
+
+		Bundle bundle = assertParsesSameAsTree(Bundle.class, input);
+
+		assertEquals("http://example.com/Patient/1", bundle.getEntryFirstRep().getResource().getId());
+	}
+
+	@Test
+	public void testMissingResourceType() {
+		String input = "{\"id\": \"123\"}";
+
+		DataFormatException e = assertThrows(
+				DataFormatException.class, () -> ourStreamingCtx.newJsonParser().parseResource(input));
+		assertThat(e.getMessage(), containsString("missing required element: 'resourceType'"));
+	}
+
+	@Test
+	public void testTrailingContent() {
+		String input = "{\"resourceType\": \"Patient\"} {}";
+
+		DataFormatException e = assertThrows(
+				DataFormatException.class, () -> ourStreamingCtx.newJsonParser().parseResource(input));
+		assertThat(e.getMessage(), containsString("after the end of the resource"));
+	}
+
+	@Test
+	public void testInvalidJson() {
+		String input = "{\"resourceType\": \"Patient\", \"active\": }";
+
+		DataFormatException e = assertThrows(
+				DataFormatException.class, () -> ourStreamingCtx.newJsonParser().parseResource(input));
+		assertThat(e.getMessage(), containsString("Failed to parse JSON encoded FHIR content"));
+	}
+
+	@Test
+	public void testExtensionAfterComplexElementIsReported() {
+		String input = """
+			{
+			  "resourceType": "Patient",
+			  "maritalStatus": { "text": "Married" },
+			  "_maritalStatus": { "id": "1" }
+			}""";
+
+		IParser parser = ourStreamingCtx.newJsonParser().setParserErrorHandler(new StrictErrorHandler());
+		DataFormatException e = assertThrows(DataFormatException.class, () -> parser.parseResource(input));
+		assertThat(e.getMessage(), containsString("_maritalStatus"));
+	}
+
+	private void assertParsesSameAsTree(String theInput) {
+		IBaseResource expected = ourCtx.newJsonParser().parseResource(theInput);
+		IBaseResource actual = ourStreamingCtx.newJsonParser().parseResource(theInput);
+		assertEncodedEquals(expected, actual);
+	}
+
+	private <T extends IBaseResource> T assertParsesSameAsTree(Class<T> theType, String theInput) {
+		T expected = ourCtx.newJsonParser().parseResource(theType, theInput);
+		T actual = ourStreamingCtx.newJsonParser().parseResource(theType, theInput);
+		assertEncodedEquals(expected, actual);
+		return actual;
+	}
+
+	private void assertEncodedEquals(IBaseResource theExpected, IBaseResource theActual) {
+		String expectedEncoded = ourCtx.newJsonParser().setPrettyPrint(true).encodeResourceToString(theExpected);
+		String actualEncoded = ourCtx.newJsonParser().setPrettyPrint(true).encodeResourceToString(theActual);
+		assertEquals(expectedEncoded, actualEncoded);
+	}
+}
@@ -0,0 +1,170 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.server.util.RawJsonResourceBody;
+import ca.uhn.fhir.test.utilities.HttpClientExtension;
+import ca.uhn.fhir.test.utilities.server.RestfulServerExtension;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.Narrative;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RawJsonResourceBodyR4Test {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@RegisterExtension
+	public HttpClientExtension myClient = new HttpClientExtension();
+
+	@RegisterExtension
+	public RestfulServerExtension myServer = new RestfulServerExtension(ourCtx)
+		.registerProvider(new DummyPatientResourceProvider());
+
+	private Patient myLastShell;
+
+	@AfterEach
+	public void after() {
+		myServer.getRestfulServer().getInterceptorService().unregisterAllAnonymousInterceptors();
+	}
+
+	@Test
+	public void testCreateIfEligible() {
+		assertNotNull(RawJsonResourceBody.createIfEligible("Patient", "{\"resourceType\":\"Patient\"}"));
+		assertNotNull(RawJsonResourceBody.createIfEligible("Patient", "{\"resourceType\":\"Patient\",\"active\":true}"));
+		assertNull(RawJsonResourceBody.createIfEligible("Patient", null));
+		assertNull(RawJsonResourceBody.createIfEligible("Patient", "{\"resourceType\":\"Observation\",\"status\":\"final\"}"));
+		assertNull(RawJsonResourceBody.createIfEligible("Patient", "{\"resourceType\":\"PatientX\",\"active\":true}"));
+		assertNull(RawJsonResourceBody.createIfEligible("Patient", "{\"resourceType\":\"Patient\",\"id\":\"1\"}"));
+		assertNull(RawJsonResourceBody.createIfEligible("Patient", "{\"resourceType\":\"Patient\",\"meta\":{\"versionId\":\"1\"}}"));
+		assertNull(RawJsonResourceBody.createIfEligible("Patient", "{ \"resourceType\": \"Patient\" }"));
+	}
+
+	@Test
+	public void testMaterialize() {
+		Patient shell = createShell();
+		shell.setActive(false);
+
+		RawJsonResourceBody body = RawJsonResourceBody.fromResource(shell);
+		assertNotNull(body);
+		body.materialize(ourCtx, shell);
+
+		assertNull(RawJsonResourceBody.fromResource(shell));
+		assertEquals("Patient/123/_history/2", shell.getIdElement().getValue());
+		assertEquals("2", shell.getMeta().getVersionId());
+		assertEquals("Simpson", shell.getNameFirstRep().getFamily());
+		assertEquals("bar", shell.getExtensionByUrl("http://foo").getValueAsPrimitive().getValueAsString());
+		// Elements set on the shell take precedence over the stored body
+		assertEquals(false, shell.getActive());
+	}
+
+	@Test
+	public void testReadIsSpliced() throws Exception {
+		String actual = fetch("/Patient/123?_format=json&_pretty=false");
+
+		assertEquals(ourCtx.newJsonParser().encodeResourceToString(createPatient()), actual);
+		assertNotNull(RawJsonResourceBody.fromResource(myLastShell));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"_format=xml", "_format=json&_pretty=true", "_format=json&_elements=name", "_format=json&_summary=true", "_format=json&_summary=text"})
+	public void testReadFallsBackToParsedResource(String theParams) throws Exception {
+		String expected = fetch("/Patient/456?" + theParams).replace("456", "123");
+		String actual = fetch("/Patient/123?" + theParams);
+
+		assertEquals(expected, actual);
+		assertNull(RawJsonResourceBody.fromResource(myLastShell));
+	}
+
+	@Test
+	public void testReadFallsBackWhenShellModified() throws Exception {
+		myServer.getRestfulServer().getInterceptorService().registerAnonymousInterceptor(Pointcut.SERVER_OUTGOING_RESPONSE, (thePointcut, theArgs) -> {
+			((Patient) theArgs.get(IBaseResource.class)).setGender(Enumerations.AdministrativeGender.FEMALE);
+		});
+
+		String actual = fetch("/Patient/123?_format=json&_pretty=false");
+
+		Patient patient = ourCtx.newJsonParser().parseResource(Patient.class, actual);
+		assertEquals(Enumerations.AdministrativeGender.FEMALE, patient.getGender());
+		assertEquals("Simpson", patient.getNameFirstRep().getFamily());
+		assertEquals("2", patient.getMeta().getVersionId());
+	}
+
+	private String fetch(String theUrl) throws Exception {
+		try (CloseableHttpResponse response = myClient.execute(new HttpGet(myServer.getBaseUrl() + theUrl))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			return IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static Patient createPatient() {
+		Patient patient = new Patient();
+		patient.setId("Patient/123/_history/2");
+		patient.getMeta().setVersionId("2");
+		patient.getMeta().setLastUpdatedElement(new InstantType("2024-02-01T10:11:12.123Z"));
+		patient.getMeta().addTag("http://tags", "tag0", null);
+		patient.getText().setStatus(Narrative.NarrativeStatus.GENERATED).setDivAsString("<div>Hello</div>");
+		patient.addExtension("http://foo", new StringType("bar"));
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson").addGiven("Homer");
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+		return patient;
+	}
+
+	/**
+	 * Creates a shell resource the same way a storage layer would: with the ID and
+	 * metadata populated, and the stored body (which has neither) attached
+	 */
+	private static Patient createShell() {
+		Patient stored = createPatient();
+		stored.setId((IdType) null);
+		stored.setMeta(null);
+		String json = ourCtx.newJsonParser().encodeResourceToString(stored);
+
+		Patient shell = new Patient();
+		shell.setId("Patient/123/_history/2");
+		shell.setMeta(createPatient().getMeta());
+		RawJsonResourceBody body = RawJsonResourceBody.createIfEligible("Patient", json);
+		assertNotNull(body);
+		body.attachTo(shell);
+		return shell;
+	}
+
+	public class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IBaseResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read
+		public Patient read(@IdParam IdType theId) {
+			if ("456".equals(theId.getIdPart())) {
+				Patient retVal = createPatient();
+				retVal.setId("Patient/456/_history/2");
+				return retVal;
+			}
+			myLastShell = createShell();
+			return myLastShell;
+		}
+	}
+}
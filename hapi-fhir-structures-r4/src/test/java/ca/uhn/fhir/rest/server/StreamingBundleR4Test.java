@@ -0,0 +1,184 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.annotation.IncludeParam;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.method.ResponsePage;
+import ca.uhn.fhir.test.utilities.HttpClientExtension;
+import ca.uhn.fhir.test.utilities.server.RestfulServerExtension;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingBundleR4Test {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@RegisterExtension
+	public HttpClientExtension myClient = new HttpClientExtension();
+
+	@RegisterExtension
+	public RestfulServerExtension myServer = new RestfulServerExtension(ourCtx)
+		.registerProvider(new DummyPatientResourceProvider())
+		.withPagingProvider(new FifoMemoryPagingProvider(10).setDefaultPageSize(20).setMaximumPageSize(100));
+
+	private int myGetResourcesCalls;
+
+	@BeforeEach
+	public void before() {
+		myGetResourcesCalls = 0;
+	}
+
+	@AfterEach
+	public void after() {
+		myServer.getRestfulServer().setBundleStreamingChunkSize(0);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		"json, false",
+		"json, true",
+		"xml,  false",
+		"xml,  true"
+	})
+	public void testStreamedResponseMatchesNonStreamedResponse(String theFormat, boolean thePrettyPrint) throws Exception {
+		String url = "/Patient?_count=25&_include=Patient:organization&_include=Patient:link&_format=" + theFormat + "&_pretty=" + thePrettyPrint;
+
+		Bundle expected = fetch(url, theFormat);
+		assertEquals(1, myGetResourcesCalls);
+
+		myServer.getRestfulServer().setBundleStreamingChunkSize(7);
+		myGetResourcesCalls = 0;
+		Bundle actual = fetch(url, theFormat);
+		assertEquals(4, myGetResourcesCalls);
+
+		assertEquals(expected.getTotal(), actual.getTotal());
+		assertEquals(expected.getType(), actual.getType());
+		assertEquals(expected.getLink().size(), actual.getLink().size());
+		assertEquals(toEntryKeys(expected), toEntryKeys(actual));
+		assertEquals(25 + 3, actual.getEntry().size());
+	}
+
+	@Test
+	public void testStreamedResponseWithElements() throws Exception {
+		myServer.getRestfulServer().setBundleStreamingChunkSize(7);
+
+		Bundle actual = fetch("/Patient?_count=25&_elements=name", "json");
+		assertEquals(4, myGetResourcesCalls);
+		assertEquals(25, actual.getEntry().size());
+		for (Bundle.BundleEntryComponent next : actual.getEntry()) {
+			Patient patient = (Patient) next.getResource();
+			assertTrue(patient.hasName());
+			assertFalse(patient.hasGender());
+		}
+	}
+
+	@Test
+	public void testStreamedResponseForNextPage() throws Exception {
+		myServer.getRestfulServer().setBundleStreamingChunkSize(7);
+
+		Bundle firstPage = fetch("/Patient?_count=25", "json");
+		String next = firstPage.getLink(Bundle.LINK_NEXT).getUrl();
+
+		myGetResourcesCalls = 0;
+		Bundle secondPage = fetchUrl(next, "json");
+		assertEquals(4, myGetResourcesCalls);
+		assertEquals(25, secondPage.getEntry().size());
+		assertEquals("Patient/25", secondPage.getEntry().get(0).getResource().getIdElement().toUnqualifiedVersionless().getValue());
+	}
+
+	@Test
+	public void testSmallPageIsNotStreamed() throws Exception {
+		myServer.getRestfulServer().setBundleStreamingChunkSize(50);
+
+		Bundle actual = fetch("/Patient?_count=25", "json");
+		assertEquals(1, myGetResourcesCalls);
+		assertEquals(25, actual.getEntry().size());
+	}
+
+	private Bundle fetch(String theUrl, String theFormat) throws Exception {
+		return fetchUrl(myServer.getBaseUrl() + theUrl, theFormat);
+	}
+
+	private Bundle fetchUrl(String theUrl, String theFormat) throws Exception {
+		try (CloseableHttpResponse response = myClient.execute(new HttpGet(theUrl))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			return EncodingEnum.forContentType(theFormat).newParser(ourCtx).parseResource(Bundle.class, body);
+		}
+	}
+
+	private static Set<String> toEntryKeys(Bundle theBundle) {
+		Set<String> ids = new HashSet<>();
+		Set<String> retVal = new TreeSet<>();
+		for (Bundle.BundleEntryComponent next : theBundle.getEntry()) {
+			String id = next.getResource().getIdElement().toUnqualifiedVersionless().getValue();
+			assertTrue(ids.add(id), "Duplicate entry: " + id);
+			retVal.add(id + " " + next.getSearch().getMode());
+		}
+		return retVal;
+	}
+
+	public class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IBaseResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Search
+		public IBundleProvider search(@IncludeParam(allow = {"Patient:organization", "Patient:link"}) Set<Include> theIncludes) {
+			Organization org0 = new Organization();
+			org0.setId("Organization/0");
+			Organization org1 = new Organization();
+			org1.setId("Organization/1");
+
+			List<Patient> patients = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				Patient patient = new Patient();
+				patient.setId("Patient/" + i);
+				patient.addName().setFamily("FAMILY" + i);
+				patient.setGender(org.hl7.fhir.r4.model.Enumerations.AdministrativeGender.MALE);
+				patient.getManagingOrganization().setResource(i % 2 == 0 ? org0 : org1);
+				patients.add(patient);
+			}
+			// Patient/0 links to a patient which is matched in a later chunk, and Patient/20
+			// links to one which is only included
+			patients.get(0).addLink().getOther().setResource(patients.get(20));
+			patients.get(20).addLink().getOther().setResource(patients.get(40));
+
+			return new SimpleBundleProvider(new ArrayList<IBaseResource>(patients)) {
+				@Override
+				public List<IBaseResource> getResources(int theFromIndex, int theToIndex, @Nonnull ResponsePage.ResponsePageBuilder theResponsePageBuilder) {
+					myGetResourcesCalls++;
+					return super.getResources(theFromIndex, theToIndex, theResponsePageBuilder);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package ca.uhn.fhir.rest.server.interceptor.metrics;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.executor.InterceptorMetricsCollector;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.interceptor.ResponseHighlighterInterceptor;
+import ca.uhn.fhir.rest.server.provider.HashMapResourceProvider;
+import ca.uhn.fhir.test.utilities.server.RestfulServerExtension;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InterceptorMetricsEndpointInterceptorTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	@RegisterExtension
+	private final RestfulServerExtension myServer = new RestfulServerExtension(ourCtx)
+		.registerProvider(new HashMapResourceProvider<>(ourCtx, Patient.class));
+	private final InterceptorMetricsCollector myCollector = new InterceptorMetricsCollector();
+
+	@BeforeEach
+	public void before() {
+		myServer.getInterceptorService().setMetricsSink(myCollector);
+		myServer.registerInterceptor(new InterceptorMetricsEndpointInterceptor(myCollector));
+		myServer.registerInterceptor(new ResponseHighlighterInterceptor());
+	}
+
+	@AfterEach
+	public void after() {
+		myServer.getInterceptorService().setMetricsSink(null);
+		myServer.unregisterAllInterceptors();
+	}
+
+	@Test
+	public void testServeMetrics() throws IOException {
+		myServer.getFhirClient().search().forResource(Patient.class).execute();
+
+		HttpGet get = new HttpGet(myServer.getBaseUrl() + "/$interceptor-metrics");
+		try (CloseableHttpResponse response = myServer.getHttpClient().execute(get)) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertThat(response.getEntity().getContentType().getValue(), containsString(Constants.CT_JSON));
+			String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertThat(body, containsString("\"pointcut\" : \"SERVER_OUTGOING_RESPONSE\""));
+			assertThat(body, containsString("\"interceptorType\" : \"" + ResponseHighlighterInterceptor.class.getName() + "\""));
+		}
+	}
+
+	@Test
+	public void testOtherRequestsAreNotAffected() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		IIdType id = myServer.getFhirClient().create().resource(patient).execute().getId();
+
+		Patient actual = myServer.getFhirClient().read().resource(Patient.class).withId(id).execute();
+		assertTrue(actual.getActive());
+	}
+}